@@ -0,0 +1,72 @@
+package org.mozilla.javascript.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeJSON;
+import org.mozilla.javascript.Scriptable;
+import org.openjdk.jmh.annotations.*;
+
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonBenchmark {
+    @State(Scope.Thread)
+    public static class JsonState {
+        Context cx;
+        Scriptable scope;
+
+        Object data;
+        Object dataWithToJSON;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            cx = Context.enter();
+            cx.setOptimizationLevel(9);
+            cx.setLanguageVersion(Context.VERSION_ES6);
+            scope = cx.initStandardObjects();
+
+            data =
+                    cx.evaluateString(
+                            scope,
+                            "var data = [];\n"
+                                    + "for (var i = 0; i < 1000; i++) {\n"
+                                    + "  data.push({id: i, name: 'item ' + i, price: i * 1.25,\n"
+                                    + "    tags: ['a', 'b', 'c'],\n"
+                                    + "    nested: {active: i % 2 == 0, label: 'L' + i}});\n"
+                                    + "}\n"
+                                    + "data;",
+                            "data.js",
+                            1,
+                            null);
+            // The same data, where every object has to be looked at through toJSON
+            dataWithToJSON =
+                    cx.evaluateString(
+                            scope,
+                            "data.map(function(o) {\n"
+                                    + "  var c = Object.assign({}, o);\n"
+                                    + "  c.toJSON = function() { return o; };\n"
+                                    + "  return c; });",
+                            "toJSON.js",
+                            1,
+                            null);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            cx.close();
+        }
+    }
+
+    @Benchmark
+    public Object stringifyPlainData(JsonState state) {
+        return NativeJSON.stringify(state.cx, state.scope, state.data, null, null);
+    }
+
+    @Benchmark
+    public Object stringifyWithToJSON(JsonState state) {
+        return NativeJSON.stringify(state.cx, state.scope, state.dataWithToJSON, null, null);
+    }
+
+    @Benchmark
+    public Object stringifyIndented(JsonState state) {
+        return NativeJSON.stringify(state.cx, state.scope, state.data, null, 2);
+    }
+}
@@ -4,6 +4,7 @@ import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import org.mozilla.javascript.EmbeddedSlotMap;
 import org.mozilla.javascript.HashSlotMap;
+import org.mozilla.javascript.ShapedSlotMap;
 import org.mozilla.javascript.Slot;
 import org.mozilla.javascript.SlotMap;
 import org.openjdk.jmh.annotations.*;
@@ -143,6 +144,71 @@ public class SlotMapBenchmark {
         return slot;
     }
 
+    @State(Scope.Thread)
+    public static class ShapedState {
+        final ShapedSlotMap emptyMap = new ShapedSlotMap();
+        final ShapedSlotMap size10Map = new ShapedSlotMap();
+        final ShapedSlotMap size100Map = new ShapedSlotMap();
+        final String[] randomKeys = new String[100];
+        String size100LastKey;
+        String size10LastKey;
+
+        @Setup(Level.Trial)
+        public void create() {
+            String lastKey = null;
+            for (int i = 0; i < 10; i++) {
+                lastKey = insertRandomEntry(size10Map);
+            }
+            size10LastKey = lastKey;
+            for (int i = 0; i < 100; i++) {
+                lastKey = insertRandomEntry(size100Map);
+            }
+            size100LastKey = lastKey;
+            for (int i = 0; i < 100; i++) {
+                randomKeys[i] = makeRandomString();
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public Object shapedInsert1Key(ShapedState state) {
+        Slot newSlot = null;
+        for (int i = 0; i < 100; i++) {
+            newSlot = state.emptyMap.modify(state.randomKeys[i], 0, 0);
+        }
+        if (newSlot == null) {
+            throw new AssertionError();
+        }
+        return newSlot;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public Object shapedQueryKey10Entries(ShapedState state) {
+        Slot slot = null;
+        for (int i = 0; i < 100; i++) {
+            slot = state.size10Map.query(state.size10LastKey, 0);
+        }
+        if (slot == null) {
+            throw new AssertionError();
+        }
+        return slot;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public Object shapedQueryKey100Entries(ShapedState state) {
+        Slot slot = null;
+        for (int i = 0; i < 100; i++) {
+            slot = state.size100Map.query(state.size100LastKey, 0);
+        }
+        if (slot == null) {
+            throw new AssertionError();
+        }
+        return slot;
+    }
+
     /** Make a new string between 1 and 50 characters out of random lower-case letters. */
     private static String makeRandomString() {
         int len = rand.nextInt(49) + 1;
@@ -130,9 +130,9 @@ public class AccessorSlot extends Slot {
         @Override
         public Object getValue(Scriptable start) {
             if (member.delegateTo == null) {
-                return member.invoke(start, ScriptRuntime.emptyArgs);
+                return member.invoke0(start);
             }
-            return member.invoke(member.delegateTo, new Object[] {start});
+            return member.invoke1(member.delegateTo, start);
         }
 
         @Override
@@ -191,9 +191,9 @@ public class AccessorSlot extends Slot {
             Object actualArg = FunctionObject.convertArg(cx, start, value, tag);
 
             if (member.delegateTo == null) {
-                member.invoke(start, new Object[] {actualArg});
+                member.invoke1(start, actualArg);
             } else {
-                member.invoke(member.delegateTo, new Object[] {start, actualArg});
+                member.invoke2(member.delegateTo, start, actualArg);
             }
             return true;
         }
@@ -104,6 +104,7 @@ class CodeGenerator extends Icode {
 
         itsData.itsFunctionType = theFunction.getFunctionType();
         itsData.itsNeedsActivation = theFunction.requiresActivation();
+        itsData.baseLineno = theFunction.getBaseLineno();
         if (theFunction.getFunctionName() != null) {
             itsData.itsName = theFunction.getName();
         }
@@ -134,6 +135,7 @@ class CodeGenerator extends Icode {
         if (itsData.itsFunctionType == 0) {
             addToken(Token.RETURN_RESULT);
         }
+        addSuperinstructions();
 
         if (itsData.itsICode.length != iCodeTop) {
             // Make itsData.itsICode length exactly iCodeTop to save memory
@@ -1478,6 +1480,91 @@ class CodeGenerator extends Icode {
         fixupTableTop = 0;
     }
 
+    /**
+     * Replace the first instruction of common sequences with a superinstruction, so that the
+     * interpreter runs the sequence with one dispatch. The other instructions of the sequence stay
+     * where they are: the code keeps its length, and jumps into the middle of a sequence still run
+     * the original instructions.
+     */
+    private void addSuperinstructions() {
+        byte[] iCode = itsData.itsICode;
+        int pc = 0;
+        while (pc < iCodeTop) {
+            int op = iCode[pc];
+            int next = pc + Interpreter.bytecodeSpan(op);
+            if (next >= iCodeTop) {
+                break;
+            }
+            int nextOp = iCode[next];
+            int superOp = op;
+            switch (op) {
+                case Icode_GETVAR1:
+                    if (nextOp == Icode_GETVAR1) {
+                        superOp = Icode_GETVAR1_GETVAR1;
+                    } else if (nextOp == Token.GETELEM) {
+                        superOp = Icode_GETVAR1_GETELEM;
+                    } else if (isStringRegGetProp(iCode, next)) {
+                        superOp = Icode_GETVAR1_GETPROP;
+                    }
+                    break;
+                case Icode_SETVAR1:
+                    if (nextOp == Icode_POP) {
+                        superOp = Icode_SETVAR1_POP;
+                    }
+                    break;
+                case Icode_VAR_INC_DEC:
+                    if (nextOp == Icode_POP) {
+                        superOp = Icode_VAR_INC_DEC_POP;
+                    }
+                    break;
+                case Icode_POP:
+                    if (nextOp == Icode_LINE) {
+                        superOp = Icode_POP_LINE;
+                    }
+                    break;
+                case Token.LT:
+                case Token.LE:
+                case Token.GT:
+                case Token.GE:
+                    if (nextOp == Token.IFEQ || nextOp == Token.IFNE) {
+                        superOp = Icode_IF_LT - (op - Token.LT);
+                    }
+                    break;
+                case Icode_ONE:
+                    if (nextOp == Token.ADD) {
+                        superOp = Icode_ONE_ADD;
+                    }
+                    break;
+                case Icode_SHORTNUMBER:
+                    if (nextOp == Token.ADD) {
+                        superOp = Icode_SHORTNUMBER_ADD;
+                    }
+                    break;
+            }
+            if (superOp == op) {
+                pc = next;
+            } else {
+                iCode[pc] = (byte) superOp;
+                // The second instruction is never the start of another sequence
+                pc = next + Interpreter.bytecodeSpan(nextOp);
+            }
+        }
+    }
+
+    /** Check for REG_STR_C0-3 or REG_STR1 followed by GETPROP at pc. */
+    private boolean isStringRegGetProp(byte[] iCode, int pc) {
+        int op = iCode[pc];
+        int getPropPC;
+        if (op == Icode_REG_STR1) {
+            getPropPC = pc + 2;
+        } else if (Icode_REG_STR_C3 <= op && op <= Icode_REG_STR_C0) {
+            getPropPC = pc + 1;
+        } else {
+            return false;
+        }
+        return getPropPC < iCodeTop && iCode[getPropPC] == Token.GETPROP;
+    }
+
     private void addBackwardGoto(int gotoOp, int jumpPC) {
         int fromPC = iCodeTop;
         // Ensure that this is a jump backward
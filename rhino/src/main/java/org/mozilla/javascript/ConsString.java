@@ -27,9 +27,16 @@ public class ConsString implements CharSequence, Serializable {
 
     private static final long serialVersionUID = -8432806714471372570L;
 
-    private CharSequence left, right;
+    // How many levels charAt and subSequence walk down before they flatten the string instead.
+    // Strings built by appending or prepending keep their newest parts near the top.
+    private static final int MAX_WALK_DEPTH = 8;
+
+    // Once the string is flattened, flat is set before both parts are cleared, so that a thread
+    // that finds a part cleared is sure to find flat set. No lock is needed: threads that flatten
+    // the same string at the same time build equal strings.
+    private volatile CharSequence left, right;
     private final int length;
-    private boolean isFlat;
+    private volatile String flat;
 
     public ConsString(CharSequence str1, CharSequence str2) {
         if (!(str1 instanceof String) && !(str1 instanceof ConsString)) {
@@ -40,8 +47,7 @@ public class ConsString implements CharSequence, Serializable {
         }
         left = str1;
         right = str2;
-        length = left.length() + right.length();
-        isFlat = false;
+        length = str1.length() + str2.length();
     }
 
     // Replace with string representation when serializing
@@ -51,41 +57,43 @@ public class ConsString implements CharSequence, Serializable {
 
     @Override
     public String toString() {
-        return isFlat ? (String) left : flatten();
+        String str = flat;
+        return str != null ? str : flatten();
     }
 
-    private synchronized String flatten() {
-        if (!isFlat) {
-            final char[] chars = new char[length];
-            int charPos = length;
-
-            ArrayDeque<CharSequence> stack = new ArrayDeque<>();
-            stack.addFirst(left);
-
-            CharSequence next = right;
-            do {
-                if (next instanceof ConsString) {
-                    ConsString casted = (ConsString) next;
-                    if (casted.isFlat) {
-                        next = casted.left;
-                    } else {
-                        stack.addFirst(casted.left);
-                        next = casted.right;
+    private String flatten() {
+        final char[] chars = new char[length];
+        int charPos = length;
+
+        ArrayDeque<CharSequence> stack = new ArrayDeque<>();
+        CharSequence next = this;
+        do {
+            if (next instanceof ConsString) {
+                ConsString casted = (ConsString) next;
+                String str = casted.flat;
+                if (str == null) {
+                    CharSequence l = casted.left, r = casted.right;
+                    if (l != null && r != null) {
+                        stack.addFirst(l);
+                        next = r;
                         continue;
                     }
+                    str = casted.flat;
                 }
-
-                final String str = (String) next;
-                charPos -= str.length();
-                str.getChars(0, str.length(), chars, charPos);
-                next = stack.isEmpty() ? null : stack.removeFirst();
-            } while (next != null);
-
-            left = new String(chars);
-            right = "";
-            isFlat = true;
-        }
-        return (String) left;
+                next = str;
+            }
+
+            final String str = (String) next;
+            charPos -= str.length();
+            str.getChars(0, str.length(), chars, charPos);
+            next = stack.isEmpty() ? null : stack.removeFirst();
+        } while (next != null);
+
+        String result = new String(chars);
+        flat = result;
+        left = null;
+        right = null;
+        return result;
     }
 
     @Override
@@ -95,13 +103,65 @@ public class ConsString implements CharSequence, Serializable {
 
     @Override
     public char charAt(int index) {
-        String str = isFlat ? (String) left : flatten();
-        return str.charAt(index);
+        String str = flat;
+        if (str != null) {
+            return str.charAt(index);
+        }
+        CharSequence node = this;
+        int pos = index;
+        for (int depth = 0; depth < MAX_WALK_DEPTH; depth++) {
+            if (node instanceof String) {
+                return ((String) node).charAt(pos);
+            }
+            ConsString casted = (ConsString) node;
+            CharSequence l = casted.left, r = casted.right;
+            if (l == null || r == null) {
+                return casted.flat.charAt(pos);
+            }
+            int leftLength = l.length();
+            if (pos < leftLength) {
+                node = l;
+            } else {
+                pos -= leftLength;
+                node = r;
+            }
+        }
+        return flatten().charAt(index);
     }
 
     @Override
     public CharSequence subSequence(int start, int end) {
-        String str = isFlat ? (String) left : flatten();
-        return str.substring(start, end);
+        String str = flat;
+        if (str != null) {
+            return str.substring(start, end);
+        }
+        if (start < 0 || end > length || start > end) {
+            return flatten().substring(start, end);
+        }
+        // Walk down to the smallest part that holds the whole range, and only flatten that
+        CharSequence node = this;
+        int offset = 0;
+        for (int depth = 0; node instanceof ConsString; depth++) {
+            ConsString casted = (ConsString) node;
+            CharSequence l = casted.left, r = casted.right;
+            if (l == null || r == null) {
+                break;
+            }
+            int leftEnd = offset + l.length();
+            CharSequence next;
+            if (end <= leftEnd) {
+                next = l;
+            } else if (start >= leftEnd) {
+                offset = leftEnd;
+                next = r;
+            } else {
+                break;
+            }
+            if (depth == MAX_WALK_DEPTH) {
+                return flatten().substring(start, end);
+            }
+            node = next;
+        }
+        return node.toString().substring(start - offset, end - offset);
     }
 }
@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.Executor;
 import java.util.function.UnaryOperator;
 import org.mozilla.classfile.ClassFileWriter.ClassFileFormatException;
 import org.mozilla.javascript.ast.AstRoot;
@@ -354,6 +355,54 @@ public class Context implements Closeable {
      */
     public static final int FEATURE_INTL_402 = 22;
 
+    /**
+     * If set, then objects will store their properties using shared "shapes," so that objects that
+     * add the same properties in the same order share a single description of their layout and
+     * only hold a flat array of slots. This substantially reduces memory use when there are many
+     * objects with the same structure, such as objects created by the same constructor or parsed
+     * from the same kind of JSON document. Objects that are used as dictionaries with many keys
+     * revert to the default representation. The default is false.
+     *
+     * @since 1.7 Release 16
+     */
+    public static final int FEATURE_SHAPED_OBJECTS = 23;
+
+    /**
+     * If set, then every regular expression that does not use back references or lookahead is
+     * matched by an engine that takes time proportional to the length of the input, rather than
+     * by backtracking, which can take exponential time for some combinations of expression and
+     * input. This protects against expressions or input from untrusted sources, but is slower for
+     * most ordinary expressions. When not set, the linear engine is still used for expressions
+     * that repeat a group or alternative, such as (a|b)* or (\w+\s?)+. The default is false.
+     *
+     * @since 1.7 Release 16
+     */
+    public static final int FEATURE_LINEAR_REGEXP = 24;
+
+    /**
+     * If set, then functions that run in the interpreter (optimization level -1) are compiled to
+     * JVM bytecode once they have been called often or have run many loop iterations, and later
+     * calls run the compiled version. Scripts start quickly because most of their code is never
+     * compiled, while the code that runs most is as fast as at a higher optimization level.
+     * Functions that use "arguments", eval or "with", that contain other functions, and
+     * generators are always interpreted. Continuations cannot be captured while a compiled
+     * function is on the stack. The default is false.
+     *
+     * @since 1.7 Release 16
+     */
+    public static final int FEATURE_TIERED_COMPILATION = 25;
+
+    /**
+     * If set, then JSON.parse checks the whole text it is given, but only reads the members of an
+     * object from the text when the object is first used. Arrays are read along with the object
+     * that holds them. This saves most of the work of parsing large documents of which only a few
+     * values are used, at the cost of keeping the text in memory while any of its objects is
+     * unread. The default is false.
+     *
+     * @since 1.7 Release 16
+     */
+    public static final int FEATURE_LAZY_JSON = 26;
+
     public static final String languageVersionProperty = "language version";
     public static final String errorReporterProperty = "error reporter";
 
@@ -2442,6 +2491,50 @@ public class Context implements Closeable {
             compilationErrorReporter = compilerEnv.getErrorReporter();
         }
 
+        ScriptCache scriptCache = null;
+        PersistentCodeCache codeCache = null;
+        String cacheKey = null;
+        if (!returnFunction && compiler == null && debugger == null) {
+            if (securityDomain == null) {
+                scriptCache = factory.getScriptCache();
+            }
+            codeCache = factory.getPersistentCodeCache();
+            if (scriptCache != null || codeCache != null) {
+                cacheKey =
+                        PersistentCodeCache.computeKey(
+                                compilerEnv, sourceString, sourceName, lineno);
+            }
+            if (scriptCache != null) {
+                Script cached = scriptCache.get(cacheKey);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            if (codeCache != null) {
+                Script cached = loadCachedScript(codeCache, cacheKey, securityDomain);
+                if (cached != null) {
+                    if (scriptCache != null) {
+                        scriptCache.put(cacheKey, cached);
+                    }
+                    return cached;
+                }
+            }
+        }
+
+        // Interpret the script until the executor has compiled it
+        Executor compileExecutor = null;
+        if (!returnFunction
+                && compiler == null
+                && debugger == null
+                && securityDomain == null
+                && optimizationLevel >= 0
+                && codegenClass != null) {
+            compileExecutor = factory.getCompileExecutor();
+            if (compileExecutor != null) {
+                compiler = createInterpreter();
+            }
+        }
+
         ScriptNode tree =
                 parse(
                         sourceString,
@@ -2493,9 +2586,43 @@ public class Context implements Closeable {
             result = compiler.createScriptObject(bytecode, securityDomain);
         }
 
+        if (scriptCache != null) {
+            scriptCache.put(cacheKey, (Script) result);
+        }
+        if (compileExecutor != null) {
+            TieredCompiler.compileInBackground(
+                    this,
+                    compileExecutor,
+                    (InterpretedFunction) result,
+                    sourceString,
+                    sourceName,
+                    lineno,
+                    codeCache,
+                    cacheKey);
+        } else if (codeCache != null) {
+            codeCache.store(cacheKey, bytecode, compiler instanceof Interpreter);
+        }
         return result;
     }
 
+    private Script loadCachedScript(
+            PersistentCodeCache codeCache, String cacheKey, Object securityDomain) {
+        PersistentCodeCache.Entry entry = codeCache.load(cacheKey);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.interpreted) {
+            return InterpretedFunction.createScript(
+                    (InterpreterData) entry.bytecode, securityDomain);
+        }
+        Evaluator evaluator = createCompiler();
+        if (evaluator instanceof Interpreter) {
+            // Compiled classes, but the optimizer is not available here
+            return null;
+        }
+        return evaluator.createScriptObject(entry.bytecode, securityDomain);
+    }
+
     private ScriptNode parse(
             String sourceString,
             String sourceName,
@@ -2562,17 +2689,45 @@ public class Context implements Closeable {
         return (Evaluator) Kit.newInstanceOrNull(interpreterClass);
     }
 
+    static Evaluator createCodegen() {
+        return codegenClass == null ? null : (Evaluator) Kit.newInstanceOrNull(codegenClass);
+    }
+
     static String getSourcePositionFromStack(int[] linep) {
         Context cx = getCurrentContext();
         if (cx == null) return null;
         if (cx.lastInterpreterFrame != null) {
             Evaluator evaluator = createInterpreter();
-            if (evaluator != null) return evaluator.getSourcePositionFromStack(cx, linep);
+            if (evaluator != null
+                    && !(TieredCompiler.isEnabled(cx) && isCompiledCodeAboveInterpreter())) {
+                return evaluator.getSourcePositionFromStack(cx, linep);
+            }
         }
 
         return getSourcePositionFromJavaStack(linep);
     }
 
+    /** Returns true if the interpreter called compiled code that is still running. */
+    @SuppressWarnings("AndroidJdkLibsChecker")
+    private static boolean isCompiledCodeAboveInterpreter() {
+        Optional<StackWalker.StackFrame> frame =
+                StackWalker.getInstance()
+                        .walk(
+                                stream ->
+                                        stream.filter(
+                                                        f ->
+                                                                isInterpreterFrame(f)
+                                                                        || frameMatches(f))
+                                                .findFirst());
+        return frame.isPresent() && !isInterpreterFrame(frame.get());
+    }
+
+    @SuppressWarnings("AndroidJdkLibsChecker")
+    private static boolean isInterpreterFrame(StackWalker.StackFrame frame) {
+        return "interpretLoop".equals(frame.getMethodName())
+                && Interpreter.class.getName().equals(frame.getClassName());
+    }
+
     /** Returns the current filename in the java stack. */
     @SuppressWarnings("AndroidJdkLibsChecker")
     // Android uses interpreter, so we should not get here.
@@ -2721,6 +2876,9 @@ public class Context implements Closeable {
     // interpreter invocations
     Deque<Object> previousInterpreterInvocations;
 
+    // For the interpreter to keep the stack arrays of frames that exited
+    Object interpreterFramePool;
+
     // For instruction counting (interpreter only)
     int instructionCount;
     int instructionThreshold;
@@ -10,6 +10,7 @@ package org.mozilla.javascript;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.concurrent.Executor;
 
 /**
  * Factory class that Rhino runtime uses to create new {@link Context} instances. A <code>
@@ -114,6 +115,9 @@ public class ContextFactory {
     private volatile Object listeners;
     private boolean disabledListening;
     private ClassLoader applicationClassLoader;
+    private volatile ScriptCache scriptCache;
+    private volatile PersistentCodeCache persistentCodeCache;
+    private volatile Executor compileExecutor;
 
     /** Listener of {@link Context} creation and release events. */
     public interface Listener {
@@ -290,6 +294,18 @@ public class ContextFactory {
 
             case Context.FEATURE_INTL_402:
                 return false;
+
+            case Context.FEATURE_SHAPED_OBJECTS:
+                return false;
+
+            case Context.FEATURE_LINEAR_REGEXP:
+                return false;
+
+            case Context.FEATURE_TIERED_COMPILATION:
+                return false;
+
+            case Context.FEATURE_LAZY_JSON:
+                return false;
         }
         // It is a bug to call the method with unknown featureIndex
         throw new IllegalArgumentException(String.valueOf(featureIndex));
@@ -373,6 +389,75 @@ public class ContextFactory {
         this.applicationClassLoader = loader;
     }
 
+    /**
+     * Get the in-memory cache of compiled scripts, or null if there is none.
+     *
+     * @see #setScriptCache(ScriptCache)
+     */
+    public final ScriptCache getScriptCache() {
+        return scriptCache;
+    }
+
+    /**
+     * Set a cache that {@link Context#compileString} and {@link Context#compileReader} use to
+     * return the same compiled script when they are asked to compile the same source more than
+     * once. Set to null, which is the default, to turn it off.
+     *
+     * @see ScriptCache
+     */
+    public final void setScriptCache(ScriptCache cache) {
+        checkNotSealed();
+        this.scriptCache = cache;
+    }
+
+    /**
+     * Get the cache of compiled scripts that outlives this JVM, or null if there is none.
+     *
+     * @see #setPersistentCodeCache(PersistentCodeCache)
+     */
+    public final PersistentCodeCache getPersistentCodeCache() {
+        return persistentCodeCache;
+    }
+
+    /**
+     * Set a cache that {@link Context#compileString} and {@link Context#compileReader} use to
+     * avoid parsing and compiling the same scripts again when the application restarts. Set to
+     * null, which is the default, to turn it off.
+     *
+     * @see PersistentCodeCache
+     */
+    public final void setPersistentCodeCache(PersistentCodeCache cache) {
+        checkNotSealed();
+        this.persistentCodeCache = cache;
+    }
+
+    /**
+     * Get the executor that compiles scripts and hot functions in the background, or null if they
+     * are compiled on the calling thread.
+     *
+     * @see #setCompileExecutor(Executor)
+     */
+    public final Executor getCompileExecutor() {
+        return compileExecutor;
+    }
+
+    /**
+     * Set an executor that compiles scripts with the optimizer in the background. When it is set,
+     * {@link Context#compileString} and {@link Context#compileReader} return a script that is
+     * compiled with the interpreter, and that runs the compiled version once it is ready. Functions
+     * that the interpreter runs often are compiled there as well. Set to null, which is the
+     * default, to compile on the calling thread.
+     *
+     * <p>The executor should be bounded, for instance a {@link
+     * java.util.concurrent.ThreadPoolExecutor} with daemon threads and a bounded queue. Scripts
+     * whose tasks it rejects stay interpreted. Scripts are only compiled in the background when
+     * the optimization level is 0 or above and there is no debugger or security domain.
+     */
+    public final void setCompileExecutor(Executor executor) {
+        checkNotSealed();
+        this.compileExecutor = executor;
+    }
+
     /**
      * Execute top call to script or function. When the runtime is about to execute a script or
      * function that will create the first stack frame with scriptable code, it calls this method to
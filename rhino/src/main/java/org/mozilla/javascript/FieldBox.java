@@ -0,0 +1,107 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Wrapper class for the Field instances that JavaMembers reflects. The field is read and written
+ * through method handles, which are only checked for access once, when JavaMembers creates the
+ * box. Fields that the handles cannot reach, and final fields, which handles cannot write, go
+ * through the Field itself, so that get and set behave just like Field.get and Field.set.
+ */
+final class FieldBox {
+
+    // Handles take the target first, which is ignored for static fields
+    private static final MethodType GETTER_TYPE =
+            MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE =
+            MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Field field;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+
+    FieldBox(Field field) {
+        this.field = field;
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        boolean isStatic = Modifier.isStatic(field.getModifiers());
+        MethodHandle g;
+        try {
+            g = lookup.unreflectGetter(field);
+            if (isStatic) {
+                g = MethodHandles.dropArguments(g, 0, Object.class);
+            }
+            g = g.asType(GETTER_TYPE);
+        } catch (IllegalAccessException | SecurityException ex) {
+            g = null;
+        }
+        MethodHandle s;
+        try {
+            s = lookup.unreflectSetter(field);
+            if (isStatic) {
+                s = MethodHandles.dropArguments(s, 0, Object.class);
+            }
+            s = s.asType(SETTER_TYPE);
+        } catch (IllegalAccessException | SecurityException ex) {
+            s = null;
+        }
+        getter = g;
+        setter = s;
+    }
+
+    Field field() {
+        return field;
+    }
+
+    String getName() {
+        return field.getName();
+    }
+
+    Class<?> getType() {
+        return field.getType();
+    }
+
+    Object get(Object target) throws IllegalAccessException {
+        if (getter == null) {
+            return field.get(target);
+        }
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw Context.throwAsScriptRuntimeEx(e);
+        }
+    }
+
+    void set(Object target, Object value) throws IllegalAccessException {
+        if (setter == null) {
+            field.set(target, value);
+            return;
+        }
+        try {
+            setter.invokeExact(target, value);
+        } catch (ClassCastException | NullPointerException e) {
+            // Field.set reports values of the wrong type this way
+            throw new IllegalArgumentException(e);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw Context.throwAsScriptRuntimeEx(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return field.toString();
+    }
+}
@@ -151,8 +151,35 @@ abstract class Icode {
             // Jump if stack head is null or undefined
             Icode_IF_NULL_UNDEF = Icode_LITERAL_KEY_SET - 1,
             Icode_IF_NOT_NULL_UNDEF = Icode_IF_NULL_UNDEF - 1,
+
+            // Superinstructions that CodeGenerator puts in place of the first instruction of a
+            // common sequence. The following instructions stay in the icode unchanged, so they
+            // have the same length and jumps into the sequence still work.
+
+            // GETVAR1 followed by GETVAR1, GETELEM, or REG_STR_C0-3/REG_STR1 and GETPROP
+            Icode_GETVAR1_GETVAR1 = Icode_IF_NOT_NULL_UNDEF - 1,
+            Icode_GETVAR1_GETELEM = Icode_GETVAR1_GETVAR1 - 1,
+            Icode_GETVAR1_GETPROP = Icode_GETVAR1_GETELEM - 1,
+
+            // SETVAR1 or VAR_INC_DEC whose result is not used, followed by POP
+            Icode_SETVAR1_POP = Icode_GETVAR1_GETPROP - 1,
+            Icode_VAR_INC_DEC_POP = Icode_SETVAR1_POP - 1,
+
+            // POP at the end of a statement followed by LINE
+            Icode_POP_LINE = Icode_VAR_INC_DEC_POP - 1,
+
+            // Comparison followed by IFEQ or IFNE
+            Icode_IF_LT = Icode_POP_LINE - 1,
+            Icode_IF_LE = Icode_IF_LT - 1,
+            Icode_IF_GT = Icode_IF_LE - 1,
+            Icode_IF_GE = Icode_IF_GT - 1,
+
+            // ONE or SHORTNUMBER followed by ADD
+            Icode_ONE_ADD = Icode_IF_GE - 1,
+            Icode_SHORTNUMBER_ADD = Icode_ONE_ADD - 1,
+
             // Last icode
-            MIN_ICODE = Icode_IF_NOT_NULL_UNDEF;
+            MIN_ICODE = Icode_SHORTNUMBER_ADD;
 
     static String bytecodeName(int bytecode) {
         if (!validBytecode(bytecode)) {
@@ -334,6 +361,30 @@ abstract class Icode {
                 return "IF_NULL_UNDEF";
             case Icode_IF_NOT_NULL_UNDEF:
                 return "IF_NOT_NULL_UNDEF";
+            case Icode_GETVAR1_GETVAR1:
+                return "GETVAR1_GETVAR1";
+            case Icode_GETVAR1_GETELEM:
+                return "GETVAR1_GETELEM";
+            case Icode_GETVAR1_GETPROP:
+                return "GETVAR1_GETPROP";
+            case Icode_SETVAR1_POP:
+                return "SETVAR1_POP";
+            case Icode_VAR_INC_DEC_POP:
+                return "VAR_INC_DEC_POP";
+            case Icode_POP_LINE:
+                return "POP_LINE";
+            case Icode_IF_LT:
+                return "IF_LT";
+            case Icode_IF_LE:
+                return "IF_LE";
+            case Icode_IF_GT:
+                return "IF_GT";
+            case Icode_IF_GE:
+                return "IF_GE";
+            case Icode_ONE_ADD:
+                return "ONE_ADD";
+            case Icode_SHORTNUMBER_ADD:
+                return "SHORTNUMBER_ADD";
         }
 
         // icode without name
@@ -14,6 +14,7 @@ final class InterpretedFunction extends NativeFunction implements Script {
     InterpreterData idata;
     SecurityController securityController;
     Object securityDomain;
+    transient NativeFunction compiled;
 
     private InterpretedFunction(InterpreterData idata, Object staticSecurityDomain) {
         this.idata = idata;
@@ -81,6 +82,10 @@ final class InterpretedFunction extends NativeFunction implements Script {
      */
     @Override
     public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+        NativeFunction compiled = TieredCompiler.getCompiled(cx, this);
+        if (compiled != null) {
+            return compiled.call(cx, scope, thisObj, args);
+        }
         if (!ScriptRuntime.hasTopCall(cx)) {
             return ScriptRuntime.doTopCall(this, cx, scope, thisObj, args, idata.isStrict);
         }
@@ -93,6 +98,10 @@ final class InterpretedFunction extends NativeFunction implements Script {
             // Can only be applied to scripts
             throw new IllegalStateException();
         }
+        Script compiled = TieredCompiler.getCompiledScript(this);
+        if (compiled != null) {
+            return compiled.exec(cx, scope);
+        }
         Object ret;
         if (!ScriptRuntime.hasTopCall(cx)) {
             // It will go through "call" path. but they are equivalent
@@ -48,6 +48,9 @@ public final class Interpreter extends Icode implements Evaluator {
         /*final*/ int frameIndex;
         // If true indicates read-only frame that is a part of continuation
         boolean frozen;
+        // If true, stack, stackAttributes and sDbl came from the FramePool of the Context, and go
+        // back there when the frame exits
+        boolean pooled;
 
         final InterpretedFunction fnOrScript;
         final InterpreterData idata;
@@ -178,9 +181,11 @@ public final class Interpreter extends Icode implements Evaluator {
 
             // Initialize args, vars, locals and stack
 
-            stack = new Object[maxFrameArray];
-            stackAttributes = new int[maxFrameArray];
-            sDbl = new double[maxFrameArray];
+            if (!FramePool.take(cx, this, maxFrameArray)) {
+                stack = new Object[maxFrameArray];
+                stackAttributes = new int[maxFrameArray];
+                sDbl = new double[maxFrameArray];
+            }
 
             int varCount = idata.getParamAndVarCount();
             for (int i = 0; i < varCount; i++) {
@@ -253,6 +258,7 @@ public final class Interpreter extends Icode implements Evaluator {
             copy.sDbl = sDbl.clone();
 
             copy.frozen = false;
+            copy.pooled = false;
             return copy;
         }
 
@@ -403,6 +409,8 @@ public final class Interpreter extends Icode implements Evaluator {
     }
 
     private static CallFrame captureFrameForGenerator(CallFrame frame) {
+        // The generator keeps the variables of this frame, see cloneFrozen
+        frame.pooled = false;
         frame.frozen = true;
         CallFrame result = frame.cloneFrozen();
         frame.frozen = false;
@@ -565,6 +573,7 @@ public final class Interpreter extends Icode implements Evaluator {
                 case Icode_PROP_INC_DEC:
                 case Icode_ELEM_INC_DEC:
                 case Icode_REF_INC_DEC:
+                case Icode_VAR_INC_DEC_POP:
                     {
                         int incrDecrType = iCode[pc];
                         out.println(tname + " " + incrDecrType);
@@ -627,6 +636,7 @@ public final class Interpreter extends Icode implements Evaluator {
                         break;
                     }
                 case Icode_SHORTNUMBER:
+                case Icode_SHORTNUMBER_ADD:
                     {
                         int value = getShort(iCode, pc);
                         out.println(tname + " " + value);
@@ -746,6 +756,10 @@ public final class Interpreter extends Icode implements Evaluator {
                 case Icode_GETVAR1:
                 case Icode_SETVAR1:
                 case Icode_SETCONSTVAR1:
+                case Icode_GETVAR1_GETVAR1:
+                case Icode_GETVAR1_GETELEM:
+                case Icode_GETVAR1_GETPROP:
+                case Icode_SETVAR1_POP:
                     indexReg = iCode[pc];
                     out.println(tname + " " + indexReg);
                     ++pc;
@@ -808,7 +822,7 @@ public final class Interpreter extends Icode implements Evaluator {
         out.flush();
     }
 
-    private static int bytecodeSpan(int bytecode) {
+    static int bytecodeSpan(int bytecode) {
         switch (bytecode) {
             case Token.THROW:
             case Token.YIELD:
@@ -846,10 +860,12 @@ public final class Interpreter extends Icode implements Evaluator {
             case Icode_PROP_INC_DEC:
             case Icode_ELEM_INC_DEC:
             case Icode_REF_INC_DEC:
+            case Icode_VAR_INC_DEC_POP:
                 // type of ++/--
                 return 1 + 1;
 
             case Icode_SHORTNUMBER:
+            case Icode_SHORTNUMBER_ADD:
                 // short number
                 return 1 + 2;
 
@@ -881,9 +897,25 @@ public final class Interpreter extends Icode implements Evaluator {
                 // int string index
                 return 1 + 4;
 
+            case Icode_REG_BIGINT1:
+                // ubyte bigint index
+                return 1 + 1;
+
+            case Icode_REG_BIGINT2:
+                // ushort bigint index
+                return 1 + 2;
+
+            case Icode_REG_BIGINT4:
+                // int bigint index
+                return 1 + 4;
+
             case Icode_GETVAR1:
             case Icode_SETVAR1:
             case Icode_SETCONSTVAR1:
+            case Icode_GETVAR1_GETVAR1:
+            case Icode_GETVAR1_GETELEM:
+            case Icode_GETVAR1_GETPROP:
+            case Icode_SETVAR1_POP:
                 // byte var index
                 return 1 + 1;
 
@@ -1397,6 +1429,27 @@ public final class Interpreter extends Icode implements Evaluator {
                                     stackTop = doCompare(frame, op, stack, sDbl, stackTop);
                                     continue Loop;
                                 }
+                            case Icode_IF_LT:
+                            case Icode_IF_LE:
+                            case Icode_IF_GT:
+                            case Icode_IF_GE:
+                                {
+                                    stackTop -= 2;
+                                    boolean valBln =
+                                            compare(
+                                                    frame,
+                                                    Token.LT + (Icode_IF_LT - op),
+                                                    stack,
+                                                    sDbl,
+                                                    stackTop + 1);
+                                    if (valBln == (iCode[frame.pc] == Token.IFEQ)) {
+                                        // Jump like the IFEQ or IFNE that follows
+                                        ++frame.pc;
+                                        break jumplessRun;
+                                    }
+                                    frame.pc += 3;
+                                    continue Loop;
+                                }
                             case Token.IN:
                             case Token.INSTANCEOF:
                                 {
@@ -1579,6 +1632,18 @@ public final class Interpreter extends Icode implements Evaluator {
                                 --stackTop;
                                 doAdd(stack, sDbl, stackTop, cx);
                                 continue Loop;
+                            case Icode_ONE_ADD:
+                                stack[stackTop + 1] = DBL_MRK;
+                                sDbl[stackTop + 1] = 1.0;
+                                doAdd(stack, sDbl, stackTop, cx);
+                                ++frame.pc;
+                                continue Loop;
+                            case Icode_SHORTNUMBER_ADD:
+                                stack[stackTop + 1] = DBL_MRK;
+                                sDbl[stackTop + 1] = getShort(iCode, frame.pc);
+                                doAdd(stack, sDbl, stackTop, cx);
+                                frame.pc += 3;
+                                continue Loop;
                             case Token.SUB:
                             case Token.MUL:
                             case Token.DIV:
@@ -2014,8 +2079,8 @@ public final class Interpreter extends Icode implements Evaluator {
 
                                     if (fun instanceof InterpretedFunction) {
                                         InterpretedFunction ifun = (InterpretedFunction) fun;
-                                        if (frame.fnOrScript.securityDomain
-                                                == ifun.securityDomain) {
+                                        if (frame.fnOrScript.securityDomain == ifun.securityDomain
+                                                && !TieredCompiler.isCompiled(ifun)) {
                                             CallFrame callParentFrame = frame;
                                             if (op == Icode_TAIL_CALL) {
                                                 // In principle tail call can re-use the current
@@ -2055,6 +2120,9 @@ public final class Interpreter extends Icode implements Evaluator {
                                             if (op != Icode_TAIL_CALL) {
                                                 frame.savedStackTop = stackTop;
                                                 frame.savedCallOp = op;
+                                            } else {
+                                                // The arguments are copied now
+                                                FramePool.release(cx, frame);
                                             }
                                             frame = calleeFrame;
                                             continue StateLoop;
@@ -2117,7 +2185,8 @@ public final class Interpreter extends Icode implements Evaluator {
                                     Object lhs = stack[stackTop];
                                     if (lhs instanceof InterpretedFunction) {
                                         InterpretedFunction f = (InterpretedFunction) lhs;
-                                        if (frame.fnOrScript.securityDomain == f.securityDomain) {
+                                        if (frame.fnOrScript.securityDomain == f.securityDomain
+                                                && !TieredCompiler.isCompiled(f)) {
                                             Scriptable newInstance =
                                                     f.createObject(cx, frame.scope);
                                             CallFrame calleeFrame =
@@ -2244,6 +2313,72 @@ public final class Interpreter extends Icode implements Evaluator {
                                                 frame, stack, sDbl, stackTop, vars, varDbls,
                                                 indexReg);
                                 continue Loop;
+                            case Icode_GETVAR1_GETVAR1:
+                                stackTop =
+                                        doGetVar(
+                                                frame,
+                                                stack,
+                                                sDbl,
+                                                stackTop,
+                                                vars,
+                                                varDbls,
+                                                iCode[frame.pc]);
+                                indexReg = iCode[frame.pc + 2];
+                                frame.pc += 3;
+                                stackTop =
+                                        doGetVar(
+                                                frame, stack, sDbl, stackTop, vars, varDbls,
+                                                indexReg);
+                                continue Loop;
+                            case Icode_GETVAR1_GETELEM:
+                                indexReg = iCode[frame.pc];
+                                stackTop =
+                                        doGetVar(
+                                                frame, stack, sDbl, stackTop, vars, varDbls,
+                                                indexReg);
+                                stackTop = doGetElem(cx, frame, stack, sDbl, stackTop);
+                                frame.pc += 2;
+                                continue Loop;
+                            case Icode_GETVAR1_GETPROP:
+                                {
+                                    indexReg = iCode[frame.pc];
+                                    stackTop =
+                                            doGetVar(
+                                                    frame, stack, sDbl, stackTop, vars, varDbls,
+                                                    indexReg);
+                                    int strOp = iCode[frame.pc + 1];
+                                    int getPropPC;
+                                    if (strOp == Icode_REG_STR1) {
+                                        stringReg = strings[0xFF & iCode[frame.pc + 2]];
+                                        getPropPC = frame.pc + 3;
+                                    } else {
+                                        stringReg = strings[Icode_REG_STR_C0 - strOp];
+                                        getPropPC = frame.pc + 2;
+                                    }
+                                    Object lhs = stack[stackTop];
+                                    if (lhs == DBL_MRK)
+                                        lhs = ScriptRuntime.wrapNumber(sDbl[stackTop]);
+                                    stack[stackTop] =
+                                            ScriptRuntime.getObjectProp(
+                                                    lhs, stringReg, cx, frame.scope);
+                                    frame.pc = getPropPC + 1;
+                                    continue Loop;
+                                }
+                            case Icode_SETVAR1_POP:
+                                indexReg = iCode[frame.pc];
+                                doSetVar(
+                                        frame,
+                                        stack,
+                                        sDbl,
+                                        stackTop,
+                                        vars,
+                                        varDbls,
+                                        varAttributes,
+                                        indexReg);
+                                stack[stackTop] = null;
+                                stackTop--;
+                                frame.pc += 2;
+                                continue Loop;
                             case Icode_VAR_INC_DEC:
                                 {
                                     stackTop =
@@ -2259,6 +2394,24 @@ public final class Interpreter extends Icode implements Evaluator {
                                                     indexReg);
                                     continue Loop;
                                 }
+                            case Icode_VAR_INC_DEC_POP:
+                                {
+                                    stackTop =
+                                            doVarIncDec(
+                                                    cx,
+                                                    frame,
+                                                    stack,
+                                                    sDbl,
+                                                    stackTop,
+                                                    vars,
+                                                    varDbls,
+                                                    varAttributes,
+                                                    indexReg);
+                                    stack[stackTop] = null;
+                                    stackTop--;
+                                    ++frame.pc;
+                                    continue Loop;
+                                }
                             case Icode_ZERO:
                                 ++stackTop;
                                 stack[stackTop] = Integer.valueOf(0);
@@ -2584,6 +2737,11 @@ public final class Interpreter extends Icode implements Evaluator {
                                     frame.debuggerFrame.onDebuggerStatement(cx);
                                 }
                                 continue Loop;
+                            case Icode_POP_LINE:
+                                stack[stackTop] = null;
+                                stackTop--;
+                                ++frame.pc;
+                            // fallthrough
                             case Icode_LINE:
                                 frame.pcSourceLineStart = frame.pc;
                                 if (frame.debuggerFrame != null) {
@@ -2684,6 +2842,9 @@ public final class Interpreter extends Icode implements Evaluator {
                     }
                     int offset = getShort(iCode, frame.pc);
                     if (offset != 0) {
+                        if (offset < 0 && ++frame.idata.hotness == TieredCompiler.THRESHOLD) {
+                            TieredCompiler.functionIsHot(cx, frame.fnOrScript);
+                        }
                         // -1 accounts for pc pointing to jump opcode + 1
                         frame.pc += offset - 1;
                     } else {
@@ -2698,6 +2859,7 @@ public final class Interpreter extends Icode implements Evaluator {
                 exitFrame(cx, frame, null);
                 interpreterResult = frame.result;
                 interpreterResultDbl = frame.resultDbl;
+                FramePool.release(cx, frame);
                 if (frame.parentFrame != null) {
                     frame = frame.parentFrame;
                     if (frame.frozen) {
@@ -2809,6 +2971,7 @@ public final class Interpreter extends Icode implements Evaluator {
                 // to parent and try to look there
 
                 exitFrame(cx, frame, throwable);
+                FramePool.release(cx, frame);
 
                 frame = frame.parentFrame;
                 if (frame == null) {
@@ -2886,32 +3049,45 @@ public final class Interpreter extends Icode implements Evaluator {
     private static int doCompare(
             CallFrame frame, int op, Object[] stack, double[] sDbl, int stackTop) {
         --stackTop;
-        Object rhs = stack[stackTop + 1];
-        Object lhs = stack[stackTop];
-        boolean valBln;
-        object_compare:
-        {
-            number_compare:
-            {
-                Number rNum, lNum;
-                if (rhs == DOUBLE_MARK) {
-                    rNum = sDbl[stackTop + 1];
-                    lNum = stack_numeric(frame, stackTop);
-                } else if (lhs == DOUBLE_MARK) {
-                    rNum = ScriptRuntime.toNumeric(rhs);
-                    lNum = sDbl[stackTop];
-                } else {
-                    break number_compare;
-                }
-                valBln = ScriptRuntime.compare(lNum, rNum, op);
-                break object_compare;
-            }
-            valBln = ScriptRuntime.compare(lhs, rhs, op);
-        }
+        boolean valBln = compare(frame, op, stack, sDbl, stackTop);
         stack[stackTop] = ScriptRuntime.wrapBoolean(valBln);
         return stackTop;
     }
 
+    /** Compare stack[lhsIndex] with the value above it. */
+    private static boolean compare(
+            CallFrame frame, int op, Object[] stack, double[] sDbl, int lhsIndex) {
+        Object rhs = stack[lhsIndex + 1];
+        Object lhs = stack[lhsIndex];
+        if (rhs == DOUBLE_MARK && lhs == DOUBLE_MARK) {
+            double l = sDbl[lhsIndex];
+            double r = sDbl[lhsIndex + 1];
+            switch (op) {
+                case Token.GE:
+                    return l >= r;
+                case Token.LE:
+                    return l <= r;
+                case Token.GT:
+                    return l > r;
+                case Token.LT:
+                    return l < r;
+                default:
+                    throw Kit.codeBug();
+            }
+        }
+        Number rNum, lNum;
+        if (rhs == DOUBLE_MARK) {
+            rNum = sDbl[lhsIndex + 1];
+            lNum = stack_numeric(frame, lhsIndex);
+        } else if (lhs == DOUBLE_MARK) {
+            rNum = ScriptRuntime.toNumeric(rhs);
+            lNum = sDbl[lhsIndex];
+        } else {
+            return ScriptRuntime.compare(lhs, rhs, op);
+        }
+        return ScriptRuntime.compare(lNum, rNum, op);
+    }
+
     private static int doBitOp(
             CallFrame frame, int op, Object[] stack, double[] sDbl, int stackTop) {
         Number lValue = stack_numeric(frame, stackTop - 1);
@@ -3493,6 +3669,9 @@ public final class Interpreter extends Icode implements Evaluator {
             int argCount,
             InterpretedFunction fnOrScript,
             CallFrame parentFrame) {
+        if (++fnOrScript.idata.hotness == TieredCompiler.THRESHOLD) {
+            TieredCompiler.functionIsHot(cx, fnOrScript);
+        }
         CallFrame frame = new CallFrame(cx, thisObj, fnOrScript, parentFrame);
         frame.initializeArgs(cx, callerScope, args, argsDbl, argShift, argCount);
         enterFrame(cx, frame, args, false);
@@ -3822,6 +4001,82 @@ public final class Interpreter extends Icode implements Evaluator {
         return args;
     }
 
+    /**
+     * The stack arrays of frames that have exited, kept by the Context for the next frames of the
+     * same size, so that most calls do not allocate them. Frames that generators or continuations
+     * captured never come back here, since those keep using the arrays.
+     */
+    private static final class FramePool {
+        // Larger frames are rare, and allocate their arrays
+        static final int MAX_FRAME_ARRAY = 64;
+        // Free arrays of each size, enough for a few levels of recursion
+        static final int MAX_FREE = 8;
+
+        private final Object[][][] stacks = new Object[MAX_FRAME_ARRAY + 1][][];
+        private final int[][][] stackAttributes = new int[MAX_FRAME_ARRAY + 1][][];
+        private final double[][][] sDbls = new double[MAX_FRAME_ARRAY + 1][][];
+        private final int[] counts = new int[MAX_FRAME_ARRAY + 1];
+
+        /** Give the frame pooled arrays of the length, and return false if there are none. */
+        static boolean take(Context cx, CallFrame frame, int length) {
+            if (length > MAX_FRAME_ARRAY) {
+                return false;
+            }
+            // The arrays of the frame go to the pool when it exits, even if it allocates them
+            frame.pooled = true;
+            FramePool pool = (FramePool) cx.interpreterFramePool;
+            if (pool == null || pool.counts[length] == 0) {
+                return false;
+            }
+            int count = --pool.counts[length];
+            frame.stack = pool.stacks[length][count];
+            frame.stackAttributes = pool.stackAttributes[length][count];
+            frame.sDbl = pool.sDbls[length][count];
+            pool.stacks[length][count] = null;
+            pool.stackAttributes[length][count] = null;
+            pool.sDbls[length][count] = null;
+            return true;
+        }
+
+        /** Return the arrays of a frame that exited to the pool, unless something captured them. */
+        static void release(Context cx, CallFrame frame) {
+            if (!frame.pooled || frame.frozen) {
+                return;
+            }
+            frame.pooled = false;
+            int length = frame.stackAttributes.length;
+            if (frame.stack.length != length) {
+                // ensureStackLength replaced the stack
+                return;
+            }
+            FramePool pool = (FramePool) cx.interpreterFramePool;
+            if (pool == null) {
+                pool = new FramePool();
+                cx.interpreterFramePool = pool;
+            }
+            int count = pool.counts[length];
+            if (count == MAX_FREE) {
+                return;
+            }
+            Object[] stack = frame.stack;
+            double[] sDbl = frame.sDbl;
+            int[] stackAttributes = frame.stackAttributes;
+            // Look like new arrays to the next frame
+            Arrays.fill(stack, null);
+            Arrays.fill(sDbl, 0.0);
+            Arrays.fill(stackAttributes, 0);
+            if (pool.stacks[length] == null) {
+                pool.stacks[length] = new Object[MAX_FREE][];
+                pool.stackAttributes[length] = new int[MAX_FREE][];
+                pool.sDbls[length] = new double[MAX_FREE][];
+            }
+            pool.stacks[length][count] = stack;
+            pool.stackAttributes[length][count] = stackAttributes;
+            pool.sDbls[length][count] = sDbl;
+            pool.counts[length] = count + 1;
+        }
+    }
+
     private static void addInstructionCount(Context cx, CallFrame frame, int extra) {
         cx.instructionCount += frame.pc - frame.pcPrevBranch + extra;
         if (cx.instructionCount > cx.instructionThreshold) {
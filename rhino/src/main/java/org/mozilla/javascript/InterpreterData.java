@@ -7,6 +7,7 @@
 package org.mozilla.javascript;
 
 import java.io.Serializable;
+import java.lang.reflect.Constructor;
 import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Map;
@@ -98,6 +99,17 @@ final class InterpreterData implements Serializable, DebuggableScript {
     /** true if the function has been declared like "!function() {}". */
     boolean declaredAsFunctionExpression;
 
+    int baseLineno;
+
+    /* the count of calls and backward jumps, see TieredCompiler */
+    transient int hotness;
+
+    /* the constructor of the compiled version, see TieredCompiler */
+    transient volatile Constructor<?> compiledConstructor;
+
+    /* the compiled version of a script, see TieredCompiler */
+    transient volatile Script compiledScript;
+
     @Override
     public boolean isTopLevel() {
         return topLevel;
@@ -12,7 +12,6 @@ import static java.lang.reflect.Modifier.isPublic;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.security.AccessControlContext;
@@ -101,10 +100,10 @@ class JavaMembers {
             if (member instanceof BeanProperty) {
                 BeanProperty bp = (BeanProperty) member;
                 if (bp.getter == null) return Scriptable.NOT_FOUND;
-                rval = bp.getter.invoke(javaObject, Context.emptyArgs);
+                rval = bp.getter.invoke0(javaObject);
                 type = bp.getter.method().getReturnType();
             } else {
-                Field field = (Field) member;
+                FieldBox field = (FieldBox) member;
                 rval = field.get(isStatic ? null : javaObject);
                 type = field.getType();
             }
@@ -140,9 +139,8 @@ class JavaMembers {
             // setter to use:
             if (bp.setters == null || value == null) {
                 Class<?> setType = bp.setter.argTypes[0];
-                Object[] args = {Context.jsToJava(value, setType)};
                 try {
-                    bp.setter.invoke(javaObject, args);
+                    bp.setter.invoke1(javaObject, Context.jsToJava(value, setType));
                 } catch (Exception ex) {
                     throw Context.throwAsScriptRuntimeEx(ex);
                 }
@@ -155,17 +153,17 @@ class JavaMembers {
                         args);
             }
         } else {
-            if (!(member instanceof Field)) {
+            if (!(member instanceof FieldBox)) {
                 String str =
                         (member == null) ? "msg.java.internal.private" : "msg.java.method.assign";
                 throw Context.reportRuntimeErrorById(str, name);
             }
-            Field field = (Field) member;
+            FieldBox field = (FieldBox) member;
             Object javaValue = Context.jsToJava(value, field.getType());
             try {
                 field.set(javaObject, javaValue);
             } catch (IllegalAccessException accessEx) {
-                if ((field.getModifiers() & Modifier.FINAL) != 0) {
+                if ((field.field().getModifiers() & Modifier.FINAL) != 0) {
                     // treat Java final the same as JavaScript [[READONLY]]
                     return;
                 }
@@ -480,6 +478,9 @@ class JavaMembers {
                         methodBoxes[i] = new MemberBox(method);
                     }
                 }
+                for (MemberBox box : methodBoxes) {
+                    box.initHandle();
+                }
                 NativeJavaMethod fun = new NativeJavaMethod(methodBoxes);
                 if (scope != null) {
                     ScriptRuntime.setFunctionProtoAndParent(fun, cx, scope, false);
@@ -498,10 +499,11 @@ class JavaMembers {
                 Map<String, Object> ht = isStatic ? staticMembers : members;
                 Object member = ht.get(name);
                 if (member == null) {
-                    ht.put(name, field);
+                    ht.put(name, new FieldBox(field));
                 } else if (member instanceof NativeJavaMethod) {
                     NativeJavaMethod method = (NativeJavaMethod) member;
-                    FieldAndMethods fam = new FieldAndMethods(scope, method.methods, field);
+                    FieldAndMethods fam =
+                            new FieldAndMethods(scope, method.methods, new FieldBox(field));
                     Map<String, FieldAndMethods> fmht =
                             isStatic ? staticFieldAndMethods : fieldAndMethods;
                     if (fmht == null) {
@@ -514,8 +516,8 @@ class JavaMembers {
                     }
                     fmht.put(name, fam);
                     ht.put(name, fam);
-                } else if (member instanceof Field) {
-                    Field oldField = (Field) member;
+                } else if (member instanceof FieldBox) {
+                    Field oldField = ((FieldBox) member).field();
                     // If this newly reflected field shadows an inherited field,
                     // then replace it. Otherwise, since access to the field
                     // would be ambiguous from Java, no field should be
@@ -523,7 +525,7 @@ class JavaMembers {
                     // For now, the first field found wins, unless another field
                     // explicitly shadows it.
                     if (oldField.getDeclaringClass().isAssignableFrom(field.getDeclaringClass())) {
-                        ht.put(name, field);
+                        ht.put(name, new FieldBox(field));
                     }
                 } else {
                     // "unknown member type"
@@ -581,8 +583,8 @@ class JavaMembers {
                     if (v != null) {
                         // A private field shouldn't mask a public getter/setter
                         if (!includePrivate
-                                || !(v instanceof Member)
-                                || !Modifier.isPrivate(((Member) v).getModifiers())) {
+                                || !(v instanceof FieldBox)
+                                || !Modifier.isPrivate(((FieldBox) v).field().getModifiers())) {
 
                             continue;
                         }
@@ -634,6 +636,7 @@ class JavaMembers {
         MemberBox[] ctorMembers = new MemberBox[constructors.length];
         for (int i = 0; i != constructors.length; ++i) {
             ctorMembers[i] = new MemberBox(constructors[i]);
+            ctorMembers[i].initHandle();
         }
         ctors = new NativeJavaMethod(ctorMembers, cl.getSimpleName());
     }
@@ -889,7 +892,7 @@ class BeanProperty {
 class FieldAndMethods extends NativeJavaMethod {
     private static final long serialVersionUID = -9222428244284796755L;
 
-    FieldAndMethods(Scriptable scope, MemberBox[] methods, Field field) {
+    FieldAndMethods(Scriptable scope, MemberBox[] methods, FieldBox field) {
         super(methods);
         this.field = field;
         setParentScope(scope);
@@ -915,6 +918,6 @@ class FieldAndMethods extends NativeJavaMethod {
         return rval;
     }
 
-    Field field;
+    FieldBox field;
     Object javaObject;
 }
@@ -0,0 +1,121 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.util.Iterator;
+import org.mozilla.javascript.json.JsonParser;
+
+/*
+ * This class holds the slots of an object that JSON.parse returned when FEATURE_LAZY_JSON is
+ * set. The members of the object are read from the JSON text the first time the map is used, into
+ * the kind of slot map that the object's container would have used for them, and that map then
+ * takes the place of this one in the container. Since nothing can see the properties of an object
+ * without going through its slot map, the object behaves exactly as if it had been parsed in
+ * full. Nested objects are read the same way when they are used in turn, while arrays are read
+ * along with the object that holds them.
+ */
+final class LazyJsonSlotMap implements SlotMap {
+
+    private final Scriptable scope;
+    private final SlotMapContainer owner;
+    private JsonParser.Container container;
+    private volatile SlotMap map;
+
+    LazyJsonSlotMap(JsonParser.Container container, Scriptable scope, SlotMapContainer owner) {
+        this.container = container;
+        this.scope = scope;
+        this.owner = owner;
+    }
+
+    /**
+     * Return the value of something that JsonParser.parseValueLazily returned, or that a Container
+     * read, with an object that reads its members when it is first used in place of each object
+     * Container.
+     */
+    static Object toValue(Object value, Scriptable scope) {
+        if (!(value instanceof JsonParser.Container)) {
+            return value;
+        }
+        JsonParser.Container container = (JsonParser.Container) value;
+        if (container.isArray()) {
+            Object[] elements = container.readElements();
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = toValue(elements[i], scope);
+            }
+            NativeArray array = elements.length == 0 ? new NativeArray(0) : new NativeArray(elements);
+            ScriptRuntime.setBuiltinProtoAndParent(array, scope, TopLevel.Builtins.Array);
+            return array;
+        }
+        NativeObject object = new NativeObject();
+        ScriptRuntime.setBuiltinProtoAndParent(object, scope, TopLevel.Builtins.Object);
+        object.setLazyJsonMembers(container, scope);
+        return object;
+    }
+
+    private SlotMap map() {
+        SlotMap m = map;
+        return m != null ? m : read();
+    }
+
+    // Some slot map containers read the size without a lock, so the members may be read by more
+    // than one thread at once
+    private synchronized SlotMap read() {
+        if (map == null) {
+            Object[] members = container.readMembers();
+            SlotMap m = owner.createMap(members.length / 2);
+            for (int i = 0; i < members.length; i += 2) {
+                Object id = members[i];
+                Slot slot;
+                if (id instanceof String) {
+                    slot = m.modify(id, 0, 0);
+                } else {
+                    slot = m.modify(null, ((Integer) id).intValue(), 0);
+                }
+                slot.value = toValue(members[i + 1], scope);
+            }
+            map = m;
+            container = null;
+            owner.replaceLazyMap(this, m);
+        }
+        return map;
+    }
+
+    @Override
+    public int size() {
+        return map().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map().isEmpty();
+    }
+
+    @Override
+    public Slot modify(Object key, int index, int attributes) {
+        return map().modify(key, index, attributes);
+    }
+
+    @Override
+    public Slot query(Object key, int index) {
+        return map().query(key, index);
+    }
+
+    @Override
+    public <S extends Slot> S compute(Object key, int index, SlotComputer<S> compute) {
+        return map().compute(key, index, compute);
+    }
+
+    @Override
+    public void add(Slot newSlot) {
+        map().add(newSlot);
+    }
+
+    @Override
+    public Iterator<Slot> iterator() {
+        return map().iterator();
+    }
+}
@@ -10,6 +10,9 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Member;
@@ -18,17 +21,35 @@ import java.lang.reflect.Modifier;
 
 /**
  * Wrapper class for Method and Constructor instances to cache getParameterTypes() results, recover
- * from IllegalAccessException in some cases and provide serialization support.
+ * from IllegalAccessException in some cases and provide serialization support. Members that are
+ * accessible to everyone are called through a method handle, which is only checked for access once.
+ * Members with up to MAX_FIXED_ARITY parameters get a handle that takes each argument separately,
+ * so that callers that know how many arguments they pass do not need to build an array.
  *
  * @author Igor Bukanov
  */
 final class MemberBox implements Serializable {
     private static final long serialVersionUID = 6358550398665688245L;
 
+    // Members with more parameters are called through a handle that takes an array of the
+    // arguments. Handles take the target first, which is ignored for constructors and static
+    // methods.
+    private static final int MAX_FIXED_ARITY = 3;
+
+    private static final MethodType SPREAD_INVOKER_TYPE =
+            MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    // Marks a member that can only be called by reflection
+    private static final MethodHandle NO_HANDLE = MethodHandles.identity(Object.class);
+
     private transient Member memberObject;
     transient Class<?>[] argTypes;
     transient boolean vararg;
 
+    // The handle to call the member through. JavaMembers looks it up when it reflects a class,
+    // other members when they are first called.
+    private transient MethodHandle handle;
+
     transient Function asGetterFunction;
     transient Function asSetterFunction;
     transient Object delegateTo;
@@ -129,16 +150,10 @@ final class MemberBox implements Serializable {
                                 Scriptable thisObj,
                                 Object[] originalArgs) {
                             MemberBox nativeGetter = MemberBox.this;
-                            Object getterThis;
-                            Object[] args;
                             if (nativeGetter.delegateTo == null) {
-                                getterThis = thisObj;
-                                args = ScriptRuntime.emptyArgs;
-                            } else {
-                                getterThis = nativeGetter.delegateTo;
-                                args = new Object[] {thisObj};
+                                return nativeGetter.invoke0(thisObj);
                             }
-                            return nativeGetter.invoke(getterThis, args);
+                            return nativeGetter.invoke1(nativeGetter.delegateTo, thisObj);
                         }
 
                         @Override
@@ -165,8 +180,6 @@ final class MemberBox implements Serializable {
                                 Scriptable thisObj,
                                 Object[] originalArgs) {
                             MemberBox nativeSetter = MemberBox.this;
-                            Object setterThis;
-                            Object[] args;
                             Object value =
                                     originalArgs.length > 0
                                             ? FunctionObject.convertArg(
@@ -177,13 +190,9 @@ final class MemberBox implements Serializable {
                                                             nativeSetter.argTypes[0]))
                                             : Undefined.instance;
                             if (nativeSetter.delegateTo == null) {
-                                setterThis = thisObj;
-                                args = new Object[] {value};
-                            } else {
-                                setterThis = nativeSetter.delegateTo;
-                                args = new Object[] {thisObj, value};
+                                return nativeSetter.invoke1(thisObj, value);
                             }
-                            return nativeSetter.invoke(setterThis, args);
+                            return nativeSetter.invoke2(nativeSetter.delegateTo, thisObj, value);
                         }
 
                         @Override
@@ -210,6 +219,10 @@ final class MemberBox implements Serializable {
             }
         }
 
+        MethodHandle invoker = handle();
+        if (invoker != NO_HANDLE) {
+            return invokeHandle(invoker, target, args);
+        }
         try {
             try {
                 return method.invoke(target, args);
@@ -241,6 +254,10 @@ final class MemberBox implements Serializable {
 
     Object newInstance(Object[] args) {
         Constructor<?> ctor = ctor();
+        MethodHandle invoker = handle();
+        if (invoker != NO_HANDLE) {
+            return invokeHandle(invoker, null, args);
+        }
         try {
             try {
                 return ctor.newInstance(args);
@@ -255,6 +272,130 @@ final class MemberBox implements Serializable {
         }
     }
 
+    /** Call a method that takes no arguments. */
+    Object invoke0(Object target) {
+        MethodHandle invoker = handle();
+        if (invoker == NO_HANDLE || argTypes.length != 0) {
+            return invoke(target, ScriptRuntime.emptyArgs);
+        }
+        try {
+            return (Object) invoker.invokeExact(unwrap(target));
+        } catch (Throwable e) {
+            throw handleException(e);
+        }
+    }
+
+    /** Call a method that takes one argument. */
+    Object invoke1(Object target, Object arg) {
+        MethodHandle invoker = handle();
+        if (invoker == NO_HANDLE || argTypes.length != 1) {
+            return invoke(target, new Object[] {arg});
+        }
+        try {
+            return (Object) invoker.invokeExact(unwrap(target), unwrap(arg));
+        } catch (Throwable e) {
+            throw handleException(e);
+        }
+    }
+
+    /** Call a method that takes two arguments. */
+    Object invoke2(Object target, Object arg1, Object arg2) {
+        MethodHandle invoker = handle();
+        if (invoker == NO_HANDLE || argTypes.length != 2) {
+            return invoke(target, new Object[] {arg1, arg2});
+        }
+        try {
+            return (Object) invoker.invokeExact(unwrap(target), unwrap(arg1), unwrap(arg2));
+        } catch (Throwable e) {
+            throw handleException(e);
+        }
+    }
+
+    private static Object unwrap(Object o) {
+        return o instanceof Delegator ? ((Delegator) o).getDelegee() : o;
+    }
+
+    private Object invokeHandle(MethodHandle invoker, Object target, Object[] args) {
+        try {
+            switch (argTypes.length) {
+                case 0:
+                    return (Object) invoker.invokeExact(target);
+                case 1:
+                    return (Object) invoker.invokeExact(target, args[0]);
+                case 2:
+                    return (Object) invoker.invokeExact(target, args[0], args[1]);
+                case 3:
+                    return (Object) invoker.invokeExact(target, args[0], args[1], args[2]);
+                default:
+                    return (Object) invoker.invokeExact(target, args);
+            }
+        } catch (Throwable e) {
+            throw handleException(e);
+        }
+    }
+
+    private static RuntimeException handleException(Throwable e) {
+        // Must allow ContinuationPending exceptions to propagate unhindered
+        if (e instanceof ContinuationPending) {
+            throw (ContinuationPending) e;
+        }
+        throw Context.throwAsScriptRuntimeEx(e);
+    }
+
+    /**
+     * Look up the handle to call this member through now, rather than when it is first called.
+     * JavaMembers does this for every member of a class that it reflects.
+     */
+    void initHandle() {
+        if (handle == null) {
+            handle = lookUpHandle();
+        }
+    }
+
+    private MethodHandle handle() {
+        MethodHandle h = handle;
+        if (h == null) {
+            h = lookUpHandle();
+            handle = h;
+        }
+        return h;
+    }
+
+    /*
+     * Find a handle for the member, or for the same method declared by a public interface or
+     * superclass, that can be called without checking access each time. Members that are not
+     * public, or that are caller sensitive, get NO_HANDLE and are still called by reflection.
+     */
+    private MethodHandle lookUpHandle() {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        MethodHandle h;
+        try {
+            if (isMethod()) {
+                try {
+                    h = lookup.unreflect(method());
+                } catch (IllegalAccessException ex) {
+                    Method accessible = searchAccessibleMethod(method(), argTypes);
+                    if (accessible == null) {
+                        return NO_HANDLE;
+                    }
+                    h = lookup.unreflect(accessible);
+                }
+            } else {
+                h = lookup.unreflectConstructor(ctor());
+            }
+        } catch (IllegalAccessException | SecurityException ex) {
+            return NO_HANDLE;
+        }
+        h = h.asFixedArity();
+        if (!isMethod() || isStatic()) {
+            h = MethodHandles.dropArguments(h, 0, Object.class);
+        }
+        if (argTypes.length <= MAX_FIXED_ARITY) {
+            return h.asType(MethodType.genericMethodType(argTypes.length + 1));
+        }
+        return h.asSpreader(Object[].class, argTypes.length).asType(SPREAD_INVOKER_TYPE);
+    }
+
     private static Method searchAccessibleMethod(Method method, Class<?>[] params) {
         int modifiers = method.getModifiers();
         if (Modifier.isPublic(modifiers) && !Modifier.isStatic(modifiers)) {
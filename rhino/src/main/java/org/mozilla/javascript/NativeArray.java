@@ -82,19 +82,42 @@ public class NativeArray extends IdScriptableObject implements List {
 
     public NativeArray(long lengthArg) {
         denseOnly = lengthArg <= maximumInitialCapacity;
-        if (denseOnly) {
+        if (lengthArg == 0) {
+            // An empty array has no holes, so it can start out packed
+            elementKind = INT_ELEMENTS;
+            denseInts = new int[DEFAULT_INITIAL_CAPACITY];
+        } else if (denseOnly) {
             int intLength = (int) lengthArg;
             if (intLength < DEFAULT_INITIAL_CAPACITY) intLength = DEFAULT_INITIAL_CAPACITY;
             dense = new Object[intLength];
             Arrays.fill(dense, Scriptable.NOT_FOUND);
+        } else {
+            sparse = new SparseElements();
         }
         length = lengthArg;
     }
 
     public NativeArray(Object[] array) {
         denseOnly = true;
-        dense = array;
         length = array.length;
+        int kind = INT_ELEMENTS;
+        for (int i = 0; i < array.length && kind != OBJECT_ELEMENTS; i++) {
+            kind = Math.max(kind, elementKindOf(array[i]));
+        }
+        elementKind = kind;
+        if (kind == INT_ELEMENTS) {
+            denseInts = new int[array.length];
+            for (int i = 0; i < array.length; i++) {
+                denseInts[i] = (Integer) array[i];
+            }
+        } else if (kind == DOUBLE_ELEMENTS) {
+            denseDoubles = new double[array.length];
+            for (int i = 0; i < array.length; i++) {
+                denseDoubles[i] = ((Number) array[i]).doubleValue();
+            }
+        } else {
+            dense = array;
+        }
     }
 
     @Override
@@ -592,15 +615,28 @@ public class NativeArray extends IdScriptableObject implements List {
 
     @Override
     public Object get(int index, Scriptable start) {
-        if (!denseOnly && isGetterOrSetter(null, index, false)) return super.get(index, start);
+        if (elementKind != OBJECT_ELEMENTS && 0 <= index && index < length) {
+            return getPacked(index);
+        }
+        if (!denseOnly && sparse == null && isGetterOrSetter(null, index, false))
+            return super.get(index, start);
         if (dense != null && 0 <= index && index < dense.length) return dense[index];
+        if (sparse != null && index >= 0) {
+            Object value = sparse.get(index);
+            if (value != NOT_FOUND) return value;
+        }
         return super.get(index, start);
     }
 
     @Override
     public boolean has(int index, Scriptable start) {
-        if (!denseOnly && isGetterOrSetter(null, index, false)) return super.has(index, start);
+        if (elementKind != OBJECT_ELEMENTS && 0 <= index && index < length) {
+            return true;
+        }
+        if (!denseOnly && sparse == null && isGetterOrSetter(null, index, false))
+            return super.has(index, start);
         if (dense != null && 0 <= index && index < dense.length) return dense[index] != NOT_FOUND;
+        if (sparse != null && index >= 0 && sparse.has(index)) return true;
         return super.has(index, start);
     }
 
@@ -683,35 +719,171 @@ public class NativeArray extends IdScriptableObject implements List {
             // If the object is sealed, super will throw exception
             long index = toArrayIndex(id);
             if (index >= length) {
+                stopDenseOnly();
                 length = index + 1;
                 modCount++;
-                denseOnly = false;
             }
         }
     }
 
     private boolean ensureCapacity(int capacity) {
-        if (capacity > dense.length) {
+        int oldCapacity =
+                elementKind == INT_ELEMENTS
+                        ? denseInts.length
+                        : elementKind == DOUBLE_ELEMENTS ? denseDoubles.length : dense.length;
+        if (capacity > oldCapacity) {
             if (capacity > MAX_PRE_GROW_SIZE) {
-                denseOnly = false;
+                stopDenseOnly();
                 return false;
             }
-            capacity = Math.max(capacity, (int) (dense.length * GROW_FACTOR));
-            Object[] newDense = new Object[capacity];
-            System.arraycopy(dense, 0, newDense, 0, dense.length);
-            Arrays.fill(newDense, dense.length, newDense.length, Scriptable.NOT_FOUND);
-            dense = newDense;
+            capacity = Math.max(capacity, (int) (oldCapacity * GROW_FACTOR));
+            if (elementKind == INT_ELEMENTS) {
+                denseInts = Arrays.copyOf(denseInts, capacity);
+            } else if (elementKind == DOUBLE_ELEMENTS) {
+                denseDoubles = Arrays.copyOf(denseDoubles, capacity);
+            } else {
+                Object[] newDense = new Object[capacity];
+                System.arraycopy(dense, 0, newDense, 0, dense.length);
+                Arrays.fill(newDense, dense.length, newDense.length, Scriptable.NOT_FOUND);
+                dense = newDense;
+            }
         }
         return true;
     }
 
+    /**
+     * Stop keeping all the elements in the dense storage. From now on, the elements that do not fit
+     * in it are kept in <code>sparse</code>.
+     */
+    private void stopDenseOnly() {
+        if (denseOnly) {
+            generalizeElements(OBJECT_ELEMENTS);
+            denseOnly = false;
+            sparse = new SparseElements();
+        }
+    }
+
+    /**
+     * Move the elements in <code>sparse</code> to slots, where the elements that have been given
+     * other attributes or accessors are kept. Indexes that already have a slot keep it.
+     */
+    private void moveSparseToSlots() {
+        if (sparse == null) {
+            return;
+        }
+        SparseElements values = sparse;
+        sparse = null;
+        for (int i : values.getSortedKeys()) {
+            if (!super.has(i, this)) {
+                if (!isExtensible()) {
+                    // Force creating a slot, as below in defineOwnProperty
+                    setAttributes(i, 0);
+                }
+                super.put(i, this, values.get(i));
+            }
+        }
+    }
+
+    private static int elementKindOf(Object value) {
+        if (value instanceof Integer) {
+            return INT_ELEMENTS;
+        }
+        if (value instanceof Double) {
+            return DOUBLE_ELEMENTS;
+        }
+        return OBJECT_ELEMENTS;
+    }
+
+    /**
+     * Move the elements to the storage for the given kind of elements, unless the current storage
+     * already holds them. Elements never move back to a more specific kind.
+     */
+    private void generalizeElements(int kind) {
+        if (kind <= elementKind) {
+            return;
+        }
+        // Packed elements are always dense, so the length fits in an int
+        int len = (int) length;
+        if (kind == DOUBLE_ELEMENTS) {
+            denseDoubles = new double[denseInts.length];
+            for (int i = 0; i < len; i++) {
+                denseDoubles[i] = denseInts[i];
+            }
+        } else {
+            dense = new Object[getPackedElementsLength()];
+            for (int i = 0; i < len; i++) {
+                dense[i] = getPacked(i);
+            }
+            Arrays.fill(dense, len, dense.length, NOT_FOUND);
+            denseDoubles = null;
+        }
+        denseInts = null;
+        elementKind = kind;
+    }
+
+    /**
+     * Store a number in an existing element, if the elements are packed and can stay packed.
+     * Return false if the number must be boxed and stored with put instead.
+     */
+    boolean putPackedNumber(int index, double value) {
+        if (elementKind == OBJECT_ELEMENTS || index < 0 || index >= length || isSealed()) {
+            return false;
+        }
+        // put would store a Double, which only a double[] can hold
+        generalizeElements(DOUBLE_ELEMENTS);
+        denseDoubles[index] = value;
+        return true;
+    }
+
+    private Object getPackedElements() {
+        return elementKind == INT_ELEMENTS ? denseInts : denseDoubles;
+    }
+
+    private int getPackedElementsLength() {
+        return elementKind == INT_ELEMENTS ? denseInts.length : denseDoubles.length;
+    }
+
+    private Object getPacked(int index) {
+        if (elementKind == INT_ELEMENTS) {
+            return Integer.valueOf(denseInts[index]);
+        }
+        return ScriptRuntime.wrapNumber(denseDoubles[index]);
+    }
+
+    /** The value must already be of the kind of the elements, or of a more specific kind. */
+    private void setPacked(int index, Object value) {
+        if (elementKind == INT_ELEMENTS) {
+            denseInts[index] = (Integer) value;
+        } else {
+            denseDoubles[index] = ((Number) value).doubleValue();
+        }
+    }
+
     @Override
     public void put(int index, Scriptable start, Object value) {
+        if (elementKind != OBJECT_ELEMENTS) {
+            if (start == this
+                    && !isSealed()
+                    && 0 <= index
+                    && (index < length || (index == length && isExtensible()))) {
+                generalizeElements(elementKindOf(value));
+                if (elementKind != OBJECT_ELEMENTS && ensureCapacity(index + 1)) {
+                    setPacked(index, value);
+                    if (index == length) {
+                        length++;
+                        modCount++;
+                    }
+                    return;
+                }
+            }
+            // Anything else may leave a hole
+            generalizeElements(OBJECT_ELEMENTS);
+        }
         if (start == this
                 && !isSealed()
                 && dense != null
                 && 0 <= index
-                && (denseOnly || !isGetterOrSetter(null, index, true))) {
+                && (denseOnly || sparse != null || !isGetterOrSetter(null, index, true))) {
             if (!isExtensible() && this.length <= index) {
                 return;
             } else if (index < dense.length) {
@@ -729,8 +901,20 @@ public class NativeArray extends IdScriptableObject implements List {
                 this.modCount++;
                 return;
             } else {
-                denseOnly = false;
+                stopDenseOnly();
+            }
+        }
+        if (sparse != null
+                && start == this
+                && !isSealed()
+                && 0 <= index
+                && (isExtensible() || sparse.has(index))) {
+            sparse.put(index, value);
+            if ((lengthAttr & READONLY) == 0 && this.length <= index) {
+                this.length = (long) index + 1;
+                this.modCount++;
             }
+            return;
         }
         super.put(index, start, value);
         if (start == this && (lengthAttr & READONLY) == 0) {
@@ -745,12 +929,17 @@ public class NativeArray extends IdScriptableObject implements List {
 
     @Override
     public void delete(int index) {
+        if (elementKind != OBJECT_ELEMENTS && 0 <= index && index < length) {
+            generalizeElements(OBJECT_ELEMENTS);
+        }
         if (dense != null
                 && 0 <= index
                 && index < dense.length
                 && !isSealed()
-                && (denseOnly || !isGetterOrSetter(null, index, true))) {
+                && (denseOnly || sparse != null || !isGetterOrSetter(null, index, true))) {
             dense[index] = NOT_FOUND;
+        } else if (sparse != null && 0 <= index && !isSealed() && sparse.has(index)) {
+            sparse.remove(index);
         } else {
             super.delete(index);
         }
@@ -759,19 +948,28 @@ public class NativeArray extends IdScriptableObject implements List {
     @Override
     public Object[] getIds(boolean nonEnumerable, boolean getSymbols) {
         Object[] superIds = super.getIds(nonEnumerable, getSymbols);
-        if (dense == null) {
-            return superIds;
+        if (elementKind != OBJECT_ELEMENTS) {
+            int len = (int) length;
+            Object[] ids = new Object[len + superIds.length];
+            for (int i = 0; i < len; i++) {
+                ids[i] = Integer.valueOf(i);
+            }
+            System.arraycopy(superIds, 0, ids, len, superIds.length);
+            return ids;
         }
-        int N = dense.length;
+        int N = dense == null ? 0 : dense.length;
         long currentLength = length;
         if (N > currentLength) {
             N = (int) currentLength;
         }
-        if (N == 0) {
+        // The indexes in sparse are all beyond the ones in dense
+        int[] sparseIds = sparse == null ? null : sparse.getSortedKeys();
+        int sparseLength = sparseIds == null ? 0 : sparseIds.length;
+        if (N == 0 && sparseLength == 0) {
             return superIds;
         }
         int superLength = superIds.length;
-        Object[] ids = new Object[N + superLength];
+        Object[] ids = new Object[N + sparseLength + superLength];
 
         int presentCount = 0;
         for (int i = 0; i != N; ++i) {
@@ -781,7 +979,11 @@ public class NativeArray extends IdScriptableObject implements List {
                 ++presentCount;
             }
         }
-        if (presentCount != N) {
+        for (int i = 0; i != sparseLength; ++i) {
+            ids[presentCount] = Integer.valueOf(sparseIds[i]);
+            ++presentCount;
+        }
+        if (presentCount != N + sparseLength) {
             // dense contains deleted elems, need to shrink the result
             Object[] tmp = new Object[presentCount + superLength];
             System.arraycopy(ids, 0, tmp, 0, presentCount);
@@ -827,14 +1029,26 @@ public class NativeArray extends IdScriptableObject implements List {
 
     @Override
     public int getAttributes(int index) {
+        if (elementKind != OBJECT_ELEMENTS && 0 <= index && index < length) {
+            return EMPTY;
+        }
         if (dense != null && index >= 0 && index < dense.length && dense[index] != NOT_FOUND) {
             return EMPTY;
         }
+        if (sparse != null && index >= 0 && sparse.has(index)) {
+            return EMPTY;
+        }
         return super.getAttributes(index);
     }
 
     @Override
     protected ScriptableObject getOwnPropertyDescriptor(Context cx, Object id) {
+        if (elementKind != OBJECT_ELEMENTS) {
+            int index = toDenseIndex(id);
+            if (0 <= index && index < length) {
+                return defaultIndexPropertyDescriptor(getPacked(index));
+            }
+        }
         if (dense != null) {
             int index = toDenseIndex(id);
             if (0 <= index && index < dense.length && dense[index] != NOT_FOUND) {
@@ -842,6 +1056,12 @@ public class NativeArray extends IdScriptableObject implements List {
                 return defaultIndexPropertyDescriptor(value);
             }
         }
+        if (sparse != null) {
+            int index = toDenseIndex(id);
+            if (index >= 0 && sparse.has(index)) {
+                return defaultIndexPropertyDescriptor(sparse.get(index));
+            }
+        }
         return super.getOwnPropertyDescriptor(cx, id);
     }
 
@@ -849,6 +1069,11 @@ public class NativeArray extends IdScriptableObject implements List {
     protected void defineOwnProperty(
             Context cx, Object id, ScriptableObject desc, boolean checkValid) {
         long index = toArrayIndex(id);
+        if (index != -1) {
+            // Elements with descriptors are kept in slots, and from now on all the others too
+            generalizeElements(OBJECT_ELEMENTS);
+            moveSparseToSlots();
+        }
         if (index >= length) {
             length = index + 1;
             modCount++;
@@ -1032,9 +1257,19 @@ public class NativeArray extends IdScriptableObject implements List {
      */
     void setDenseOnly(boolean denseOnly) {
         if (denseOnly && !this.denseOnly) throw new IllegalArgumentException();
+        if (!denseOnly) {
+            // Accessors are kept in slots, so the other elements have to be too
+            generalizeElements(OBJECT_ELEMENTS);
+            moveSparseToSlots();
+        }
         this.denseOnly = denseOnly;
     }
 
+    /** Whether no element is kept in a slot, so that none of them can have a getter or setter. */
+    boolean isDenseOnly() {
+        return denseOnly;
+    }
+
     private void setLength(Object val) {
         /* XXX do we satisfy this?
          * 15.4.5.1 [[Put]](P, V):
@@ -1053,6 +1288,14 @@ public class NativeArray extends IdScriptableObject implements List {
             throw ScriptRuntime.rangeError(msg);
         }
 
+        if (elementKind != OBJECT_ELEMENTS) {
+            if (longVal <= length) {
+                length = longVal;
+                modCount++;
+                return;
+            }
+            generalizeElements(OBJECT_ELEMENTS);
+        }
         if (denseOnly) {
             if (longVal < length) {
                 // downcast okay because denseOnly
@@ -1067,9 +1310,12 @@ public class NativeArray extends IdScriptableObject implements List {
                 modCount++;
                 return;
             } else {
-                denseOnly = false;
+                stopDenseOnly();
             }
         }
+        if (longVal < length && sparse != null) {
+            sparse.removeRange(longVal, length);
+        }
         if (longVal < length) {
             // remove all properties between longVal and length
             if (length - longVal > 0x1000) {
@@ -1295,7 +1541,7 @@ public class NativeArray extends IdScriptableObject implements List {
                         : ScriptRuntime.toString(args[0]);
         if (o instanceof NativeArray) {
             NativeArray na = (NativeArray) o;
-            if (na.denseOnly) {
+            if (na.denseOnly && na.elementKind == OBJECT_ELEMENTS) {
                 StringBuilder sb = new StringBuilder();
                 for (int i = 0; i < length; i++) {
                     if (i != 0) {
@@ -1348,7 +1594,7 @@ public class NativeArray extends IdScriptableObject implements List {
 
         if (o instanceof NativeArray) {
             NativeArray na = (NativeArray) o;
-            if (na.denseOnly) {
+            if (na.denseOnly && na.elementKind == OBJECT_ELEMENTS) {
                 for (int i = 0, j = ((int) na.length) - 1; i < j; i++, j--) {
                     Object temp = na.dense[i];
                     na.dense[i] = na.dense[j];
@@ -1383,6 +1629,9 @@ public class NativeArray extends IdScriptableObject implements List {
     }
 
     private static Scriptable sort(Context cx, Scriptable o, Comparator<Object> comparator) {
+        if (o instanceof NativeArray && ((NativeArray) o).sortSparse(comparator)) {
+            return o;
+        }
         long llength = getLengthProperty(cx, o);
         final int length = (int) llength;
         if (llength != length) {
@@ -1414,11 +1663,98 @@ public class NativeArray extends IdScriptableObject implements List {
         return o;
     }
 
+    /**
+     * Sort a sparse array by only visiting the elements that are present, rather than every index
+     * below its length. Return false, without doing anything, if the array is not sparse or its
+     * holes might show elements of its prototypes.
+     */
+    private boolean sortSparse(Comparator<Object> comparator) {
+        if (sparse == null
+                || length > Integer.MAX_VALUE
+                || isSealed()
+                || !isExtensible()
+                || (lengthAttr & READONLY) != 0
+                || !prototypesHaveNoElements()) {
+            return false;
+        }
+        int len = (int) length;
+        int denseLength = dense == null ? 0 : Math.min(dense.length, len);
+        int[] sparseIds = sparse.getSortedKeys();
+        Object[] working = new Object[denseLength + sparseIds.length];
+        int count = 0;
+        for (int i = 0; i < denseLength; i++) {
+            if (dense[i] != NOT_FOUND) {
+                working[count++] = dense[i];
+            }
+        }
+        for (int i : sparseIds) {
+            if (i < len) {
+                working[count++] = sparse.get(i);
+            }
+        }
+
+        // As in sort, an inconsistent comparator leaves the array as it was
+        try {
+            Arrays.sort(working, 0, count, comparator);
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+
+        // The elements are now at the start of the array, followed by the holes
+        for (int i = 0; i < count; i++) {
+            put(i, this, working[i]);
+        }
+        if (sparse != null) {
+            if (dense != null && count < denseLength) {
+                Arrays.fill(dense, count, denseLength, NOT_FOUND);
+            }
+            sparse.removeRange(count, len);
+        } else {
+            // The comparator moved the elements to slots
+            for (long i = count; i < len; i++) {
+                deleteElem(this, i);
+            }
+        }
+        return true;
+    }
+
+    /** True if no prototype of the array has elements that would show through its holes. */
+    private boolean prototypesHaveNoElements() {
+        for (Scriptable p = getPrototype(); p != null; p = p.getPrototype()) {
+            if (p instanceof NativeArray) {
+                NativeArray array = (NativeArray) p;
+                if (!array.denseOnly || array.length != 0) {
+                    return false;
+                }
+            } else if (p instanceof ScriptableObject) {
+                for (Object id : ((ScriptableObject) p).getIds(true, false)) {
+                    if (id instanceof Integer) {
+                        return false;
+                    }
+                }
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static Object js_push(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
         Scriptable o = ScriptRuntime.toObject(cx, scope, thisObj);
 
         if (o instanceof NativeArray) {
             NativeArray na = (NativeArray) o;
+            for (Object arg : args) {
+                na.generalizeElements(elementKindOf(arg));
+            }
+            if (na.elementKind != OBJECT_ELEMENTS
+                    && na.ensureCapacity((int) na.length + args.length)) {
+                for (Object arg : args) {
+                    na.setPacked((int) na.length++, arg);
+                    na.modCount++;
+                }
+                return ScriptRuntime.wrapNumber((double) na.length);
+            }
             if (na.denseOnly && na.ensureCapacity((int) na.length + args.length)) {
                 for (Object arg : args) {
                     na.dense[(int) na.length++] = arg;
@@ -1452,6 +1788,11 @@ public class NativeArray extends IdScriptableObject implements List {
         Object result;
         if (o instanceof NativeArray) {
             NativeArray na = (NativeArray) o;
+            if (na.elementKind != OBJECT_ELEMENTS && na.length > 0) {
+                na.length--;
+                na.modCount++;
+                return na.getPacked((int) na.length);
+            }
             if (na.denseOnly && na.length > 0) {
                 na.length--;
                 na.modCount++;
@@ -1486,6 +1827,14 @@ public class NativeArray extends IdScriptableObject implements List {
 
         if (o instanceof NativeArray) {
             NativeArray na = (NativeArray) o;
+            if (na.elementKind != OBJECT_ELEMENTS && na.length > 0) {
+                Object result = na.getPacked(0);
+                na.length--;
+                na.modCount++;
+                Object elements = na.getPackedElements();
+                System.arraycopy(elements, 1, elements, 0, (int) na.length);
+                return result;
+            }
             if (na.denseOnly && na.length > 0) {
                 na.length--;
                 na.modCount++;
@@ -1530,6 +1879,20 @@ public class NativeArray extends IdScriptableObject implements List {
 
         if (o instanceof NativeArray) {
             NativeArray na = (NativeArray) o;
+            for (Object arg : args) {
+                na.generalizeElements(elementKindOf(arg));
+            }
+            if (na.elementKind != OBJECT_ELEMENTS
+                    && na.ensureCapacity((int) na.length + args.length)) {
+                Object elements = na.getPackedElements();
+                System.arraycopy(elements, 0, elements, args.length, (int) na.length);
+                for (int i = 0; i < args.length; i++) {
+                    na.setPacked(i, args[i]);
+                }
+                na.length += args.length;
+                na.modCount++;
+                return ScriptRuntime.wrapNumber((double) na.length);
+            }
             if (na.denseOnly && na.ensureCapacity((int) na.length + args.length)) {
                 System.arraycopy(na.dense, 0, na.dense, args.length, (int) na.length);
                 System.arraycopy(args, 0, na.dense, 0, args.length);
@@ -1572,7 +1935,7 @@ public class NativeArray extends IdScriptableObject implements List {
         boolean denseMode = false;
         if (o instanceof NativeArray) {
             na = (NativeArray) o;
-            denseMode = na.denseOnly;
+            denseMode = na.denseOnly && na.elementKind == OBJECT_ELEMENTS;
         }
 
         /* create an empty Array to return. */
@@ -1746,8 +2109,26 @@ public class NativeArray extends IdScriptableObject implements List {
             final NativeArray denseResult = (NativeArray) result;
             if (denseResult.denseOnly && (arg instanceof NativeArray)) {
                 final NativeArray denseArg = (NativeArray) arg;
-                if (denseArg.denseOnly) {
+                if (denseArg.elementKind != OBJECT_ELEMENTS
+                        && denseResult.elementKind != OBJECT_ELEMENTS
+                        && offset == denseResult.length) {
+                    // Packed elements stay packed, as long as no hole is left before them
+                    denseResult.generalizeElements(denseArg.elementKind);
+                    if (denseResult.elementKind == denseArg.elementKind
+                            && denseResult.ensureCapacity((int) newlen)) {
+                        System.arraycopy(
+                                denseArg.getPackedElements(),
+                                0,
+                                denseResult.getPackedElements(),
+                                (int) offset,
+                                (int) srclen);
+                        denseResult.length = newlen;
+                        denseResult.modCount++;
+                        return newlen;
+                    }
+                } else if (denseArg.denseOnly && denseArg.elementKind == OBJECT_ELEMENTS) {
                     // Now we can optimize
+                    denseResult.generalizeElements(OBJECT_ELEMENTS);
                     denseResult.ensureCapacity((int) newlen);
                     System.arraycopy(
                             denseArg.dense, 0, denseResult.dense, (int) offset, (int) srclen);
@@ -1867,7 +2248,7 @@ public class NativeArray extends IdScriptableObject implements List {
         }
         if (o instanceof NativeArray) {
             NativeArray na = (NativeArray) o;
-            if (na.denseOnly) {
+            if (na.denseOnly && na.elementKind == OBJECT_ELEMENTS) {
                 Scriptable proto = na.getPrototype();
                 for (int i = (int) start; i < length; i++) {
                     Object val = na.dense[i];
@@ -1919,7 +2300,7 @@ public class NativeArray extends IdScriptableObject implements List {
         }
         if (o instanceof NativeArray) {
             NativeArray na = (NativeArray) o;
-            if (na.denseOnly) {
+            if (na.denseOnly && na.elementKind == OBJECT_ELEMENTS) {
                 Scriptable proto = na.getPrototype();
                 for (int i = (int) start; i >= 0; i--) {
                     Object val = na.dense[i];
@@ -1967,7 +2348,7 @@ public class NativeArray extends IdScriptableObject implements List {
         Object compareTo = args.length > 0 ? args[0] : Undefined.instance;
         if (o instanceof NativeArray) {
             NativeArray na = (NativeArray) o;
-            if (na.denseOnly) {
+            if (na.denseOnly && na.elementKind == OBJECT_ELEMENTS) {
                 Scriptable proto = na.getPrototype();
                 for (int i = (int) k; i < len; i++) {
                     Object elementK = na.dense[i];
@@ -2076,7 +2457,7 @@ public class NativeArray extends IdScriptableObject implements List {
         // and other non-default options then we won't get here.
         if ((o instanceof NativeArray) && (count <= Integer.MAX_VALUE)) {
             NativeArray na = (NativeArray) o;
-            if (na.denseOnly) {
+            if (na.denseOnly && na.elementKind == OBJECT_ELEMENTS) {
                 for (; count > 0; count--) {
                     na.dense[(int) to] = na.dense[(int) from];
                     from += direction;
@@ -2825,9 +3206,35 @@ public class NativeArray extends IdScriptableObject implements List {
      */
     private Object[] dense;
 
-    /** True if all numeric properties are stored in <code>dense</code>. */
+    /**
+     * The kind of all the elements in the dense storage. Arrays without holes whose elements are
+     * all Integers, or all numbers, keep them packed in <code>denseInts</code> or <code>
+     * denseDoubles</code> instead of <code>dense</code>, until a value of another kind or a hole
+     * moves them to the more general storage.
+     */
+    private int elementKind = OBJECT_ELEMENTS;
+
+    /** Packed storage for the elements [0, length) when they are all Integers. */
+    private int[] denseInts;
+
+    /** Packed storage for the elements [0, length) when they are all numbers. */
+    private double[] denseDoubles;
+
+    private static final int INT_ELEMENTS = 0, DOUBLE_ELEMENTS = 1, OBJECT_ELEMENTS = 2;
+
+    /**
+     * True if all numeric properties are stored in <code>dense</code>, or packed in <code>denseInts
+     * </code> or <code>denseDoubles</code>.
+     */
     private boolean denseOnly;
 
+    /**
+     * Storage for the elements of a sparse array that do not fit in <code>dense</code>. It is null
+     * while the array is dense, and once elements have been given descriptors or accessors, which
+     * are kept in the superclass's slots along with all the other elements.
+     */
+    private SparseElements sparse;
+
     /** The maximum size of <code>dense</code> that will be allocated initially. */
     private static int maximumInitialCapacity = 10000;
 
@@ -6,13 +6,12 @@
 
 package org.mozilla.javascript;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.math.BigInteger;
 import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import org.mozilla.javascript.json.JsonParser;
@@ -86,6 +85,10 @@ public final class NativeJSON extends ScriptableObject {
 
     private static Object parse(Context cx, Scriptable scope, String jtext) {
         try {
+            if (cx.hasFeature(Context.FEATURE_LAZY_JSON)) {
+                return LazyJsonSlotMap.toValue(
+                        new JsonParser(cx, scope).parseValueLazily(jtext), scope);
+            }
             return new JsonParser(cx, scope).parseValue(jtext);
         } catch (JsonParser.ParseException ex) {
             throw ScriptRuntime.constructError("SyntaxError", ex.getMessage());
@@ -163,7 +166,8 @@ public final class NativeJSON extends ScriptableObject {
                 String indent,
                 String gap,
                 Callable replacer,
-                Object[] propertyList) {
+                Object[] propertyList,
+                Appendable out) {
             this.cx = cx;
             this.scope = scope;
 
@@ -171,6 +175,7 @@ public final class NativeJSON extends ScriptableObject {
             this.gap = gap;
             this.replacer = replacer;
             this.propertyList = propertyList;
+            this.out = out;
         }
 
         ArrayDeque<Object> stack = new ArrayDeque<>();
@@ -178,6 +183,15 @@ public final class NativeJSON extends ScriptableObject {
         String gap;
         Callable replacer;
         Object[] propertyList;
+        Appendable out;
+
+        // Whether the properties of objects that only hold data can be read from their slots. This
+        // is so when no replacer is given and the standard prototypes cannot run script code.
+        boolean readSlots;
+        Scriptable objectPrototype;
+        Scriptable arrayPrototype;
+        // Number of calls to str(), which is where any script code is run
+        int lookups;
 
         Context cx;
         Scriptable scope;
@@ -185,6 +199,35 @@ public final class NativeJSON extends ScriptableObject {
 
     public static Object stringify(
             Context cx, Scriptable scope, Object value, Object replacer, Object space) {
+        StringBuilder out = new StringBuilder();
+        try {
+            if (!stringify(cx, scope, value, replacer, space, out)) {
+                return Undefined.instance;
+            }
+        } catch (IOException e) {
+            // Cannot happen when appending to a StringBuilder
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Serialize a value as JSON.stringify does, appending the text to <code>out</code> as it is
+     * produced instead of building it in memory, so that a large document can be written straight
+     * to a {@link java.io.Writer}. If an error is thrown, part of the text may already have been
+     * appended.
+     *
+     * @return false if the value has no JSON text and nothing was appended, where JSON.stringify
+     *     returns undefined
+     */
+    public static boolean stringify(
+            Context cx,
+            Scriptable scope,
+            Object value,
+            Object replacer,
+            Object space,
+            Appendable out)
+            throws IOException {
         String indent = "";
         String gap = "";
 
@@ -238,16 +281,37 @@ public final class NativeJSON extends ScriptableObject {
         }
 
         StringifyState state =
-                new StringifyState(cx, scope, indent, gap, replacerFunction, propertyList);
+                new StringifyState(cx, scope, indent, gap, replacerFunction, propertyList, out);
+        state.objectPrototype = ScriptableObject.getObjectPrototype(scope);
+        state.arrayPrototype = ScriptableObject.getArrayPrototype(scope);
+        state.readSlots =
+                replacerFunction == null
+                        && propertyList == null
+                        && state.objectPrototype instanceof NativeObject
+                        && state.objectPrototype.getPrototype() == null
+                        && state.arrayPrototype instanceof NativeArray
+                        && state.arrayPrototype.getPrototype() == state.objectPrototype;
 
         ScriptableObject wrapper = new NativeObject();
         wrapper.setParentScope(scope);
         wrapper.setPrototype(ScriptableObject.getObjectPrototype(scope));
         wrapper.defineProperty("", value, 0);
-        return str("", wrapper, state);
+        Object json = str("", wrapper, state);
+        if (json == Undefined.instance) {
+            return false;
+        }
+        write(json, state);
+        return true;
     }
 
+    /*
+     * Find the value to serialize for the key, after calling toJSON and the replacer. This is
+     * null, a Boolean, a String, a finite Number or an object to pass to write(), or Undefined if
+     * the key is to be left out.
+     */
+
     private static Object str(Object key, Scriptable holder, StringifyState state) {
+        state.lookups++;
         Object value = null;
         Object unwrappedJavaValue = null;
 
@@ -319,12 +383,10 @@ public final class NativeJSON extends ScriptableObject {
             value = value.toString();
         }
 
-        if (value == null) return "null";
-        if (value.equals(Boolean.TRUE)) return "true";
-        if (value.equals(Boolean.FALSE)) return "false";
+        if (value == null || value instanceof Boolean) return value;
 
         if (value instanceof CharSequence) {
-            return quote(value.toString());
+            return value.toString();
         }
 
         if (value instanceof Number) {
@@ -335,9 +397,9 @@ public final class NativeJSON extends ScriptableObject {
             if (!Double.isNaN(d)
                     && d != Double.POSITIVE_INFINITY
                     && d != Double.NEGATIVE_INFINITY) {
-                return ScriptRuntime.toString(value);
+                return value;
             }
-            return "null";
+            return null;
         }
 
         if (unwrappedJavaValue != null) {
@@ -345,28 +407,58 @@ public final class NativeJSON extends ScriptableObject {
         }
 
         if ((value instanceof Scriptable) && !(value instanceof Callable)) {
-            if (isObjectArrayLike(value)) {
-                return ja((Scriptable) value, state);
-            }
-            return jo((Scriptable) value, state);
+            return value;
         }
         return Undefined.instance;
     }
 
-    private static String join(Collection<Object> objs, String delimiter) {
-        if (objs == null || objs.isEmpty()) {
-            return "";
+    /*
+     * Find what str() would for a value that was read from an object or array which only holds
+     * data, if that can be done without running script code, or return NOT_FOUND.
+     */
+    private static Object dataValue(Object value, StringifyState state) {
+        if (value == null
+                || value instanceof String
+                || value instanceof Integer
+                || value instanceof Boolean
+                || value == Undefined.instance) {
+            return value;
+        }
+        if (value instanceof Double) {
+            double d = ((Double) value).doubleValue();
+            return Double.isNaN(d) || Double.isInfinite(d) ? null : value;
+        }
+        if (value instanceof ConsString) {
+            return value.toString();
+        }
+        Class<?> type = value.getClass();
+        if (type == NativeObject.class || type == NativeArray.class) {
+            Scriptable proto = ((Scriptable) value).getPrototype();
+            if ((proto == state.objectPrototype || proto == state.arrayPrototype)
+                    && !hasProperty((Scriptable) value, "toJSON")) {
+                return value;
+            }
         }
-        Iterator<Object> iter = objs.iterator();
-        if (!iter.hasNext()) return "";
-        StringBuilder builder = new StringBuilder(iter.next().toString());
-        while (iter.hasNext()) {
-            builder.append(delimiter).append(iter.next());
+        return NOT_FOUND;
+    }
+
+    private static void write(Object value, StringifyState state) throws IOException {
+        if (value == null) {
+            state.out.append("null");
+        } else if (value instanceof Boolean) {
+            state.out.append(((Boolean) value).booleanValue() ? "true" : "false");
+        } else if (value instanceof String) {
+            quote((String) value, state.out);
+        } else if (value instanceof Number) {
+            state.out.append(ScriptRuntime.toString(value));
+        } else if (isObjectArrayLike(value)) {
+            ja((Scriptable) value, state);
+        } else {
+            jo((Scriptable) value, state);
         }
-        return builder.toString();
     }
 
-    private static String jo(Scriptable value, StringifyState state) {
+    private static void jo(Scriptable value, StringifyState state) throws IOException {
         Object trackValue = value, unwrapped = null;
         if (value instanceof Wrapper) {
             trackValue = unwrapped = ((Wrapper) value).unwrap();
@@ -409,46 +501,62 @@ public final class NativeJSON extends ScriptableObject {
         String stepback = state.indent;
         state.indent = state.indent + state.gap;
         Object[] k = null;
+        Slot[] slots = null;
         if (state.propertyList != null) {
             k = state.propertyList;
-        } else {
+        } else if (state.readSlots && value.getClass() == NativeObject.class) {
+            slots = ((NativeObject) value).getDataSlots();
+        }
+        if (k == null && slots == null) {
             k = value.getIds();
         }
 
-        ArrayList<Object> partial = new ArrayList<>();
-
-        for (Object p : k) {
-            Object strP = str(p, value, state);
+        Appendable out = state.out;
+        boolean empty = true;
+        out.append('{');
+        int lookups = state.lookups;
+        int count = slots != null ? slots.length : k.length;
+        for (int i = 0; i < count; i++) {
+            Object p;
+            Object strP = NOT_FOUND;
+            if (slots != null) {
+                p = slots[i].name;
+                // The slots are only known to be current until script code may have run
+                if (state.lookups == lookups) {
+                    strP = dataValue(slots[i].value, state);
+                }
+            } else {
+                p = k[i];
+            }
+            if (strP == NOT_FOUND) {
+                strP = str(p, value, state);
+            }
             if (strP != Undefined.instance) {
-                String member = quote(p.toString()) + ":";
+                if (!empty) {
+                    out.append(',');
+                }
+                empty = false;
                 if (state.gap.length() > 0) {
-                    member = member + " ";
+                    out.append('\n').append(state.indent);
                 }
-                member = member + strP;
-                partial.add(member);
+                quote(p.toString(), out);
+                out.append(':');
+                if (state.gap.length() > 0) {
+                    out.append(' ');
+                }
+                write(strP, state);
             }
         }
-
-        final String finalValue;
-
-        if (partial.isEmpty()) {
-            finalValue = "{}";
-        } else {
-            if (state.gap.length() == 0) {
-                finalValue = '{' + join(partial, ",") + '}';
-            } else {
-                String separator = ",\n" + state.indent;
-                String properties = join(partial, separator);
-                finalValue = "{\n" + state.indent + properties + '\n' + stepback + '}';
-            }
+        if (!empty && state.gap.length() > 0) {
+            out.append('\n').append(stepback);
         }
+        out.append('}');
 
         state.stack.pop();
         state.indent = stepback;
-        return finalValue;
     }
 
-    private static String ja(Scriptable value, StringifyState state) {
+    private static void ja(Scriptable value, StringifyState state) throws IOException {
         Object trackValue = value, unwrapped = null;
         if (value instanceof Wrapper) {
             trackValue = unwrapped = ((Wrapper) value).unwrap();
@@ -460,7 +568,6 @@ public final class NativeJSON extends ScriptableObject {
 
         String stepback = state.indent;
         state.indent = state.indent + state.gap;
-        ArrayList<Object> partial = new ArrayList<>();
 
         if (unwrapped != null) {
             Object[] elements = null;
@@ -485,90 +592,93 @@ public final class NativeJSON extends ScriptableObject {
 
         long len = ((NativeArray) value).getLength();
 
+        Appendable out = state.out;
+        out.append('[');
         for (long index = 0; index < len; index++) {
-            Object strP;
-            if (index > Integer.MAX_VALUE) {
-                strP = str(Long.toString(index), value, state);
-            } else {
-                strP = str(Integer.valueOf((int) index), value, state);
+            if (index > 0) {
+                out.append(',');
+            }
+            if (state.gap.length() > 0) {
+                out.append('\n').append(state.indent);
+            }
+            Object strP = NOT_FOUND;
+            if (state.readSlots
+                    && value.getClass() == NativeArray.class
+                    && ((NativeArray) value).isDenseOnly()
+                    && index <= Integer.MAX_VALUE) {
+                // No element has a getter, so reading one cannot run script code
+                strP = dataValue(value.get((int) index, value), state);
+            }
+            if (strP == NOT_FOUND) {
+                if (index > Integer.MAX_VALUE) {
+                    strP = str(Long.toString(index), value, state);
+                } else {
+                    strP = str(Integer.valueOf((int) index), value, state);
+                }
             }
             if (strP == Undefined.instance) {
-                partial.add("null");
+                out.append("null");
             } else {
-                partial.add(strP);
+                write(strP, state);
             }
         }
-
-        final String finalValue;
-
-        if (partial.isEmpty()) {
-            finalValue = "[]";
-        } else {
-            if (state.gap.length() == 0) {
-                finalValue = '[' + join(partial, ",") + ']';
-            } else {
-                String separator = ",\n" + state.indent;
-                String properties = join(partial, separator);
-                finalValue = "[\n" + state.indent + properties + '\n' + stepback + ']';
-            }
+        if (len > 0 && state.gap.length() > 0) {
+            out.append('\n').append(stepback);
         }
+        out.append(']');
 
         state.stack.pop();
         state.indent = stepback;
-        return finalValue;
     }
 
-    private static String quote(String string) {
-        StringBuilder product =
-                new StringBuilder(string.length() + 2); // two extra chars for " on either side
-        product.append('"');
+    private static void quote(String string, Appendable out) throws IOException {
+        out.append('"');
         int length = string.length();
-        char prev = 0;
+        // Characters that need no escaping are appended in runs
+        int start = 0;
         for (int i = 0; i < length; i++) {
             char c = string.charAt(i);
+            String escaped;
             switch (c) {
                 case '"':
-                    product.append("\\\"");
+                    escaped = "\\\"";
                     break;
                 case '\\':
-                    product.append("\\\\");
+                    escaped = "\\\\";
                     break;
                 case '\b':
-                    product.append("\\b");
+                    escaped = "\\b";
                     break;
                 case '\f':
-                    product.append("\\f");
+                    escaped = "\\f";
                     break;
                 case '\n':
-                    product.append("\\n");
+                    escaped = "\\n";
                     break;
                 case '\r':
-                    product.append("\\r");
+                    escaped = "\\r";
                     break;
                 case '\t':
-                    product.append("\\t");
+                    escaped = "\\t";
                     break;
                 default:
                     if (isLeadingSurrogate(c)
                             && i < length - 1
                             && isTrailingSurrogate(string.charAt(i + 1))) {
-                        // do nothing as the next case will add both surrogates
-                        break;
-                    } else if (isTrailingSurrogate(c) && isLeadingSurrogate(prev)) {
-                        product.append(prev).append(c);
+                        // a well-formed pair is kept as it is
+                        i++;
+                        continue;
                     } else if (c < ' ' || isLeadingSurrogate(c) || isTrailingSurrogate(c)) {
-                        product.append("\\u");
-                        String hex = String.format("%04x", Integer.valueOf(c));
-                        product.append(hex);
+                        escaped = "\\u" + String.format("%04x", Integer.valueOf(c));
                     } else {
-                        product.append(c);
+                        continue;
                     }
                     break;
             }
-            prev = c;
+            out.append(string, start, i).append(escaped);
+            start = i + 1;
         }
-        product.append('"');
-        return product.toString();
+        out.append(string, start, length).append('"');
     }
 
     static boolean isLeadingSurrogate(char c) {
@@ -479,8 +479,8 @@ final class NativeString extends IdScriptableObject {
                 case Id_includes:
                 case Id_startsWith:
                 case Id_endsWith:
-                    String thisString =
-                            ScriptRuntime.toString(requireObjectCoercible(cx, thisObj, f));
+                    CharSequence thisString =
+                            ScriptRuntime.toCharSequence(requireObjectCoercible(cx, thisObj, f));
 
                     if (args.length > 0) {
                         RegExpProxy reProxy = ScriptRuntime.getRegExpProxy(cx);
@@ -1046,7 +1046,7 @@ final class NativeString extends IdScriptableObject {
      * See ECMA 15.5.4.6.  Uses Java String.indexOf()
      * OPT to add - BMH searching from jsstr.c.
      */
-    private static int js_indexOf(int methodId, String target, Object[] args) {
+    private static int js_indexOf(int methodId, CharSequence target, Object[] args) {
         String searchStr = ScriptRuntime.toString(args, 0);
         double position = ScriptRuntime.toInteger(args, 1);
 
@@ -1068,11 +1068,26 @@ final class NativeString extends IdScriptableObject {
                     || args.length == 1
                     || (args.length == 2 && args[1] == Undefined.instance))
                 position = target.length();
-            return target.substring(0, (int) position).endsWith(searchStr) ? 0 : -1;
+            return regionMatches(target, (int) position - searchStr.length(), searchStr) ? 0 : -1;
         }
         return methodId == Id_startsWith
-                ? target.startsWith(searchStr, (int) position) ? 0 : -1
-                : target.indexOf(searchStr, (int) position);
+                ? regionMatches(target, (int) position, searchStr) ? 0 : -1
+                : target.toString().indexOf(searchStr, (int) position);
+    }
+
+    /*
+     * Compare only the part of the target that can match, so that a ConsString is not flattened
+     * to check how it starts or ends.
+     */
+    private static boolean regionMatches(CharSequence target, int start, String search) {
+        int end = start + search.length();
+        if (start < 0 || end > target.length()) {
+            return false;
+        }
+        if (target instanceof String) {
+            return ((String) target).startsWith(search, start);
+        }
+        return search.contentEquals(target.subSequence(start, end));
     }
 
     /*
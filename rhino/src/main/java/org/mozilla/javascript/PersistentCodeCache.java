@@ -0,0 +1,292 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of compiled scripts that is kept in a directory, so that the same scripts do not have to
+ * be parsed and compiled again every time the JVM starts. Once it is set using {@link
+ * ContextFactory#setPersistentCodeCache}, {@link Context#compileString} and {@link
+ * Context#compileReader} (and so the "evaluate" methods) look for the script here before parsing
+ * it, and store what they compiled afterwards. Both the class files generated by the optimizer and
+ * the data produced for the interpreter are cached.
+ *
+ * <p>Each entry is a file whose name is a SHA-256 hash of the source, the source name and first
+ * line number, every setting of {@link CompilerEnvirons} that affects the generated code, and the
+ * version of Rhino. Changing any of these simply misses the cache, and stale entries are never
+ * read again. An entry that cannot be read for any reason is also treated as a miss, and is
+ * replaced once the script has been compiled again.
+ *
+ * <p>Functions created with {@link Context#compileFunction}, and scripts compiled while a debugger
+ * is attached, are never cached. Since a cached script is not parsed, compiling it does not report
+ * any warnings a second time.
+ *
+ * <p>Only classes from Rhino itself and the few JDK classes that compiled scripts contain may be
+ * read back from the directory. Even so, the directory should only be writable by the
+ * application, since the code in it will be run.
+ */
+public final class PersistentCodeCache {
+
+    // Change this whenever the format of the files changes
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".rhc";
+
+    private static final String RUNTIME_VERSION = computeRuntimeVersion();
+
+    private final File directory;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /** A compiled script, along with whether it was compiled for the interpreter. */
+    static final class Entry {
+        final Object bytecode;
+        final boolean interpreted;
+
+        Entry(Object bytecode, boolean interpreted) {
+            this.bytecode = bytecode;
+            this.interpreted = interpreted;
+        }
+    }
+
+    /**
+     * Create a cache that keeps its entries in the given directory, which is created if it does
+     * not exist yet.
+     *
+     * @throws IllegalArgumentException if the directory does not exist and cannot be created
+     */
+    public PersistentCodeCache(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IllegalArgumentException("Cannot create cache directory " + directory);
+        }
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /** Return the number of scripts that were found in the cache. */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** Return the number of scripts that had to be compiled because they were not in the cache. */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** Delete every entry from the cache directory. */
+    public void clear() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+    }
+
+    /**
+     * Compute the key that identifies a script compiled with the given settings. The result is
+     * the same in every JVM that runs the same version of Rhino.
+     */
+    static String computeKey(
+            CompilerEnvirons env, String source, String sourceName, int lineno) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (DataOutputStream out =
+                new DataOutputStream(new DigestOutputStream(digest))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(RUNTIME_VERSION);
+            out.writeInt(env.getLanguageVersion());
+            out.writeInt(env.getOptimizationLevel());
+            out.writeBoolean(env.isGenerateDebugInfo());
+            out.writeBoolean(env.isReservedKeywordAsIdentifier());
+            out.writeBoolean(env.isAllowMemberExprAsFunctionName());
+            out.writeBoolean(env.isXmlAvailable());
+            out.writeBoolean(env.isGeneratingSource());
+            out.writeBoolean(env.isStrictMode());
+            out.writeBoolean(env.reportWarningAsError());
+            out.writeBoolean(env.isGenerateObserverCount());
+            out.writeBoolean(env.isRecordingComments());
+            out.writeBoolean(env.isRecordingLocalJsDocComments());
+            out.writeBoolean(env.getWarnTrailingComma());
+            out.writeBoolean(env.getAllowSharpComments());
+            Set<String> activationNames = env.getActivationNames();
+            if (activationNames == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(activationNames.size());
+                for (String name : new TreeSet<>(activationNames)) {
+                    out.writeUTF(name);
+                }
+            }
+            out.writeUTF(sourceName);
+            out.writeInt(lineno);
+            // writeUTF is limited to 64K, and the source may be much longer
+            out.write(source.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // Cannot happen when writing to a digest
+            throw new IllegalStateException(e);
+        }
+
+        byte[] hash = digest.digest();
+        StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /** Return the entry with the given key, or null if there is no valid one. */
+    Entry load(String key) {
+        File file = new File(directory, key + SUFFIX);
+        if (!file.isFile()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try (ObjectInputStream in =
+                new RestrictedInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF())) {
+                misses.incrementAndGet();
+                return null;
+            }
+            boolean interpreted = in.readBoolean();
+            Object bytecode = in.readObject();
+            hits.incrementAndGet();
+            return new Entry(bytecode, interpreted);
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            // Corrupt, truncated, or from an incompatible build: compile again
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Store a compiled script under the given key. Failures are ignored, because the cache is
+     * only an optimization. The file is written under a temporary name first so that other
+     * threads and processes never see a partial entry.
+     */
+    void store(String key, Object bytecode, boolean interpreted) {
+        File file = new File(directory, key + SUFFIX);
+        File tmp = null;
+        try {
+            tmp = File.createTempFile(key, ".tmp", directory);
+            try (ObjectOutputStream out =
+                    new ObjectOutputStream(
+                            new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(key);
+                out.writeBoolean(interpreted);
+                out.writeObject(bytecode);
+            }
+            if (!tmp.renameTo(file)) {
+                // Some platforms will not rename over an existing file
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    tmp.delete();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * The version string does not change between snapshot builds, so also use the modification
+     * time of the Rhino classes, which does.
+     */
+    private static String computeRuntimeVersion() {
+        String version = ImplementationVersion.get();
+        long modified = 0;
+        try {
+            URL url = Context.class.getResource("Context.class");
+            if (url != null) {
+                modified = url.openConnection().getLastModified();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Fall back to the version alone
+        }
+        return version + '/' + modified;
+    }
+
+    private static final class DigestOutputStream extends OutputStream {
+        private final MessageDigest digest;
+
+        DigestOutputStream(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void write(int b) {
+            digest.update((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            digest.update(b, off, len);
+        }
+    }
+
+    /**
+     * Compiled scripts only contain Rhino classes, strings, numbers, arrays and maps, so refuse to
+     * create anything else.
+     */
+    private static final class RestrictedInputStream extends ObjectInputStream {
+        RestrictedInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc)
+                throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            int start = 0;
+            while (start < name.length() && name.charAt(start) == '[') {
+                start++;
+            }
+            if (start > 0 && name.length() == start + 1) {
+                // An array of primitives
+                return super.resolveClass(desc);
+            }
+            String element =
+                    start > 0 ? name.substring(start + 1, name.length() - 1) : name;
+            if (!element.startsWith("org.mozilla.javascript.")
+                    && !element.startsWith("java.lang.")
+                    && !element.startsWith("java.math.")
+                    && !element.equals("java.util.HashMap")) {
+                throw new ClassNotFoundException(name);
+            }
+            return Class.forName(name, false, Context.class.getClassLoader());
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of compiled scripts, kept in memory. Once it is set using {@link
+ * ContextFactory#setScriptCache}, {@link Context#compileString} and {@link Context#compileReader}
+ * (and so the "evaluate" methods) return the same {@link Script} object when they are given the
+ * same source again, instead of parsing and compiling it every time. When the cache is full, the
+ * script that was used least recently is discarded.
+ *
+ * <p>A script is found again only if the source, the source name and first line number, and every
+ * setting of {@link CompilerEnvirons} that affects the generated code are the same, so changing
+ * the optimization level or language version of a Context simply misses the cache.
+ *
+ * <p>Functions created with {@link Context#compileFunction}, scripts compiled with a security
+ * domain, and scripts compiled while a debugger is attached are never cached. Since a cached script
+ * is not parsed, compiling it does not report any warnings a second time.
+ *
+ * <p>This class is thread-safe, and the same cache may be used by many threads at once.
+ */
+public final class ScriptCache {
+
+    private final int maxSize;
+    private final LinkedHashMap<String, Script> scripts;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a cache that holds at most the given number of scripts.
+     *
+     * @throws IllegalArgumentException if maxSize is not positive
+     */
+    public ScriptCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid cache size " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.scripts =
+                new LinkedHashMap<String, Script>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Script> eldest) {
+                        return size() > ScriptCache.this.maxSize;
+                    }
+                };
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** Return the number of scripts in the cache now. */
+    public int size() {
+        synchronized (scripts) {
+            return scripts.size();
+        }
+    }
+
+    /** Return the number of scripts that were found in the cache. */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /** Return the number of scripts that had to be compiled because they were not in the cache. */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** Remove every script from the cache. The counters are not reset. */
+    public void clear() {
+        synchronized (scripts) {
+            scripts.clear();
+        }
+    }
+
+    /** Return the script with the given key, or null if there is none. */
+    Script get(String key) {
+        Script script;
+        synchronized (scripts) {
+            script = scripts.get(key);
+        }
+        if (script == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return script;
+    }
+
+    void put(String key, Script script) {
+        synchronized (scripts) {
+            scripts.put(key, script);
+        }
+    }
+}
@@ -1812,6 +1812,39 @@ public class ScriptRuntime {
         return result;
     }
 
+    /**
+     * Return the shape of the object's own properties, or null if it does not use shapes. The
+     * result is opaque and may only be compared by identity. This and the following methods let
+     * the inline caches of compiled code read the slots of objects with a known shape.
+     */
+    public static Object getShape(ScriptableObject obj) {
+        return obj.getShape();
+    }
+
+    /**
+     * Return the position of the named data property in the object's current shape, or -1 if it
+     * cannot be read through the shape.
+     */
+    public static int getShapePosition(ScriptableObject obj, String name) {
+        return obj.getShapePosition(name);
+    }
+
+    /**
+     * Return the value at the position of the object's shape, or NOT_FOUND if the property there
+     * is not an ordinary data property. The caller must have checked the shape.
+     */
+    public static Object getShapedValue(ScriptableObject obj, int position) {
+        return obj.getShapedValue(position);
+    }
+
+    /**
+     * Set the value at the position of the object's shape if that can be done without a regular
+     * property set, and return whether it was. The caller must have checked the shape.
+     */
+    public static boolean setShapedValue(ScriptableObject obj, int position, Object value) {
+        return obj.setShapedValue(position, value);
+    }
+
     /**
      * A cheaper and less general version of the above for well-known argument types.
      *
@@ -1946,6 +1979,21 @@ public class ScriptRuntime {
         return value;
     }
 
+    /**
+     * Version of setObjectIndex for a Number value that is not needed afterwards. An array with
+     * packed elements stores the number without boxing it.
+     */
+    public static void setObjectIndex(
+            Object obj, double dblIndex, double value, Context cx, Scriptable scope) {
+        if (obj instanceof NativeArray) {
+            int index = (int) dblIndex;
+            if (index == dblIndex && ((NativeArray) obj).putPackedNumber(index, value)) {
+                return;
+            }
+        }
+        setObjectIndex(obj, dblIndex, wrapNumber(value), cx, scope);
+    }
+
     public static boolean deleteObjectElem(Scriptable target, Object elem, Context cx) {
         if (isSymbol(elem)) {
             SymbolScriptable so = ScriptableObject.ensureSymbolScriptable(target);
@@ -2640,6 +2688,40 @@ public class ScriptRuntime {
         return (Callable) nameOrFunction(cx, scope, parent, name, true, isOptionalChainingCall);
     }
 
+    /**
+     * Version of {@link #name(Context, Scriptable, String)} for compiled code that has cached the
+     * slot which holds "name" in the top-level scope "scope", and knows that it is still valid.
+     *
+     * @see ScriptableObject#getSlotForCaching(String, Runnable)
+     */
+    public static Object cachedTopScopeName(
+            Context cx, Scriptable scope, String name, Slot slot) {
+        if (cx.useDynamicScope) {
+            return name(cx, scope, name);
+        }
+        return slot.getValue(scope);
+    }
+
+    /**
+     * Version of {@link #getNameFunctionAndThis(String, Context, Scriptable)} for compiled code
+     * that has cached the slot which holds "name" in the top-level scope "scope".
+     *
+     * @see #cachedTopScopeName(Context, Scriptable, String, Slot)
+     */
+    public static Callable cachedTopScopeFunctionAndThis(
+            String name, Context cx, Scriptable scope, Slot slot) {
+        if (cx.useDynamicScope) {
+            return getNameFunctionAndThis(name, cx, scope);
+        }
+        Object result = slot.getValue(scope);
+        if (!(result instanceof Callable)) {
+            throw notFunctionError(result, name);
+        }
+        // Top scope is not NativeWith or NativeCall => thisObj == scope
+        storeScriptable(cx, scope);
+        return (Callable) result;
+    }
+
     /**
      * Prepare for calling obj[id](...): return function corresponding to obj[id] and make obj
      * properly converted to Scriptable available as ScriptRuntime.lastStoredScriptable() for
@@ -38,6 +38,7 @@ import org.mozilla.javascript.annotations.JSGetter;
 import org.mozilla.javascript.annotations.JSSetter;
 import org.mozilla.javascript.annotations.JSStaticFunction;
 import org.mozilla.javascript.debug.DebuggableObject;
+import org.mozilla.javascript.json.JsonParser;
 
 /**
  * This is the default implementation of the Scriptable interface. This class provides convenient
@@ -159,10 +160,14 @@ public abstract class ScriptableObject
 
     private static SlotMapContainer createSlotMap(int initialSize) {
         Context cx = Context.getCurrentContext();
-        if ((cx != null) && cx.hasFeature(Context.FEATURE_THREAD_SAFE_OBJECTS)) {
-            return new ThreadSafeSlotMapContainer(initialSize);
+        if (cx == null) {
+            return new SlotMapContainer(initialSize);
         }
-        return new SlotMapContainer(initialSize);
+        boolean shaped = cx.hasFeature(Context.FEATURE_SHAPED_OBJECTS);
+        if (cx.hasFeature(Context.FEATURE_THREAD_SAFE_OBJECTS)) {
+            return new ThreadSafeSlotMapContainer(initialSize, shaped);
+        }
+        return new SlotMapContainer(initialSize, shaped);
     }
 
     public ScriptableObject() {
@@ -247,6 +252,84 @@ public abstract class ScriptableObject
         return slot.getValue(start);
     }
 
+    /**
+     * Return the shape that describes the layout of this object's own properties, or null if this
+     * object does not use shapes. Objects with the same shape store each of their properties at the
+     * same position, which lets compiled code cache that position instead of looking up the
+     * property every time.
+     *
+     * @see Context#FEATURE_SHAPED_OBJECTS
+     * @see #getShapePosition(String)
+     */
+    final Shape getShape() {
+        return slotMap.getShape();
+    }
+
+    /**
+     * Return the position of the named property in this object's current shape, or -1 if this
+     * object does not use shapes or if the property is not an ordinary data property stored
+     * directly in this object.
+     */
+    final int getShapePosition(String name) {
+        Shape shape = slotMap.getShape();
+        if (shape == null) {
+            return -1;
+        }
+        int position = shape.find(name, 0);
+        if (position < 0 || !isShapedValueSlot(slotMap.getShapedSlot(position))) {
+            return -1;
+        }
+        return position;
+    }
+
+    /**
+     * Return the value of the property stored at "position" of the current shape, or NOT_FOUND if
+     * the slot there is not an ordinary data property. The caller must have checked that the shape
+     * of this object is the one that "position" was computed for.
+     */
+    final Object getShapedValue(int position) {
+        Slot slot = slotMap.getShapedSlot(position);
+        if (!isShapedValueSlot(slot)) {
+            return NOT_FOUND;
+        }
+        return slot.value;
+    }
+
+    /**
+     * Set the value of the property stored at "position" of the current shape, if it is an ordinary
+     * writable data property and this object may be modified. Return false if nothing was done, in
+     * which case the caller must fall back to the regular way of setting the property. As with
+     * {@link #getShapedValue}, the caller must have checked the shape first.
+     */
+    final boolean setShapedValue(int position, Object value) {
+        if (!isExtensible || isSealed) {
+            return false;
+        }
+        Slot slot = slotMap.getShapedSlot(position);
+        if (!isShapedValueSlot(slot) || (slot.getAttributes() & READONLY) != 0) {
+            return false;
+        }
+        slot.value = value;
+        return true;
+    }
+
+    private static boolean isShapedValueSlot(Slot slot) {
+        // Subclasses of Slot may compute their values, so only the base class qualifies
+        return slot != null && slot.getClass() == Slot.class;
+    }
+
+    /**
+     * Return the slot that holds the named property directly in this object, or null if there is
+     * none. If a slot is returned and "listener" is not null, the listener will run once that slot
+     * is removed from this object or replaced by a different one, after which the slot no longer
+     * represents the property. Until then, {@link Slot#getValue(Scriptable)} returns the same thing
+     * as a regular lookup of the property in this object. This lets compiled code cache the
+     * location of properties, such as the functions of a global scope, which rarely go away.
+     */
+    public final Slot getSlotForCaching(String name, Runnable listener) {
+        return slotMap.watch(name, 0, listener);
+    }
+
     /**
      * Returns the value of the indexed property or NOT_FOUND.
      *
@@ -662,6 +745,16 @@ public abstract class ScriptableObject
         lslot.value = init;
     }
 
+    /**
+     * Give an object that has no properties yet the members of a JSON object, which are read into
+     * its slots when they are first used.
+     *
+     * @see LazyJsonSlotMap
+     */
+    void setLazyJsonMembers(JsonParser.Container members, Scriptable scope) {
+        slotMap.map = new LazyJsonSlotMap(members, scope, slotMap);
+    }
+
     /**
      * Attach the specified object to this object, and delegate all indexed property lookups to it.
      * In other words, if the object has 3 elements, then an attempt to look up or modify "[0]",
@@ -2731,6 +2824,37 @@ public abstract class ScriptableObject
         return result;
     }
 
+    /**
+     * Return the slots of the enumerable properties of this object, in the order that getIds lists
+     * them, if all of those properties have string names and hold plain values rather than getters
+     * and setters. Otherwise return null.
+     */
+    Slot[] getDataSlots() {
+        if (externalData != null) {
+            return null;
+        }
+        if (slotMap.isEmpty()) {
+            return new Slot[0];
+        }
+        final long stamp = slotMap.readLock();
+        try {
+            Slot[] slots = new Slot[slotMap.dirtySize()];
+            int count = 0;
+            for (Slot slot : slotMap) {
+                if ((slot.getAttributes() & DONTENUM) != 0 || slot.name instanceof Symbol) {
+                    continue;
+                }
+                if (!(slot.name instanceof String) || slot.getClass() != Slot.class) {
+                    return null;
+                }
+                slots[count++] = slot;
+            }
+            return count == slots.length ? slots : Arrays.copyOf(slots, count);
+        } finally {
+            slotMap.unlockRead(stamp);
+        }
+    }
+
     /*
      * These are handy for changing slot types in one "compute" operation.
      */
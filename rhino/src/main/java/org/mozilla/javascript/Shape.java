@@ -0,0 +1,145 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Objects;
+
+/**
+ * A Shape (sometimes called a "hidden class") describes the layout of the properties of an object:
+ * which keys it has, and at which position in a flat array each of them is stored. Shapes are
+ * immutable and form a tree rooted at {@link #EMPTY}, where each child adds exactly one key to its
+ * parent. Objects that add the same keys in the same order end up with the same Shape instance, so
+ * the per-object cost of a property map is a single array instead of a private hash table.
+ *
+ * <p>Transitions from one shape to the next are weakly referenced, so that shapes that are no
+ * longer used by any object may be collected.
+ *
+ * <p>Shapes are opaque outside this package. Code generated by the optimizer only compares them by
+ * identity, in order to cache the position of a property for all the objects that share a shape.
+ */
+final class Shape {
+
+    /** The root of every shape tree: an object with no properties at all. */
+    static final Shape EMPTY = new Shape(null, null, 0);
+
+    /**
+     * Shapes with up to this many properties are searched by walking the parent chain. Larger
+     * shapes lazily build a hash table, which is then shared by every object with that shape.
+     */
+    private static final int LINEAR_SEARCH_LIMIT = 8;
+
+    /**
+     * After this many different transitions out of a single shape, we stop registering new ones.
+     * This protects against unbounded growth of the tree when objects are used as dictionaries with
+     * arbitrary keys. Shapes created past this limit still work; they just are not shared.
+     */
+    private static final int MAX_TRANSITIONS = 256;
+
+    private final Shape parent;
+    // The key that this shape added to its parent, and its hash, in the same form as in Slot
+    private final Object name;
+    private final int indexOrHash;
+    // The number of properties, which is also the position of the newest one plus one
+    private final int size;
+
+    private HashMap<Object, WeakReference<Shape>> transitions;
+    private volatile Shape[] table;
+
+    private Shape(Shape parent, Object name, int indexOrHash) {
+        this.parent = parent;
+        this.name = name;
+        this.indexOrHash = indexOrHash;
+        this.size = parent == null ? 0 : parent.size + 1;
+    }
+
+    /** Return the number of properties described by this shape. */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Return the position of the property with the given key, or -1 if this shape has no such
+     * property. The key follows the conventions of SlotMap: "name" is used if it is not null, and
+     * "index" otherwise.
+     */
+    int find(Object key, int index) {
+        final int indexOrHash = (key != null ? key.hashCode() : index);
+        if (size > LINEAR_SEARCH_LIMIT) {
+            return findInTable(key, indexOrHash);
+        }
+        for (Shape s = this; s.parent != null; s = s.parent) {
+            if (indexOrHash == s.indexOrHash && Objects.equals(s.name, key)) {
+                return s.size - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the shape that results from adding the given key to this one. If another object
+     * already made the same transition then the existing shape is returned.
+     *
+     * @param name the String or Symbol key, or null for an indexed property
+     * @param indexOrHash the hash of "name", or the index if "name" is null
+     */
+    Shape addProperty(Object name, int indexOrHash) {
+        Object transitionKey = (name != null ? name : Integer.valueOf(indexOrHash));
+        synchronized (this) {
+            if (transitions == null) {
+                transitions = new HashMap<>();
+            } else {
+                WeakReference<Shape> ref = transitions.get(transitionKey);
+                Shape existing = (ref == null ? null : ref.get());
+                if (existing != null) {
+                    return existing;
+                }
+            }
+            Shape child = new Shape(this, name, indexOrHash);
+            if (transitions.size() < MAX_TRANSITIONS || transitions.containsKey(transitionKey)) {
+                transitions.put(transitionKey, new WeakReference<>(child));
+            }
+            return child;
+        }
+    }
+
+    private int findInTable(Object key, int indexOrHash) {
+        Shape[] t = table;
+        if (t == null) {
+            t = buildTable();
+            table = t;
+        }
+        final int mask = t.length - 1;
+        for (int i = indexOrHash & mask; ; i = (i + 1) & mask) {
+            Shape s = t[i];
+            if (s == null) {
+                return -1;
+            }
+            if (indexOrHash == s.indexOrHash && Objects.equals(s.name, key)) {
+                return s.size - 1;
+            }
+        }
+    }
+
+    /**
+     * Build an open-addressed table of all the shapes along the parent chain, which is at least
+     * twice as large as the number of properties so that probing always terminates quickly.
+     */
+    private Shape[] buildTable() {
+        Shape[] t = new Shape[Integer.highestOneBit(size) << 2];
+        final int mask = t.length - 1;
+        for (Shape s = this; s.parent != null; s = s.parent) {
+            int i = s.indexOrHash & mask;
+            while (t[i] != null) {
+                i = (i + 1) & mask;
+            }
+            t[i] = s;
+        }
+        return t;
+    }
+}
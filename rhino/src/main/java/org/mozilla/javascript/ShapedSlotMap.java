@@ -0,0 +1,163 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class implements the SlotMap interface using a shared {@link Shape} plus a flat array of
+ * slots. All the information about which keys exist and where they are stored lives in the shape,
+ * which is shared with every other object that added the same properties in the same order. The
+ * only per-object state is the array itself, which makes this implementation much smaller than
+ * EmbeddedSlotMap for large numbers of similar objects.
+ *
+ * <p>Slots are still used to hold values and attributes, because the rest of the runtime hands
+ * them out and modifies them in place. Replacing a slot with a different kind of slot, such as when
+ * a property is turned into an accessor, does not change the shape. Removing a property does, and
+ * is comparatively expensive, because the shape is rebuilt from the root.
+ */
+public class ShapedSlotMap implements SlotMap {
+
+    private static final Slot[] EMPTY_SLOTS = new Slot[0];
+
+    // initial slot array size once the first property is added
+    private static final int INITIAL_SLOT_SIZE = 4;
+
+    private Shape shape = Shape.EMPTY;
+    private Slot[] slots = EMPTY_SLOTS;
+
+    private static final class Iter implements Iterator<Slot> {
+        private final Slot[] slots;
+        private final int size;
+        private int pos;
+
+        Iter(Slot[] slots, int size) {
+            this.slots = slots;
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pos < size;
+        }
+
+        @Override
+        public Slot next() {
+            if (pos >= size) {
+                throw new NoSuchElementException();
+            }
+            return slots[pos++];
+        }
+    }
+
+    public ShapedSlotMap() {}
+
+    /** Return the shape that currently describes the layout of this map. */
+    Shape getShape() {
+        return shape;
+    }
+
+    /**
+     * Return the slot at the given position of the current shape, or null if there is no such
+     * position.
+     */
+    Slot getSlot(int position) {
+        Slot[] s = slots;
+        if (position < 0 || position >= s.length) {
+            return null;
+        }
+        return s[position];
+    }
+
+    @Override
+    public int size() {
+        return shape.getSize();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return shape.getSize() == 0;
+    }
+
+    @Override
+    public Iterator<Slot> iterator() {
+        return new Iter(slots, shape.getSize());
+    }
+
+    @Override
+    public Slot query(Object key, int index) {
+        // Read the array before the shape: a racing optimistic reader in
+        // ThreadSafeSlotMapContainer must never index past the end of it.
+        Slot[] s = slots;
+        int pos = shape.find(key, index);
+        if (pos < 0 || pos >= s.length) {
+            return null;
+        }
+        return s[pos];
+    }
+
+    @Override
+    public Slot modify(Object key, int index, int attributes) {
+        int pos = shape.find(key, index);
+        if (pos >= 0) {
+            return slots[pos];
+        }
+        Slot newSlot = new Slot(key, index, attributes);
+        add(newSlot);
+        return newSlot;
+    }
+
+    @Override
+    public <S extends Slot> S compute(Object key, int index, SlotComputer<S> c) {
+        int pos = shape.find(key, index);
+        if (pos >= 0) {
+            S newSlot = c.compute(key, index, slots[pos]);
+            if (newSlot == null) {
+                removeSlot(pos);
+            } else {
+                slots[pos] = newSlot;
+            }
+            return newSlot;
+        }
+
+        S newSlot = c.compute(key, index, null);
+        if (newSlot != null) {
+            add(newSlot);
+        }
+        return newSlot;
+    }
+
+    @Override
+    public void add(Slot newSlot) {
+        int pos = shape.getSize();
+        if (pos == slots.length) {
+            Slot[] newSlots = new Slot[pos == 0 ? INITIAL_SLOT_SIZE : pos * 2];
+            System.arraycopy(slots, 0, newSlots, 0, pos);
+            slots = newSlots;
+        }
+        slots[pos] = newSlot;
+        shape = shape.addProperty(newSlot.name, newSlot.indexOrHash);
+    }
+
+    private void removeSlot(int pos) {
+        int oldSize = shape.getSize();
+        Shape newShape = Shape.EMPTY;
+        for (int i = 0; i < oldSize; i++) {
+            if (i != pos) {
+                newShape = newShape.addProperty(slots[i].name, slots[i].indexOrHash);
+            }
+        }
+        // Copy rather than shift in place so that iterators that are already
+        // running keep seeing a consistent array.
+        Slot[] newSlots = new Slot[slots.length];
+        System.arraycopy(slots, 0, newSlots, 0, pos);
+        System.arraycopy(slots, pos + 1, newSlots, pos, oldSize - pos - 1);
+        slots = newSlots;
+        shape = newShape;
+    }
+}
@@ -18,6 +18,8 @@ public class Slot implements Serializable {
     Object value;
     transient Slot next; // next in hash table bucket
     transient Slot orderedNext; // next in linked list
+    // run once when this slot is removed from its map or replaced by another one
+    private transient Runnable retireListener;
 
     Slot(Object name, int index, int attributes) {
         this.name = name;
@@ -49,6 +51,34 @@ public class Slot implements Serializable {
         orderedNext = oldSlot.orderedNext;
     }
 
+    /**
+     * Arrange for "listener" to run once this slot is retired, which means that it was removed from
+     * the map that held it or replaced there by a different slot. Callers that cache a slot use
+     * this to find out when the cache is no longer valid. Must be called while the map that holds
+     * this slot is locked for writing.
+     */
+    void addRetireListener(Runnable listener) {
+        Runnable prev = retireListener;
+        if (prev == null) {
+            retireListener = listener;
+        } else {
+            retireListener =
+                    () -> {
+                        prev.run();
+                        listener.run();
+                    };
+        }
+    }
+
+    /** Run the retire listeners, if any. Called by the slot map container. */
+    void retire() {
+        Runnable listener = retireListener;
+        if (listener != null) {
+            retireListener = null;
+            listener.run();
+        }
+    }
+
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
         if (name != null) {
@@ -21,19 +21,58 @@ class SlotMapContainer implements SlotMap {
      */
     private static final int LARGE_HASH_SIZE = 2000;
 
+    /**
+     * Once a shaped object has this many properties in it, it is most likely being used as a
+     * dictionary rather than as a record, so we replace the ShapedSlotMap with EmbeddedSlotMap
+     * instead of growing the shared shape tree any further.
+     */
+    private static final int LARGE_SHAPE_SIZE = 128;
+
     private static final int DEFAULT_SIZE = 10;
 
     protected SlotMap map;
 
+    private final boolean shaped;
+
+    /**
+     * Set once a caller watches one of our slots. Until then nobody can be waiting for a slot to be
+     * retired, so "compute" passes its SlotComputer straight to the map.
+     */
+    private boolean watched;
+
     SlotMapContainer() {
         this(DEFAULT_SIZE);
     }
 
     SlotMapContainer(int initialSize) {
-        if (initialSize > LARGE_HASH_SIZE) {
-            map = new HashSlotMap();
-        } else {
-            map = new EmbeddedSlotMap();
+        this(initialSize, false);
+    }
+
+    SlotMapContainer(int initialSize, boolean shaped) {
+        this.shaped = shaped;
+        map = createMap(initialSize);
+    }
+
+    /** Create the kind of map that this container uses for the given number of slots. */
+    SlotMap createMap(int size) {
+        if (size > LARGE_HASH_SIZE) {
+            return new HashSlotMap();
+        } else if (shaped && size <= LARGE_SHAPE_SIZE) {
+            return new ShapedSlotMap();
+        }
+        return new EmbeddedSlotMap();
+    }
+
+    /**
+     * Replace "lazy", if it is still our map, with the map that it read its slots into, so that from
+     * then on this container works with that map directly. No lock is needed, because "lazy" keeps
+     * handing calls to the same map for any thread that has not yet seen the new one.
+     *
+     * @see LazyJsonSlotMap
+     */
+    void replaceLazyMap(SlotMap lazy, SlotMap newMap) {
+        if (map == lazy) {
+            map = newMap;
         }
     }
 
@@ -59,7 +98,7 @@ class SlotMapContainer implements SlotMap {
 
     @Override
     public <S extends Slot> S compute(Object key, int index, SlotComputer<S> c) {
-        return map.compute(key, index, c);
+        return map.compute(key, index, retiringIfWatched(c));
     }
 
     @Override
@@ -78,6 +117,67 @@ class SlotMapContainer implements SlotMap {
         return map.iterator();
     }
 
+    /**
+     * Return the shape of the underlying map, or null if the map does not use shapes or if this
+     * container does not allow unlocked access to its slots.
+     */
+    Shape getShape() {
+        if (map instanceof ShapedSlotMap) {
+            return ((ShapedSlotMap) map).getShape();
+        }
+        return null;
+    }
+
+    /**
+     * Return the slot stored at "position" in the current shape, or null if the map does not use
+     * shapes. Callers are expected to have already checked the shape.
+     */
+    Slot getShapedSlot(int position) {
+        if (map instanceof ShapedSlotMap) {
+            return ((ShapedSlotMap) map).getSlot(position);
+        }
+        return null;
+    }
+
+    /**
+     * Return the slot for the given key, or null if there is none, after registering "listener", if
+     * not null, to run once that slot is retired.
+     *
+     * @see Slot#addRetireListener(Runnable)
+     */
+    Slot watch(Object key, int index, Runnable listener) {
+        if (listener != null) {
+            watched = true;
+        }
+        return map.compute(
+                key,
+                index,
+                (k, i, existing) -> {
+                    if (existing != null && listener != null) {
+                        existing.addRetireListener(listener);
+                    }
+                    return existing;
+                });
+    }
+
+    /**
+     * If any of our slots has been watched, wrap a SlotComputer so that the slot it replaces or
+     * removes, if any, is retired. The slot maps themselves do not know about this, so that every
+     * implementation gets it for free.
+     */
+    protected <S extends Slot> SlotComputer<S> retiringIfWatched(SlotComputer<S> c) {
+        if (!watched) {
+            return c;
+        }
+        return (key, index, existing) -> {
+            S newSlot = c.compute(key, index, existing);
+            if (existing != null && newSlot != existing) {
+                existing.retire();
+            }
+            return newSlot;
+        };
+    }
+
     public long readLock() {
         // No locking in the default implementation
         return 0L;
@@ -89,15 +189,21 @@ class SlotMapContainer implements SlotMap {
 
     /**
      * Before inserting a new item in the map, check and see if we need to expand from the embedded
-     * map to a HashMap that is more robust against large numbers of hash collisions.
+     * map to a HashMap that is more robust against large numbers of hash collisions, or from a
+     * shaped map to an embedded one that does not grow the shared shape tree.
      */
     protected void checkMapSize() {
         if ((map instanceof EmbeddedSlotMap) && map.size() >= LARGE_HASH_SIZE) {
-            SlotMap newMap = new HashSlotMap();
-            for (Slot s : map) {
-                newMap.add(s);
-            }
-            map = newMap;
+            map = copyMap(new HashSlotMap());
+        } else if ((map instanceof ShapedSlotMap) && map.size() >= LARGE_SHAPE_SIZE) {
+            map = copyMap(new EmbeddedSlotMap());
+        }
+    }
+
+    private SlotMap copyMap(SlotMap newMap) {
+        for (Slot s : map) {
+            newMap.add(s);
         }
+        return newMap;
     }
 }
@@ -0,0 +1,179 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/*
+ * This class holds the elements of a sparse NativeArray that do not fit in its dense storage. They
+ * are kept in an open hash table keyed by the index, with linear probing, so that an element costs
+ * an int and a reference rather than a whole Slot. The indexes in ascending order are computed
+ * when they are needed, and kept until an element is added or removed, so that repeated
+ * iterations over the elements only have to sort them once.
+ */
+final class SparseElements implements Serializable {
+    private static final long serialVersionUID = -4310298373045637211L;
+
+    // Indexes are never negative, so this marks an unused entry
+    private static final int EMPTY = -1;
+
+    // initial table size, must be a power of 2
+    private static final int INITIAL_SIZE = 16;
+
+    private int[] keys;
+    private Object[] values;
+    private int shift;
+    private int count;
+
+    private transient int[] sortedKeys;
+
+    SparseElements() {
+        allocate(INITIAL_SIZE);
+    }
+
+    int size() {
+        return count;
+    }
+
+    /** Return the element at the index, or NOT_FOUND if there is none. */
+    Object get(int index) {
+        int i = find(index);
+        return i < 0 ? Scriptable.NOT_FOUND : values[i];
+    }
+
+    boolean has(int index) {
+        return find(index) >= 0;
+    }
+
+    void put(int index, Object value) {
+        int mask = keys.length - 1;
+        int i = slot(index);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == index) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = index;
+        values[i] = value;
+        count++;
+        sortedKeys = null;
+        if (count * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+    }
+
+    boolean remove(int index) {
+        int i = find(index);
+        if (i < 0) {
+            return false;
+        }
+        removeAt(i);
+        return true;
+    }
+
+    /** Remove all the elements at indexes from <code>from</code> and below <code>to</code>. */
+    void removeRange(long from, long to) {
+        int[] sorted = getSortedKeys();
+        int start = Arrays.binarySearch(sorted, (int) Math.min(from, Integer.MAX_VALUE));
+        if (start < 0) {
+            start = -start - 1;
+        }
+        for (int i = start; i < sorted.length && sorted[i] < to; i++) {
+            removeAt(find(sorted[i]));
+        }
+    }
+
+    /** The indexes of all the elements, in ascending order. The caller must not modify it. */
+    int[] getSortedKeys() {
+        if (sortedKeys == null) {
+            int[] sorted = new int[count];
+            int n = 0;
+            for (int key : keys) {
+                if (key != EMPTY) {
+                    sorted[n++] = key;
+                }
+            }
+            Arrays.sort(sorted);
+            sortedKeys = sorted;
+        }
+        return sortedKeys;
+    }
+
+    private int slot(int index) {
+        // Fibonacci hashing spreads indexes that are multiples of the table size
+        return (index * 0x9E3779B9) >>> shift;
+    }
+
+    private int find(int index) {
+        int mask = keys.length - 1;
+        int i = slot(index);
+        int key;
+        while ((key = keys[i]) != EMPTY) {
+            if (key == index) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void removeAt(int i) {
+        // Shift back the entries that follow in the same run, so that no marker of removed
+        // entries is needed
+        int mask = keys.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            int key = keys[j];
+            if (key == EMPTY) {
+                break;
+            }
+            int home = slot(key);
+            boolean canMove = j > i ? (home <= i || home > j) : (home <= i && home > j);
+            if (canMove) {
+                keys[i] = key;
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = EMPTY;
+        values[i] = null;
+        count--;
+        sortedKeys = null;
+    }
+
+    private void allocate(int size) {
+        keys = new int[size];
+        Arrays.fill(keys, EMPTY);
+        values = new Object[size];
+        shift = Integer.numberOfLeadingZeros(size - 1);
+        count = 0;
+    }
+
+    private void resize(int size) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        int oldCount = count;
+        allocate(size);
+        int mask = size - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            int key = oldKeys[j];
+            if (key != EMPTY) {
+                int i = slot(key);
+                while (keys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+        count = oldCount;
+    }
+}
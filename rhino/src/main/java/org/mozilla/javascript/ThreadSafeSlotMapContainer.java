@@ -24,6 +24,10 @@ class ThreadSafeSlotMapContainer extends SlotMapContainer {
         super(initialSize);
     }
 
+    ThreadSafeSlotMapContainer(int initialSize, boolean shaped) {
+        super(initialSize, shaped);
+    }
+
     @Override
     public int size() {
         long stamp = lock.tryOptimisticRead();
@@ -77,7 +81,17 @@ class ThreadSafeSlotMapContainer extends SlotMapContainer {
     public <S extends Slot> S compute(Object key, int index, SlotComputer<S> c) {
         final long stamp = lock.writeLock();
         try {
-            return map.compute(key, index, c);
+            return map.compute(key, index, retiringIfWatched(c));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    Slot watch(Object key, int index, Runnable listener) {
+        final long stamp = lock.writeLock();
+        try {
+            return super.watch(key, index, listener);
         } finally {
             lock.unlockWrite(stamp);
         }
@@ -110,6 +124,20 @@ class ThreadSafeSlotMapContainer extends SlotMapContainer {
         }
     }
 
+    /**
+     * Objects that may be shared between threads never expose their shape, so that nothing may
+     * bypass the lock by caching the position of a slot.
+     */
+    @Override
+    Shape getShape() {
+        return null;
+    }
+
+    @Override
+    Slot getShapedSlot(int position) {
+        return null;
+    }
+
     /**
      * Take out a read lock on the slot map, if locking is implemented. The caller MUST call this
      * method before using the iterator, and MUST NOT call this method otherwise.
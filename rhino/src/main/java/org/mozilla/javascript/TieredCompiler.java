@@ -0,0 +1,253 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.FunctionNode;
+import org.mozilla.javascript.ast.ScriptNode;
+
+/**
+ * Compiles interpreted functions that run often to JVM classes, when {@link
+ * Context#FEATURE_TIERED_COMPILATION} is set, and scripts that were compiled with the interpreter
+ * because there is a {@link ContextFactory#setCompileExecutor compile executor}.
+ *
+ * <p>The interpreter counts the calls of every function and the backward jumps in its loops. Once
+ * the count reaches {@link #THRESHOLD}, the source of the function is compiled again with the
+ * optimizer, as if it were the only function in a script. From then on every call of the {@link
+ * InterpretedFunction}, including the closures that were created before, goes to an instance of
+ * the generated class that has the same parent scope. The InterpretedFunction stays the object
+ * that scripts see.
+ *
+ * <p>Only functions that do not need an activation object are compiled, so that the compiled
+ * function object cannot be observed by scripts: such functions do not use "arguments", eval or
+ * "with", do not contain nested functions, and are not generators. Named function expressions,
+ * arrow functions and methods are not compiled either.
+ *
+ * <p>With a compile executor, the compilation runs there, and the interpreter goes on running the
+ * function or script until it is done.
+ */
+final class TieredCompiler {
+
+    /** The number of calls and backward jumps after which a function is compiled. */
+    static final int THRESHOLD = 2000;
+
+    private TieredCompiler() {}
+
+    /**
+     * Return the compiled version of the function, or null if it is still interpreted. This is
+     * called for every call, so it has to be cheap while there is nothing compiled.
+     */
+    static NativeFunction getCompiled(Context cx, InterpretedFunction f) {
+        Constructor<?> ctor = f.idata.compiledConstructor;
+        if (ctor == null) {
+            return null;
+        }
+        NativeFunction compiled = f.compiled;
+        Scriptable parent = f.getParentScope();
+        if (compiled == null || compiled.getParentScope() != parent) {
+            try {
+                compiled = (NativeFunction) ctor.newInstance(parent, cx, Integer.valueOf(1));
+            } catch (ReflectiveOperationException ex) {
+                throw new RuntimeException("Unable to instantiate compiled class:" + ex.toString());
+            }
+            f.compiled = compiled;
+        }
+        return compiled;
+    }
+
+    static boolean isCompiled(InterpretedFunction f) {
+        return f.idata.compiledConstructor != null;
+    }
+
+    /**
+     * Return true if functions that the interpreter runs often are compiled. That is the case with
+     * {@link Context#FEATURE_TIERED_COMPILATION}, and for scripts that the interpreter runs while
+     * the {@link ContextFactory#setCompileExecutor compile executor} compiles them.
+     */
+    static boolean isEnabled(Context cx) {
+        return cx.hasFeature(Context.FEATURE_TIERED_COMPILATION)
+                || (cx.getOptimizationLevel() >= 0 && cx.getFactory().getCompileExecutor() != null);
+    }
+
+    /** Called by the interpreter when the count of a function reaches THRESHOLD. */
+    static void functionIsHot(Context cx, InterpretedFunction f) {
+        if (!isEnabled(cx) || !canCompile(cx, f)) {
+            return;
+        }
+        InterpreterData idata = f.idata;
+        String source = idata.rawSource.substring(idata.rawSourceStart, idata.rawSourceEnd);
+        if (!source.startsWith("function")) {
+            // Getters, setters and methods
+            return;
+        }
+        if (idata.itsFunctionType == FunctionNode.FUNCTION_EXPRESSION) {
+            source = '(' + source + ')';
+        }
+        CompilerEnvirons compilerEnv = newCompilerEnvirons(cx);
+        compilerEnv.setLanguageVersion(idata.languageVersion);
+        compilerEnv.setOptimizationLevel(9);
+
+        String functionSource = source;
+        Runnable task =
+                () -> {
+                    Script script =
+                            compile(
+                                    compilerEnv,
+                                    functionSource,
+                                    idata.itsSourceFile,
+                                    idata.baseLineno,
+                                    idata.isStrict,
+                                    null);
+                    if (script == null) {
+                        return;
+                    }
+                    try {
+                        // The function is the first one after the script itself
+                        idata.compiledConstructor =
+                                script.getClass()
+                                        .getConstructor(Scriptable.class, Context.class, int.class);
+                    } catch (NoSuchMethodException e) {
+                        // Keep interpreting it
+                    }
+                };
+        Executor executor = cx.getFactory().getCompileExecutor();
+        if (executor == null) {
+            task.run();
+        } else if (!submit(cx.getFactory(), executor, task)) {
+            // Try again after another THRESHOLD calls
+            idata.hotness = 0;
+        }
+    }
+
+    /** Return the compiled version of the script, or null if it is still interpreted. */
+    static Script getCompiledScript(InterpretedFunction script) {
+        return script.idata.compiledScript;
+    }
+
+    /**
+     * Compile the source of a script that was compiled with the interpreter on the executor. Once
+     * that is done, the script runs the compiled version, which is also stored in the persistent
+     * code cache if there is one.
+     */
+    static void compileInBackground(
+            Context cx,
+            Executor executor,
+            InterpretedFunction script,
+            String source,
+            String sourceName,
+            int lineno,
+            PersistentCodeCache codeCache,
+            String cacheKey) {
+        CompilerEnvirons compilerEnv = newCompilerEnvirons(cx);
+        boolean strict = cx.isStrictMode();
+        InterpreterData idata = script.idata;
+        submit(
+                cx.getFactory(),
+                executor,
+                () -> {
+                    Object[] bytecode = new Object[1];
+                    Script compiled =
+                            compile(compilerEnv, source, sourceName, lineno, strict, bytecode);
+                    if (compiled == null) {
+                        return;
+                    }
+                    idata.compiledScript = compiled;
+                    if (codeCache != null) {
+                        codeCache.store(cacheKey, bytecode[0], false);
+                    }
+                });
+    }
+
+    private static boolean submit(ContextFactory factory, Executor executor, Runnable task) {
+        try {
+            executor.execute(
+                    () ->
+                            factory.call(
+                                    cx -> {
+                                        task.run();
+                                        return null;
+                                    }));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private static boolean canCompile(Context cx, InterpretedFunction f) {
+        InterpreterData idata = f.idata;
+        switch (idata.itsFunctionType) {
+            case FunctionNode.FUNCTION_STATEMENT:
+            case FunctionNode.FUNCTION_EXPRESSION_STATEMENT:
+                break;
+            case FunctionNode.FUNCTION_EXPRESSION:
+                // The name of a function expression is bound to the function object itself
+                if (idata.itsName != null && idata.itsName.length() != 0) {
+                    return false;
+                }
+                break;
+            default:
+                return false;
+        }
+        return !idata.itsNeedsActivation
+                && idata.rawSource != null
+                && f.securityController == null
+                && cx.getDebugger() == null;
+    }
+
+    /** Create the environment on the calling thread, as the executor has a fresh Context. */
+    private static CompilerEnvirons newCompilerEnvirons(Context cx) {
+        CompilerEnvirons compilerEnv = new CompilerEnvirons();
+        compilerEnv.initFromContext(cx);
+        compilerEnv.setStrictMode(false);
+        compilerEnv.setErrorReporter(DefaultErrorReporter.instance);
+        return compilerEnv;
+    }
+
+    /**
+     * Compile the source with the optimizer, and return the script. For a function, the script has
+     * to contain just that function. Return null if that is not possible.
+     */
+    private static Script compile(
+            CompilerEnvirons compilerEnv,
+            String source,
+            String sourceName,
+            int lineno,
+            boolean strict,
+            Object[] bytecodep) {
+        Evaluator codegen = Context.createCodegen();
+        if (codegen == null) {
+            return null;
+        }
+        ErrorReporter reporter = compilerEnv.getErrorReporter();
+        try {
+            Parser p = new Parser(compilerEnv, reporter);
+            if (strict) {
+                p.setDefaultUseStrictDirective(true);
+            }
+            AstRoot ast = p.parse(source, sourceName, lineno);
+            ScriptNode tree = new IRFactory(compilerEnv, source, reporter).transformTree(ast);
+            if (bytecodep == null && tree.getFunctionCount() != 1) {
+                return null;
+            }
+            if (compilerEnv.isGeneratingSource()) {
+                tree.setRawSource(source);
+                tree.setRawSourceBounds(0, source.length());
+            }
+            Object bytecode = codegen.compile(compilerEnv, tree, source, false);
+            if (bytecodep != null) {
+                bytecodep[0] = bytecode;
+            }
+            return codegen.createScriptObject(bytecode, null);
+        } catch (RuntimeException e) {
+            // Keep interpreting it
+            return null;
+        }
+    }
+}
@@ -6,7 +6,13 @@
 
 package org.mozilla.javascript.json;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ScriptRuntime;
@@ -16,6 +22,9 @@ import org.mozilla.javascript.Scriptable;
 /**
  * This class converts a stream of JSON tokens into a JSON value.
  *
+ * <p>The source is read in chunks, so that it can be parsed from a {@link Reader} or an {@link
+ * InputStream} without reading all of it into a String first.
+ *
  * <p>See ECMA 15.12.
  *
  * @author Raphael Speyer
@@ -23,12 +32,42 @@ import org.mozilla.javascript.Scriptable;
  */
 public class JsonParser {
 
+    // Size of the chunks read from a Reader
+    private static final int BUFFER_SIZE = 8192;
+
+    // Number of keys the key cache holds, must be a power of 2
+    private static final int KEY_CACHE_SIZE = 64;
+
+    // Longer keys are not kept in the key cache
+    private static final int MAX_CACHED_KEY_LENGTH = 64;
+
     private Context cx;
     private Scriptable scope;
 
+    private String input;
+    private int inputPos;
+    private Reader reader;
+    private boolean eof;
+
+    private char[] buf;
+    // position in the source of buf[0]
+    private int offset;
     private int pos;
     private int length;
-    private String src;
+    // start of the token being read, which is kept when the buffer is refilled, or -1
+    private int mark;
+
+    // Object keys read recently, so that repeated keys are neither copied out of the source nor
+    // converted to property ids again. Keys that are indexes are not kept, so each of these
+    // strings is its own property id.
+    private String[] cachedKeys;
+
+    // The objects and arrays found by parseValueLazily, while it is checking the text or while a
+    // Container is read
+    private Index index;
+    private boolean indexing;
+    // the next object or array to be found while reading a Container
+    private int nextContainer;
 
     public JsonParser(Context cx, Scriptable scope) {
         this.cx = cx;
@@ -39,32 +78,159 @@ public class JsonParser {
         if (json == null) {
             throw new ParseException("Input string may not be null");
         }
+        input = json;
+        reader = null;
+        buf = new char[Math.min(json.length(), BUFFER_SIZE)];
+        return readSource();
+    }
+
+    /**
+     * Check a JSON text, but only read its value if that is not an object or an array. An object
+     * or array is returned as a {@link Container}, which reads its contents from the text when
+     * asked to, so that parts of a document that are never used are never read.
+     */
+    public synchronized Object parseValueLazily(String json) throws ParseException {
+        if (json == null) {
+            throw new ParseException("Input string may not be null");
+        }
+        Index checked = new Index(json);
+        index = checked;
+        indexing = true;
+        try {
+            input = json;
+            reader = null;
+            buf = new char[Math.min(json.length(), BUFFER_SIZE)];
+            readSource();
+        } finally {
+            index = null;
+            indexing = false;
+        }
+        if (checked.count == 0) {
+            return parseValue(json);
+        }
+        return new Container(checked, 0);
+    }
+
+    /** Parse a JSON value from a Reader, which is read to its end but not closed. */
+    public synchronized Object parse(Reader json) throws ParseException {
+        if (json == null) {
+            throw new ParseException("Input reader may not be null");
+        }
+        input = null;
+        reader = json;
+        buf = new char[BUFFER_SIZE];
+        return readSource();
+    }
+
+    /**
+     * Parse a JSON value from a stream of UTF-8 text, which is decoded straight into the
+     * buffer of the parser. The stream is read to its end but not closed.
+     */
+    public Object parse(InputStream json) throws ParseException {
+        if (json == null) {
+            throw new ParseException("Input stream may not be null");
+        }
+        return parse(new InputStreamReader(json, StandardCharsets.UTF_8));
+    }
+
+    private Object readSource() throws ParseException {
+        inputPos = 0;
+        eof = false;
+        offset = 0;
         pos = 0;
-        length = json.length();
-        src = json;
-        Object value = readValue();
-        consumeWhitespace();
-        if (pos < length) {
-            throw new ParseException("Expected end of stream at char " + pos);
+        length = 0;
+        mark = -1;
+        try {
+            Object value = readValue();
+            consumeWhitespace();
+            if (pos < length || fill()) {
+                throw new ParseException("Expected end of stream at char " + (offset + pos));
+            }
+            return value;
+        } finally {
+            input = null;
+            reader = null;
+            buf = null;
         }
-        return value;
+    }
+
+    /*
+     * Read more of the source into the buffer, keeping the characters from the mark, or else
+     * from the current position. Returns false at the end of the source.
+     */
+    private boolean fill() throws ParseException {
+        if (eof) {
+            return false;
+        }
+        int keep = mark >= 0 ? mark : pos;
+        if (keep > 0) {
+            System.arraycopy(buf, keep, buf, 0, length - keep);
+            offset += keep;
+            pos -= keep;
+            length -= keep;
+            if (mark >= 0) {
+                mark = 0;
+            }
+        }
+        if (length == buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, 16));
+        }
+        int n;
+        if (reader != null) {
+            try {
+                n = reader.read(buf, length, buf.length - length);
+            } catch (IOException e) {
+                throw new ParseException(e);
+            }
+        } else {
+            n = Math.min(buf.length - length, input.length() - inputPos);
+            input.getChars(inputPos, inputPos + n, buf, length);
+            inputPos += n;
+        }
+        if (n <= 0) {
+            eof = true;
+            return false;
+        }
+        length += n;
+        return true;
+    }
+
+    /* Continue reading at a position in the source, past the end of the buffer or not. */
+    private void skipTo(int position) {
+        if (position - offset <= length) {
+            pos = position - offset;
+        } else {
+            inputPos = position;
+            offset = position;
+            pos = 0;
+            length = 0;
+        }
+    }
+
+    private boolean ensure(int count) throws ParseException {
+        while (length - pos < count) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private Object readValue() throws ParseException {
         consumeWhitespace();
-        while (pos < length) {
-            char c = src.charAt(pos++);
+        while (pos < length || fill()) {
+            char c = buf[pos++];
             switch (c) {
                 case '{':
-                    return readObject();
+                    return index != null && !indexing ? skipContainer() : readObject();
                 case '[':
-                    return readArray();
+                    return index != null && !indexing ? skipContainer() : readArray();
                 case 't':
                     return readTrue();
                 case 'f':
                     return readFalse();
                 case '"':
-                    return readString();
+                    return readString(false);
                 case 'n':
                     return readNull();
                 case '1':
@@ -87,24 +253,40 @@ public class JsonParser {
     }
 
     private Object readObject() throws ParseException {
-        consumeWhitespace();
+        if (indexing) {
+            int container = beginContainer();
+            readMembers(null, null);
+            endContainer(container);
+            return null;
+        }
         Scriptable object = cx.newObject(scope);
+        readMembers(object, null);
+        return object;
+    }
+
+    /*
+     * Read the members of an object up to its closing brace, and put them in the object or, if
+     * that is null, add their ids and values in turn to the list. While checking a text for
+     * parseValueLazily, both are null.
+     */
+    private void readMembers(Scriptable object, List<Object> members) throws ParseException {
+        consumeWhitespace();
         // handle empty object literal case early
-        if (pos < length && src.charAt(pos) == '}') {
+        if ((pos < length || fill()) && buf[pos] == '}') {
             pos += 1;
-            return object;
+            return;
         }
-        String id;
+        Object id;
         Object value;
         boolean needsComma = false;
-        while (pos < length) {
-            char c = src.charAt(pos++);
+        while (pos < length || fill()) {
+            char c = buf[pos++];
             switch (c) {
                 case '}':
                     if (!needsComma) {
                         throw new ParseException("Unexpected comma in object literal");
                     }
-                    return object;
+                    return;
                 case ',':
                     if (!needsComma) {
                         throw new ParseException("Unexpected comma in object literal");
@@ -115,15 +297,19 @@ public class JsonParser {
                     if (needsComma) {
                         throw new ParseException("Missing comma in object literal");
                     }
-                    id = readString();
+                    id = readString(true);
                     consume(':');
                     value = readValue();
 
-                    StringIdOrIndex indexObj = ScriptRuntime.toStringIdOrIndex(id);
-                    if (indexObj.getStringId() == null) {
-                        object.put(indexObj.getIndex(), object, value);
-                    } else {
-                        object.put(indexObj.getStringId(), object, value);
+                    if (object != null) {
+                        if (id instanceof String) {
+                            object.put((String) id, object, value);
+                        } else {
+                            object.put(((Integer) id).intValue(), object, value);
+                        }
+                    } else if (members != null) {
+                        members.add(id);
+                        members.add(value);
                     }
                     needsComma = true;
                     break;
@@ -136,23 +322,41 @@ public class JsonParser {
     }
 
     private Object readArray() throws ParseException {
+        if (indexing) {
+            int container = beginContainer();
+            readElements(null);
+            endContainer(container);
+            return null;
+        }
+        List<Object> list = new ArrayList<>();
+        readElements(list);
+        if (list.isEmpty()) {
+            return cx.newArray(scope, 0);
+        }
+        return cx.newArray(scope, list.toArray());
+    }
+
+    /*
+     * Read the elements of an array up to its closing bracket into the list, which is null while
+     * checking a text for parseValueLazily.
+     */
+    private void readElements(List<Object> list) throws ParseException {
         consumeWhitespace();
         // handle empty array literal case early
-        if (pos < length && src.charAt(pos) == ']') {
+        if ((pos < length || fill()) && buf[pos] == ']') {
             pos += 1;
-            return cx.newArray(scope, 0);
+            return;
         }
-        List<Object> list = new ArrayList<>();
         boolean needsComma = false;
-        while (pos < length) {
-            char c = src.charAt(pos);
+        while (pos < length || fill()) {
+            char c = buf[pos];
             switch (c) {
                 case ']':
                     if (!needsComma) {
                         throw new ParseException("Unexpected comma in array literal");
                     }
                     pos += 1;
-                    return cx.newArray(scope, list.toArray());
+                    return;
                 case ',':
                     if (!needsComma) {
                         throw new ParseException("Unexpected comma in array literal");
@@ -164,7 +368,10 @@ public class JsonParser {
                     if (needsComma) {
                         throw new ParseException("Missing comma in array literal");
                     }
-                    list.add(readValue());
+                    Object value = readValue();
+                    if (list != null) {
+                        list.add(value);
+                    }
                     needsComma = true;
             }
             consumeWhitespace();
@@ -172,20 +379,83 @@ public class JsonParser {
         throw new ParseException("Unterminated array literal");
     }
 
-    private String readString() throws ParseException {
+    private int beginContainer() {
+        int container = index.count++;
+        int[] containers = index.containers;
+        if (3 * container + 3 > containers.length) {
+            containers = index.containers = Arrays.copyOf(containers, containers.length * 2);
+        }
+        containers[3 * container] = offset + pos - 1;
+        return container;
+    }
+
+    private void endContainer(int container) {
+        index.containers[3 * container + 1] = offset + pos;
+        index.containers[3 * container + 2] = index.count;
+    }
+
+    private Container skipContainer() {
+        int container = nextContainer;
+        int[] containers = index.containers;
+        assert containers[3 * container] == offset + pos - 1;
+        nextContainer = containers[3 * container + 2];
+        skipTo(containers[3 * container + 1]);
+        return new Container(index, container);
+    }
+
+    private void readContainer(Index index, int container, List<Object> values) {
+        this.index = index;
+        cachedKeys = index.keys;
+        nextContainer = container + 1;
+        int start = index.containers[3 * container] + 1;
+        int end = index.containers[3 * container + 1];
+        input = index.json;
+        reader = null;
+        buf = new char[Math.min(end - start, BUFFER_SIZE)];
+        inputPos = start;
+        eof = false;
+        offset = start;
+        pos = 0;
+        length = 0;
+        mark = -1;
+        try {
+            if (input.charAt(start - 1) == '[') {
+                readElements(values);
+            } else {
+                readMembers(null, values);
+            }
+        } catch (ParseException e) {
+            // Cannot happen, as the text was checked by parseValueLazily
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+     * Read a string after its opening quote. An object key is returned as its property id,
+     * which is either a String or an Integer index.
+     */
+    private Object readString(boolean isKey) throws ParseException {
         /*
          * Optimization: if the source contains no escaped characters, create the
          * string directly from the source text.
          */
-        int stringStart = pos;
-        while (pos < length) {
-            char c = src.charAt(pos++);
+        mark = pos;
+        while (pos < length || fill()) {
+            char c = buf[pos++];
             if (c <= '\u001F') {
                 throw new ParseException("String contains control character");
             } else if (c == '\\') {
                 break;
             } else if (c == '"') {
-                return src.substring(stringStart, pos - 1);
+                int start = mark;
+                mark = -1;
+                if (indexing) {
+                    return null;
+                }
+                if (isKey) {
+                    return keyId(start, pos - 1);
+                }
+                return new String(buf, start, pos - 1 - start);
             }
         }
 
@@ -195,13 +465,11 @@ public class JsonParser {
          * character, and repeat until the entire string is consumed.
          */
         StringBuilder b = new StringBuilder();
-        while (pos < length) {
-            assert src.charAt(pos - 1) == '\\';
-            b.append(src, stringStart, pos - 1);
-            if (pos >= length) {
-                throw new ParseException("Unterminated string");
-            }
-            char c = src.charAt(pos++);
+        while (pos < length || fill()) {
+            assert buf[pos - 1] == '\\';
+            b.append(buf, mark, pos - 1 - mark);
+            mark = -1;
+            char c = buf[pos++];
             switch (c) {
                 case '"':
                     b.append('"');
@@ -228,18 +496,19 @@ public class JsonParser {
                     b.append('\t');
                     break;
                 case 'u':
-                    if (length - pos < 5) {
+                    if (!ensure(5)) {
                         throw new ParseException(
-                                "Invalid character code: \\u" + src.substring(pos));
+                                "Invalid character code: \\u"
+                                        + new String(buf, pos, length - pos));
                     }
                     int code =
-                            fromHex(src.charAt(pos + 0)) << 12
-                                    | fromHex(src.charAt(pos + 1)) << 8
-                                    | fromHex(src.charAt(pos + 2)) << 4
-                                    | fromHex(src.charAt(pos + 3));
+                            fromHex(buf[pos + 0]) << 12
+                                    | fromHex(buf[pos + 1]) << 8
+                                    | fromHex(buf[pos + 2]) << 4
+                                    | fromHex(buf[pos + 3]);
                     if (code < 0) {
                         throw new ParseException(
-                                "Invalid character code: " + src.substring(pos, pos + 4));
+                                "Invalid character code: " + new String(buf, pos, 4));
                     }
                     pos += 4;
                     b.append((char) code);
@@ -247,22 +516,65 @@ public class JsonParser {
                 default:
                     throw new ParseException("Unexpected character in string: '\\" + c + "'");
             }
-            stringStart = pos;
-            while (pos < length) {
-                c = src.charAt(pos++);
+            mark = pos;
+            while (pos < length || fill()) {
+                c = buf[pos++];
                 if (c <= '\u001F') {
                     throw new ParseException("String contains control character");
                 } else if (c == '\\') {
                     break;
                 } else if (c == '"') {
-                    b.append(src, stringStart, pos - 1);
-                    return b.toString();
+                    b.append(buf, mark, pos - 1 - mark);
+                    mark = -1;
+                    if (indexing) {
+                        return null;
+                    }
+                    return isKey ? toId(b.toString()) : b.toString();
                 }
             }
         }
         throw new ParseException("Unterminated string literal");
     }
 
+    private Object keyId(int start, int end) {
+        int keyLength = end - start;
+        if (keyLength > MAX_CACHED_KEY_LENGTH) {
+            return toId(new String(buf, start, keyLength));
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (KEY_CACHE_SIZE - 1);
+        if (cachedKeys == null) {
+            cachedKeys = new String[KEY_CACHE_SIZE];
+        } else {
+            String cached = cachedKeys[slot];
+            if (cached != null && cached.length() == keyLength) {
+                int i = 0;
+                while (i < keyLength && cached.charAt(i) == buf[start + i]) {
+                    i++;
+                }
+                if (i == keyLength) {
+                    return cached;
+                }
+            }
+        }
+        Object id = toId(new String(buf, start, keyLength));
+        if (id instanceof String) {
+            cachedKeys[slot] = (String) id;
+        }
+        return id;
+    }
+
+    private static Object toId(String key) {
+        StringIdOrIndex indexObj = ScriptRuntime.toStringIdOrIndex(key);
+        if (indexObj.getStringId() == null) {
+            return Integer.valueOf(indexObj.getIndex());
+        }
+        return indexObj.getStringId();
+    }
+
     private static int fromHex(char c) {
         return c >= '0' && c <= '9'
                 ? c - '0'
@@ -271,44 +583,49 @@ public class JsonParser {
 
     private Number readNumber(char c) throws ParseException {
         assert c == '-' || (c >= '0' && c <= '9');
-        final int numberStart = pos - 1;
+        mark = pos - 1;
         if (c == '-') {
-            c = nextOrNumberError(numberStart);
+            c = nextOrNumberError();
             if (!(c >= '0' && c <= '9')) {
-                throw numberError(numberStart, pos);
+                throw numberError();
             }
         }
         if (c != '0') {
             readDigits();
         }
         // read optional fraction part
-        if (pos < length) {
-            c = src.charAt(pos);
+        if (pos < length || fill()) {
+            c = buf[pos];
             if (c == '.') {
                 pos += 1;
-                c = nextOrNumberError(numberStart);
+                c = nextOrNumberError();
                 if (!(c >= '0' && c <= '9')) {
-                    throw numberError(numberStart, pos);
+                    throw numberError();
                 }
                 readDigits();
             }
         }
         // read optional exponent part
-        if (pos < length) {
-            c = src.charAt(pos);
+        if (pos < length || fill()) {
+            c = buf[pos];
             if (c == 'e' || c == 'E') {
                 pos += 1;
-                c = nextOrNumberError(numberStart);
+                c = nextOrNumberError();
                 if (c == '-' || c == '+') {
-                    c = nextOrNumberError(numberStart);
+                    c = nextOrNumberError();
                 }
                 if (!(c >= '0' && c <= '9')) {
-                    throw numberError(numberStart, pos);
+                    throw numberError();
                 }
                 readDigits();
             }
         }
-        String num = src.substring(numberStart, pos);
+        if (indexing) {
+            mark = -1;
+            return null;
+        }
+        String num = new String(buf, mark, pos - mark);
+        mark = -1;
         final double dval = Double.parseDouble(num);
         final int ival = (int) dval;
         if (ival == dval) {
@@ -317,20 +634,21 @@ public class JsonParser {
         return Double.valueOf(dval);
     }
 
-    private ParseException numberError(int start, int end) {
-        return new ParseException("Unsupported number format: " + src.substring(start, end));
+    private ParseException numberError() {
+        return new ParseException(
+                "Unsupported number format: " + new String(buf, mark, pos - mark));
     }
 
-    private char nextOrNumberError(int numberStart) throws ParseException {
-        if (pos >= length) {
-            throw numberError(numberStart, length);
+    private char nextOrNumberError() throws ParseException {
+        if (!(pos < length || fill())) {
+            throw numberError();
         }
-        return src.charAt(pos++);
+        return buf[pos++];
     }
 
-    private void readDigits() {
-        for (; pos < length; ++pos) {
-            char c = src.charAt(pos);
+    private void readDigits() throws ParseException {
+        for (; pos < length || fill(); ++pos) {
+            char c = buf[pos];
             if (!(c >= '0' && c <= '9')) {
                 break;
             }
@@ -338,10 +656,7 @@ public class JsonParser {
     }
 
     private Boolean readTrue() throws ParseException {
-        if (length - pos < 3
-                || src.charAt(pos) != 'r'
-                || src.charAt(pos + 1) != 'u'
-                || src.charAt(pos + 2) != 'e') {
+        if (!ensure(3) || buf[pos] != 'r' || buf[pos + 1] != 'u' || buf[pos + 2] != 'e') {
             throw new ParseException("Unexpected token: t");
         }
         pos += 3;
@@ -349,11 +664,11 @@ public class JsonParser {
     }
 
     private Boolean readFalse() throws ParseException {
-        if (length - pos < 4
-                || src.charAt(pos) != 'a'
-                || src.charAt(pos + 1) != 'l'
-                || src.charAt(pos + 2) != 's'
-                || src.charAt(pos + 3) != 'e') {
+        if (!ensure(4)
+                || buf[pos] != 'a'
+                || buf[pos + 1] != 'l'
+                || buf[pos + 2] != 's'
+                || buf[pos + 3] != 'e') {
             throw new ParseException("Unexpected token: f");
         }
         pos += 4;
@@ -361,19 +676,16 @@ public class JsonParser {
     }
 
     private Object readNull() throws ParseException {
-        if (length - pos < 3
-                || src.charAt(pos) != 'u'
-                || src.charAt(pos + 1) != 'l'
-                || src.charAt(pos + 2) != 'l') {
+        if (!ensure(3) || buf[pos] != 'u' || buf[pos + 1] != 'l' || buf[pos + 2] != 'l') {
             throw new ParseException("Unexpected token: n");
         }
         pos += 3;
         return null;
     }
 
-    private void consumeWhitespace() {
-        while (pos < length) {
-            char c = src.charAt(pos);
+    private void consumeWhitespace() throws ParseException {
+        while (pos < length || fill()) {
+            char c = buf[pos];
             switch (c) {
                 case ' ':
                 case '\t':
@@ -389,16 +701,72 @@ public class JsonParser {
 
     private void consume(char token) throws ParseException {
         consumeWhitespace();
-        if (pos >= length) {
+        if (!(pos < length || fill())) {
             throw new ParseException("Expected " + token + " but reached end of stream");
         }
-        char c = src.charAt(pos++);
+        char c = buf[pos++];
         if (c == token) {
             return;
         }
         throw new ParseException("Expected " + token + " found " + c);
     }
 
+    /**
+     * An object or array in a JSON text that {@link #parseValueLazily(String)} has checked but not
+     * read. Its contents are read from the text each time they are asked for, with the objects and
+     * arrays nested in it returned as Containers in turn. Containers can be read from any thread.
+     */
+    public static final class Container {
+        private final Index index;
+        private final int container;
+
+        private Container(Index index, int container) {
+            this.index = index;
+            this.container = container;
+        }
+
+        public boolean isArray() {
+            return index.json.charAt(index.containers[3 * container]) == '[';
+        }
+
+        /**
+         * Read the members of an object, as property ids, each a String or an Integer index, in
+         * turn with their values.
+         */
+        public Object[] readMembers() {
+            if (isArray()) {
+                throw new IllegalStateException("Not an object");
+            }
+            List<Object> members = new ArrayList<>();
+            new JsonParser(null, null).readContainer(index, container, members);
+            return members.toArray();
+        }
+
+        /** Read the elements of an array. */
+        public Object[] readElements() {
+            if (!isArray()) {
+                throw new IllegalStateException("Not an array");
+            }
+            List<Object> elements = new ArrayList<>();
+            new JsonParser(null, null).readContainer(index, container, elements);
+            return elements.toArray();
+        }
+    }
+
+    /* The objects and arrays of a text checked by parseValueLazily, in the order they start. */
+    private static final class Index {
+        final String json;
+        // where each one starts, where it ends, and the number of the first one after it
+        int[] containers = new int[3 * 16];
+        int count;
+        // the key cache of the parsers that read the containers
+        final String[] keys = new String[KEY_CACHE_SIZE];
+
+        Index(String json) {
+            this.json = json;
+        }
+    }
+
     public static class ParseException extends Exception {
 
         private static final long serialVersionUID = 4804542791749920772L;
@@ -174,6 +174,7 @@ class BodyCodegen {
 
     private void initBodyGeneration() {
         varRegisters = null;
+        int32Registers = null;
         if (scriptOrFn.getType() == Token.FUNCTION) {
             fnCurrent = OptFunctionNode.get(scriptOrFn);
             hasVarsInRegs = !fnCurrent.fnode.requiresActivation();
@@ -181,6 +182,7 @@ class BodyCodegen {
                 int n = fnCurrent.fnode.getParamAndVarCount();
                 if (n != 0) {
                     varRegisters = new int[n];
+                    int32Registers = new int[n];
                 }
             }
             inDirectCallFunction = fnCurrent.isTargetOfDirectCall();
@@ -374,9 +376,26 @@ class BodyCodegen {
                         cfw.addAStore(reg);
                     }
                 } else if (fnCurrent.isNumberVar(i)) {
+                    // A Number var that is read before it is set is undefined, which is NaN
                     reg = getNewWordPairLocal(constDeclarations[i]);
-                    cfw.addPush(0.0);
+                    cfw.addPush(Double.NaN);
                     cfw.addDStore(reg);
+                    if (fnCurrent.isInt32Var(i)) {
+                        // 1 for the int and 1 for the flag that says the int is the value
+                        int int32Reg = getNewWordPairLocal(false);
+                        cfw.addPush(0);
+                        cfw.addIStore(int32Reg);
+                        cfw.addPush(0);
+                        cfw.addIStore(int32Reg + 1);
+                        int32Registers[i] = int32Reg;
+                    }
+                } else if (fnCurrent.isUnboxedVar(i)) {
+                    // 1 for the Object and 2 for the double, like a directCall parameter
+                    reg = getNewWordIntern(3);
+                    Codegen.pushUndefined(cfw);
+                    cfw.addAStore(reg);
+                    cfw.addPush(0.0);
+                    cfw.addDStore(reg + 1);
                 } else {
                     reg = getNewWordLocal(constDeclarations[i]);
                     if (firstUndefVar == -1) {
@@ -404,6 +423,9 @@ class BodyCodegen {
                         reg = varRegisters[i];
                     }
                     cfw.addVariableDescriptor(name, type, startPC, reg);
+                    if (fnCurrent.isInt32Var(i)) {
+                        cfw.addVariableDescriptor(name, "I", startPC, int32Registers[i]);
+                    }
                 }
             }
 
@@ -846,6 +868,11 @@ class BodyCodegen {
                     /* special case this so as to avoid unnecessary
                     load's & pop's */
                     visitSetConstVar(child, child.getFirstChild(), false);
+                } else if ((child.getType() == Token.INC || child.getType() == Token.DEC)
+                        && isInt32VarNode(child.getFirstChild())) {
+                    visitInt32VarIncDec(child, false);
+                } else if (child.getType() == Token.SETELEM && isNumberElementStore(child)) {
+                    visitSetNumberElem(child, child.getFirstChild());
                 } else if ((child.getType() == Token.YIELD)
                         || (child.getType() == Token.YIELD_STAR)) {
                     generateYieldPoint(child, false);
@@ -2389,29 +2416,29 @@ class BodyCodegen {
         int childType = child.getType();
         boolean isOptionalChainingCall = node.getIntProp(Node.OPTIONAL_CHAINING, 0) == 1;
 
-        String methodName;
+        String methodName = null;
         String signature;
         Integer afterLabel = null;
 
-        if (firstArgChild == null) {
+        if (firstArgChild == null && isOptionalChainingCall) {
             if (childType == Token.NAME) {
-                // name() call
+                // name?.() call
                 String name = child.getString();
                 cfw.addPush(name);
-                methodName = isOptionalChainingCall ? "callName0Optional" : "callName0";
+                methodName = "callName0Optional";
                 signature =
                         "(Ljava/lang/String;"
                                 + "Lorg/mozilla/javascript/Context;"
                                 + "Lorg/mozilla/javascript/Scriptable;"
                                 + ")Ljava/lang/Object;";
             } else if (childType == Token.GETPROP) {
-                // x.name() call
+                // x.name?.() call
                 Node propTarget = child.getFirstChild();
                 generateExpression(propTarget, node);
                 Node id = propTarget.getNext();
                 String property = id.getString();
                 cfw.addPush(property);
-                methodName = isOptionalChainingCall ? "callProp0Optional" : "callProp0";
+                methodName = "callProp0Optional";
                 signature =
                         "(Ljava/lang/Object;"
                                 + "Ljava/lang/String;"
@@ -2423,7 +2450,7 @@ class BodyCodegen {
             } else {
                 generateFunctionAndThisObj(child, node);
                 pushThisFromLastScriptable();
-                methodName = isOptionalChainingCall ? "call0Optional" : "call0";
+                methodName = "call0Optional";
                 signature =
                         "(Lorg/mozilla/javascript/Callable;"
                                 + "Lorg/mozilla/javascript/Scriptable;"
@@ -2432,63 +2459,53 @@ class BodyCodegen {
                                 + ")Ljava/lang/Object;";
             }
 
-        } else if (childType == Token.NAME) {
-            // XXX: this optimization is only possible if name
-            // resolution
-            // is not affected by arguments evaluation and currently
-            // there are no checks for it
+        } else if (firstArgChild == null) {
+            if (childType == Token.GETPROPNOWARN) {
+                throw Kit.codeBug();
+            }
+            // name(), x.name(), and everything else: look up the function and
+            // "this" and then let the FUNCTION:CALL operation call it.
+            generateFunctionAndThisObj(child, node);
+            pushThisFromLastScriptable();
+            signature = Signatures.FUNCTION_CALL_0;
+
+        } else if (childType == Token.NAME && isOptionalChainingCall) {
             String name = child.getString();
-            if (isOptionalChainingCall) { // name?.()
-                // eval name and this and put name in dynamic signature just like
-                // with "GETWITHTHIS".
-                cfw.addALoad(variableObjectLocal);
-                cfw.addALoad(contextLocal);
-                addDynamicInvoke("NAME:GETWITHTHISOPTIONAL:" + name, Signatures.NAME_GET_THIS);
+            // name?.(): eval name and this and put name in dynamic signature just like
+            // with "GETWITHTHIS".
+            cfw.addALoad(variableObjectLocal);
+            cfw.addALoad(contextLocal);
+            addDynamicInvoke("NAME:GETWITHTHISOPTIONAL:" + name, Signatures.NAME_GET_THIS);
 
-                // jump to afterLabel is name is not null and not undefined
-                afterLabel = cfw.acquireLabel();
-                int doCallLabel = cfw.acquireLabel();
-                cfw.add(ByteCode.DUP);
-                addOptRuntimeInvoke("isNullOrUndefined", "(Ljava/lang/Object;)Z");
-                cfw.add(ByteCode.IFEQ, doCallLabel);
+            // jump to afterLabel is name is not null and not undefined
+            afterLabel = cfw.acquireLabel();
+            int doCallLabel = cfw.acquireLabel();
+            cfw.add(ByteCode.DUP);
+            addOptRuntimeInvoke("isNullOrUndefined", "(Ljava/lang/Object;)Z");
+            cfw.add(ByteCode.IFEQ, doCallLabel);
 
-                // push undefined and jump to end
-                cfw.add(ByteCode.POP);
-                cfw.add(
-                        ByteCode.GETSTATIC,
-                        "org/mozilla/javascript/Undefined",
-                        "instance",
-                        "Ljava/lang/Object;");
-                cfw.add(ByteCode.GOTO, afterLabel);
+            // push undefined and jump to end
+            cfw.add(ByteCode.POP);
+            cfw.add(
+                    ByteCode.GETSTATIC,
+                    "org/mozilla/javascript/Undefined",
+                    "instance",
+                    "Ljava/lang/Object;");
+            cfw.add(ByteCode.GOTO, afterLabel);
+
+            // push this, arguments, and do call
+            cfw.markLabel(doCallLabel);
+            pushThisFromLastScriptable();
+            generateCallArgArray(node, firstArgChild, false);
+            signature = Signatures.FUNCTION_CALL_N;
 
-                // push this, arguments, and do call
-                cfw.markLabel(doCallLabel);
-                pushThisFromLastScriptable();
-                methodName = "callN";
-                generateCallArgArray(node, firstArgChild, false);
-                signature =
-                        "(Lorg/mozilla/javascript/Callable;"
-                                + "Lorg/mozilla/javascript/Scriptable;"
-                                + "[Ljava/lang/Object;"
-                                + "Lorg/mozilla/javascript/Context;"
-                                + "Lorg/mozilla/javascript/Scriptable;"
-                                + ")Ljava/lang/Object;";
-            } else {
-                generateCallArgArray(node, firstArgChild, false);
-                cfw.addPush(name);
-                methodName = "callName";
-                signature =
-                        "([Ljava/lang/Object;"
-                                + "Ljava/lang/String;"
-                                + "Lorg/mozilla/javascript/Context;"
-                                + "Lorg/mozilla/javascript/Scriptable;"
-                                + ")Ljava/lang/Object;";
-            }
         } else {
             int argCount = 0;
             for (Node arg = firstArgChild; arg != null; arg = arg.getNext()) {
                 ++argCount;
             }
+            // The function is looked up before the arguments are evaluated, including
+            // for name(args) calls, which is the order that the interpreter uses.
             generateFunctionAndThisObj(child, node);
             // stack: ... functionObj thisObj
 
@@ -2516,44 +2533,24 @@ class BodyCodegen {
             pushThisFromLastScriptable();
             if (argCount == 1) {
                 generateExpression(firstArgChild, node);
-                methodName = "call1";
-                signature =
-                        "(Lorg/mozilla/javascript/Callable;"
-                                + "Lorg/mozilla/javascript/Scriptable;"
-                                + "Ljava/lang/Object;"
-                                + "Lorg/mozilla/javascript/Context;"
-                                + "Lorg/mozilla/javascript/Scriptable;"
-                                + ")Ljava/lang/Object;";
+                signature = Signatures.FUNCTION_CALL_1;
+            } else if (argCount == 2) {
+                generateExpression(firstArgChild, node);
+                generateExpression(firstArgChild.getNext(), node);
+                signature = Signatures.FUNCTION_CALL_2;
             } else {
-                if (argCount == 2) {
-                    generateExpression(firstArgChild, node);
-                    generateExpression(firstArgChild.getNext(), node);
-                    methodName = "call2";
-                    signature =
-                            "(Lorg/mozilla/javascript/Callable;"
-                                    + "Lorg/mozilla/javascript/Scriptable;"
-                                    + "Ljava/lang/Object;"
-                                    + "Ljava/lang/Object;"
-                                    + "Lorg/mozilla/javascript/Context;"
-                                    + "Lorg/mozilla/javascript/Scriptable;"
-                                    + ")Ljava/lang/Object;";
-                } else {
-                    generateCallArgArray(node, firstArgChild, false);
-                    methodName = "callN";
-                    signature =
-                            "(Lorg/mozilla/javascript/Callable;"
-                                    + "Lorg/mozilla/javascript/Scriptable;"
-                                    + "[Ljava/lang/Object;"
-                                    + "Lorg/mozilla/javascript/Context;"
-                                    + "Lorg/mozilla/javascript/Scriptable;"
-                                    + ")Ljava/lang/Object;";
-                }
+                generateCallArgArray(node, firstArgChild, false);
+                signature = Signatures.FUNCTION_CALL_N;
             }
         }
 
         cfw.addALoad(contextLocal);
         cfw.addALoad(variableObjectLocal);
-        addOptRuntimeInvoke(methodName, signature);
+        if (methodName != null) {
+            addOptRuntimeInvoke(methodName, signature);
+        } else {
+            addDynamicInvoke("FUNCTION:CALL", signature);
+        }
         if (afterLabel != null) {
             cfw.markLabel(afterLabel);
         }
@@ -3492,7 +3489,9 @@ class BodyCodegen {
                     }
                     break;
                 }
-                if (node.getIntProp(Node.ISNUMBER_PROP, -1) != -1) {
+                if (fnCurrent.isInt32Var(varIndex)) {
+                    visitInt32VarIncDec(node, true);
+                } else if (node.getIntProp(Node.ISNUMBER_PROP, -1) != -1) {
                     int offset = varIsDirectCallParameter(varIndex) ? 1 : 0;
                     cfw.addDLoad(reg + offset);
                     if (post) {
@@ -3697,26 +3696,24 @@ class BodyCodegen {
 
     private void visitBitNot(Node node, Node child) {
         int childNumberFlag = node.getIntProp(Node.ISNUMBER_PROP, -1);
-        generateExpression(child, node);
         if (childNumberFlag == -1) {
+            generateExpression(child, node);
             addObjectToNumeric();
             addScriptRuntimeInvoke("bitwiseNOT", "(Ljava/lang/Number;)Ljava/lang/Number;");
         } else {
-            addScriptRuntimeInvoke("toInt32", "(D)I");
-            cfw.addPush(-1); // implement ~a as (a ^ -1)
-            cfw.add(ByteCode.IXOR);
+            generateInt32Expression(node, node);
             cfw.add(ByteCode.I2D);
         }
     }
 
     private void visitBitOp(Node node, int type, Node child) {
         int childNumberFlag = node.getIntProp(Node.ISNUMBER_PROP, -1);
-        generateExpression(child, node);
 
         // special-case URSH; work with the target arg as a long, so
         // that we can return a 32-bit unsigned value, and call
         // toUint32 instead of toInt32.
         if (type == Token.URSH) {
+            generateExpression(child, node);
             addDynamicInvoke("MATH:TOUINT32", Signatures.MATH_TO_UINT32);
             generateExpression(child.getNext(), node);
             addDynamicInvoke("MATH:TOINT32", Signatures.MATH_TO_INT32);
@@ -3730,6 +3727,7 @@ class BodyCodegen {
             return;
         }
         if (childNumberFlag == -1) {
+            generateExpression(child, node);
             addObjectToNumeric();
             generateExpression(child.getNext(), node);
             addObjectToNumeric();
@@ -3764,47 +3762,137 @@ class BodyCodegen {
                     throw Kit.codeBug(Token.typeToName(type));
             }
         } else {
-            addScriptRuntimeInvoke("toInt32", "(D)I");
-            generateExpression(child.getNext(), node);
-            addScriptRuntimeInvoke("toInt32", "(D)I");
+            generateInt32Expression(node, node);
+            cfw.add(ByteCode.I2D);
+        }
+    }
 
-            switch (type) {
-                case Token.BITOR:
-                    cfw.add(ByteCode.IOR);
-                    break;
-                case Token.BITXOR:
+    /**
+     * Generate a Number-typed expression and leave ToInt32 of its value on the stack as an int.
+     * Bit operations, integer constants, and sums and differences of them are computed with int
+     * arithmetic, so that nested bit operations do not convert to double and back between steps.
+     */
+    private void generateInt32Expression(Node node, Node parent) {
+        int type = node.getType();
+        Node child = node.getFirstChild();
+        switch (type) {
+            case Token.NUMBER:
+                cfw.addPush(ScriptRuntime.toInt32(node.getDouble()));
+                return;
+            case Token.GETVAR:
+                {
+                    int varIndex = fnCurrent.getVarIndex(node);
+                    if (fnCurrent.isInt32Var(varIndex)) {
+                        int32VarLoad(varIndex, true);
+                        return;
+                    }
+                }
+                break;
+            case Token.BITOR:
+            case Token.BITXOR:
+            case Token.BITAND:
+            case Token.RSH:
+            case Token.LSH:
+                if (node.getIntProp(Node.ISNUMBER_PROP, -1) != -1) {
+                    generateInt32Expression(child, node);
+                    generateInt32Expression(child.getNext(), node);
+                    switch (type) {
+                        case Token.BITOR:
+                            cfw.add(ByteCode.IOR);
+                            break;
+                        case Token.BITXOR:
+                            cfw.add(ByteCode.IXOR);
+                            break;
+                        case Token.BITAND:
+                            cfw.add(ByteCode.IAND);
+                            break;
+                        case Token.RSH:
+                            cfw.add(ByteCode.ISHR);
+                            break;
+                        case Token.LSH:
+                            cfw.add(ByteCode.ISHL);
+                            break;
+                    }
+                    return;
+                }
+                break;
+            case Token.BITNOT:
+                if (node.getIntProp(Node.ISNUMBER_PROP, -1) != -1) {
+                    generateInt32Expression(child, node);
+                    cfw.addPush(-1); // implement ~a as (a ^ -1)
                     cfw.add(ByteCode.IXOR);
-                    break;
-                case Token.BITAND:
-                    cfw.add(ByteCode.IAND);
-                    break;
-                case Token.RSH:
-                    cfw.add(ByteCode.ISHR);
-                    break;
-                case Token.LSH:
-                    cfw.add(ByteCode.ISHL);
-                    break;
-                default:
-                    throw Kit.codeBug(Token.typeToName(type));
-            }
-            cfw.add(ByteCode.I2D);
+                    return;
+                }
+                break;
+            case Token.ADD:
+            case Token.SUB:
+                // ToInt32 wraps modulo 2^32 like int arithmetic does, and the double sum of
+                // int32 values is exact, so ToInt32(a + b) is the int sum of ToInt32 of each.
+                if (countInt32Terms(node) != -1) {
+                    generateInt32Expression(child, node);
+                    generateInt32Expression(child.getNext(), node);
+                    cfw.add(type == Token.ADD ? ByteCode.IADD : ByteCode.ISUB);
+                    return;
+                }
+                break;
+        }
+        generateExpression(node, parent);
+        addScriptRuntimeInvoke("toInt32", "(D)I");
+    }
+
+    /**
+     * Return the number of int32 values that the Number-typed sum or difference adds up, or -1 if
+     * it contains other terms or so many that the double result might not be exact.
+     */
+    private static int countInt32Terms(Node node) {
+        switch (node.getType()) {
+            case Token.NUMBER:
+                {
+                    double d = node.getDouble();
+                    return d == (int) d ? 1 : -1;
+                }
+            case Token.BITOR:
+            case Token.BITXOR:
+            case Token.BITAND:
+            case Token.RSH:
+            case Token.LSH:
+            case Token.BITNOT:
+                return node.getIntProp(Node.ISNUMBER_PROP, -1) != -1 ? 1 : -1;
+            case Token.ADD:
+            case Token.SUB:
+                {
+                    if (node.getIntProp(Node.ISNUMBER_PROP, -1) != Node.BOTH) {
+                        return -1;
+                    }
+                    Node child = node.getFirstChild();
+                    int left = countInt32Terms(child);
+                    int right = countInt32Terms(child.getNext());
+                    if (left == -1 || right == -1 || left + right > MAX_INT32_TERMS) {
+                        return -1;
+                    }
+                    return left + right;
+                }
+            default:
+                return -1;
         }
     }
 
     private int nodeIsDirectCallParameter(Node node) {
-        if (node.getType() == Token.GETVAR && inDirectCallFunction && !itsForcedObjectParameters) {
+        if (node.getType() == Token.GETVAR) {
             int varIndex = fnCurrent.getVarIndex(node);
-            if (fnCurrent.isParameter(varIndex)) {
+            if (varIsDirectCallParameter(varIndex)) {
                 return varRegisters[varIndex];
             }
         }
         return -1;
     }
 
+    /** Unboxed variables are kept in the same pair of registers as directCall parameters. */
     private boolean varIsDirectCallParameter(int varIndex) {
-        return fnCurrent.isParameter(varIndex)
-                && inDirectCallFunction
-                && !itsForcedObjectParameters;
+        return (fnCurrent.isParameter(varIndex)
+                        && inDirectCallFunction
+                        && !itsForcedObjectParameters)
+                || fnCurrent.isUnboxedVar(varIndex);
     }
 
     private void genSimpleCompare(int type, int trueGOTO, int falseGOTO) {
@@ -3832,6 +3920,26 @@ class BodyCodegen {
         if (falseGOTO != -1) cfw.add(ByteCode.GOTO, falseGOTO);
     }
 
+    private void genSimpleInt32Compare(int type, int trueGOTO, int falseGOTO) {
+        switch (type) {
+            case Token.LE:
+                cfw.add(ByteCode.IF_ICMPLE, trueGOTO);
+                break;
+            case Token.GE:
+                cfw.add(ByteCode.IF_ICMPGE, trueGOTO);
+                break;
+            case Token.LT:
+                cfw.add(ByteCode.IF_ICMPLT, trueGOTO);
+                break;
+            case Token.GT:
+                cfw.add(ByteCode.IF_ICMPGT, trueGOTO);
+                break;
+            default:
+                throw Codegen.badTree();
+        }
+        cfw.add(ByteCode.GOTO, falseGOTO);
+    }
+
     private void visitIfJumpRelOp(Node node, Node child, int trueGOTO, int falseGOTO) {
         if (trueGOTO == -1 || falseGOTO == -1) throw Codegen.badTree();
         int type = node.getType();
@@ -3853,6 +3961,19 @@ class BodyCodegen {
         int childNumberFlag = node.getIntProp(Node.ISNUMBER_PROP, -1);
         int left_dcp_register = nodeIsDirectCallParameter(child);
         int right_dcp_register = nodeIsDirectCallParameter(rChild);
+        if (childNumberFlag == Node.BOTH
+                && (isInt32VarNode(child) || isInt32VarNode(rChild))
+                && isInt32Operand(child)
+                && isInt32Operand(rChild)) {
+            // Compare the ints while the variables hold ints
+            int notInt32 = cfw.acquireLabel();
+            addInt32OperandCheck(child, notInt32);
+            addInt32OperandCheck(rChild, notInt32);
+            addInt32OperandLoad(child);
+            addInt32OperandLoad(rChild);
+            genSimpleInt32Compare(type, trueGOTO, falseGOTO);
+            cfw.markLabel(notInt32);
+        }
         if (childNumberFlag != -1) {
             // Force numeric context on both parameters and optimize
             // direct call case as Optimizer currently does not handle it
@@ -4056,6 +4177,8 @@ class BodyCodegen {
             } else {
                 dcpLoadAsObject(reg);
             }
+        } else if (fnCurrent.isInt32Var(varIndex)) {
+            int32VarLoad(varIndex, false);
         } else if (fnCurrent.isNumberVar(varIndex)) {
             cfw.addDLoad(reg);
         } else {
@@ -4066,6 +4189,10 @@ class BodyCodegen {
     private void visitSetVar(Node node, Node child, boolean needValue) {
         if (!hasVarsInRegs) Kit.codeBug();
         int varIndex = fnCurrent.getVarIndex(node);
+        if (fnCurrent.isInt32Var(varIndex)) {
+            visitSetInt32Var(node, varIndex, child.getNext(), needValue);
+            return;
+        }
         generateExpression(child.getNext(), node);
         boolean isNumber = (node.getIntProp(Node.ISNUMBER_PROP, -1) != -1);
         int reg = varRegisters[varIndex];
@@ -4077,19 +4204,11 @@ class BodyCodegen {
             }
         } else if (varIsDirectCallParameter(varIndex)) {
             if (isNumber) {
+                // Keep the number unboxed, even if the variable held an object before
                 if (needValue) cfw.add(ByteCode.DUP2);
-                cfw.addALoad(reg);
                 cfw.add(ByteCode.GETSTATIC, "java/lang/Void", "TYPE", "Ljava/lang/Class;");
-                int isNumberLabel = cfw.acquireLabel();
-                int beyond = cfw.acquireLabel();
-                cfw.add(ByteCode.IF_ACMPEQ, isNumberLabel);
-                int stack = cfw.getStackTop();
-                addDoubleWrap();
                 cfw.addAStore(reg);
-                cfw.add(ByteCode.GOTO, beyond);
-                cfw.markLabel(isNumberLabel, stack);
                 cfw.addDStore(reg + 1);
-                cfw.markLabel(beyond);
             } else {
                 if (needValue) cfw.add(ByteCode.DUP);
                 cfw.addAStore(reg);
@@ -4115,6 +4234,216 @@ class BodyCodegen {
         }
     }
 
+    /** Load an int32 variable as a double, or as ToInt32 of its value. */
+    private void int32VarLoad(int varIndex, boolean asInt32) {
+        int int32Reg = int32Registers[varIndex];
+        int isDouble = cfw.acquireLabel();
+        int beyond = cfw.acquireLabel();
+        cfw.addILoad(int32Reg + 1);
+        cfw.add(ByteCode.IFEQ, isDouble);
+        int stack = cfw.getStackTop();
+        cfw.addILoad(int32Reg);
+        if (!asInt32) {
+            cfw.add(ByteCode.I2D);
+        }
+        cfw.add(ByteCode.GOTO, beyond);
+        cfw.markLabel(isDouble, stack);
+        cfw.addDLoad(varRegisters[varIndex]);
+        if (asInt32) {
+            addScriptRuntimeInvoke("toInt32", "(D)I");
+        }
+        cfw.markLabel(beyond);
+    }
+
+    /** Store the double on the stack in an int32 variable, in its int register if it fits. */
+    private void int32VarStore(int varIndex) {
+        int int32Reg = int32Registers[varIndex];
+        cfw.add(ByteCode.DUP2);
+        cfw.addDStore(varRegisters[varIndex]);
+        cfw.add(ByteCode.DUP2);
+        cfw.add(ByteCode.D2I);
+        cfw.addIStore(int32Reg);
+        addOptRuntimeInvoke("isInt32", "(D)Z");
+        cfw.addIStore(int32Reg + 1);
+    }
+
+    private void visitSetInt32Var(Node node, int varIndex, Node rValue, boolean needValue) {
+        int int32Reg = int32Registers[varIndex];
+        int type = rValue.getType();
+        if (isInt32Expression(rValue)) {
+            generateInt32Expression(rValue, node);
+            if (needValue) cfw.add(ByteCode.DUP);
+            cfw.addIStore(int32Reg);
+            cfw.addPush(1);
+            cfw.addIStore(int32Reg + 1);
+            if (needValue) cfw.add(ByteCode.I2D);
+            return;
+        }
+        if (isInt32VarNode(rValue)) {
+            // Copy all the registers, whichever of them holds the value
+            int from = fnCurrent.getVarIndex(rValue);
+            cfw.addILoad(int32Registers[from]);
+            cfw.addIStore(int32Reg);
+            cfw.addILoad(int32Registers[from] + 1);
+            cfw.addIStore(int32Reg + 1);
+            cfw.addDLoad(varRegisters[from]);
+            cfw.addDStore(varRegisters[varIndex]);
+            if (needValue) int32VarLoad(varIndex, false);
+            return;
+        }
+        int beyond = cfw.acquireLabel();
+        if ((type == Token.ADD || type == Token.SUB)
+                && rValue.getIntProp(Node.ISNUMBER_PROP, -1) == Node.BOTH
+                && isInt32Operand(rValue.getFirstChild())
+                && isInt32Operand(rValue.getLastChild())) {
+            // Add the ints as longs while both are ints, and keep the sum unless it overflows
+            Node lChild = rValue.getFirstChild();
+            Node rChild = rValue.getLastChild();
+            int notInt32 = cfw.acquireLabel();
+            int overflow = cfw.acquireLabel();
+            int stack = cfw.getStackTop();
+            addInt32OperandCheck(lChild, notInt32);
+            addInt32OperandCheck(rChild, notInt32);
+            addInt32OperandLoad(lChild);
+            cfw.add(ByteCode.I2L);
+            addInt32OperandLoad(rChild);
+            cfw.add(ByteCode.I2L);
+            cfw.add(type == Token.ADD ? ByteCode.LADD : ByteCode.LSUB);
+            cfw.add(ByteCode.DUP2);
+            cfw.add(ByteCode.DUP2);
+            cfw.add(ByteCode.L2I);
+            cfw.add(ByteCode.I2L);
+            cfw.add(ByteCode.LCMP);
+            cfw.add(ByteCode.IFNE, overflow);
+            cfw.add(ByteCode.L2I);
+            if (needValue) cfw.add(ByteCode.DUP);
+            cfw.addIStore(int32Reg);
+            if (!isVarNode(lChild, varIndex) && !isVarNode(rChild, varIndex)) {
+                // Otherwise the check has found the flag set already
+                cfw.addPush(1);
+                cfw.addIStore(int32Reg + 1);
+            }
+            if (needValue) cfw.add(ByteCode.I2D);
+            cfw.add(ByteCode.GOTO, beyond);
+            cfw.markLabel(overflow, stack + 2);
+            cfw.add(ByteCode.L2D);
+            if (needValue) cfw.add(ByteCode.DUP2);
+            cfw.addDStore(varRegisters[varIndex]);
+            cfw.addPush(0);
+            cfw.addIStore(int32Reg + 1);
+            cfw.add(ByteCode.GOTO, beyond);
+            cfw.markLabel(notInt32, stack);
+        }
+        generateExpression(rValue, node);
+        if (needValue) cfw.add(ByteCode.DUP2);
+        int32VarStore(varIndex);
+        cfw.markLabel(beyond);
+    }
+
+    private void visitInt32VarIncDec(Node node, boolean needValue) {
+        int incrDecrMask = node.getExistingIntProp(Node.INCRDECR_PROP);
+        boolean post = ((incrDecrMask & Node.POST_FLAG) != 0);
+        boolean isDecrement = ((incrDecrMask & Node.DECR_FLAG) != 0);
+        int varIndex = fnCurrent.getVarIndex(node.getFirstChild());
+        int int32Reg = int32Registers[varIndex];
+        int reg = varRegisters[varIndex];
+        int isDouble = cfw.acquireLabel();
+        int overflow = cfw.acquireLabel();
+        int beyond = cfw.acquireLabel();
+        int stack = cfw.getStackTop();
+        cfw.addILoad(int32Reg + 1);
+        cfw.add(ByteCode.IFEQ, isDouble);
+        cfw.addILoad(int32Reg);
+        cfw.addPush(isDecrement ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+        cfw.add(ByteCode.IF_ICMPEQ, overflow);
+        if (needValue && post) {
+            cfw.addILoad(int32Reg);
+            cfw.add(ByteCode.I2D);
+        }
+        cfw.addILoad(int32Reg);
+        cfw.addPush(1);
+        cfw.add(isDecrement ? ByteCode.ISUB : ByteCode.IADD);
+        cfw.addIStore(int32Reg);
+        if (needValue && !post) {
+            cfw.addILoad(int32Reg);
+            cfw.add(ByteCode.I2D);
+        }
+        cfw.add(ByteCode.GOTO, beyond);
+        cfw.markLabel(overflow, stack);
+        // The result is not an int32, so move the value to the double register
+        cfw.addILoad(int32Reg);
+        cfw.add(ByteCode.I2D);
+        cfw.addDStore(reg);
+        cfw.addPush(0);
+        cfw.addIStore(int32Reg + 1);
+        cfw.markLabel(isDouble);
+        cfw.addDLoad(reg);
+        if (needValue && post) {
+            cfw.add(ByteCode.DUP2);
+        }
+        cfw.addPush(1.0);
+        cfw.add(isDecrement ? ByteCode.DSUB : ByteCode.DADD);
+        if (needValue && !post) {
+            cfw.add(ByteCode.DUP2);
+        }
+        cfw.addDStore(reg);
+        cfw.markLabel(beyond);
+    }
+
+    private boolean isInt32VarNode(Node node) {
+        return node.getType() == Token.GETVAR
+                && hasVarsInRegs
+                && fnCurrent.isInt32Var(fnCurrent.getVarIndex(node));
+    }
+
+    private boolean isVarNode(Node node, int varIndex) {
+        return node.getType() == Token.GETVAR && fnCurrent.getVarIndex(node) == varIndex;
+    }
+
+    private static boolean isInt32Constant(Node node) {
+        if (node.getType() != Token.NUMBER) {
+            return false;
+        }
+        double d = node.getDouble();
+        return d == (int) d && (d != 0 || 1 / d > 0);
+    }
+
+    /** Does generateInt32Expression compute the exact value of the Number expression? */
+    private static boolean isInt32Expression(Node node) {
+        switch (node.getType()) {
+            case Token.NUMBER:
+                return isInt32Constant(node);
+            case Token.BITOR:
+            case Token.BITXOR:
+            case Token.BITAND:
+            case Token.RSH:
+            case Token.LSH:
+            case Token.BITNOT:
+                return node.getIntProp(Node.ISNUMBER_PROP, -1) != -1;
+            default:
+                return false;
+        }
+    }
+
+    private boolean isInt32Operand(Node node) {
+        return isInt32Constant(node) || isInt32VarNode(node);
+    }
+
+    private void addInt32OperandCheck(Node node, int notInt32) {
+        if (node.getType() == Token.GETVAR) {
+            cfw.addILoad(int32Registers[fnCurrent.getVarIndex(node)] + 1);
+            cfw.add(ByteCode.IFEQ, notInt32);
+        }
+    }
+
+    private void addInt32OperandLoad(Node node) {
+        if (node.getType() == Token.GETVAR) {
+            cfw.addILoad(int32Registers[fnCurrent.getVarIndex(node)]);
+        } else {
+            cfw.addPush((int) node.getDouble());
+        }
+    }
+
     private void visitSetConstVar(Node node, Node child, boolean needValue) {
         if (!hasVarsInRegs) Kit.codeBug();
         int varIndex = fnCurrent.getVarIndex(node);
@@ -4248,6 +4577,56 @@ class BodyCodegen {
         }
     }
 
+    /** Is the SETELEM node storing a Number at a Number index? */
+    private boolean isNumberElementStore(Node node) {
+        if (node.getIntProp(Node.ISNUMBER_PROP, -1) == -1) {
+            return false;
+        }
+        Node value = node.getLastChild();
+        return value.getType() == Token.TO_OBJECT || nodeIsDirectCallParameter(value) != -1;
+    }
+
+    /**
+     * Store a Number element whose value is not needed, without boxing the Number, so that a packed
+     * array can keep it as it is.
+     */
+    private void visitSetNumberElem(Node node, Node child) {
+        generateExpression(child, node);
+        child = child.getNext();
+        generateExpression(child, node);
+        child = child.getNext();
+        int dcp_register = nodeIsDirectCallParameter(child);
+        if (dcp_register != -1) {
+            cfw.addALoad(dcp_register);
+            cfw.addDLoad(dcp_register + 1);
+            cfw.addALoad(contextLocal);
+            cfw.addALoad(variableObjectLocal);
+            addOptRuntimeInvoke(
+                    "setObjectIndex",
+                    "(Ljava/lang/Object;D"
+                            + "Ljava/lang/Object;D"
+                            + "Lorg/mozilla/javascript/Context;"
+                            + "Lorg/mozilla/javascript/Scriptable;"
+                            + ")V");
+        } else {
+            // The double that TO_OBJECT would box
+            Node number = child.getFirstChild();
+            if (number.getType() == Token.NUMBER) {
+                cfw.addPush(number.getDouble());
+            } else {
+                generateExpression(number, child);
+            }
+            cfw.addALoad(contextLocal);
+            cfw.addALoad(variableObjectLocal);
+            addScriptRuntimeInvoke(
+                    "setObjectIndex",
+                    "(Ljava/lang/Object;DD"
+                            + "Lorg/mozilla/javascript/Context;"
+                            + "Lorg/mozilla/javascript/Scriptable;"
+                            + ")V");
+        }
+    }
+
     private void visitDotQuery(Node node, Node child) {
         updateLineNumber(node);
         generateExpression(child, node);
@@ -4474,6 +4853,9 @@ class BodyCodegen {
     private OptFunctionNode fnCurrent;
 
     private static final int MAX_LOCALS = 1024;
+
+    // A sum of up to 2^21 int32 values stays below 2^53, so its double value is exact
+    private static final int MAX_INT32_TERMS = 1 << 21;
     private int[] locals;
     private int firstFreeLocal;
     private int localsMax;
@@ -4482,6 +4864,7 @@ class BodyCodegen {
 
     private boolean hasVarsInRegs;
     private int[] varRegisters;
+    private int[] int32Registers;
     private boolean inDirectCallFunction;
     private boolean itsForcedObjectParameters;
     private int enterAreaStartLabel;
@@ -32,12 +32,26 @@ public class Bootstrapper {
 
     private static final DynamicLinker linker;
 
+    /** The number of times that a call site may be relinked before it is considered unstable. */
+    private static final int UNSTABLE_RELINK_THRESHOLD = 8;
+
     static {
         // Set up the linkers
         DynamicLinkerFactory factory = new DynamicLinkerFactory();
-        // The const-aware-linker will only bind a few operations, and everything
-        // else will fall back to the default linker, which will always bind.
-        factory.setPrioritizedLinkers(new ConstAwareLinker(), new DefaultLinker());
+        // The const-aware-linker, the shape cache linker, the top-level name
+        // linker, the direct call linker, and the math linker will only bind a few
+        // operations, and everything else will fall back to the default linker,
+        // which will always bind.
+        factory.setPrioritizedLinkers(
+                new ConstAwareLinker(),
+                new ShapeCacheLinker(),
+                new TopLevelNameLinker(),
+                new DirectCallLinker(),
+                new MathLinker(),
+                new DefaultLinker());
+        // After this many relinks, a call site is too polymorphic to be worth caching,
+        // and the linkers above will let the default linker bind it for good.
+        factory.setUnstableRelinkThreshold(UNSTABLE_RELINK_THRESHOLD);
         linker = factory.createLinker();
     }
 
@@ -167,6 +181,13 @@ public class Bootstrapper {
                 case "COMPARELE":
                     return RhinoOperation.COMPARE_LE.withNamespace(RhinoNamespace.MATH);
             }
+
+        } else if ("FUNCTION".equals(namespaceName)) {
+            if ("CALL".equals(opName)) {
+                // Call a function with a "this" and arguments. The number of
+                // arguments is implied by the method signature.
+                return StandardOperation.CALL.withNamespace(RhinoNamespace.FUNCTION);
+            }
         }
 
         // Fall through to no match. This should only happen if the name in the bytecode
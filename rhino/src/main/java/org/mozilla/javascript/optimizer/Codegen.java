@@ -1255,6 +1255,14 @@ public class Codegen implements Evaluator {
         return "_c_" + cleanName(n) + "_" + getIndex(n);
     }
 
+    /**
+     * Return whether "methodName" is the name that getBodyMethodName returned for the function
+     * with the given index, for use at runtime when only the name of the method is known.
+     */
+    static boolean isBodyMethodName(String methodName, int index) {
+        return methodName.startsWith("_c_") && methodName.endsWith("_" + index);
+    }
+
     /** Gets a Java-compatible "informative" name for the the ScriptOrFnNode */
     String cleanName(final ScriptNode n) {
         String result = "";
@@ -63,6 +63,8 @@ class DefaultLinker implements GuardingDynamicLinker {
             return getNameInvocation(lookup, mType, op);
         } else if (op.isNamespace(RhinoNamespace.MATH)) {
             return getMathInvocation(lookup, mType, op);
+        } else if (op.isNamespace(RhinoNamespace.FUNCTION)) {
+            return getFunctionInvocation(lookup, mType, op);
         }
         throw new UnsupportedOperationException(op.toString());
     }
@@ -178,6 +180,25 @@ class DefaultLinker implements GuardingDynamicLinker {
         throw new UnsupportedOperationException(op.toString());
     }
 
+    private GuardedInvocation getFunctionInvocation(
+            MethodHandles.Lookup lookup, MethodType mType, ParsedOperation op)
+            throws NoSuchMethodException, IllegalAccessException {
+        if (op.isOperation(StandardOperation.CALL)) {
+            // The OptRuntime methods take the same arguments as the call site:
+            // the function, "this", the arguments, and then the context and scope.
+            String name;
+            int argCount = mType.parameterCount() - 4;
+            if (argCount == 1 && mType.parameterType(2) == Object[].class) {
+                name = "callN";
+            } else {
+                name = "call" + argCount;
+            }
+            MethodHandle mh = lookup.findStatic(OptRuntime.class, name, mType);
+            return new GuardedInvocation(mh);
+        }
+        throw new UnsupportedOperationException(op.toString());
+    }
+
     private GuardedInvocation getMathInvocation(
             MethodHandles.Lookup lookup, MethodType mType, ParsedOperation op)
             throws NoSuchMethodException, IllegalAccessException {
@@ -0,0 +1,189 @@
+package org.mozilla.javascript.optimizer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import jdk.dynalink.StandardOperation;
+import jdk.dynalink.linker.GuardedInvocation;
+import jdk.dynalink.linker.GuardingDynamicLinker;
+import jdk.dynalink.linker.LinkRequest;
+import jdk.dynalink.linker.LinkerServices;
+import jdk.dynalink.linker.support.Guards;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeFunction;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.Undefined;
+
+/**
+ * This linker handles FUNCTION:CALL operations when the function being called was compiled into
+ * the same class as the code that calls it, which is the case for every function defined in the
+ * same script. Instead of going through Callable.call, which checks for a top-level call and then
+ * switches on the ID of the function, the call site invokes the static method that holds the body
+ * of the function, guarded by the class and the ID of the function object. This works for every
+ * closure created from the same function, not just a single function object.
+ *
+ * <p>Functions that the Optimizer has marked as targets of direct calls take their parameters as
+ * individual arguments, so calls to them with a fixed number of arguments do not need an
+ * arguments array at all.
+ */
+@SuppressWarnings("AndroidJdkLibsChecker")
+class DirectCallLinker implements GuardingDynamicLinker {
+    private static final MethodHandle INT_EQUALS;
+
+    static {
+        try {
+            INT_EQUALS =
+                    MethodHandles.lookup()
+                            .findStatic(
+                                    DirectCallLinker.class,
+                                    "intEquals",
+                                    MethodType.methodType(
+                                            Boolean.TYPE, Integer.TYPE, Integer.TYPE));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    public GuardedInvocation getGuardedInvocation(LinkRequest req, LinkerServices svc)
+            throws NoSuchMethodException, IllegalAccessException {
+        if (req.isCallSiteUnstable()) {
+            return null;
+        }
+        ParsedOperation op = new ParsedOperation(req.getCallSiteDescriptor().getOperation());
+        if (!op.isNamespace(RhinoNamespace.FUNCTION)
+                || !op.isOperation(StandardOperation.CALL)) {
+            return null;
+        }
+
+        // Private methods of the generated class are only accessible to code in the same class
+        MethodHandles.Lookup lookup = req.getCallSiteDescriptor().getLookup();
+        Object target = req.getReceiver();
+        if (!(target instanceof NativeFunction) || target.getClass() != lookup.lookupClass()) {
+            return null;
+        }
+        Class<?> fnClass = target.getClass();
+        MethodHandle getId;
+        int id;
+        try {
+            getId = lookup.findGetter(fnClass, Codegen.ID_FIELD_NAME, Integer.TYPE);
+            id = (int) getId.invoke(target);
+        } catch (Throwable t) {
+            // Not a class that we generated after all
+            return null;
+        }
+        Method body = findBodyMethod(fnClass, id);
+        if (body == null) {
+            return null;
+        }
+
+        MethodType mType = req.getCallSiteDescriptor().getMethodType();
+        MethodHandle mh = adaptBody(lookup.unreflect(body), mType);
+        if (mh == null) {
+            return null;
+        }
+
+        // The guard checks that the function has the same class and ID, which
+        // identifies the body even when there are many closures of it.
+        MethodHandle hasId =
+                MethodHandles.filterArguments(
+                        MethodHandles.insertArguments(INT_EQUALS, 1, id),
+                        0,
+                        getId.asType(MethodType.methodType(Integer.TYPE, Object.class)));
+        MethodHandle isOfClass =
+                Guards.isOfClass(fnClass, MethodType.methodType(Boolean.TYPE, Object.class));
+        MethodHandle guard =
+                MethodHandles.guardWithTest(
+                        isOfClass,
+                        hasId,
+                        MethodHandles.dropArguments(
+                                MethodHandles.constant(Boolean.TYPE, false), 0, Object.class));
+        guard = Guards.asType(guard, mType);
+        if (DefaultLinker.DEBUG) {
+            System.out.println(op + ": direct call to " + body.getName());
+        }
+        return new GuardedInvocation(mh, guard);
+    }
+
+    /**
+     * Find the static method that implements the body of the function with the given ID. Every
+     * function has exactly one, and its name ends with the ID.
+     */
+    private static Method findBodyMethod(Class<?> fnClass, int id) {
+        for (Method m : fnClass.getDeclaredMethods()) {
+            if (Modifier.isStatic(m.getModifiers()) && Codegen.isBodyMethodName(m.getName(), id)) {
+                return m;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adapt a body method, with the signature (fn, cx, scope, thisObj, [arg, darg]..., args[]), to
+     * the signature of the call site, which is either (fn, thisObj, arg..., cx, scope) or (fn,
+     * thisObj, args[], cx, scope). Return null if that is not possible.
+     */
+    private static MethodHandle adaptBody(MethodHandle mh, MethodType mType) {
+        int middle = mType.parameterCount() - 4;
+        boolean isArray = middle == 1 && mType.parameterType(2) == Object[].class;
+        // Number of parameters that the body takes as (Object, double) pairs
+        int directParams = (mh.type().parameterCount() - 5) / 2;
+
+        if (directParams == 0) {
+            if (!isArray) {
+                mh = mh.asCollector(Object[].class, middle);
+            }
+        } else {
+            if (isArray) {
+                // The body wants the array unpacked, so let the default linker handle it.
+                return null;
+            }
+            // Pass "undefined" for missing arguments, and an empty array at the end,
+            // just like the code for direct calls in BodyCodegen does.
+            mh =
+                    MethodHandles.insertArguments(
+                            mh, mh.type().parameterCount() - 1, (Object) ScriptRuntime.emptyArgs);
+            for (int i = directParams - 1; i >= 0; i--) {
+                mh = MethodHandles.insertArguments(mh, 4 + i * 2 + 1, 0.0);
+                if (i >= middle) {
+                    mh = MethodHandles.insertArguments(mh, 4 + i * 2, Undefined.instance);
+                }
+            }
+            if (middle > directParams) {
+                Class<?>[] extra = new Class<?>[middle - directParams];
+                Arrays.fill(extra, Object.class);
+                mh = MethodHandles.dropArguments(mh, mh.type().parameterCount(), extra);
+            }
+        }
+
+        // Now the handle takes (fn, cx, scope, thisObj, middle...), so reorder that.
+        MethodType bodyType = mh.type();
+        Class<?>[] ptypes = new Class<?>[4 + middle];
+        int[] reorder = new int[4 + middle];
+        ptypes[0] = bodyType.parameterType(0);
+        ptypes[1] = Scriptable.class;
+        ptypes[2 + middle] = Context.class;
+        ptypes[3 + middle] = Scriptable.class;
+        reorder[0] = 0;
+        reorder[1] = 2 + middle;
+        reorder[2] = 3 + middle;
+        reorder[3] = 1;
+        for (int i = 0; i < middle; i++) {
+            ptypes[2 + i] = bodyType.parameterType(4 + i);
+            reorder[4 + i] = 2 + i;
+        }
+        mh =
+                MethodHandles.permuteArguments(
+                        mh, MethodType.methodType(Object.class, ptypes), reorder);
+        return mh.asType(mType);
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean intEquals(int a, int b) {
+        return a == b;
+    }
+}
@@ -0,0 +1,213 @@
+package org.mozilla.javascript.optimizer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import jdk.dynalink.linker.GuardedInvocation;
+import jdk.dynalink.linker.GuardingDynamicLinker;
+import jdk.dynalink.linker.LinkRequest;
+import jdk.dynalink.linker.LinkerServices;
+import org.mozilla.javascript.ConsString;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Kit;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Token;
+
+/**
+ * This linker specializes the ADD, EQ, SHALLOWEQ and COMPARE operations in the MATH namespace on
+ * the types of their operands. When both operands are Integers, both are Integers or Doubles, or
+ * both are strings, the call site is bound to code that handles only those types, guarded by a
+ * check of the operand classes.
+ *
+ * <p>Like the ShapeCacheLinker, every time the guard fails the call site is linked again, so a site
+ * that sees both numbers and strings keeps one specialization for each. Sites with other operand
+ * types, or that have been relinked too often, are left to the DefaultLinker, which links them to
+ * the generic operations in ScriptRuntime.
+ */
+@SuppressWarnings("AndroidJdkLibsChecker")
+class MathLinker implements GuardingDynamicLinker {
+    private static final int INTS = 1;
+    private static final int NUMBERS = 2;
+    private static final int STRINGS = 3;
+
+    private static final MethodType BINARY_TYPE =
+            MethodType.methodType(Boolean.TYPE, Object.class, Object.class);
+    private static final MethodType ADD_TYPE =
+            MethodType.methodType(Object.class, Object.class, Object.class, Context.class);
+    private static final MethodType COMPARE_TYPE =
+            MethodType.methodType(Boolean.TYPE, Object.class, Object.class, Integer.TYPE);
+
+    @Override
+    public GuardedInvocation getGuardedInvocation(LinkRequest req, LinkerServices svc)
+            throws NoSuchMethodException, IllegalAccessException {
+        if (req.isCallSiteUnstable()) {
+            return null;
+        }
+
+        ParsedOperation op = new ParsedOperation(req.getCallSiteDescriptor().getOperation());
+        if (!op.isNamespace(RhinoNamespace.MATH)) {
+            return null;
+        }
+        Object[] args = req.getArguments();
+        if (args.length < 2) {
+            return null;
+        }
+        int kind = getKind(args[0], args[1]);
+        if (kind == 0) {
+            return null;
+        }
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodType mType = req.getCallSiteDescriptor().getMethodType();
+        String suffix = kind == INTS ? "Ints" : kind == NUMBERS ? "Numbers" : "Strings";
+        MethodHandle mh;
+        if (op.isOperation(RhinoOperation.ADD)) {
+            mh = lookup.findStatic(MathLinker.class, "add" + suffix, ADD_TYPE);
+        } else if (op.isOperation(RhinoOperation.EQ, RhinoOperation.SHALLOWEQ)) {
+            // Both kinds of equality are the same when the types are the same
+            mh = lookup.findStatic(MathLinker.class, "eq" + suffix, BINARY_TYPE);
+        } else if (op.isOperation(RhinoOperation.COMPARE_GT)) {
+            mh = makeCompare(lookup, suffix, Token.GT);
+        } else if (op.isOperation(RhinoOperation.COMPARE_LT)) {
+            mh = makeCompare(lookup, suffix, Token.LT);
+        } else if (op.isOperation(RhinoOperation.COMPARE_GE)) {
+            mh = makeCompare(lookup, suffix, Token.GE);
+        } else if (op.isOperation(RhinoOperation.COMPARE_LE)) {
+            mh = makeCompare(lookup, suffix, Token.LE);
+        } else {
+            return null;
+        }
+
+        // The guards only look at the two operands, which are always the first arguments
+        MethodHandle guard = lookup.findStatic(MathLinker.class, "are" + suffix, BINARY_TYPE);
+        guard =
+                MethodHandles.dropArguments(
+                        guard, 2, mType.parameterList().subList(2, mType.parameterCount()));
+        if (DefaultLinker.DEBUG) {
+            System.out.println(op + ": specialized for " + suffix);
+        }
+        return new GuardedInvocation(mh, guard);
+    }
+
+    private static int getKind(Object lhs, Object rhs) {
+        if (lhs instanceof Integer && rhs instanceof Integer) {
+            return INTS;
+        }
+        if (isNumber(lhs) && isNumber(rhs)) {
+            return NUMBERS;
+        }
+        if (isString(lhs) && isString(rhs)) {
+            return STRINGS;
+        }
+        return 0;
+    }
+
+    private static MethodHandle makeCompare(MethodHandles.Lookup lookup, String suffix, int op)
+            throws NoSuchMethodException, IllegalAccessException {
+        MethodHandle mh = lookup.findStatic(MathLinker.class, "compare" + suffix, COMPARE_TYPE);
+        return MethodHandles.insertArguments(mh, 2, op);
+    }
+
+    /** Only the classes that Rhino itself uses for numbers, and never BigInteger. */
+    private static boolean isNumber(Object o) {
+        return o instanceof Integer || o instanceof Double;
+    }
+
+    private static boolean isString(Object o) {
+        return o instanceof String || o instanceof ConsString;
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean areInts(Object lhs, Object rhs) {
+        return lhs instanceof Integer && rhs instanceof Integer;
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean areNumbers(Object lhs, Object rhs) {
+        return isNumber(lhs) && isNumber(rhs);
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean areStrings(Object lhs, Object rhs) {
+        return isString(lhs) && isString(rhs);
+    }
+
+    @SuppressWarnings("unused")
+    private static Object addInts(Object lhs, Object rhs, Context cx) {
+        return ScriptRuntime.add((Integer) lhs, (Integer) rhs);
+    }
+
+    @SuppressWarnings("unused")
+    private static Object addNumbers(Object lhs, Object rhs, Context cx) {
+        if (lhs instanceof Integer && rhs instanceof Integer) {
+            return ScriptRuntime.add((Integer) lhs, (Integer) rhs);
+        }
+        double sum = ((Number) lhs).doubleValue() + ((Number) rhs).doubleValue();
+        return ScriptRuntime.wrapNumber(sum);
+    }
+
+    @SuppressWarnings("unused")
+    private static Object addStrings(Object lhs, Object rhs, Context cx) {
+        return new ConsString((CharSequence) lhs, (CharSequence) rhs);
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean eqInts(Object lhs, Object rhs) {
+        return ((Integer) lhs).intValue() == ((Integer) rhs).intValue();
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean eqNumbers(Object lhs, Object rhs) {
+        return ((Number) lhs).doubleValue() == ((Number) rhs).doubleValue();
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean eqStrings(Object lhs, Object rhs) {
+        CharSequence l = (CharSequence) lhs;
+        CharSequence r = (CharSequence) rhs;
+        return l.length() == r.length() && l.toString().equals(r.toString());
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean compareInts(Object lhs, Object rhs, int op) {
+        return compare(Integer.compare((Integer) lhs, (Integer) rhs), op);
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean compareNumbers(Object lhs, Object rhs, int op) {
+        double l = ((Number) lhs).doubleValue();
+        double r = ((Number) rhs).doubleValue();
+        switch (op) {
+            case Token.GT:
+                return l > r;
+            case Token.LT:
+                return l < r;
+            case Token.GE:
+                return l >= r;
+            case Token.LE:
+                return l <= r;
+            default:
+                throw Kit.codeBug();
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean compareStrings(Object lhs, Object rhs, int op) {
+        return compare(lhs.toString().compareTo(rhs.toString()), op);
+    }
+
+    private static boolean compare(int result, int op) {
+        switch (op) {
+            case Token.GT:
+                return result > 0;
+            case Token.LT:
+                return result < 0;
+            case Token.GE:
+                return result >= 0;
+            case Token.LE:
+                return result <= 0;
+            default:
+                throw Kit.codeBug();
+        }
+    }
+}
@@ -74,6 +74,54 @@ public final class OptFunctionNode {
         numberVarFlags[varIndex] = true;
     }
 
+    /**
+     * Return true if the variable is kept in a pair of registers like a parameter of a direct
+     * call: when the Object register holds Void.TYPE, the value is the number in the double
+     * register.
+     */
+    public boolean isUnboxedVar(int varIndex) {
+        varIndex -= fnode.getParamCount();
+        if (varIndex >= 0 && unboxedVarFlags != null) {
+            return unboxedVarFlags[varIndex];
+        }
+        return false;
+    }
+
+    void setIsUnboxedVar(int varIndex) {
+        varIndex -= fnode.getParamCount();
+        // Can only be used with non-parameters
+        if (varIndex < 0) Kit.codeBug();
+        if (unboxedVarFlags == null) {
+            int size = fnode.getParamAndVarCount() - fnode.getParamCount();
+            unboxedVarFlags = new boolean[size];
+        }
+        unboxedVarFlags[varIndex] = true;
+    }
+
+    /**
+     * Return true if the Number variable is only assigned int32 values that the codegen computes as
+     * ints, so that it is also given an int register: while its value is an int32, it lives there
+     * instead of in the double register.
+     */
+    public boolean isInt32Var(int varIndex) {
+        varIndex -= fnode.getParamCount();
+        if (varIndex >= 0 && int32VarFlags != null) {
+            return int32VarFlags[varIndex];
+        }
+        return false;
+    }
+
+    void setIsInt32Var(int varIndex, boolean isInt32) {
+        varIndex -= fnode.getParamCount();
+        // Can only be used with non-parameters
+        if (varIndex < 0) Kit.codeBug();
+        if (int32VarFlags == null) {
+            int size = fnode.getParamAndVarCount() - fnode.getParamCount();
+            int32VarFlags = new boolean[size];
+        }
+        int32VarFlags[varIndex] = isInt32;
+    }
+
     public int getVarIndex(Node n) {
         int index = n.getIntProp(Node.VARIABLE_PROP, -1);
         if (index == -1) {
@@ -96,6 +144,8 @@ public final class OptFunctionNode {
     public final FunctionNode fnode;
 
     private boolean[] numberVarFlags;
+    private boolean[] unboxedVarFlags;
+    private boolean[] int32VarFlags;
     private int directTargetIndex = -1;
     private boolean itsParameterNumberContext;
     boolean itsContainsCalls0;
@@ -190,6 +190,30 @@ public final class OptRuntime extends ScriptRuntime {
         return Double.valueOf(num);
     }
 
+    /**
+     * Store an element whose value is a pair like a directCall parameter: when value is Void.TYPE,
+     * the number is the value.
+     */
+    public static void setObjectIndex(
+            Object obj,
+            double dblIndex,
+            Object value,
+            double number,
+            Context cx,
+            Scriptable scope) {
+        if (value == Void.TYPE) {
+            setObjectIndex(obj, dblIndex, number, cx, scope);
+        } else {
+            setObjectIndex(obj, dblIndex, value, cx, scope);
+        }
+    }
+
+    /** Can an int32 variable keep the number in its int register? Only a double can be -0. */
+    public static boolean isInt32(double num) {
+        int i = (int) num;
+        return i == num && (i != 0 || 1 / num > 0);
+    }
+
     static String encodeIntArray(int[] array) {
         // XXX: this extremely inefficient for small integers
         if (array == null) {
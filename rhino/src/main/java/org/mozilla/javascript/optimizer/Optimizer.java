@@ -39,6 +39,7 @@ class Optimizer {
         statementsArray.toArray(theStatementNodes);
 
         Block.runFlowAnalyzes(theFunction, theStatementNodes);
+        findUnboxedVars(theStatementNodes);
 
         if (!theFunction.fnode.requiresActivation()) {
             /*
@@ -53,6 +54,238 @@ class Optimizer {
                 rewriteForNumberVariables(theStatementNode, NumberType);
             }
             theFunction.setParameterNumberContext(parameterUsedInNumberContext);
+            findInt32Vars(theStatementNodes);
+        }
+    }
+
+    /*
+            A Number variable that is only assigned int32 values that the
+            codegen can compute as ints - int constants, bit operations, sums
+            and differences of int32 variables and constants, and increments,
+            like a loop counter - is also given an int register, so that it is
+            not converted to and from double as it is updated. The sums may
+            overflow, so the codegen still checks them and moves the value to
+            the double register when it is not an int32 (see BodyCodegen).
+    */
+    private void findInt32Vars(Node[] statementNodes) {
+        int varCount = theFunction.fnode.getParamAndVarCount();
+        boolean[] constDeclarations = theFunction.fnode.getParamAndVarConst();
+        boolean found = false;
+        for (int i = theFunction.fnode.getParamCount(); i != varCount; ++i) {
+            if (theFunction.isNumberVar(i) && !constDeclarations[i]) {
+                theFunction.setIsInt32Var(i, true);
+                found = true;
+            }
+        }
+        // Variables assigned from each other are dropped together
+        while (found) {
+            found = false;
+            for (Node n : statementNodes) {
+                found |= dropNonInt32Stores(n);
+            }
+        }
+    }
+
+    private boolean dropNonInt32Stores(Node n) {
+        boolean dropped = false;
+        if (n.getType() == Token.SETVAR) {
+            int varIndex = theFunction.getVarIndex(n);
+            if (theFunction.isInt32Var(varIndex) && !isInt32Store(n.getLastChild())) {
+                theFunction.setIsInt32Var(varIndex, false);
+                dropped = true;
+            }
+        }
+        for (Node child = n.getFirstChild(); child != null; child = child.getNext()) {
+            dropped |= dropNonInt32Stores(child);
+        }
+        return dropped;
+    }
+
+    /** Can BodyCodegen store the value of n in an int32 variable without a double? */
+    private boolean isInt32Store(Node n) {
+        switch (n.getType()) {
+            case Token.BITXOR:
+            case Token.BITOR:
+            case Token.BITAND:
+            case Token.RSH:
+            case Token.LSH:
+            case Token.BITNOT:
+                return n.getIntProp(Node.ISNUMBER_PROP, -1) != -1;
+            case Token.ADD:
+            case Token.SUB:
+                return n.getIntProp(Node.ISNUMBER_PROP, -1) == Node.BOTH
+                        && isInt32Operand(n.getFirstChild())
+                        && isInt32Operand(n.getLastChild());
+            default:
+                return isInt32Operand(n);
+        }
+    }
+
+    private boolean isInt32Operand(Node n) {
+        if (n.getType() == Token.NUMBER) {
+            double d = n.getDouble();
+            return d == (int) d && (d != 0 || 1 / d > 0);
+        }
+        return n.getType() == Token.GETVAR
+                && theFunction.isInt32Var(theFunction.getVarIndex(n));
+    }
+
+    /*
+            A variable that is read before it is set on some path is not a
+            Number variable, even when only Numbers are assigned to it, so
+            each of them is boxed. The only other value that such a variable
+            can hold is the initial undefined. If the variable is only read
+            as a Number, undefined is NaN: make it a Number variable that
+            starts out as NaN. If it is also returned, stored in an element,
+            or passed to a directCall, where undefined is not NaN, keep it
+            like a directCall parameter instead (see below), so that the
+            Numbers still stay in its double register.
+    */
+    private void findUnboxedVars(Node[] statementNodes) {
+        int varCount = theFunction.fnode.getParamAndVarCount();
+        boolean[] numberStores = new boolean[varCount];
+        boolean[] pairUses = new boolean[varCount];
+        boolean[] objectUses = new boolean[varCount];
+        for (Node n : statementNodes) {
+            findVarUses(n, null, numberStores, pairUses, objectUses);
+        }
+        boolean[] constDeclarations = theFunction.fnode.getParamAndVarConst();
+        for (int i = theFunction.fnode.getParamCount(); i != varCount; ++i) {
+            if (numberStores[i]
+                    && !objectUses[i]
+                    && !constDeclarations[i]
+                    && !theFunction.isNumberVar(i)) {
+                if (pairUses[i]) {
+                    theFunction.setIsUnboxedVar(i);
+                } else {
+                    theFunction.setIsNumberVar(i);
+                }
+            }
+        }
+    }
+
+    private void findVarUses(
+            Node n,
+            Node parent,
+            boolean[] numberStores,
+            boolean[] pairUses,
+            boolean[] objectUses) {
+        int type = n.getType();
+        if (type == Token.GETVAR) {
+            int varIndex = theFunction.getVarIndex(n);
+            if (isPairOperand(n, parent)) {
+                pairUses[varIndex] = true;
+            } else if (!isNumberOperand(n, parent)) {
+                objectUses[varIndex] = true;
+            }
+        } else if (type == Token.SETVAR) {
+            int varIndex = theFunction.getVarIndex(n);
+            if (isNumberExpression(n.getFirstChild().getNext())) {
+                numberStores[varIndex] = true;
+            } else {
+                objectUses[varIndex] = true;
+            }
+        } else if (type == Token.TYPEOFNAME) {
+            // typeof of a variable in registers reads the pair too
+            int varIndex = theFunction.fnode.getIndexForNameNode(n);
+            if (varIndex >= 0) {
+                pairUses[varIndex] = true;
+            }
+        }
+        for (Node child = n.getFirstChild(); child != null; child = child.getNext()) {
+            findVarUses(child, n, numberStores, pairUses, objectUses);
+        }
+    }
+
+    /**
+     * Does the codegen read the variable n as a pair, like a directCall parameter? Only then can
+     * it tell undefined from NaN without boxing the Numbers.
+     */
+    private static boolean isPairOperand(Node n, Node parent) {
+        if (parent == null) {
+            return false;
+        }
+        switch (parent.getType()) {
+            case Token.RETURN:
+                return true;
+            case Token.SETELEM:
+                // BodyCodegen stores the Number in a packed array without boxing it
+                return n == parent.getLastChild();
+            case Token.CALL:
+                // directCall arguments are passed as pairs
+                return parent.getProp(Node.DIRECTCALL_PROP) != null
+                        && n != parent.getFirstChild();
+            default:
+                return false;
+        }
+    }
+
+    /** Will rewriteForNumberVariables read the variable n as a Number? */
+    private boolean isNumberOperand(Node n, Node parent) {
+        if (parent == null) {
+            return false;
+        }
+        switch (parent.getType()) {
+            case Token.BITXOR:
+            case Token.BITOR:
+            case Token.BITAND:
+            case Token.RSH:
+            case Token.LSH:
+            case Token.SUB:
+            case Token.MUL:
+            case Token.DIV:
+            case Token.MOD:
+            case Token.EXP:
+                return true;
+            case Token.LE:
+            case Token.LT:
+            case Token.GE:
+            case Token.GT:
+                {
+                    Node other = n == parent.getFirstChild() ? n.getNext() : parent.getFirstChild();
+                    return isNumberExpression(other);
+                }
+            case Token.SETVAR:
+                return theFunction.isNumberVar(theFunction.getVarIndex(parent));
+            default:
+                return false;
+        }
+    }
+
+    /** Will rewriteForNumberVariables find that n is a Number? */
+    private boolean isNumberExpression(Node n) {
+        switch (n.getType()) {
+            case Token.NUMBER:
+                return true;
+            case Token.GETVAR:
+                return theFunction.isNumberVar(theFunction.getVarIndex(n));
+            case Token.SETVAR:
+                return theFunction.isNumberVar(theFunction.getVarIndex(n));
+            case Token.INC:
+            case Token.DEC:
+                return n.getFirstChild().getType() == Token.GETVAR
+                        && isNumberExpression(n.getFirstChild());
+            case Token.BITXOR:
+            case Token.BITOR:
+            case Token.BITAND:
+            case Token.RSH:
+            case Token.LSH:
+            case Token.SUB:
+            case Token.MUL:
+            case Token.DIV:
+            case Token.MOD:
+            case Token.EXP:
+                return isNumberExpression(n.getFirstChild())
+                        || isNumberExpression(n.getLastChild());
+            case Token.ADD:
+                return isNumberExpression(n.getFirstChild())
+                        && isNumberExpression(n.getLastChild());
+            case Token.BITNOT:
+            case Token.POS:
+            case Token.NEG:
+                return isNumberExpression(n.getFirstChild());
+            default:
+                return false;
         }
     }
 
@@ -96,9 +329,9 @@ class Optimizer {
     }
 
     private boolean convertParameter(Node n) {
-        if (inDirectCallFunction && n.getType() == Token.GETVAR) {
+        if (n.getType() == Token.GETVAR) {
             int varIndex = theFunction.getVarIndex(n);
-            if (theFunction.isParameter(varIndex)) {
+            if (isDirectCallParameter(varIndex)) {
                 n.removeProp(Node.ISNUMBER_PROP);
                 return true;
             }
@@ -106,6 +339,12 @@ class Optimizer {
         return false;
     }
 
+    /** Unboxed variables are handled like directCall parameters. */
+    private boolean isDirectCallParameter(int varIndex) {
+        return (inDirectCallFunction && theFunction.isParameter(varIndex))
+                || theFunction.isUnboxedVar(varIndex);
+    }
+
     private int rewriteForNumberVariables(Node n, int desired) {
         switch (n.getType()) {
             case Token.EXPR_VOID:
@@ -122,9 +361,7 @@ class Optimizer {
             case Token.GETVAR:
                 {
                     int varIndex = theFunction.getVarIndex(n);
-                    if (inDirectCallFunction
-                            && theFunction.isParameter(varIndex)
-                            && desired == NumberType) {
+                    if (isDirectCallParameter(varIndex) && desired == NumberType) {
                         n.putIntProp(Node.ISNUMBER_PROP, Node.BOTH);
                         return NumberType;
                     } else if (theFunction.isNumberVar(varIndex)) {
@@ -159,7 +396,7 @@ class Optimizer {
                     Node rChild = lChild.getNext();
                     int rType = rewriteForNumberVariables(rChild, NumberType);
                     int varIndex = theFunction.getVarIndex(n);
-                    if (inDirectCallFunction && theFunction.isParameter(varIndex)) {
+                    if (isDirectCallParameter(varIndex)) {
                         if (rType == NumberType) {
                             if (!convertParameter(rChild)) {
                                 n.putIntProp(Node.ISNUMBER_PROP, Node.BOTH);
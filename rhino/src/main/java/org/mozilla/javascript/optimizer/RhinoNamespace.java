@@ -10,4 +10,5 @@ import jdk.dynalink.Namespace;
 public enum RhinoNamespace implements Namespace {
     NAME,
     MATH,
+    FUNCTION,
 }
@@ -0,0 +1,159 @@
+package org.mozilla.javascript.optimizer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import jdk.dynalink.StandardNamespace;
+import jdk.dynalink.StandardOperation;
+import jdk.dynalink.linker.GuardedInvocation;
+import jdk.dynalink.linker.GuardingDynamicLinker;
+import jdk.dynalink.linker.LinkRequest;
+import jdk.dynalink.linker.LinkerServices;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * This linker implements inline caches for property gets and sets with a constant name. When the
+ * receiver is an ordinary object that uses shapes, and the property is a data property stored
+ * directly in it, the call site is bound to code that checks the shape of the receiver and then
+ * reads or writes the slot at the position that we found the first time.
+ *
+ * <p>Every time the guard fails, the call site is linked again, and the ChainedCallSite that the
+ * Bootstrapper creates keeps a short list of shapes, which makes the cache polymorphic. Once the
+ * call site has been relinked too many times it is considered unstable, and this linker returns
+ * null so that the DefaultLinker can link it to the generic operation without any guards.
+ */
+@SuppressWarnings("AndroidJdkLibsChecker")
+class ShapeCacheLinker implements GuardingDynamicLinker {
+    private static final MethodHandle HAS_SHAPE;
+    private static final MethodHandle GET_PROP;
+    private static final MethodHandle GET_PROP_NOWARN;
+    private static final MethodHandle SET_PROP;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            HAS_SHAPE =
+                    lookup.findStatic(
+                            ShapeCacheLinker.class,
+                            "hasShape",
+                            MethodType.methodType(Boolean.TYPE, Object.class, Object.class));
+            MethodType getType =
+                    MethodType.methodType(
+                            Object.class,
+                            Integer.TYPE,
+                            String.class,
+                            Object.class,
+                            Context.class,
+                            Scriptable.class);
+            GET_PROP = lookup.findStatic(ShapeCacheLinker.class, "getProp", getType);
+            GET_PROP_NOWARN = lookup.findStatic(ShapeCacheLinker.class, "getPropNoWarn", getType);
+            SET_PROP =
+                    lookup.findStatic(
+                            ShapeCacheLinker.class,
+                            "setProp",
+                            MethodType.methodType(
+                                    Object.class,
+                                    Integer.TYPE,
+                                    String.class,
+                                    Object.class,
+                                    Object.class,
+                                    Context.class,
+                                    Scriptable.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Override
+    public GuardedInvocation getGuardedInvocation(LinkRequest req, LinkerServices svc) {
+        if (req.isCallSiteUnstable()) {
+            return null;
+        }
+
+        ParsedOperation op = new ParsedOperation(req.getCallSiteDescriptor().getOperation());
+        if (!op.isNamespace(StandardNamespace.PROPERTY)) {
+            return null;
+        }
+        MethodHandle mh;
+        if (op.isOperation(StandardOperation.GET)) {
+            mh = GET_PROP;
+        } else if (op.isOperation(RhinoOperation.GETNOWARN)) {
+            mh = GET_PROP_NOWARN;
+        } else if (op.isOperation(StandardOperation.SET)) {
+            mh = SET_PROP;
+        } else {
+            return null;
+        }
+
+        Object target = req.getReceiver();
+        if (!isCacheable(target)) {
+            return null;
+        }
+        ScriptableObject obj = (ScriptableObject) target;
+        Object shape = ScriptRuntime.getShape(obj);
+        int position = ScriptRuntime.getShapePosition(obj, op.getName());
+        if (shape == null || position < 0) {
+            return null;
+        }
+
+        // The guard only looks at the receiver, which is always the first argument,
+        // so drop all the others.
+        MethodType mType = req.getCallSiteDescriptor().getMethodType();
+        MethodHandle guard = MethodHandles.insertArguments(HAS_SHAPE, 0, shape);
+        guard =
+                MethodHandles.dropArguments(
+                        guard, 1, mType.parameterList().subList(1, mType.parameterCount()));
+        mh = MethodHandles.insertArguments(mh, 0, position, op.getName());
+        if (DefaultLinker.DEBUG) {
+            System.out.println(op + ": shape cache at position " + position);
+        }
+        return new GuardedInvocation(mh, guard);
+    }
+
+    /**
+     * Only plain objects qualify, because other classes may override "get" and "put" in ways that
+     * have nothing to do with their slots. Since shapes are shared by objects of every class, the
+     * guard also has to check the exact class.
+     */
+    private static boolean isCacheable(Object o) {
+        return o != null && o.getClass() == NativeObject.class;
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean hasShape(Object shape, Object o) {
+        return isCacheable(o) && ScriptRuntime.getShape((ScriptableObject) o) == shape;
+    }
+
+    @SuppressWarnings("unused")
+    private static Object getProp(
+            int position, String name, Object obj, Context cx, Scriptable scope) {
+        Object value = ScriptRuntime.getShapedValue((ScriptableObject) obj, position);
+        if (value != Scriptable.NOT_FOUND) {
+            return value;
+        }
+        return ScriptRuntime.getObjectProp(obj, name, cx, scope);
+    }
+
+    @SuppressWarnings("unused")
+    private static Object getPropNoWarn(
+            int position, String name, Object obj, Context cx, Scriptable scope) {
+        Object value = ScriptRuntime.getShapedValue((ScriptableObject) obj, position);
+        if (value != Scriptable.NOT_FOUND) {
+            return value;
+        }
+        return ScriptRuntime.getObjectPropNoWarn(obj, name, cx, scope);
+    }
+
+    @SuppressWarnings("unused")
+    private static Object setProp(
+            int position, String name, Object obj, Object value, Context cx, Scriptable scope) {
+        if (ScriptRuntime.setShapedValue((ScriptableObject) obj, position, value)) {
+            return value;
+        }
+        return ScriptRuntime.setObjectProp(obj, name, value, cx, scope);
+    }
+}
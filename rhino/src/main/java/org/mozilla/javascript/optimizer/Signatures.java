@@ -195,4 +195,46 @@ interface Signatures {
 
     /** MATH:TOUINT32: Convert the object to a Java "long" that represents an unsigned integer. */
     String MATH_TO_UINT32 = "(Ljava/lang/Object;)J";
+
+    /**
+     * FUNCTION:CALL: Call a function, with the "this" object and zero arguments. Falls back to
+     * OptRuntime.call0.
+     */
+    String FUNCTION_CALL_0 =
+            "(Lorg/mozilla/javascript/Callable;"
+                    + "Lorg/mozilla/javascript/Scriptable;"
+                    + "Lorg/mozilla/javascript/Context;"
+                    + "Lorg/mozilla/javascript/Scriptable;"
+                    + ")Ljava/lang/Object;";
+
+    /** FUNCTION:CALL: Same with one argument. Falls back to OptRuntime.call1. */
+    String FUNCTION_CALL_1 =
+            "(Lorg/mozilla/javascript/Callable;"
+                    + "Lorg/mozilla/javascript/Scriptable;"
+                    + "Ljava/lang/Object;"
+                    + "Lorg/mozilla/javascript/Context;"
+                    + "Lorg/mozilla/javascript/Scriptable;"
+                    + ")Ljava/lang/Object;";
+
+    /** FUNCTION:CALL: Same with two arguments. Falls back to OptRuntime.call2. */
+    String FUNCTION_CALL_2 =
+            "(Lorg/mozilla/javascript/Callable;"
+                    + "Lorg/mozilla/javascript/Scriptable;"
+                    + "Ljava/lang/Object;"
+                    + "Ljava/lang/Object;"
+                    + "Lorg/mozilla/javascript/Context;"
+                    + "Lorg/mozilla/javascript/Scriptable;"
+                    + ")Ljava/lang/Object;";
+
+    /**
+     * FUNCTION:CALL: Same with an array of any number of arguments. Falls back to
+     * OptRuntime.callN.
+     */
+    String FUNCTION_CALL_N =
+            "(Lorg/mozilla/javascript/Callable;"
+                    + "Lorg/mozilla/javascript/Scriptable;"
+                    + "[Ljava/lang/Object;"
+                    + "Lorg/mozilla/javascript/Context;"
+                    + "Lorg/mozilla/javascript/Scriptable;"
+                    + ")Ljava/lang/Object;";
 }
@@ -0,0 +1,148 @@
+package org.mozilla.javascript.optimizer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.SwitchPoint;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import jdk.dynalink.StandardOperation;
+import jdk.dynalink.linker.GuardedInvocation;
+import jdk.dynalink.linker.GuardingDynamicLinker;
+import jdk.dynalink.linker.LinkRequest;
+import jdk.dynalink.linker.LinkerServices;
+import jdk.dynalink.linker.support.Guards;
+import org.mozilla.javascript.Callable;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.IdScriptableObject;
+import org.mozilla.javascript.ImporterTopLevel;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Slot;
+
+/**
+ * This linker caches the lookup of names, such as "Math" or the name of a top-level function, that
+ * are found directly in the top-level scope. The call site is bound to the slot that holds the
+ * property, guarded by the identity of the scope and by a SwitchPoint. The SwitchPoint is
+ * invalidated as soon as the slot is removed from the scope or replaced by another one, for
+ * instance when the property is deleted or redefined as an accessor. Assigning a new value does
+ * not invalidate anything, because the value is always read from the slot.
+ *
+ * <p>Names looked up from nested scopes are left to the other linkers, because a binding that
+ * shadows the global one may be introduced anywhere along the scope chain.
+ */
+@SuppressWarnings("AndroidJdkLibsChecker")
+class TopLevelNameLinker implements GuardingDynamicLinker {
+    /**
+     * There is one SwitchPoint per cached slot, no matter how many call sites use it, so that a
+     * global scope that is shared by many scripts does not accumulate listeners.
+     */
+    private static final Map<Slot, SwitchPoint> switchPoints =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final ClassValue<Boolean> READS_SLOTS_FIRST =
+            new ClassValue<Boolean>() {
+                @Override
+                protected Boolean computeValue(Class<?> type) {
+                    try {
+                        Class<?> declarer =
+                                type.getMethod("get", String.class, Scriptable.class)
+                                        .getDeclaringClass();
+                        return declarer == ScriptableObject.class
+                                || declarer == IdScriptableObject.class
+                                || declarer == ImporterTopLevel.class;
+                    } catch (NoSuchMethodException e) {
+                        return Boolean.FALSE;
+                    }
+                }
+            };
+
+    @Override
+    public GuardedInvocation getGuardedInvocation(LinkRequest req, LinkerServices svc)
+            throws NoSuchMethodException, IllegalAccessException {
+        if (req.isCallSiteUnstable()) {
+            return null;
+        }
+
+        ParsedOperation op = new ParsedOperation(req.getCallSiteDescriptor().getOperation());
+        if (!op.isNamespace(RhinoNamespace.NAME)
+                || !op.isOperation(StandardOperation.GET, RhinoOperation.GETWITHTHIS)) {
+            return null;
+        }
+        Object target = req.getReceiver();
+        if (!isCacheable(target)) {
+            return null;
+        }
+
+        ScriptableObject scope = (ScriptableObject) target;
+        String name = op.getName();
+        Slot slot;
+        SwitchPoint sp;
+        synchronized (switchPoints) {
+            slot = scope.getSlotForCaching(name, null);
+            if (slot == null) {
+                return null;
+            }
+            sp = switchPoints.get(slot);
+            if (sp == null) {
+                SwitchPoint newSp = new SwitchPoint();
+                Slot watched =
+                        scope.getSlotForCaching(
+                                name, () -> SwitchPoint.invalidateAll(new SwitchPoint[] {newSp}));
+                if (watched != slot) {
+                    // Changed by another thread since we looked
+                    return null;
+                }
+                switchPoints.put(slot, newSp);
+                sp = newSp;
+            }
+        }
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodType mType = req.getCallSiteDescriptor().getMethodType();
+        MethodHandle mh;
+        if (op.isOperation(StandardOperation.GET)) {
+            MethodType tt =
+                    MethodType.methodType(
+                            Object.class,
+                            Context.class,
+                            Scriptable.class,
+                            String.class,
+                            Slot.class);
+            mh = lookup.findStatic(ScriptRuntime.class, "cachedTopScopeName", tt);
+            mh = MethodHandles.insertArguments(mh, 2, name, slot);
+        } else {
+            MethodType tt =
+                    MethodType.methodType(
+                            Callable.class,
+                            String.class,
+                            Context.class,
+                            Scriptable.class,
+                            Slot.class);
+            mh = lookup.findStatic(ScriptRuntime.class, "cachedTopScopeFunctionAndThis", tt);
+            mh = MethodHandles.insertArguments(mh, 3, slot);
+            mh = MethodHandles.insertArguments(mh, 0, name);
+        }
+        mh = MethodHandles.permuteArguments(mh, mType, 1, 0);
+
+        // As with constants, the scope is always the first argument.
+        MethodHandle guard = Guards.asType(Guards.getIdentityGuard(target), mType);
+        if (DefaultLinker.DEBUG) {
+            System.out.println(op + ": top-level slot");
+        }
+        return new GuardedInvocation(mh, guard, sp);
+    }
+
+    /**
+     * Only top-level scopes whose "get" method is known to look at their own slots first qualify,
+     * because otherwise the slot might not be what a regular lookup would return.
+     */
+    private static boolean isCacheable(Object o) {
+        if (!(o instanceof ScriptableObject) || ((Scriptable) o).getParentScope() != null) {
+            return false;
+        }
+        return READS_SLOTS_FIRST.get(o.getClass());
+    }
+}
@@ -0,0 +1,788 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.regexp;
+
+import static org.mozilla.javascript.regexp.NativeRegExp.INDEX_LEN;
+import static org.mozilla.javascript.regexp.NativeRegExp.JSREG_DOTALL;
+import static org.mozilla.javascript.regexp.NativeRegExp.JSREG_STICKY;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_ALNUM;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_ALT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_ALTPREREQ;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_ALTPREREQ2;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_ALTPREREQi;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_BOL;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_CLASS;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_DIGIT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_DOT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_EMPTY;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_END;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_ENDCHILD;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_EOL;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_FLAT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_FLAT1;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_FLAT1i;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_FLATi;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_JUMP;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_LPAREN;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_MINIMALOPT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_MINIMALPLUS;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_MINIMALQUANT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_MINIMALSTAR;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_NCLASS;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_NONALNUM;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_NONDIGIT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_NONSPACE;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_OPT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_PLUS;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_QUANT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_RPAREN;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_SPACE;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_STAR;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_UCFLAT1;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_UCFLAT1i;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_WBDRY;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_WNONBDRY;
+import static org.mozilla.javascript.regexp.NativeRegExp.getIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+
+/**
+ * A matcher for regular expressions that takes time proportional to the length of the input times
+ * the size of the expression, whatever the input is. The bytecode of the regular expression is
+ * turned into a Thompson NFA, which is simulated in a single pass over the input while keeping one
+ * thread per NFA state, in the order in which the backtracking matcher would try them (a "Pike
+ * VM"). This gives the same matches and captures as the backtracking matcher.
+ *
+ * <p>Back references and lookahead cannot be handled this way, so expressions that use them always
+ * use the backtracking matcher. So do expressions whose NFA would be very large, such as a{1000}.
+ * Quantifiers whose atom can match the empty string, such as (a*)*, save the position where each
+ * optional iteration starts in the thread, and an iteration that ends at the same position fails,
+ * as it does in the backtracking matcher.
+ *
+ * <p>Since the backtracking matcher is faster on most expressions, this one is only chosen
+ * automatically for expressions that may take exponential time with it: those that repeat a group
+ * or an alternative rather than a single character. {@link Context#FEATURE_LINEAR_REGEXP} uses it
+ * for every expression that it supports.
+ */
+final class LinearMatcher {
+
+    // NFA instructions
+    private static final byte CHAR = 0; // arg1 is the pc of a single-character op in the program
+    private static final byte LITERAL = 1; // arg1 is a char, arg2 is 1 to ignore case
+    private static final byte ASSERT = 2; // arg1 is REOP_BOL, REOP_EOL, etc.
+    private static final byte SPLIT = 3; // try arg1, then arg2
+    private static final byte JUMP = 4; // go to arg1
+    private static final byte SAVE = 5; // save the position in capture slot arg1
+    private static final byte RESET = 6; // clear arg2 captures starting with paren arg1
+    private static final byte MATCH = 7;
+    private static final byte PROGRESS = 8; // fail if the position is still the one in slot arg1
+
+    private static final int MAX_INSTRUCTIONS = 10000;
+    private static final int MAX_STATES = 4 * MAX_INSTRUCTIONS;
+
+    private final RECompiled re;
+    // Capture slots, then the start positions of iterations that may be empty
+    private int slotCount;
+    private byte[] ops = new byte[64];
+    private int[] args1 = new int[64];
+    private int[] args2 = new int[64];
+    private int count;
+
+    // The first instruction, last instruction and slot of every iteration that may be empty
+    private final List<int[]> iterations = new ArrayList<>();
+    // The first state of every instruction, and the slots of the iterations around it
+    private int[] stateBase;
+    private int[][] iterationSlots;
+    private int stateCount;
+
+    /** Whether the backtracking matcher may take exponential time for this expression */
+    private boolean mayBacktrack;
+
+    private LinearMatcher(RECompiled re) {
+        this.re = re;
+        this.slotCount = 2 + 2 * re.parenCount;
+    }
+
+    /**
+     * Return the linear matcher that should be used for the given expression in this Context, or
+     * null if the backtracking matcher should be used.
+     */
+    static LinearMatcher get(Context cx, RECompiled re) {
+        LinearMatcher matcher = re.linearMatcher;
+        if (matcher == null) {
+            if (re.linearUnsupported) {
+                return null;
+            }
+            synchronized (re) {
+                matcher = re.linearMatcher;
+                if (matcher == null && !re.linearUnsupported) {
+                    matcher = compile(re);
+                    if (matcher == null) {
+                        re.linearUnsupported = true;
+                    } else {
+                        re.linearMatcher = matcher;
+                    }
+                }
+            }
+            if (matcher == null) {
+                return null;
+            }
+        }
+        if (matcher.mayBacktrack || cx.hasFeature(Context.FEATURE_LINEAR_REGEXP)) {
+            return matcher;
+        }
+        return null;
+    }
+
+    private static LinearMatcher compile(RECompiled re) {
+        Parser parser = new Parser(re.program);
+        List<Node> nodes = parser.parseSequence();
+        if (nodes == null || re.program[parser.pc] != REOP_END) {
+            return null;
+        }
+        LinearMatcher matcher = new LinearMatcher(re);
+        if (!matcher.compileSequence(nodes)) {
+            return null;
+        }
+        matcher.emit(MATCH, 0, 0);
+        if (!matcher.numberStates()) {
+            return null;
+        }
+        return matcher;
+    }
+
+    /*
+     * A regular expression, parsed back from its bytecode.
+     */
+    private static final class Node {
+        static final int CHAR = 0;
+        static final int FLAT = 1;
+        static final int ASSERT = 2;
+        static final int GROUP = 3;
+        static final int ALT = 4;
+        static final int QUANT = 5;
+
+        final int kind;
+        int arg; // pc of CHAR, offset of FLAT, op of ASSERT, paren index of GROUP and QUANT
+        int length; // of FLAT
+        boolean ignoreCase; // of FLAT
+        int min, max, parenCount; // of QUANT
+        boolean greedy; // of QUANT
+        List<Node> kids; // of GROUP, ALT and QUANT
+        List<Node> kids2; // of ALT
+
+        Node(int kind) {
+            this.kind = kind;
+        }
+
+        boolean isSingleChar() {
+            return kind == CHAR || (kind == FLAT && length == 1);
+        }
+    }
+
+    private static final class Parser {
+        final byte[] program;
+        int pc;
+
+        Parser(byte[] program) {
+            this.program = program;
+        }
+
+        /**
+         * Parse terms up to the end of the program, quantifier child, group or alternative, and
+         * leave pc at the op that ends it. Return null if there is a term that is not supported.
+         */
+        List<Node> parseSequence() {
+            List<Node> seq = new ArrayList<>();
+            for (; ; ) {
+                byte op = program[pc];
+                Node n;
+                switch (op) {
+                    case REOP_END:
+                    case REOP_ENDCHILD:
+                    case REOP_RPAREN:
+                    case REOP_JUMP:
+                        return seq;
+
+                    case REOP_EMPTY:
+                        pc++;
+                        continue;
+
+                    case REOP_BOL:
+                    case REOP_EOL:
+                    case REOP_WBDRY:
+                    case REOP_WNONBDRY:
+                        n = new Node(Node.ASSERT);
+                        n.arg = op;
+                        pc++;
+                        break;
+
+                    case REOP_FLAT:
+                    case REOP_FLATi:
+                        n = new Node(Node.FLAT);
+                        n.arg = getIndex(program, pc + 1);
+                        n.length = getIndex(program, pc + 1 + INDEX_LEN);
+                        n.ignoreCase = op == REOP_FLATi;
+                        pc += 1 + 2 * INDEX_LEN;
+                        break;
+
+                    case REOP_LPAREN:
+                        n = new Node(Node.GROUP);
+                        n.arg = getIndex(program, pc + 1);
+                        pc += 1 + INDEX_LEN;
+                        n.kids = parseSequence();
+                        if (n.kids == null || program[pc] != REOP_RPAREN) {
+                            return null;
+                        }
+                        pc += 1 + INDEX_LEN;
+                        break;
+
+                    case REOP_ALT:
+                    case REOP_ALTPREREQ:
+                    case REOP_ALTPREREQi:
+                    case REOP_ALTPREREQ2:
+                        {
+                            // The prerequisite is only a hint for the backtracking matcher
+                            int offsetPc = pc + (op == REOP_ALT ? 1 : 1 + 2 * INDEX_LEN);
+                            int nextAlt = offsetPc + getIndex(program, offsetPc);
+                            n = new Node(Node.ALT);
+                            pc = offsetPc + INDEX_LEN;
+                            n.kids = parseSequence();
+                            if (n.kids == null || program[pc] != REOP_JUMP) {
+                                return null;
+                            }
+                            int after = pc + 1 + getIndex(program, pc + 1);
+                            pc = nextAlt;
+                            n.kids2 = parseSequence();
+                            if (n.kids2 == null || program[pc] != REOP_JUMP) {
+                                return null;
+                            }
+                            pc = after;
+                        }
+                        break;
+
+                    case REOP_STAR:
+                    case REOP_PLUS:
+                    case REOP_OPT:
+                    case REOP_QUANT:
+                    case REOP_MINIMALSTAR:
+                    case REOP_MINIMALPLUS:
+                    case REOP_MINIMALOPT:
+                    case REOP_MINIMALQUANT:
+                        n = new Node(Node.QUANT);
+                        n.greedy = op == REOP_STAR || op == REOP_PLUS || op == REOP_OPT
+                                || op == REOP_QUANT;
+                        pc++;
+                        if (op == REOP_QUANT || op == REOP_MINIMALQUANT) {
+                            n.min = getIndex(program, pc);
+                            n.max = getIndex(program, pc + INDEX_LEN) - 1;
+                            pc += 2 * INDEX_LEN;
+                        } else {
+                            n.min = (op == REOP_PLUS || op == REOP_MINIMALPLUS) ? 1 : 0;
+                            n.max = (op == REOP_OPT || op == REOP_MINIMALOPT) ? 1 : -1;
+                        }
+                        n.parenCount = getIndex(program, pc);
+                        n.arg = getIndex(program, pc + INDEX_LEN);
+                        pc += 3 * INDEX_LEN;
+                        n.kids = parseSequence();
+                        if (n.kids == null || program[pc] != REOP_ENDCHILD) {
+                            return null;
+                        }
+                        pc++;
+                        break;
+
+                    default:
+                        int next = skipSingleChar(op, pc);
+                        if (next < 0) {
+                            // Back references, lookahead and anything unexpected
+                            return null;
+                        }
+                        n = new Node(Node.CHAR);
+                        n.arg = pc;
+                        pc = next;
+                        break;
+                }
+                seq.add(n);
+            }
+        }
+
+        private static int skipSingleChar(byte op, int pc) {
+            switch (op) {
+                case REOP_DOT:
+                case REOP_DIGIT:
+                case REOP_NONDIGIT:
+                case REOP_ALNUM:
+                case REOP_NONALNUM:
+                case REOP_SPACE:
+                case REOP_NONSPACE:
+                    return pc + 1;
+                case REOP_FLAT1:
+                case REOP_FLAT1i:
+                    return pc + 2;
+                case REOP_UCFLAT1:
+                case REOP_UCFLAT1i:
+                case REOP_CLASS:
+                case REOP_NCLASS:
+                    return pc + 1 + INDEX_LEN;
+                default:
+                    return -1;
+            }
+        }
+    }
+
+    private static boolean isNullable(List<Node> seq) {
+        for (Node n : seq) {
+            if (!isNullable(n)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNullable(Node n) {
+        switch (n.kind) {
+            case Node.ASSERT:
+                return true;
+            case Node.GROUP:
+                return isNullable(n.kids);
+            case Node.ALT:
+                return isNullable(n.kids) || isNullable(n.kids2);
+            case Node.QUANT:
+                return n.min == 0 || isNullable(n.kids);
+            default:
+                return false;
+        }
+    }
+
+    private int emit(byte op, int arg1, int arg2) {
+        if (count == ops.length) {
+            ops = Arrays.copyOf(ops, count * 2);
+            args1 = Arrays.copyOf(args1, count * 2);
+            args2 = Arrays.copyOf(args2, count * 2);
+        }
+        ops[count] = op;
+        args1[count] = arg1;
+        args2[count] = arg2;
+        return count++;
+    }
+
+    private boolean compileSequence(List<Node> seq) {
+        for (Node n : seq) {
+            if (!compileNode(n) || count > MAX_INSTRUCTIONS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean compileNode(Node n) {
+        switch (n.kind) {
+            case Node.CHAR:
+                emit(CHAR, n.arg, 0);
+                return true;
+
+            case Node.FLAT:
+                for (int i = 0; i < n.length; i++) {
+                    emit(LITERAL, re.source[n.arg + i], n.ignoreCase ? 1 : 0);
+                }
+                return true;
+
+            case Node.ASSERT:
+                emit(ASSERT, n.arg, 0);
+                return true;
+
+            case Node.GROUP:
+                emit(SAVE, 2 + 2 * n.arg, 0);
+                if (!compileSequence(n.kids)) {
+                    return false;
+                }
+                emit(SAVE, 3 + 2 * n.arg, 0);
+                return true;
+
+            case Node.ALT:
+                {
+                    int split = emit(SPLIT, 0, 0);
+                    args1[split] = count;
+                    if (!compileSequence(n.kids)) {
+                        return false;
+                    }
+                    int jump = emit(JUMP, 0, 0);
+                    args2[split] = count;
+                    if (!compileSequence(n.kids2)) {
+                        return false;
+                    }
+                    args1[jump] = count;
+                    return true;
+                }
+
+            case Node.QUANT:
+                return compileQuantifier(n);
+
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    private boolean compileQuantifier(Node n) {
+        if (n.kids.size() != 1 || !n.kids.get(0).isSingleChar()) {
+            mayBacktrack = true;
+        }
+        if (n.max == 0) {
+            return true;
+        }
+        // The backtracking matcher clears the captures of the atom before
+        // every iteration after the ones that are required, and a non-greedy
+        // one also between the required ones.
+        for (int i = 1; i <= n.min; i++) {
+            if (!n.greedy && i > 1) {
+                emitReset(n);
+            }
+            if (!compileSequence(n.kids)) {
+                return false;
+            }
+        }
+        if (n.max == n.min) {
+            return true;
+        }
+        // An optional iteration that matches the empty string fails
+        int progressSlot = isNullable(n.kids) ? slotCount++ : -1;
+
+        if (n.max == -1) {
+            int split = emit(SPLIT, 0, 0);
+            int body = count;
+            if (!compileIteration(n, progressSlot)) {
+                return false;
+            }
+            emit(JUMP, split, 0);
+            setSplit(split, n.greedy, body, count);
+        } else {
+            int[] splits = new int[n.max - n.min];
+            for (int i = 0; i < splits.length; i++) {
+                splits[i] = emit(SPLIT, 0, 0);
+                args1[splits[i]] = count;
+                if (!compileIteration(n, progressSlot)) {
+                    return false;
+                }
+            }
+            for (int split : splits) {
+                setSplit(split, n.greedy, split + 1, count);
+            }
+        }
+        return true;
+    }
+
+    private boolean compileIteration(Node n, int progressSlot) {
+        emitReset(n);
+        if (progressSlot < 0) {
+            return compileSequence(n.kids);
+        }
+        int first = emit(SAVE, progressSlot, 0) + 1;
+        if (!compileSequence(n.kids)) {
+            return false;
+        }
+        int last = emit(PROGRESS, progressSlot, 0);
+        iterations.add(new int[] {first, last, progressSlot});
+        return true;
+    }
+
+    private void emitReset(Node n) {
+        if (n.parenCount > 0) {
+            emit(RESET, n.arg, n.parenCount);
+        }
+    }
+
+    private void setSplit(int split, boolean greedy, int body, int out) {
+        args1[split] = greedy ? body : out;
+        args2[split] = greedy ? out : body;
+    }
+
+    /**
+     * Number the states of the NFA. Threads at an instruction inside iterations that may be empty
+     * only behave the same if the same ones of those iterations have not consumed anything yet, so
+     * the instruction has one state for each combination of them.
+     */
+    private boolean numberStates() {
+        int[] depth = new int[count];
+        for (int[] it : iterations) {
+            for (int pc = it[0]; pc <= it[1]; pc++) {
+                depth[pc]++;
+            }
+        }
+        stateBase = new int[count];
+        iterationSlots = new int[count][];
+        for (int pc = 0; pc < count; pc++) {
+            // 1 << 16 states alone would be too many
+            if (depth[pc] > 15) {
+                return false;
+            }
+            stateBase[pc] = stateCount;
+            stateCount += 1 << depth[pc];
+            if (stateCount > MAX_STATES) {
+                return false;
+            }
+            if (depth[pc] > 0) {
+                iterationSlots[pc] = new int[depth[pc]];
+                depth[pc] = 0;
+            }
+        }
+        for (int[] it : iterations) {
+            for (int pc = it[0]; pc <= it[1]; pc++) {
+                iterationSlots[pc][depth[pc]++] = it[2];
+            }
+        }
+        return true;
+    }
+
+    private int state(int pc, int[] captures, int cp) {
+        int state = stateBase[pc];
+        int[] slots = iterationSlots[pc];
+        if (slots != null) {
+            for (int i = 0; i < slots.length; i++) {
+                if (captures[slots[i]] == cp) {
+                    state += 1 << i;
+                }
+            }
+        }
+        return state;
+    }
+
+    /** The threads for one position of the input, in order of priority. */
+    private static final class ThreadList {
+        final int[] pcs;
+        final int[][] captures;
+        // A sparse set of the NFA states that already have a thread
+        final int[] dense;
+        final int[] sparse;
+        int size;
+        int visited;
+
+        ThreadList(int stateCount) {
+            pcs = new int[stateCount];
+            captures = new int[stateCount][];
+            dense = new int[stateCount];
+            sparse = new int[stateCount];
+        }
+
+        boolean visit(int state) {
+            int i = sparse[state];
+            if (i < visited && dense[i] == state) {
+                return false;
+            }
+            sparse[state] = visited;
+            dense[visited++] = state;
+            return true;
+        }
+
+        void clear() {
+            size = 0;
+            visited = 0;
+        }
+    }
+
+    /**
+     * Find the first match starting at or after start, and store its position and captures in
+     * gData like matchRegExp does.
+     */
+    boolean match(Context cx, REGlobalData gData, String input, int start, int end) {
+        ThreadList current = new ThreadList(stateCount);
+        ThreadList next = new ThreadList(stateCount);
+        int[][] stackCaptures = new int[stateCount][];
+        int[] stackPcs = new int[stateCount];
+        boolean sticky = (re.flags & JSREG_STICKY) != 0;
+        boolean instructionCounting = cx.getInstructionObserverThreshold() != 0;
+        int[] matched = null;
+
+        for (int cp = start; ; cp++) {
+            if (matched == null && current.size == 0 && !sticky) {
+                // Nothing is in progress, so go on where a match may start
+                cp = NativeRegExp.prescan(re, input, cp, end);
+                if (cp < 0) {
+                    break;
+                }
+            }
+            if (matched == null && (!sticky || cp == start)) {
+                // Start a new attempt here, after all the ones that started earlier
+                int[] captures = new int[slotCount];
+                Arrays.fill(captures, -1);
+                captures[0] = cp;
+                addThread(
+                        current, 0, captures, gData, input, cp, end, stackPcs, stackCaptures);
+            }
+            if (current.size == 0 && (matched != null || sticky)) {
+                break;
+            }
+            if (instructionCounting) {
+                ScriptRuntime.addInstructionCount(cx, current.size);
+            }
+            char c = cp < end ? input.charAt(cp) : 0;
+            for (int i = 0; i < current.size; i++) {
+                int pc = current.pcs[i];
+                int[] captures = current.captures[i];
+                if (ops[pc] == MATCH) {
+                    // Threads after this one have lower priority, so forget them
+                    matched = captures.clone();
+                    matched[1] = cp;
+                    break;
+                }
+                if (cp < end && charMatches(gData, pc, c)) {
+                    addThread(
+                            next,
+                            pc + 1,
+                            captures,
+                            gData,
+                            input,
+                            cp + 1,
+                            end,
+                            stackPcs,
+                            stackCaptures);
+                }
+            }
+            if (cp == end) {
+                break;
+            }
+            ThreadList t = current;
+            current = next;
+            next = t;
+            next.clear();
+        }
+
+        if (matched == null) {
+            return false;
+        }
+        gData.cp = matched[1];
+        gData.skipped = matched[0] - start;
+        for (int i = 0; i < re.parenCount; i++) {
+            int s = matched[2 + 2 * i];
+            int e = matched[3 + 2 * i];
+            if (s < 0 || e < 0) {
+                gData.parens[i] = -1L;
+            } else {
+                gData.setParens(i, s, e - s);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add a thread at pc to the list, following jumps, splits and other instructions that do not
+     * consume input right away, in order of priority.
+     */
+    private void addThread(
+            ThreadList list,
+            int startPc,
+            int[] startCaptures,
+            REGlobalData gData,
+            String input,
+            int cp,
+            int end,
+            int[] stackPcs,
+            int[][] stackCaptures) {
+        int top = 0;
+        stackPcs[top] = startPc;
+        stackCaptures[top++] = startCaptures;
+        while (top > 0) {
+            int pc = stackPcs[--top];
+            int[] captures = stackCaptures[top];
+            stackCaptures[top] = null;
+            for (; ; ) {
+                if (!list.visit(state(pc, captures, cp))) {
+                    break;
+                }
+                byte op = ops[pc];
+                if (op == JUMP) {
+                    pc = args1[pc];
+                } else if (op == SPLIT) {
+                    // Every state is visited at most once, so the stack cannot overflow
+                    stackPcs[top] = args2[pc];
+                    stackCaptures[top++] = captures;
+                    pc = args1[pc];
+                } else if (op == SAVE) {
+                    captures = captures.clone();
+                    captures[args1[pc]] = cp;
+                    pc++;
+                } else if (op == RESET) {
+                    captures = captures.clone();
+                    int from = 2 + 2 * args1[pc];
+                    Arrays.fill(captures, from, from + 2 * args2[pc], -1);
+                    pc++;
+                } else if (op == PROGRESS) {
+                    if (captures[args1[pc]] == cp) {
+                        break;
+                    }
+                    pc++;
+                } else if (op == ASSERT) {
+                    if (!assertionHolds(gData, args1[pc], input, cp, end)) {
+                        break;
+                    }
+                    pc++;
+                } else {
+                    list.pcs[list.size] = pc;
+                    list.captures[list.size++] = captures;
+                    break;
+                }
+            }
+        }
+    }
+
+    private static boolean assertionHolds(
+            REGlobalData gData, int op, String input, int cp, int end) {
+        switch (op) {
+            case REOP_BOL:
+                return RegExpMatcher.isLineStart(input, cp, gData.multiline);
+            case REOP_EOL:
+                return RegExpMatcher.isLineEnd(input, cp, end, gData.multiline);
+            case REOP_WBDRY:
+                return RegExpMatcher.isWordBoundary(input, cp, end);
+            case REOP_WNONBDRY:
+                return !RegExpMatcher.isWordBoundary(input, cp, end);
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    private boolean charMatches(REGlobalData gData, int pc, char c) {
+        if (ops[pc] == LITERAL) {
+            char m = (char) args1[pc];
+            return c == m || (args2[pc] != 0 && RegExpMatcher.equalsIgnoreCase(c, m));
+        }
+        byte[] program = re.program;
+        int opPc = args1[pc];
+        switch (program[opPc]) {
+            case REOP_DOT:
+                return (re.flags & JSREG_DOTALL) != 0 || !NativeRegExp.isLineTerm(c);
+            case REOP_DIGIT:
+                return NativeRegExp.isDigit(c);
+            case REOP_NONDIGIT:
+                return !NativeRegExp.isDigit(c);
+            case REOP_ALNUM:
+                return NativeRegExp.isWord(c);
+            case REOP_NONALNUM:
+                return !NativeRegExp.isWord(c);
+            case REOP_SPACE:
+                return NativeRegExp.isREWhiteSpace(c);
+            case REOP_NONSPACE:
+                return !NativeRegExp.isREWhiteSpace(c);
+            case REOP_FLAT1:
+                return c == (char) (program[opPc + 1] & 0xFF);
+            case REOP_FLAT1i:
+                return RegExpMatcher.equalsIgnoreCase(c, (char) (program[opPc + 1] & 0xFF));
+            case REOP_UCFLAT1:
+                return c == (char) getIndex(program, opPc + 1);
+            case REOP_UCFLAT1i:
+                return RegExpMatcher.equalsIgnoreCase(c, (char) getIndex(program, opPc + 1));
+            case REOP_CLASS:
+            case REOP_NCLASS:
+                return NativeRegExp.classMatches(re, getIndex(program, opPc + 1), c);
+            default:
+                throw new IllegalStateException();
+        }
+    }
+}
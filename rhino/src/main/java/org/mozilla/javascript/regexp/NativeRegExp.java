@@ -52,41 +52,51 @@ public class NativeRegExp extends IdScriptableObject {
 
     private static final boolean debug = false;
 
-    private static final byte REOP_SIMPLE_START = 1; /* start of 'simple opcodes' */
-    private static final byte REOP_EMPTY = 1; /* match rest of input against rest of r.e. */
-    private static final byte REOP_BOL = 2; /* beginning of input (or line if multiline) */
-    private static final byte REOP_EOL = 3; /* end of input (or line if multiline) */
-    private static final byte REOP_WBDRY = 4; /* match "" at word boundary */
-    private static final byte REOP_WNONBDRY = 5; /* match "" at word non-boundary */
-    private static final byte REOP_DOT = 6; /* stands for any character */
-    private static final byte REOP_DIGIT = 7; /* match a digit char: [0-9] */
-    private static final byte REOP_NONDIGIT = 8; /* match a non-digit char: [^0-9] */
-    private static final byte REOP_ALNUM = 9; /* match an alphanumeric char: [0-9a-z_A-Z] */
-    private static final byte REOP_NONALNUM = 10; /* match a non-alphanumeric char: [^0-9a-z_A-Z] */
-    private static final byte REOP_SPACE = 11; /* match a whitespace char */
-    private static final byte REOP_NONSPACE = 12; /* match a non-whitespace char */
-    private static final byte REOP_BACKREF = 13; /* back-reference (e.g., \1) to a parenthetical */
-    private static final byte REOP_FLAT = 14; /* match a flat string */
-    private static final byte REOP_FLAT1 = 15; /* match a single char */
-    private static final byte REOP_FLATi = 16; /* case-independent REOP_FLAT */
-    private static final byte REOP_FLAT1i = 17; /* case-independent REOP_FLAT1 */
-    private static final byte REOP_UCFLAT1 = 18; /* single Unicode char */
-    private static final byte REOP_UCFLAT1i = 19; /* case-independent REOP_UCFLAT1 */
+    /*
+     * Compiled programs are shared by every RegExp with the same source and
+     * flags, including those created with "new RegExp(str)" in a loop and
+     * the ones that String.prototype.replace and friends create.
+     */
+    private static final int CACHE_SIZE = 256;
+    // Long patterns are rarely repeated and take a lot of memory
+    private static final int MAX_CACHED_SOURCE_LENGTH = 1024;
+    static final RECompiledCache cache = new RECompiledCache(CACHE_SIZE);
+
+    static final byte REOP_SIMPLE_START = 1; /* start of 'simple opcodes' */
+    static final byte REOP_EMPTY = 1; /* match rest of input against rest of r.e. */
+    static final byte REOP_BOL = 2; /* beginning of input (or line if multiline) */
+    static final byte REOP_EOL = 3; /* end of input (or line if multiline) */
+    static final byte REOP_WBDRY = 4; /* match "" at word boundary */
+    static final byte REOP_WNONBDRY = 5; /* match "" at word non-boundary */
+    static final byte REOP_DOT = 6; /* stands for any character */
+    static final byte REOP_DIGIT = 7; /* match a digit char: [0-9] */
+    static final byte REOP_NONDIGIT = 8; /* match a non-digit char: [^0-9] */
+    static final byte REOP_ALNUM = 9; /* match an alphanumeric char: [0-9a-z_A-Z] */
+    static final byte REOP_NONALNUM = 10; /* match a non-alphanumeric char: [^0-9a-z_A-Z] */
+    static final byte REOP_SPACE = 11; /* match a whitespace char */
+    static final byte REOP_NONSPACE = 12; /* match a non-whitespace char */
+    static final byte REOP_BACKREF = 13; /* back-reference (e.g., \1) to a parenthetical */
+    static final byte REOP_FLAT = 14; /* match a flat string */
+    static final byte REOP_FLAT1 = 15; /* match a single char */
+    static final byte REOP_FLATi = 16; /* case-independent REOP_FLAT */
+    static final byte REOP_FLAT1i = 17; /* case-independent REOP_FLAT1 */
+    static final byte REOP_UCFLAT1 = 18; /* single Unicode char */
+    static final byte REOP_UCFLAT1i = 19; /* case-independent REOP_UCFLAT1 */
     //    private static final byte REOP_UCFLAT        = 20; /* flat Unicode string; len immediate
     // counts chars */
     //    private static final byte REOP_UCFLATi       = 21; /* case-independent REOP_UCFLAT */
-    private static final byte REOP_CLASS = 22; /* character class with index */
-    private static final byte REOP_NCLASS = 23; /* negated character class with index */
-    private static final byte REOP_SIMPLE_END = 23; /* end of 'simple opcodes' */
-    private static final byte REOP_QUANT = 25; /* quantified atom: atom{1,2} */
-    private static final byte REOP_STAR = 26; /* zero or more occurrences of kid */
-    private static final byte REOP_PLUS = 27; /* one or more occurrences of kid */
-    private static final byte REOP_OPT = 28; /* optional subexpression in kid */
-    private static final byte REOP_LPAREN =
+    static final byte REOP_CLASS = 22; /* character class with index */
+    static final byte REOP_NCLASS = 23; /* negated character class with index */
+    static final byte REOP_SIMPLE_END = 23; /* end of 'simple opcodes' */
+    static final byte REOP_QUANT = 25; /* quantified atom: atom{1,2} */
+    static final byte REOP_STAR = 26; /* zero or more occurrences of kid */
+    static final byte REOP_PLUS = 27; /* one or more occurrences of kid */
+    static final byte REOP_OPT = 28; /* optional subexpression in kid */
+    static final byte REOP_LPAREN =
             29; /* left paren bytecode: kid is u.num'th sub-regexp */
-    private static final byte REOP_RPAREN = 30; /* right paren bytecode */
-    private static final byte REOP_ALT = 31; /* alternative subexpressions in kid and next */
-    private static final byte REOP_JUMP = 32; /* for deoptimized closure loops */
+    static final byte REOP_RPAREN = 30; /* right paren bytecode */
+    static final byte REOP_ALT = 31; /* alternative subexpressions in kid and next */
+    static final byte REOP_JUMP = 32; /* for deoptimized closure loops */
     //    private static final byte REOP_DOTSTAR       = 33; /* optimize .* to use a single opcode
     // */
     //    private static final byte REOP_ANCHOR        = 34; /* like .* but skips left context to
@@ -95,26 +105,29 @@ public class NativeRegExp extends IdScriptableObject {
     //    private static final byte REOP_BACKREFi      = 37; /* case-independent REOP_BACKREF */
     //    private static final byte REOP_LPARENNON     = 40; /* non-capturing version of REOP_LPAREN
     // */
-    private static final byte REOP_ASSERT = 41; /* zero width positive lookahead assertion */
-    private static final byte REOP_ASSERT_NOT = 42; /* zero width negative lookahead assertion */
-    private static final byte REOP_ASSERTTEST = 43; /* sentinel at end of assertion child */
-    private static final byte REOP_ASSERTNOTTEST = 44; /* sentinel at end of !assertion child */
-    private static final byte REOP_MINIMALSTAR = 45; /* non-greedy version of * */
-    private static final byte REOP_MINIMALPLUS = 46; /* non-greedy version of + */
-    private static final byte REOP_MINIMALOPT = 47; /* non-greedy version of ? */
-    private static final byte REOP_MINIMALQUANT = 48; /* non-greedy version of {} */
-    private static final byte REOP_ENDCHILD = 49; /* sentinel at end of quantifier child */
-    private static final byte REOP_REPEAT = 51; /* directs execution of greedy quantifier */
-    private static final byte REOP_MINIMALREPEAT =
+    static final byte REOP_ASSERT = 41; /* zero width positive lookahead assertion */
+    static final byte REOP_ASSERT_NOT = 42; /* zero width negative lookahead assertion */
+    static final byte REOP_ASSERTTEST = 43; /* sentinel at end of assertion child */
+    static final byte REOP_ASSERTNOTTEST = 44; /* sentinel at end of !assertion child */
+    static final byte REOP_MINIMALSTAR = 45; /* non-greedy version of * */
+    static final byte REOP_MINIMALPLUS = 46; /* non-greedy version of + */
+    static final byte REOP_MINIMALOPT = 47; /* non-greedy version of ? */
+    static final byte REOP_MINIMALQUANT = 48; /* non-greedy version of {} */
+    static final byte REOP_ENDCHILD = 49; /* sentinel at end of quantifier child */
+    static final byte REOP_REPEAT = 51; /* directs execution of greedy quantifier */
+    static final byte REOP_MINIMALREPEAT =
             52; /* directs execution of non-greedy quantifier */
-    private static final byte REOP_ALTPREREQ = 53; /* prerequisite for ALT, either of two chars */
-    private static final byte REOP_ALTPREREQi = 54; /* case-independent REOP_ALTPREREQ */
-    private static final byte REOP_ALTPREREQ2 = 55; /* prerequisite for ALT, a char or a class */
+    static final byte REOP_ALTPREREQ = 53; /* prerequisite for ALT, either of two chars */
+    static final byte REOP_ALTPREREQi = 54; /* case-independent REOP_ALTPREREQ */
+    static final byte REOP_ALTPREREQ2 = 55; /* prerequisite for ALT, a char or a class */
     //    private static final byte REOP_ENDALT        = 56; /* end of final alternate */
-    private static final byte REOP_END = 57;
+    static final byte REOP_END = 57;
 
     private static final int ANCHOR_BOL = -2;
 
+    /* the most characters that matchRegExp looks for at the start of a match */
+    private static final int MAX_FIRST_CHARS = 8;
+
     public static void init(Context cx, Scriptable scope, boolean sealed) {
 
         NativeRegExp proto = NativeRegExpInstantiator.withLanguageVersion(cx.getLanguageVersion());
@@ -289,6 +302,24 @@ public class NativeRegExp extends IdScriptableObject {
     }
 
     static RECompiled compileRE(Context cx, String str, String global, boolean flat) {
+        // Strict mode reports warnings while compiling, which a cached program would not repeat
+        if (str.length() > MAX_CACHED_SOURCE_LENGTH
+                || cx.hasFeature(Context.FEATURE_STRICT_MODE)) {
+            return compileREImpl(cx, str, global, flat);
+        }
+        RECompiledCache.Key key = new RECompiledCache.Key(str, global, flat);
+        RECompiled regexp = cache.get(key);
+        if (regexp == null) {
+            regexp = compileREImpl(cx, str, global, flat);
+            if (regexp != null) {
+                cache.put(key, regexp);
+            }
+        }
+        return regexp;
+    }
+
+    private static RECompiled compileREImpl(
+            Context cx, String str, String global, boolean flat) {
         RECompiled regexp = new RECompiled(str);
         int length = str.length();
         int flags = 0;
@@ -383,19 +414,152 @@ public class NativeRegExp extends IdScriptableObject {
                 break;
         }
 
+        setupPrescan(regexp, state.result);
+
         if (debug) {
             if (regexp.anchorCh >= 0) {
                 System.out.println("Anchor ch = '" + (char) regexp.anchorCh + "'");
             }
+            if (regexp.prefix != null) {
+                System.out.println("Prefix = \"" + regexp.prefix + "\"");
+            }
         }
         return regexp;
     }
 
+    /*
+     * Find what every match has to start with, so that matchRegExp can skip
+     * the positions where the program cannot match without running it.
+     */
+    private static void setupPrescan(RECompiled re, RENode t) {
+        if ((re.flags & JSREG_FOLD) == 0) {
+            StringBuilder prefix = new StringBuilder();
+            appendPrefix(re, t, prefix);
+            if (prefix.length() > 1) {
+                re.prefix = prefix.toString();
+                return;
+            }
+        }
+        StringBuilder firstChars = new StringBuilder();
+        if (addFirstChars(re, t, firstChars)) {
+            re.firstChars = firstChars.toString().toCharArray();
+        }
+    }
+
+    /*
+     * Append the literal text that the terms starting at t have to match to
+     * sb, and return true if they match nothing else.
+     */
+    private static boolean appendPrefix(RECompiled re, RENode t, StringBuilder sb) {
+        for (; t != null; t = t.next) {
+            switch (t.op) {
+                case REOP_EMPTY:
+                case REOP_BOL:
+                case REOP_EOL:
+                case REOP_WBDRY:
+                case REOP_WNONBDRY:
+                    // Zero-width, so they do not move the prefix
+                    break;
+                case REOP_FLAT:
+                    if (t.flatIndex != -1 && t.length > 1) {
+                        sb.append(re.source, t.flatIndex, t.length);
+                    } else {
+                        sb.append(t.chr);
+                    }
+                    break;
+                case REOP_LPAREN:
+                    if (!appendPrefix(re, t.kid, sb)) {
+                        return false;
+                    }
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Add the characters that the terms starting at t can match first to sb,
+     * upcased if the match ignores case. Return false if there are too many
+     * of them or the terms can match the empty string.
+     */
+    private static boolean addFirstChars(RECompiled re, RENode t, StringBuilder sb) {
+        for (; t != null; t = t.next) {
+            switch (t.op) {
+                case REOP_EMPTY:
+                case REOP_BOL:
+                case REOP_EOL:
+                case REOP_WBDRY:
+                case REOP_WNONBDRY:
+                    break;
+                case REOP_FLAT:
+                    {
+                        char c = t.flatIndex != -1 ? re.source[t.flatIndex] : t.chr;
+                        if ((re.flags & JSREG_FOLD) != 0) {
+                            c = upcase(c);
+                        }
+                        if (sb.indexOf(String.valueOf(c)) < 0) {
+                            if (sb.length() == MAX_FIRST_CHARS) {
+                                return false;
+                            }
+                            sb.append(c);
+                        }
+                        return true;
+                    }
+                case REOP_ALT:
+                case REOP_ALTPREREQ:
+                case REOP_ALTPREREQi:
+                case REOP_ALTPREREQ2:
+                    return addFirstChars(re, t.kid, sb) && addFirstChars(re, t.kid2, sb);
+                case REOP_LPAREN:
+                    return addFirstChars(re, t.kid, sb);
+                case REOP_QUANT:
+                    return t.min > 0 && addFirstChars(re, t.kid, sb);
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Return the first position from cp on where a match may start, or -1 if
+     * there is none before end.
+     */
+    static int prescan(RECompiled re, String input, int cp, int end) {
+        if (re.prefix != null) {
+            int index = input.indexOf(re.prefix, cp);
+            return index < 0 || index + re.prefix.length() > end ? -1 : index;
+        }
+        char[] firstChars = re.firstChars;
+        if (firstChars == null) {
+            return cp;
+        }
+        if (firstChars.length == 1 && (re.flags & JSREG_FOLD) == 0) {
+            int index = input.indexOf(firstChars[0], cp);
+            return index < 0 || index >= end ? -1 : index;
+        }
+        boolean fold = (re.flags & JSREG_FOLD) != 0;
+        for (; cp < end; cp++) {
+            char c = input.charAt(cp);
+            if (fold) {
+                c = upcase(c);
+            }
+            for (char f : firstChars) {
+                if (c == f) {
+                    return cp;
+                }
+            }
+        }
+        return -1;
+    }
+
     static boolean isDigit(char c) {
         return '0' <= c && c <= '9';
     }
 
-    private static boolean isWord(char c) {
+    static boolean isWord(char c) {
         return ('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z') || isDigit(c) || c == '_';
     }
 
@@ -403,11 +567,11 @@ public class NativeRegExp extends IdScriptableObject {
         return ('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z');
     }
 
-    private static boolean isLineTerm(char c) {
+    static boolean isLineTerm(char c) {
         return ScriptRuntime.isJSLineTerminator(c);
     }
 
-    private static boolean isREWhiteSpace(int c) {
+    static boolean isREWhiteSpace(int c) {
         return ScriptRuntime.isJSWhitespaceOrLineTerminator(c);
     }
 
@@ -422,7 +586,7 @@ public class NativeRegExp extends IdScriptableObject {
      *    code point value is less than decimal 128, then return ch.
      * 6. Return cu.
      */
-    private static char upcase(char ch) {
+    static char upcase(char ch) {
         if (ch < 128) {
             if ('a' <= ch && ch <= 'z') {
                 return (char) (ch + ('A' - 'a'));
@@ -1172,11 +1336,11 @@ public class NativeRegExp extends IdScriptableObject {
         return pc + 2;
     }
 
-    private static int getIndex(byte[] array, int pc) {
+    static int getIndex(byte[] array, int pc) {
         return ((array[pc] & 0xFF) << 8) | (array[pc + 1] & 0xFF);
     }
 
-    private static final int INDEX_LEN = 2;
+    static final int INDEX_LEN = 2;
 
     private static int emitREBytecode(CompilerState state, RECompiled re, int pc, RENode t) {
         RENode nextAlt;
@@ -1672,6 +1836,17 @@ public class NativeRegExp extends IdScriptableObject {
                 ^ charSet.sense;
     }
 
+    /** Test a character against a class of the given regexp, for compiled matchers. */
+    static boolean classMatches(RECompiled re, int index, char ch) {
+        RECharSet charSet = re.classList[index];
+        if (!charSet.converted) {
+            REGlobalData gData = new REGlobalData();
+            gData.regexp = re;
+            processCharSet(gData, charSet);
+        }
+        return classMatcher(null, charSet, ch);
+    }
+
     private static boolean reopIsSimple(int op) {
         return op >= REOP_SIMPLE_START && op <= REOP_SIMPLE_END;
     }
@@ -1880,8 +2055,11 @@ public class NativeRegExp extends IdScriptableObject {
         /*
          * If the first node is a simple match, step the index into the string
          * until that match is made, or fail if it can't be found at all.
+         * A sticky r.e. only matches where it starts, like the compiled version.
          */
-        if (gData.regexp.anchorCh < 0 && reopIsSimple(op)) {
+        if (gData.regexp.anchorCh < 0
+                && reopIsSimple(op)
+                && (gData.regexp.flags & JSREG_STICKY) == 0) {
             boolean anchor = false;
             while (gData.cp <= end) {
                 int match = simpleMatch(gData, input, op, program, pc, end, true);
@@ -2347,42 +2525,45 @@ public class NativeRegExp extends IdScriptableObject {
         gData.multiline = multiline || (re.flags & JSREG_MULTILINE) != 0;
         gData.regexp = re;
 
+        LinearMatcher linear = LinearMatcher.get(cx, re);
+        if (linear != null) {
+            return linear.match(cx, gData, input, start, end);
+        }
+
         int anchorCh = gData.regexp.anchorCh;
+        RegExpMatcher matcher = RegExpJit.getMatcher(cx, re);
         //
         // have to include the position beyond the last character
         //  in order to detect end-of-input/line condition
         //
         for (int i = start; i <= end; ++i) {
             //
-            // If the first node is a literal match, step the index into
-            // the string until that match is made, or fail if it can't be
-            // found at all.
+            // If every match starts with a literal, step the index into
+            // the string until it is found, or fail if it can't be found
+            // at all.
             //
-            if (anchorCh >= 0) {
-                for (; ; ) {
-                    if (i == end) {
-                        return false;
-                    }
-                    char matchCh = input.charAt(i);
-                    if (matchCh == anchorCh
-                            || ((gData.regexp.flags & JSREG_FOLD) != 0
-                                    && upcase(matchCh) == upcase((char) anchorCh))) {
-                        break;
-                    }
-
-                    if ((gData.regexp.flags & JSREG_STICKY) != 0) {
-                        return false;
-                    }
-
-                    ++i;
+            int next = prescan(re, input, i, end);
+            if (next != i) {
+                if (next < 0 || (gData.regexp.flags & JSREG_STICKY) != 0) {
+                    return false;
                 }
+                i = next;
             }
             gData.cp = i;
             gData.skipped = i - start;
             for (int j = 0; j < re.parenCount; j++) {
                 gData.parens[j] = -1L;
             }
-            boolean result = executeREBytecode(cx, gData, input, end);
+            boolean result;
+            if (matcher != null) {
+                int cp = matcher.match(input, i, end, gData.multiline, gData.parens);
+                result = cp >= 0;
+                if (result) {
+                    gData.cp = cp;
+                }
+            } else {
+                result = executeREBytecode(cx, gData, input, end);
+            }
 
             gData.backTrackStackTop = null;
             gData.stateStackTop = null;
@@ -2902,6 +3083,17 @@ class RECompiled implements Serializable {
     int classCount; /* count [...] bitmaps */
     RECharSet[] classList; /* list of [...] bitmaps */
     int anchorCh = -1; /* if >= 0, then re starts with this literal char */
+    String prefix; /* if not null, every match starts with this string */
+    char[] firstChars; /* or else with one of these chars, upcased if JSREG_FOLD */
+
+    /* state of the compiled version, see RegExpJit */
+    transient volatile RegExpMatcher matcher;
+    transient volatile boolean jitDisabled;
+    transient int executionCount;
+
+    /* the linear-time matcher, see LinearMatcher */
+    transient volatile LinearMatcher linearMatcher;
+    transient volatile boolean linearUnsupported;
 
     RECompiled(String str) {
         this.source = str.toCharArray();
@@ -0,0 +1,80 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.regexp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A bounded LRU cache of compiled regular expressions, keyed by the source and flags that they were
+ * compiled from. A RECompiled is never changed once compileRE returns it (the character sets that
+ * it builds lazily are synchronized), so the same one can be used by any number of RegExp objects
+ * on any number of threads.
+ */
+final class RECompiledCache {
+
+    private final int maxSize;
+    private final LinkedHashMap<Key, RECompiled> entries;
+
+    RECompiledCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries =
+                new LinkedHashMap<Key, RECompiled>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Key, RECompiled> eldest) {
+                        return size() > RECompiledCache.this.maxSize;
+                    }
+                };
+    }
+
+    RECompiled get(Key key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    void put(Key key, RECompiled compiled) {
+        synchronized (entries) {
+            entries.put(key, compiled);
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    static final class Key {
+        private final String source;
+        private final String flags;
+        private final boolean flat;
+
+        Key(String source, String flags, boolean flat) {
+            this.source = source;
+            this.flags = flags;
+            this.flat = flat;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return flat == k.flat && source.equals(k.source) && Objects.equals(flags, k.flags);
+        }
+
+        @Override
+        public int hashCode() {
+            return (source.hashCode() * 31 + Objects.hashCode(flags)) * 31 + (flat ? 1 : 0);
+        }
+    }
+}
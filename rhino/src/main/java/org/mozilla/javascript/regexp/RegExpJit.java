@@ -0,0 +1,521 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.regexp;
+
+import static org.mozilla.javascript.regexp.NativeRegExp.INDEX_LEN;
+import static org.mozilla.javascript.regexp.NativeRegExp.JSREG_DOTALL;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_ALNUM;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_BOL;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_CLASS;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_DIGIT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_DOT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_EMPTY;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_END;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_ENDCHILD;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_EOL;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_FLAT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_FLAT1;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_FLAT1i;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_FLATi;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_LPAREN;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_MINIMALOPT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_MINIMALPLUS;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_MINIMALQUANT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_MINIMALSTAR;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_NCLASS;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_NONALNUM;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_NONDIGIT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_NONSPACE;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_OPT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_PLUS;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_QUANT;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_RPAREN;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_SPACE;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_STAR;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_UCFLAT1;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_UCFLAT1i;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_WBDRY;
+import static org.mozilla.javascript.regexp.NativeRegExp.REOP_WNONBDRY;
+import static org.mozilla.javascript.regexp.NativeRegExp.getIndex;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.mozilla.classfile.ByteCode;
+import org.mozilla.classfile.ClassFileWriter;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.GeneratedClassLoader;
+import org.mozilla.javascript.SecurityController;
+
+/**
+ * Translates the bytecode of frequently executed regular expressions into JVM classes, so that
+ * matching them does not go through the interpreter loop in NativeRegExp.executeREBytecode.
+ *
+ * <p>Only programs that never need the backtrack stack are compiled: a sequence of literals,
+ * character classes, anchors and captures, where every quantifier applies to a single character.
+ * Backtracking into such a quantifier only has to give back (or take) one character at a time, so
+ * it becomes a loop counter in the generated method. Everything else, such as alternatives,
+ * back references and lookahead, keeps using the interpreter.
+ *
+ * <p>A program is compiled once it has been executed THRESHOLD times, and only when the Context
+ * may generate classes (the optimization level is not -1) and no instruction observer is set,
+ * since the generated code does not count instructions.
+ */
+final class RegExpJit {
+
+    static final int THRESHOLD = 50;
+
+    // Longer programs are unlikely to fit the supported subset, and take long to compile
+    private static final int MAX_PROGRAM_LENGTH = 2048;
+
+    private static final String SUPER_CLASS = "org.mozilla.javascript.regexp.RegExpMatcher";
+    private static final String MATCH_SIGNATURE = "(Ljava/lang/String;IIZ[J)I";
+
+    private static final AtomicInteger classCounter = new AtomicInteger();
+
+    // Locals of the generated match method
+    private static final int INPUT = 1;
+    private static final int CP = 2;
+    private static final int END = 3;
+    private static final int MULTILINE = 4;
+    private static final int PARENS = 5;
+    private static final int FIRST_FREE_LOCAL = 6;
+
+    private final RECompiled re;
+    private final byte[] program;
+    private final ClassFileWriter cfw;
+    private final int[] parenStarts;
+    private int maxLocals = FIRST_FREE_LOCAL;
+
+    private RegExpJit(RECompiled re, String className) {
+        this.re = re;
+        this.program = re.program;
+        this.cfw = new ClassFileWriter(className, SUPER_CLASS, "<regexp>");
+        this.parenStarts = new int[re.parenCount];
+    }
+
+    /**
+     * Count an execution of the given program, and return the compiled version of it if there is
+     * one, or null to use the interpreter.
+     */
+    static RegExpMatcher getMatcher(Context cx, RECompiled re) {
+        if (cx.getOptimizationLevel() < 0 || cx.getInstructionObserverThreshold() != 0) {
+            return null;
+        }
+        RegExpMatcher matcher = re.matcher;
+        if (matcher != null || re.jitDisabled) {
+            return matcher;
+        }
+        // Races only delay compilation a little
+        if (++re.executionCount < THRESHOLD) {
+            return null;
+        }
+        synchronized (re) {
+            if (re.matcher == null && !re.jitDisabled) {
+                matcher = compile(re);
+                if (matcher == null) {
+                    re.jitDisabled = true;
+                } else {
+                    re.matcher = matcher;
+                }
+            }
+            return re.matcher;
+        }
+    }
+
+    private static RegExpMatcher compile(RECompiled re) {
+        if (re.program.length > MAX_PROGRAM_LENGTH) {
+            return null;
+        }
+        String className = "org.mozilla.javascript.gen.RegExp" + classCounter.incrementAndGet();
+        RegExpJit jit = new RegExpJit(re, className);
+        if (!jit.generate()) {
+            return null;
+        }
+        try {
+            GeneratedClassLoader loader =
+                    SecurityController.createLoader(RegExpMatcher.class.getClassLoader(), null);
+            Class<?> cl = loader.defineClass(className, jit.cfw.toByteArray());
+            loader.linkClass(cl);
+            RegExpMatcher matcher = (RegExpMatcher) cl.getConstructor().newInstance();
+            matcher.init(re);
+            return matcher;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            // Fall back to the interpreter, for example when the security manager
+            // does not allow defining classes
+            return null;
+        }
+    }
+
+    private boolean generate() {
+        cfw.startMethod("<init>", "()V", ClassFileWriter.ACC_PUBLIC);
+        cfw.addALoad(0);
+        cfw.addInvoke(ByteCode.INVOKESPECIAL, SUPER_CLASS, "<init>", "()V");
+        cfw.add(ByteCode.RETURN);
+        cfw.stopMethod(1);
+
+        cfw.startMethod("match", MATCH_SIGNATURE, ClassFileWriter.ACC_PUBLIC);
+        int fail = cfw.acquireLabel();
+        if (!generateSequence(fail)) {
+            return false;
+        }
+        cfw.addILoad(CP);
+        cfw.add(ByteCode.IRETURN);
+        cfw.markLabel(fail);
+        cfw.add(ByteCode.ICONST_M1);
+        cfw.add(ByteCode.IRETURN);
+        cfw.stopMethod(maxLocals);
+        return true;
+    }
+
+    private int newLocal() {
+        return maxLocals++;
+    }
+
+    /** Generate code for the whole program, jumping to fail when there is no match. */
+    private boolean generateSequence(int fail) {
+        int pc = 0;
+        for (; ; ) {
+            byte op = program[pc++];
+            switch (op) {
+                case REOP_END:
+                    return true;
+
+                case REOP_EMPTY:
+                    break;
+
+                case REOP_BOL:
+                    cfw.addALoad(INPUT);
+                    cfw.addILoad(CP);
+                    cfw.addILoad(MULTILINE);
+                    addHelper("isLineStart", "(Ljava/lang/String;IZ)Z");
+                    cfw.add(ByteCode.IFEQ, fail);
+                    break;
+
+                case REOP_EOL:
+                    cfw.addALoad(INPUT);
+                    cfw.addILoad(CP);
+                    cfw.addILoad(END);
+                    cfw.addILoad(MULTILINE);
+                    addHelper("isLineEnd", "(Ljava/lang/String;IIZ)Z");
+                    cfw.add(ByteCode.IFEQ, fail);
+                    break;
+
+                case REOP_WBDRY:
+                case REOP_WNONBDRY:
+                    cfw.addALoad(INPUT);
+                    cfw.addILoad(CP);
+                    cfw.addILoad(END);
+                    addHelper("isWordBoundary", "(Ljava/lang/String;II)Z");
+                    cfw.add(op == REOP_WBDRY ? ByteCode.IFEQ : ByteCode.IFNE, fail);
+                    break;
+
+                case REOP_FLAT:
+                case REOP_FLATi:
+                    {
+                        int offset = getIndex(program, pc);
+                        pc += INDEX_LEN;
+                        int length = getIndex(program, pc);
+                        pc += INDEX_LEN;
+                        cfw.addALoad(0);
+                        cfw.addALoad(INPUT);
+                        cfw.addILoad(CP);
+                        cfw.addILoad(END);
+                        cfw.addPush(offset);
+                        cfw.addPush(length);
+                        cfw.addPush(op == REOP_FLATi);
+                        cfw.addInvoke(
+                                ByteCode.INVOKEVIRTUAL,
+                                cfw.getClassName(),
+                                "flatMatches",
+                                "(Ljava/lang/String;IIIIZ)Z");
+                        cfw.add(ByteCode.IFEQ, fail);
+                        addIncrement(CP, length);
+                    }
+                    break;
+
+                case REOP_LPAREN:
+                    {
+                        int index = getIndex(program, pc);
+                        pc += INDEX_LEN;
+                        if (parenStarts[index] == 0) {
+                            parenStarts[index] = newLocal();
+                        }
+                        cfw.addILoad(CP);
+                        cfw.addIStore(parenStarts[index]);
+                    }
+                    break;
+
+                case REOP_RPAREN:
+                    {
+                        int index = getIndex(program, pc);
+                        pc += INDEX_LEN;
+                        cfw.addALoad(PARENS);
+                        cfw.addPush(index);
+                        cfw.addILoad(parenStarts[index]);
+                        cfw.addILoad(CP);
+                        addHelper("setParens", "([JIII)V");
+                    }
+                    break;
+
+                case REOP_STAR:
+                case REOP_PLUS:
+                case REOP_OPT:
+                case REOP_QUANT:
+                case REOP_MINIMALSTAR:
+                case REOP_MINIMALPLUS:
+                case REOP_MINIMALOPT:
+                case REOP_MINIMALQUANT:
+                    {
+                        int min, max;
+                        switch (op) {
+                            case REOP_STAR:
+                            case REOP_MINIMALSTAR:
+                                min = 0;
+                                max = -1;
+                                break;
+                            case REOP_PLUS:
+                            case REOP_MINIMALPLUS:
+                                min = 1;
+                                max = -1;
+                                break;
+                            case REOP_OPT:
+                            case REOP_MINIMALOPT:
+                                min = 0;
+                                max = 1;
+                                break;
+                            default:
+                                min = getIndex(program, pc);
+                                pc += INDEX_LEN;
+                                max = getIndex(program, pc) - 1;
+                                pc += INDEX_LEN;
+                                break;
+                        }
+                        // Skip the paren count and index, which are only used
+                        // to reset the captures in the child, and the offset
+                        // of the next term.
+                        pc += 3 * INDEX_LEN;
+                        int childPc = pc;
+                        pc = skipSingleChar(program, childPc);
+                        if (pc < 0 || program[pc++] != REOP_ENDCHILD) {
+                            return false;
+                        }
+                        boolean greedy =
+                                op == REOP_STAR
+                                        || op == REOP_PLUS
+                                        || op == REOP_OPT
+                                        || op == REOP_QUANT;
+                        fail = generateQuantifier(childPc, min, max, greedy, fail);
+                    }
+                    break;
+
+                default:
+                    int next = skipSingleChar(program, pc - 1);
+                    if (next < 0) {
+                        return false;
+                    }
+                    generateSingleChar(pc - 1, fail);
+                    addIncrement(CP, 1);
+                    pc = next;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Generate a quantifier whose child matches exactly one character. Return the label that the
+     * code after it has to jump to when it fails, which tries the quantifier with one character
+     * less (or more, if it is not greedy).
+     */
+    private int generateQuantifier(int childPc, int min, int max, boolean greedy, int fail) {
+        int start = newLocal();
+        int count = newLocal();
+        int retry = cfw.acquireLabel();
+        int next = cfw.acquireLabel();
+        cfw.addILoad(CP);
+        cfw.addIStore(start);
+        cfw.add(ByteCode.ICONST_0);
+        cfw.addIStore(count);
+
+        if (greedy) {
+            // Match as many characters as possible
+            int loop = cfw.acquireLabel();
+            int done = cfw.acquireLabel();
+            cfw.markLabel(loop);
+            if (max != -1) {
+                cfw.addILoad(count);
+                cfw.addPush(max);
+                cfw.add(ByteCode.IF_ICMPGE, done);
+            }
+            generateSingleChar(childPc, done);
+            addIncrement(CP, 1);
+            addIncrement(count, 1);
+            cfw.add(ByteCode.GOTO, loop);
+            cfw.markLabel(done);
+            cfw.addILoad(count);
+            cfw.addPush(min);
+            cfw.add(ByteCode.IF_ICMPLT, fail);
+            cfw.add(ByteCode.GOTO, next);
+
+            // Then give them back one at a time
+            cfw.markLabel(retry);
+            cfw.addILoad(count);
+            cfw.addPush(min);
+            cfw.add(ByteCode.IF_ICMPLE, fail);
+            cfw.addILoad(count);
+            cfw.add(ByteCode.ICONST_1);
+            cfw.add(ByteCode.ISUB);
+            cfw.addIStore(count);
+            cfw.addILoad(start);
+            cfw.addILoad(count);
+            cfw.add(ByteCode.IADD);
+            cfw.addIStore(CP);
+        } else {
+            // Match as few characters as possible
+            int loop = cfw.acquireLabel();
+            cfw.markLabel(loop);
+            cfw.addILoad(count);
+            cfw.addPush(min);
+            cfw.add(ByteCode.IF_ICMPGE, next);
+            generateSingleChar(childPc, fail);
+            addIncrement(CP, 1);
+            addIncrement(count, 1);
+            cfw.add(ByteCode.GOTO, loop);
+
+            // Then take one more at a time
+            cfw.markLabel(retry);
+            if (max != -1) {
+                cfw.addILoad(count);
+                cfw.addPush(max);
+                cfw.add(ByteCode.IF_ICMPGE, fail);
+            }
+            cfw.addILoad(start);
+            cfw.addILoad(count);
+            cfw.add(ByteCode.IADD);
+            cfw.addIStore(CP);
+            generateSingleChar(childPc, fail);
+            addIncrement(CP, 1);
+            addIncrement(count, 1);
+        }
+        cfw.markLabel(next);
+        return retry;
+    }
+
+    /**
+     * Return the pc after the op at pc if it matches exactly one character, or -1 if it does not
+     * or is not supported.
+     */
+    private static int skipSingleChar(byte[] program, int pc) {
+        switch (program[pc]) {
+            case REOP_DOT:
+            case REOP_DIGIT:
+            case REOP_NONDIGIT:
+            case REOP_ALNUM:
+            case REOP_NONALNUM:
+            case REOP_SPACE:
+            case REOP_NONSPACE:
+                return pc + 1;
+            case REOP_FLAT1:
+            case REOP_FLAT1i:
+                return pc + 2;
+            case REOP_UCFLAT1:
+            case REOP_UCFLAT1i:
+            case REOP_CLASS:
+            case REOP_NCLASS:
+                return pc + 1 + INDEX_LEN;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Generate code that jumps to fail unless the op at pc, which skipSingleChar accepted, matches
+     * the character at CP. CP is not changed.
+     */
+    private void generateSingleChar(int pc, int fail) {
+        byte op = program[pc++];
+        cfw.addILoad(CP);
+        cfw.addILoad(END);
+        cfw.add(ByteCode.IF_ICMPGE, fail);
+
+        if (op == REOP_CLASS || op == REOP_NCLASS) {
+            // The class bitmap itself takes care of negation
+            cfw.addALoad(0);
+            cfw.addPush(getIndex(program, pc));
+            addCharAt();
+            cfw.addInvoke(
+                    ByteCode.INVOKEVIRTUAL, cfw.getClassName(), "classMatches", "(IC)Z");
+            cfw.add(ByteCode.IFEQ, fail);
+            return;
+        }
+        if (op == REOP_DOT && (re.flags & JSREG_DOTALL) != 0) {
+            return;
+        }
+
+        addCharAt();
+        switch (op) {
+            case REOP_DOT:
+                addHelper("isLineTerm", "(C)Z");
+                cfw.add(ByteCode.IFNE, fail);
+                break;
+            case REOP_DIGIT:
+            case REOP_NONDIGIT:
+                addHelper("isDigit", "(C)Z");
+                cfw.add(op == REOP_DIGIT ? ByteCode.IFEQ : ByteCode.IFNE, fail);
+                break;
+            case REOP_ALNUM:
+            case REOP_NONALNUM:
+                addHelper("isWord", "(C)Z");
+                cfw.add(op == REOP_ALNUM ? ByteCode.IFEQ : ByteCode.IFNE, fail);
+                break;
+            case REOP_SPACE:
+            case REOP_NONSPACE:
+                addHelper("isWhiteSpace", "(C)Z");
+                cfw.add(op == REOP_SPACE ? ByteCode.IFEQ : ByteCode.IFNE, fail);
+                break;
+            case REOP_FLAT1:
+                cfw.addPush(program[pc] & 0xFF);
+                cfw.add(ByteCode.IF_ICMPNE, fail);
+                break;
+            case REOP_UCFLAT1:
+                cfw.addPush(getIndex(program, pc));
+                cfw.add(ByteCode.IF_ICMPNE, fail);
+                break;
+            case REOP_FLAT1i:
+                cfw.addPush(program[pc] & 0xFF);
+                addHelper("equalsIgnoreCase", "(CC)Z");
+                cfw.add(ByteCode.IFEQ, fail);
+                break;
+            case REOP_UCFLAT1i:
+                cfw.addPush(getIndex(program, pc));
+                addHelper("equalsIgnoreCase", "(CC)Z");
+                cfw.add(ByteCode.IFEQ, fail);
+                break;
+            default:
+                throw new IllegalStateException("Unexpected op " + op);
+        }
+    }
+
+    private void addCharAt() {
+        cfw.addALoad(INPUT);
+        cfw.addILoad(CP);
+        cfw.addInvoke(ByteCode.INVOKEVIRTUAL, "java/lang/String", "charAt", "(I)C");
+    }
+
+    private void addIncrement(int local, int delta) {
+        if (delta <= Short.MAX_VALUE) {
+            cfw.add(ByteCode.IINC, local, delta);
+        } else {
+            cfw.addILoad(local);
+            cfw.addPush(delta);
+            cfw.add(ByteCode.IADD);
+            cfw.addIStore(local);
+        }
+    }
+
+    private void addHelper(String name, String signature) {
+        cfw.addInvoke(ByteCode.INVOKESTATIC, SUPER_CLASS, name, signature);
+    }
+}
@@ -0,0 +1,94 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.regexp;
+
+/**
+ * The superclass of the classes that RegExpJit generates from regular expressions. It is public
+ * only because the generated classes are defined by their own class loaders; it is not part of
+ * the Rhino API.
+ */
+public abstract class RegExpMatcher {
+
+    private RECompiled re;
+
+    protected RegExpMatcher() {}
+
+    /** Set after construction, because the generated class cannot refer to RECompiled. */
+    final void init(RECompiled re) {
+        this.re = re;
+    }
+
+    /**
+     * Try to match the regular expression at the given position.
+     *
+     * @param input the string to match against
+     * @param cp the position where the match must start
+     * @param end the length of the input
+     * @param multiline whether ^ and $ match at line terminators
+     * @param parens the captures, all -1 on entry, or null if there are none
+     * @return the position after the match, or -1 if there is no match at cp
+     */
+    public abstract int match(String input, int cp, int end, boolean multiline, long[] parens);
+
+    protected final boolean classMatches(int index, char c) {
+        return NativeRegExp.classMatches(re, index, c);
+    }
+
+    protected final boolean flatMatches(
+            String input, int cp, int end, int offset, int length, boolean ignoreCase) {
+        if (cp + length > end) {
+            return false;
+        }
+        char[] source = re.source;
+        for (int i = 0; i < length; i++) {
+            char c1 = source[offset + i];
+            char c2 = input.charAt(cp + i);
+            if (c1 != c2 && (!ignoreCase || NativeRegExp.upcase(c1) != NativeRegExp.upcase(c2))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected static boolean isDigit(char c) {
+        return NativeRegExp.isDigit(c);
+    }
+
+    protected static boolean isWord(char c) {
+        return NativeRegExp.isWord(c);
+    }
+
+    protected static boolean isWhiteSpace(char c) {
+        return NativeRegExp.isREWhiteSpace(c);
+    }
+
+    protected static boolean isLineTerm(char c) {
+        return NativeRegExp.isLineTerm(c);
+    }
+
+    protected static boolean equalsIgnoreCase(char c1, char c2) {
+        return c1 == c2 || NativeRegExp.upcase(c1) == NativeRegExp.upcase(c2);
+    }
+
+    protected static boolean isLineStart(String input, int cp, boolean multiline) {
+        return cp == 0 || (multiline && NativeRegExp.isLineTerm(input.charAt(cp - 1)));
+    }
+
+    protected static boolean isLineEnd(String input, int cp, int end, boolean multiline) {
+        return cp == end || (multiline && NativeRegExp.isLineTerm(input.charAt(cp)));
+    }
+
+    protected static boolean isWordBoundary(String input, int cp, int end) {
+        boolean before = cp != 0 && NativeRegExp.isWord(input.charAt(cp - 1));
+        boolean after = cp < end && NativeRegExp.isWord(input.charAt(cp));
+        return before != after;
+    }
+
+    protected static void setParens(long[] parens, int index, int start, int cp) {
+        parens[index] = (start & 0xffffffffL) | ((long) (cp - start) << 32);
+    }
+}
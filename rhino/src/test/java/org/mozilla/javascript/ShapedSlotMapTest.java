@@ -0,0 +1,123 @@
+package org.mozilla.javascript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class ShapedSlotMapTest {
+
+    @Test
+    public void sameInsertionOrderSharesShape() {
+        ShapedSlotMap m1 = new ShapedSlotMap();
+        ShapedSlotMap m2 = new ShapedSlotMap();
+        for (ShapedSlotMap m : new ShapedSlotMap[] {m1, m2}) {
+            m.modify("x", 0, 0).value = 1;
+            m.modify("y", 0, 0).value = 2;
+            m.modify(null, 7, 0).value = 3;
+        }
+        assertSame(m1.getShape(), m2.getShape());
+        assertEquals(3, m1.getShape().getSize());
+
+        ShapedSlotMap m3 = new ShapedSlotMap();
+        m3.modify("y", 0, 0);
+        m3.modify("x", 0, 0);
+        m3.modify(null, 7, 0);
+        assertNotSame(m1.getShape(), m3.getShape());
+    }
+
+    @Test
+    public void stringAndIndexKeysAreDistinct() {
+        ShapedSlotMap m = new ShapedSlotMap();
+        m.modify("1", 0, 0).value = "string";
+        assertNull(m.query(null, 1));
+        m.modify(null, 1, 0).value = "index";
+        assertEquals("string", m.query("1", 0).value);
+        assertEquals("index", m.query(null, 1).value);
+    }
+
+    @Test
+    public void replacingSlotKeepsShape() {
+        ShapedSlotMap m = new ShapedSlotMap();
+        m.modify("a", 0, 0);
+        m.modify("b", 0, 0);
+        Shape before = m.getShape();
+        m.compute("a", 0, (k, i, e) -> new AccessorSlot(e));
+        assertSame(before, m.getShape());
+    }
+
+    @Test
+    public void removalRebuildsSharedShape() {
+        ShapedSlotMap m1 = new ShapedSlotMap();
+        m1.modify("a", 0, 0);
+        m1.modify("b", 0, 0).value = "b";
+        m1.modify("c", 0, 0).value = "c";
+        m1.compute("a", 0, (k, i, e) -> null);
+
+        ShapedSlotMap m2 = new ShapedSlotMap();
+        m2.modify("b", 0, 0);
+        m2.modify("c", 0, 0);
+        assertSame(m2.getShape(), m1.getShape());
+
+        List<Object> names = new ArrayList<>();
+        for (Slot s : m1) {
+            names.add(s.name);
+        }
+        assertEquals(List.of("b", "c"), names);
+        assertEquals("c", m1.query("c", 0).value);
+        assertNull(m1.query("a", 0));
+    }
+
+    @Test
+    public void largeShapesUseLookupTable() {
+        ShapedSlotMap m1 = new ShapedSlotMap();
+        ShapedSlotMap m2 = new ShapedSlotMap();
+        for (int i = 0; i < 50; i++) {
+            m1.modify("p" + i, 0, 0).value = i;
+            m2.modify("p" + i, 0, 0).value = -i;
+        }
+        assertSame(m1.getShape(), m2.getShape());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, m1.query("p" + i, 0).value);
+            assertEquals(-i, m2.query("p" + i, 0).value);
+        }
+        assertNull(m1.query("p50", 0));
+    }
+
+    @Test
+    public void scriptsRunWithShapedObjects() {
+        ContextFactory factory =
+                new ContextFactory() {
+                    @Override
+                    protected boolean hasFeature(Context cx, int featureIndex) {
+                        if (featureIndex == Context.FEATURE_SHAPED_OBJECTS) {
+                            return true;
+                        }
+                        return super.hasFeature(cx, featureIndex);
+                    }
+                };
+
+        try (Context cx = factory.enterContext()) {
+            Scriptable scope = cx.initStandardObjects();
+            Object result =
+                    cx.evaluateString(
+                            scope,
+                            "function P(x, y) { this.x = x; this.y = y; }\n"
+                                    + "var s = 0;\n"
+                                    + "for (var i = 0; i < 100; i++) {\n"
+                                    + "  var p = new P(i, 1);\n"
+                                    + "  if (i % 2) { delete p.x; p.x = i; }\n"
+                                    + "  s += p.x + p.y;\n"
+                                    + "}\n"
+                                    + "s + ':' + Object.keys(new P(1, 2)) + ':' + Object.keys(p);",
+                            "test",
+                            1,
+                            null);
+            assertEquals("5050:x,y:y,x", result);
+        }
+    }
+}
@@ -35,6 +35,7 @@ public class SlotMapTest {
                 new Object[][] {
                     {EmbeddedSlotMap.class},
                     {HashSlotMap.class},
+                    {ShapedSlotMap.class},
                     {SlotMapContainer.class},
                     {ThreadSafeSlotMapContainer.class},
                 });
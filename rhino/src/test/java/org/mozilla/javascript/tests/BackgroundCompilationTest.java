@@ -0,0 +1,127 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.mozilla.javascript.BaseFunction;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * With a compile executor, scripts are interpreted until the executor has compiled them, and
+ * functions that run often are compiled there as well.
+ */
+public class BackgroundCompilationTest {
+
+    /** A function that tells whether it was called from compiled code. */
+    private static class IsCompiled extends BaseFunction {
+        @Override
+        public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+            for (StackTraceElement e : new Throwable().getStackTrace()) {
+                if (e.getClassName().startsWith("org.mozilla.javascript.gen.")) {
+                    return Boolean.TRUE;
+                }
+            }
+            return Boolean.FALSE;
+        }
+    }
+
+    private static Object exec(ContextFactory factory, Script script) {
+        try (Context cx = factory.enterContext()) {
+            Scriptable scope = cx.initStandardObjects();
+            scope.put("isCompiled", scope, new IsCompiled());
+            return script.exec(cx, scope);
+        }
+    }
+
+    private static Script compile(ContextFactory factory, String source) {
+        try (Context cx = factory.enterContext()) {
+            cx.setLanguageVersion(Context.VERSION_ES6);
+            return cx.compileString(source, "test.js", 1, null);
+        }
+    }
+
+    @Test
+    public void scriptIsCompiledInTheBackground() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ContextFactory factory = new ContextFactory();
+        factory.setCompileExecutor(executor);
+
+        // Keep the executor busy until the script has run once
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(
+                () -> {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+        Script script =
+                compile(factory, "function f(x) { return x * 2; } f(21) + ':' + isCompiled()");
+        assertEquals("42:false", exec(factory, script));
+
+        latch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals("42:true", exec(factory, script));
+        assertEquals("42:true", exec(factory, script));
+    }
+
+    @Test
+    public void hotFunctionIsCompiledInTheBackground() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ContextFactory factory = new ContextFactory();
+        factory.setCompileExecutor(executor);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(
+                () -> {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+        Script script =
+                compile(
+                        factory,
+                        "function f() { return isCompiled(); }\n"
+                                + "var r = [f()];\n"
+                                + "for (var i = 0; i < 5000; i++) { f(); }\n"
+                                + "r.push(f());\n"
+                                + "r.join();");
+        try (Context cx = factory.enterContext()) {
+            Scriptable scope = cx.initStandardObjects();
+            scope.put("isCompiled", scope, new IsCompiled());
+            assertEquals("false,false", script.exec(cx, scope));
+
+            // f is compiled once the executor gets to it, and the closure in this scope uses it
+            latch.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(Boolean.TRUE, cx.evaluateString(scope, "f()", "test2.js", 1, null));
+        }
+    }
+
+    @Test
+    public void rejectedScriptStaysInterpreted() {
+        ContextFactory factory = new ContextFactory();
+        factory.setCompileExecutor(
+                task -> {
+                    throw new RejectedExecutionException();
+                });
+        Script script = compile(factory, "var s = 0; for (var i = 0; i < 5000; i++) s += i; s");
+        assertEquals(12497500, ((Number) exec(factory, script)).intValue());
+        script = compile(factory, "isCompiled()");
+        assertEquals(Boolean.FALSE, exec(factory, script));
+    }
+}
@@ -0,0 +1,127 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Regular expressions that are executed often are compiled to JVM classes. Run each one enough
+ * times to be compiled, and check that the results never change.
+ */
+public class CompiledRegExpTest {
+    private static final String HARNESS =
+            "function check(re, inputs) {\n"
+                    + "  var first = null;\n"
+                    + "  for (var i = 0; i < 200; i++) {\n"
+                    + "    var r = [];\n"
+                    + "    for (var j = 0; j < inputs.length; j++) {\n"
+                    + "      re.lastIndex = 0;\n"
+                    + "      var m = re.exec(inputs[j]);\n"
+                    + "      r.push(m === null ? 'null' : m.index + ':' + m.join('/'));\n"
+                    + "    }\n"
+                    + "    r = r.join(' ');\n"
+                    + "    if (first === null) first = r;\n"
+                    + "    else if (r !== first) return 'changed at ' + i + ': ' + r;\n"
+                    + "  }\n"
+                    + "  return first;\n"
+                    + "}\n";
+
+    private static void assertMatches(String expected, String regexp, String inputs) {
+        Utils.runWithAllOptimizationLevels(
+                cx -> {
+                    cx.setLanguageVersion(Context.VERSION_ES6);
+                    Scriptable scope = cx.initStandardObjects();
+                    Object result =
+                            cx.evaluateString(
+                                    scope,
+                                    HARNESS + "check(" + regexp + ", " + inputs + ")",
+                                    "test.js",
+                                    1,
+                                    null);
+                    assertEquals(expected, result);
+                    return null;
+                });
+    }
+
+    @Test
+    public void literals() {
+        assertMatches(
+                "2:ERROR:  6:error:  null",
+                "/error: /i",
+                "['x ERROR: y', 'abcdeferror: ', 'erro: ']");
+        assertMatches("1:bሴ null", "/bሴ/", "['abሴ', 'ab']");
+    }
+
+    @Test
+    public void greedyQuantifiers() {
+        assertMatches(
+                "0:aaab/aaa 1:ab/a null",
+                "/(a+)b/",
+                "['aaab', 'cab', 'b']");
+        assertMatches(
+                "0:2024-10-18/2024/18 null 3:1-2-3/1/3",
+                "/(\\d{1,4})-\\d+-(\\d*)/",
+                "['2024-10-18', '2024-', 'ab 1-2-3']");
+        assertMatches("0:ab/b 0:a/ 0:/", "/a?(b?)/", "['ab', 'a', '']");
+        assertMatches("0:xxy 0:y", "/x*x*y/", "['xxy', 'y']");
+    }
+
+    @Test
+    public void nonGreedyQuantifiers() {
+        assertMatches(
+                "0:<a>/a 0:<>/",
+                "/<(.*?)>/",
+                "['<a><b>', '<><c>']");
+        assertMatches("0:aab/aa null", "/(a{2,3}?)b/", "['aab', 'ab']");
+    }
+
+    @Test
+    public void classesAndEscapes() {
+        assertMatches(
+                "3:foo bar/foo/bar 0:x y/x/y",
+                "/([a-z]+)\\s(\\w+)/",
+                "['12 foo bar', 'x y']");
+        assertMatches("0:A1 null", "/[^\\d\\s][0-9]/", "['A1', ' 1']");
+        assertMatches("1:AB", "/[a-b]+/i", "['xABc']");
+        assertMatches("0:a\nb 0:a\rb", "/a\\sb/", "['a\\nb', 'a\\rb']");
+        assertMatches("null 0:axb", "/a.b/", "['a\\nb', 'axb']");
+        assertMatches("0:a\nb", "/a.b/s", "['a\\nb']");
+    }
+
+    @Test
+    public void anchors() {
+        assertMatches("0:ab null", "/^ab$/", "['ab', 'aab']");
+        assertMatches("null 2:b", "/^b$/m", "['ab', 'a\\nb']");
+        assertMatches("4:cat null", "/\\bcat\\b/", "['the cat', 'concatenate']");
+        assertMatches("3:cat", "/\\Bcat\\B/", "['concatenate']");
+    }
+
+    @Test
+    public void sticky() {
+        // A sticky r.e. only matches at lastIndex, before and after it is compiled
+        assertMatches("null 0:", "/$/y", "['abbc', '']");
+        assertMatches("null 0:b", "/b/y", "['abbc', 'bc']");
+        assertMatches("null 0:12", "/\\d+/y", "['ab12', '12']");
+    }
+
+    @Test
+    public void replaceAndSplit() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "a-b-c-d|x,y,z",
+                "var r, s;\n"
+                        + "for (var i = 0; i < 200; i++) {\n"
+                        + "  r = 'a  b\\tc   d'.replace(/\\s+/g, '-');\n"
+                        + "  s = 'x1y22z'.split(/\\d+/).join();\n"
+                        + "}\n"
+                        + "r + '|' + s;");
+    }
+
+    @Test
+    public void unsupportedPatterns() {
+        // Alternatives and back references are not compiled, but must still work
+        assertMatches("0:abab/ab 0:cc/c", "/(ab|c)\\1/", "['abab', 'cc']");
+        assertMatches("0:aaa/a null", "/(a)+a/", "['aaa', 'b']");
+    }
+}
@@ -54,6 +54,36 @@ public class ConsStringTest {
         }
     }
 
+    @Test
+    public void charsWithoutFlattening() {
+        ConsString current = new ConsString("ab", "cd");
+        for (int i = 0; i < 20; i++) {
+            current = new ConsString(current, String.valueOf((char) ('e' + i)));
+        }
+        current = new ConsString("xy", current);
+
+        assertEquals('x', current.charAt(0));
+        assertEquals('x', current.charAt(current.length() - 1));
+        assertEquals("vwx", current.subSequence(current.length() - 3, current.length()));
+        assertEquals("bcde", current.subSequence(3, 7));
+        assertEquals('c', current.charAt(4));
+        assertEquals("xyabcdefghijklmnopqrstuvwx", current.toString());
+        assertEquals("cdef", current.subSequence(4, 8));
+    }
+
+    @Test
+    public void ropeStringMethods() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "true,true,true,false,true,o-21</li><li>o-,o-29,l,true,16",
+                "var s = '';\n"
+                        + "for (var i = 0; i < 30; i++) { s += '<' + 'li>' + 'o-' + i + '</' + 'li>'; }\n"
+                        + "[s.startsWith('<li>'), s.endsWith('29</li>'), s.endsWith('li', 3),\n"
+                        + " s.endsWith('28</li>'), s.startsWith('o-0', 4),\n"
+                        + " s.substring(28, 31) + s.substring(18, 30),\n"
+                        + " s.substring(s.length - 9, s.length - 5), s[s.length - 3],\n"
+                        + " s.includes('o-17'), s.indexOf('o-1')].join();");
+    }
+
     @Test
     public void doNotLeakConsStringIntoSetter() throws Exception {
         try (Context cx = Context.enter()) {
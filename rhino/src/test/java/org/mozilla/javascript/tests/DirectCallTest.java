@@ -0,0 +1,109 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Calls between functions compiled into the same class may be linked directly to the body of the
+ * function that is called. Make sure that they still behave like regular calls.
+ */
+public class DirectCallTest {
+    @Test
+    public void argumentCounts() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "0,1,3,6,10|NaN|3|undefined",
+                "function f0() { return 0; }\n"
+                        + "function f1(a) { return a; }\n"
+                        + "function f2(a, b) { return a + b; }\n"
+                        + "function f3(a, b, c) { return a + b + c; }\n"
+                        + "function f4(a, b, c, d) { return a + b + c + d; }\n"
+                        + "function all() {\n"
+                        + "  return [f0(), f1(1), f2(1, 2), f3(1, 2, 3), f4(1, 2, 3, 4)].join();\n"
+                        + "}\n"
+                        + "for (var i = 0; i < 10; i++) { all(); }\n"
+                        + "all() + '|' + f2(1) + '|' + f2(1, 2, 3) + '|' + f1();");
+    }
+
+    @Test
+    public void aliasedFunction() {
+        // "add" is called by name, so it may take its parameters directly,
+        // while the calls through "g" do not know which function they will get.
+        Utils.assertWithAllOptimizationLevelsES6(
+                "3,NaN,3,NaN,3",
+                "function add(a, b) { return a + b; }\n"
+                        + "function t() { return add(1, 2); }\n"
+                        + "var g = add;\n"
+                        + "function u() { return [g(1, 2), g(1), g(1, 2, 3), g(), t()].join(); }\n"
+                        + "u(); u();");
+    }
+
+    @Test
+    public void argumentsObject() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "0:1:3",
+                "function count() { return arguments.length; }\n"
+                        + "function test() {\n"
+                        + "  return count() + ':' + count(1) + ':' + count(1, 2, 3);\n"
+                        + "}\n"
+                        + "test(); test();");
+    }
+
+    @Test
+    public void thisObject() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "true:true",
+                "var o = { m: function() { return this === o; } };\n"
+                        + "function global() { return this; }\n"
+                        + "function test() { return o.m() + ':' + (global() === globalThis); }\n"
+                        + "test(); test();");
+    }
+
+    @Test
+    public void closures() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "0,2,4,6,8",
+                "var r = [];\n"
+                        + "for (var i = 0; i < 5; i++) {\n"
+                        + "  var k = i;\n"
+                        + "  var f = function(x) { return x * 2; };\n"
+                        + "  r.push(f(k));\n"
+                        + "}\n"
+                        + "r.join();");
+    }
+
+    @Test
+    public void redefinedFunction() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "1:2:3",
+                "var f = function() { return 1; };\n"
+                        + "function call() { return f(); }\n"
+                        + "var a = call();\n"
+                        + "f = function() { return 2; };\n"
+                        + "var b = call();\n"
+                        + "f = Math.abs.bind(null, -3);\n"
+                        + "a + ':' + b + ':' + call();");
+    }
+
+    @Test
+    public void functionFromOtherScript() {
+        Utils.runWithAllOptimizationLevels(
+                cx -> {
+                    Scriptable scope = cx.initStandardObjects();
+                    cx.evaluateString(
+                            scope, "function other(x) { return x + 1; }", "a.js", 1, null);
+                    Object result =
+                            cx.evaluateString(
+                                    scope,
+                                    "function own(x) { return x + 2; }\n"
+                                            + "function test() { return other(1) + own(1); }\n"
+                                            + "test(); String(test());",
+                                    "b.js",
+                                    1,
+                                    null);
+                    assertEquals("5", result);
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,94 @@
+package org.mozilla.javascript.tests;
+
+import org.junit.Test;
+
+/**
+ * Compiled code computes nested bit operations, and sums of their results, with int arithmetic,
+ * and keeps variables that are only assigned such values in int registers. The results must be
+ * the same as with doubles.
+ */
+public class Int32ArithmeticTest {
+    @Test
+    public void nestedBitOperations() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "255,0,-128,-1|231,3,-128,-2|-1851608273,862328680,-689997952,126809419",
+                "function f(x, y) { var a = x * 1, b = y * 1;\n"
+                        + "  return [(a & 0xff) ^ (b << 3), ~(a ^ b), (a << 40) >> 33,"
+                        + " (~a + ~b) >> 1].join(); }\n"
+                        + "[f(2147483647, -2147483648), f(-1.5, 3.7), f(0xdeadbeef, 0x12345678)]"
+                        + ".join('|');");
+    }
+
+    @Test
+    public void sumsWrapAround() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "-1,-8,2147483645,-1|1111111110,-864197539,2147483645,1111111110",
+                "function f(x, y) { var a = x * 1, b = y * 1;\n"
+                        + "  return [((a | 0) + (b | 0)) | 0, ((a | 0) - (b | 0) - 7) | 0,"
+                        + " ((0x7fffffff | 0) + (0x7fffffff | 0) + (0x7fffffff | 0)) | 0,"
+                        + " (a + b) | 0].join(); }\n"
+                        + "[f(2147483647, -2147483648), f(123456789, 987654321)].join('|');");
+    }
+
+    @Test
+    public void nonIntegerTerms() {
+        // Products, fractions and constants outside the int range are not exact as int
+        Utils.assertWithAllOptimizationLevelsES6(
+                "-2147483648,2147483647,6,5,4|-67153024,123456789,4,5,2",
+                "function f(x, y) { var a = x * 1, b = y * 1, half = 0.5;\n"
+                        + "  return [((a | 0) * (b | 0)) | 0, ((a | 0) + half) | 0, (a - 0.5) & 7,"
+                        + " 4294967301 | 0, (1.5 | 0) + (a & 3)].join(); }\n"
+                        + "[f(2147483647, -2147483648), f(123456789, 987654321)].join('|');");
+    }
+
+    @Test
+    public void countersOverflowToDoubles() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "3,2147483648,true,-2147483648,"
+                        + "-2147483648,-2147483649,2147483647,-2147483649,false",
+                "function f() { var n = 2147483647, i = 0, c = 0;"
+                        + " for (i = n - 2; i <= n; i++) c++;\n"
+                        + "  var j = -2147483647; j--; var k = j; k--; var m = j; m = m - 1;\n"
+                        + "  return [c, i, i > n, i | 0, j, k, k | 0, m, m > j].join(); }\n"
+                        + "f();");
+    }
+
+    @Test
+    public void sumsOfVariablesOverflowToDoubles() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "200,199,false,5,4294967294,-2,-4294967294,2,true",
+                "function f() { var n = 2147483647, a = 100, b = 0, j = 0, s = 0;"
+                        + " b = a; a = a + b; b = a - 1;\n"
+                        + "  for (var i = 1; i < 3; i++) { j += n; s = s - n; }\n"
+                        + "  var c = 0; c = j; j = 5;\n"
+                        + "  return [a, b, a < b, j, c, c | 0, s, s | 0, c > n].join(); }\n"
+                        + "f();");
+    }
+
+    @Test
+    public void countersIndexArrays() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "28,81,34,58926130,30,0",
+                "function f(n) { var a = [];"
+                        + " for (var i = 0; i < n; i += 3) a[i] = i * i;\n"
+                        + "  var c = 0;"
+                        + " for (var j = n; j > 0; j--) c += a[j] === undefined ? 1 : a[j] & 7;\n"
+                        + "  var h = 0; for (var k = 0; k < 100; k++) h = (h << 5) - h + k | 0;\n"
+                        + "  return [a.length, a[9], c, h, i, j].join(); }\n"
+                        + "f(30);");
+    }
+
+    @Test
+    public void negativeZeroAndSideEffects() {
+        // -0 is not an int32, and operands are read after the assignments in them
+        Utils.assertWithAllOptimizationLevelsES6(
+                "-Infinity,Infinity,number,0.5,0.5,16,10,true,2,2",
+                "function f(p) { var z = 0; z = -z; var w = 5; w = w % -5;\n"
+                        + "  var i = 1, x = 0; x = ((i = 0.5) | 0) + i;\n"
+                        + "  var c = 1; c = c + ((c = 7) | p); var d = 2;"
+                        + " var r = d < ((d = 10) & p);\n"
+                        + "  var k = 0; var m = k++ + ++k;\n"
+                        + "  return [1 / z, 1 / w, typeof z, x, i, c, d, r, k, m].join(); }\n"
+                        + "f(15);");
+    }
+}
@@ -0,0 +1,53 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * The interpreter reuses the stack arrays of frames that exited. Frames that generators and
+ * closures still use must keep their own.
+ */
+public class InterpreterFramePoolTest {
+
+    @Test
+    public void recursion() {
+        assertEquals(
+                "6765,3628800,undefined",
+                Utils.evaluateInterpretedES6(
+                        "function fib(n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }\n"
+                                + "function fact(n) { var r; if (n > 1) r = n * fact(n - 1);"
+                                + " else r = 1; return r; }\n"
+                                + "function local(n) { var x;"
+                                + " if (n > 0) { local(n - 1); return x; } x = 1; }\n"
+                                + "[fib(20), fact(10), String(local(5))].join();"));
+    }
+
+    @Test
+    public void generatorsKeepTheirVariables() {
+        assertEquals(
+                "0,1,2,3,4|10,11,12",
+                Utils.evaluateInterpretedES6(
+                        "function* count(n) { var i = 0; while (i < n) { yield i; i++; } }\n"
+                                + "function* from(n) { var x = n; for (;;) yield x++; }\n"
+                                + "function noise(a, b, c) { var d = a + b + c; return d; }\n"
+                                + "var r = [], g = count(5), h = from(10);\n"
+                                + "for (var v of g) { r.push(v); noise(7, 8, 9); }\n"
+                                + "var s = [h.next().value, noise(1, 2, 3), h.next().value, "
+                                + "noise(4, 5, 6), h.next().value];\n"
+                                + "r.join() + '|' + [s[0], s[2], s[4]].join();"));
+    }
+
+    @Test
+    public void exceptionsAndConstants() {
+        assertEquals(
+                "caught:4,1,2",
+                Utils.evaluateInterpretedES6(
+                        "function thrower(n) { var a = n; if (n > 3) throw a;"
+                                + " return thrower(n + 1); }\n"
+                                + "function c() { const k = 1; return k; }\n"
+                                + "function v(x) { var k; k = x; return k; }\n"
+                                + "var m; try { thrower(0); } catch (e) { m = 'caught:' + e; }\n"
+                                + "[m, c(), v(2)].join();"));
+    }
+}
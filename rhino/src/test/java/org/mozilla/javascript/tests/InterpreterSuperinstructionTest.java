@@ -0,0 +1,82 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * The interpreter runs common sequences of instructions as one superinstruction. They must keep
+ * the semantics of the instructions they replace.
+ */
+public class InterpreterSuperinstructionTest {
+
+    @Test
+    public void compareAndJump() {
+        assertEquals(
+                "1100|0101|0000|0011|0011|3,1",
+                Utils.evaluateInterpretedES6(
+                        "function cmp(a, b) { var r = '';"
+                                + " if (a < b) r += 1; else r += 0;"
+                                + " if (a <= b) r += 1; else r += 0;"
+                                + " if (a > b) r += 1; else r += 0;"
+                                + " if (a >= b) r += 1; else r += 0; return r; }\n"
+                                + "function down(n) { var c = 0; do { c++; n--; } while (n > 0);"
+                                + " return c; }\n"
+                                + "[cmp(1, 2), cmp(2, 2), cmp(NaN, 1), cmp('b', 'a'), cmp('10', 9),"
+                                + " [down(3), down(-1)]].join('|');"));
+    }
+
+    @Test
+    public void addConstant() {
+        assertEquals(
+                "2,a1,6,b5,11",
+                Utils.evaluateInterpretedES6(
+                        "function one(x) { return x + 1; }\n"
+                                + "function five(x) { return x + 5; }\n"
+                                + "var s = 0; for (var i = 0; i < 10; i++) s = s + 1;\n"
+                                + "[one(1), one('a'), five(1), five('b'), s + 1].join();"));
+    }
+
+    @Test
+    public void variablesAndProperties() {
+        assertEquals(
+                "3,c,7,42,10",
+                Utils.evaluateInterpretedES6(
+                        "function sum(a, b) { return a + b; }\n"
+                                + "function at(a, i) { return a[i]; }\n"
+                                + "function len(s) { return s.length; }\n"
+                                + "function get(o) { return o.value; }\n"
+                                + "function count(n) { var c = 0; for (var i = 0; i < n; i++) c++;"
+                                + " return c; }\n"
+                                + "var o = { get value() { return 42; } };\n"
+                                + "[sum(1, 2), at('abc', 2), len('seventy'), get(o), count(10)]"
+                                + ".join();"));
+    }
+
+    @Test
+    public void exceptionsInSuperinstructions() {
+        assertEquals(
+                "TypeError2,TypeError5,ok",
+                Utils.evaluateInterpretedES6(
+                        "function prop(o) {\n return o.x; }\n"
+                                + "function elem(o, i) {\n\n return o[i]; }\n"
+                                + "function caught(o) { try { return o.x; } catch (e) {"
+                                + " return 'ok'; } }\n"
+                                + "var r = [];\n"
+                                + "try { prop(null); } catch (e) { r.push(e.name + e.lineNumber); }\n"
+                                + "try { elem(null, 0); } catch (e) { r.push(e.name + e.lineNumber); }\n"
+                                + "r.push(caught(undefined));\n"
+                                + "r.join();"));
+    }
+
+    @Test
+    public void bigIntOperands() {
+        // More than four BigInt literals need REG_BIGINT1, which has an operand byte
+        Utils.assertWithAllOptimizationLevelsES6(
+                "17|6:15",
+                "function f() { var x = 0, y; var big = [0n, 1n, 2n, 3n, 4n, 5n]; x++; y = 7n;"
+                        + " return x + String(y) + '|' + big.length + ':'"
+                        + " + big.reduce((a, b) => a + b); }\n"
+                        + "f();");
+    }
+}
@@ -0,0 +1,130 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * The linear-time regular expression matcher has to find the same matches and captures as the
+ * backtracking one. Run a set of expressions with both and compare.
+ */
+public class LinearRegExpTest {
+    private static final String[][] CASES = {
+        {"/(a|ab)(c|bcd)(d*)/", "abcd", "xabcdx"},
+        {"/(a+|b+)*c/", "aabbc", "abab", "c"},
+        {"/(?:(a)|b)+/", "ab", "ba", "aab"},
+        {"/(a)|b/", "b", "a"},
+        {"/^(\\w+\\s?)+$/", "foo bar baz", "foo bar baz!"},
+        {"/(x+x+)+y/", "xxxxxxxxy", "xxxxxxxx"},
+        {"/<(.+?)>/g", "<a><b>", "<>"},
+        {"/(a|b)*?c/", "abac", "ab"},
+        {"/(\\d{1,3})(?:,(\\d{3}))*/", "1,234,567", "12,34"},
+        {"/(?:a|b){2,3}c/", "abac", "aabbbc", "ac"},
+        {"/(?:a|b){2}?(b?)/", "abb", "ab"},
+        {"/(foo|bar)\\b/i", "FOOBAR bar", "xbar"},
+        {"/^(?:a|b)$/m", "c\nb\n", "ab"},
+        {"/([a-c]|[x-z])+/", "xaQbz", "QQ"},
+        {"/(?:[^\\s]+\\s)*done/", "a b c done", "a b c don"},
+        {"/(?:a|b)*(c)?/y", "abc", "cab"},
+        {"/(?:.|\\n)+?z/s", "ab\nz", "ab"},
+        {"/(\\u1234|b)+/", "ሴbሴ", "a"},
+    };
+
+    private static String run(boolean linear, String regexp, String input) {
+        ContextFactory factory =
+                new ContextFactory() {
+                    @Override
+                    protected boolean hasFeature(Context cx, int featureIndex) {
+                        if (featureIndex == Context.FEATURE_LINEAR_REGEXP) {
+                            return linear;
+                        }
+                        return super.hasFeature(cx, featureIndex);
+                    }
+                };
+        try (Context cx = factory.enterContext()) {
+            cx.setOptimizationLevel(-1);
+            cx.setLanguageVersion(Context.VERSION_ES6);
+            Scriptable scope = cx.initStandardObjects();
+            scope.put("input", scope, input);
+            return (String)
+                    cx.evaluateString(
+                            scope,
+                            "var re = "
+                                    + regexp
+                                    + ", r = [], m;\n"
+                                    + "while ((m = re.exec(input)) !== null) {\n"
+                                    + "  r.push(m.index + ':' + m.map(String).join('/'));\n"
+                                    + "  if (!re.global && !re.sticky) break;\n"
+                                    + "  if (m[0] === '') re.lastIndex++;\n"
+                                    + "}\n"
+                                    + "r.join(' ') + '|' + input.replace("
+                                    + regexp
+                                    + ", '[$&]');",
+                            "test.js",
+                            1,
+                            null);
+        }
+    }
+
+    @Test
+    public void sameResultsAsBacktracking() {
+        for (String[] c : CASES) {
+            for (int i = 1; i < c.length; i++) {
+                String expected = run(false, c[0], c[i]);
+                assertEquals(c[0] + " on " + c[i], expected, run(true, c[0], c[i]));
+            }
+        }
+    }
+
+    @Test
+    public void emptyIterations() {
+        // Both settings use the linear matcher for these, so compare with what the backtracking
+        // matcher returns
+        String[][] cases = {
+            {"/(a*)*b/", "aab", "0:aab/aa|[aab]"},
+            {"/(a*)*b/", "b", "0:b/undefined|[b]"},
+            {"/(a?)+?b/", "aab", "0:aab/a|[aab]"},
+            {"/(a?)+?b/", "b", "0:b/|[b]"},
+            {"/(a|)*b(|c)+/", "aabcc", "0:aabcc/a/c|[aabcc]"},
+            {"/(a*?)*?b/", "aaab", "0:aaab/a|[aaab]"},
+            {"/((a*)b?)*c/", "abaabc", "0:abaabc/aab/aa|[abaabc]"},
+            {"/(a?){2,}b/", "ab", "0:ab/|[ab]"},
+            {"/(a?){2,}b/", "aaab", "0:aaab/a|[aaab]"},
+            {"/(?:(a)|b?){0,3}c/", "abac", "0:abac/a|[abac]"},
+            {"/(?:a*|b)*$/g", "abba", "0:abba 4:|[abba][]"},
+        };
+        for (String[] c : cases) {
+            assertEquals(c[0] + " on " + c[1], c[2], run(false, c[0], c[1]));
+            assertEquals(c[0] + " on " + c[1], c[2], run(true, c[0], c[1]));
+        }
+    }
+
+    @Test
+    public void catastrophicPatterns() {
+        String input = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa!";
+        long start = System.nanoTime();
+        // These take exponential time with backtracking, so they are matched by the linear
+        // matcher even when it is not requested.
+        assertEquals("|" + input, run(false, "/^(a+)+$/", input));
+        assertEquals("|" + input, run(false, "/^(a|aa)+$/", input));
+        assertEquals("|" + input, run(false, "/^(\\w+\\s?)*$/", input));
+        assertTrue((System.nanoTime() - start) / 1000000 < 10000);
+    }
+
+    @Test
+    public void catastrophicPatternsWithEmptyIterations() {
+        String input = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaac";
+        long start = System.nanoTime();
+        // The atoms can match the empty string, which the linear matcher checks for like the
+        // backtracking one
+        assertEquals("|" + input, run(false, "/(a*)*b/", input));
+        assertEquals("|" + input, run(false, "/(a?)+b/", input));
+        assertEquals("|" + input, run(false, "/(a|)*b/", input));
+        assertEquals("|" + input, run(true, "/((a*)*)*b/", input));
+        assertTrue((System.nanoTime() - start) / 1000000 < 10000);
+    }
+}
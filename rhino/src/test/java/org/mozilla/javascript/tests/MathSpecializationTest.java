@@ -0,0 +1,43 @@
+package org.mozilla.javascript.tests;
+
+import org.junit.Test;
+
+/**
+ * Additions, equality tests and comparisons in compiled code are specialized on the types of the
+ * operands that they see. The same call site must keep working when the types change.
+ */
+public class MathSpecializationTest {
+    private static final String ARGUMENTS =
+            "var args = [[1, 2], [2147483647, 1], [1.5, 2], [2, 1.5], [NaN, 1], [-0, 0],"
+                    + " ['a', 'b'], ['10', '9'], ['ab', 'a' + 'b'], ['1', 1], [1, '1'],"
+                    + " [{ valueOf() { return 3; } }, 4], [null, undefined], [true, 1],"
+                    + " [1, 2], ['a', 'b']];\n"
+                    + "var r = [];\n"
+                    + "for (var i = 0; i < args.length; i++) r.push(f(args[i][0], args[i][1]));\n"
+                    + "r.join('|');";
+
+    @Test
+    public void add() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "3|2147483648|3.5|3.5|NaN|0|ab|109|abab|11|11|7|NaN|2|3|ab",
+                "function f(a, b) { return a + b; }\n" + ARGUMENTS);
+    }
+
+    @Test
+    public void equality() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "false,false|false,false|false,false|false,false|false,false|true,true"
+                        + "|false,false|false,false|true,true|true,false|true,false"
+                        + "|false,false|true,false|true,false|false,false|false,false",
+                "function f(a, b) { return [a == b, a === b].join(); }\n" + ARGUMENTS);
+    }
+
+    @Test
+    public void comparison() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "TFFT|FTTF|TFFT|FTTF|FFFF|FFTT|TFFT|TFFT|FFTT|FFTT|FFTT|TFFT|FFFF|FFTT|TFFT|TFFT",
+                "function f(a, b) { return (a < b ? 'T' : 'F') + (a > b ? 'T' : 'F')"
+                        + " + (a >= b ? 'T' : 'F') + (a <= b ? 'T' : 'F'); }\n"
+                        + ARGUMENTS);
+    }
+}
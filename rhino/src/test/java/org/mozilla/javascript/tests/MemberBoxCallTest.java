@@ -73,6 +73,56 @@ public class MemberBoxCallTest {
         }
     }
 
+    @Test
+    public void javaMembers() {
+        // Public members are called through method handles, while the others, such as methods
+        // of a private class or caller sensitive methods, are still called by reflection
+        try (Context cx = Context.enter()) {
+            assertEquals(
+                    "2|3|a-b|java.lang.String|undefined|5|java.lang.NumberFormatException",
+                    evaluate(
+                            cx,
+                            "var list = new java.util.ArrayList();\n"
+                                    + "list.add('x'); list.add('y');\n"
+                                    + "var u = java.util.Collections.unmodifiableList(list);\n"
+                                    + "var r = [u.size()];\n"
+                                    + "r.push(java.lang.Math.max(2, 3));\n"
+                                    + "r.push(java.lang.String.format('%s-%s', 'a', 'b'));\n"
+                                    + "var c = java.lang.Class.forName('java.lang.String');\n"
+                                    + "r.push(c.getName());\n"
+                                    + "r.push(typeof list.clear());\n"
+                                    + "var sb = new java.lang.StringBuilder('abc');\n"
+                                    + "r.push(sb.append('de').length());\n"
+                                    + "try { java.lang.Integer.parseInt('x'); }\n"
+                                    + "catch (e) { r.push(e.javaException.getClass().getName()) }\n"
+                                    + "r.join('|');"));
+        }
+    }
+
+    @Test
+    public void javaFieldsAndBeanProperties() {
+        // Fields are read and written through method handles, except final fields, which are
+        // still left alone. Bean properties call their getters and setters without an argument
+        // array.
+        try (Context cx = Context.enter()) {
+            assertEquals(
+                    "5|7|8|ABC|X|12,x|Cannot convert x to java.lang.Integer (<testsrc>#7)",
+                    evaluate(
+                            cx,
+                            "var C = Packages."
+                                    + JavaHost.class.getName()
+                                    + ", h = new C();\n"
+                                    + "h.count = '5'; var r = [h.count];\n"
+                                    + "h.fixed = 9; r.push(h.fixed);\n"
+                                    + "h.twice = 4; r.push(h.twice());\n"
+                                    + "h.title = 'abc'; r.push(h.title);\n"
+                                    + "C.label = 'X'; r.push(h.label);\n"
+                                    + "r.push(h.join(12, 'x'));\n"
+                                    + "try { h.count = 'x'; } catch (e) { r.push(e.message); }\n"
+                                    + "r.join('|');"));
+        }
+    }
+
     private Object evaluate(Context cx, String str) {
         return cx.evaluateString(scope, str, "<testsrc>", 0, null);
     }
@@ -85,6 +135,30 @@ public class MemberBoxCallTest {
         }
     }
 
+    public static class JavaHost {
+        public int count;
+        public final int fixed = 7;
+        public int twice;
+        public static String label;
+        private String title;
+
+        public int twice() {
+            return twice * 2;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title.toUpperCase();
+        }
+
+        public String join(int a, String b) {
+            return a + "," + b;
+        }
+    }
+
     public static class AnnotatedHostObject extends ScriptableObject {
 
         String foo, bar = "bar";
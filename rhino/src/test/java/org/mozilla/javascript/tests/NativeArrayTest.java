@@ -120,6 +120,85 @@ public class NativeArrayTest {
         assertEquals(new ArrayList<Integer>(), array.getIndexIds());
     }
 
+    @Test
+    public void packedElementsShouldMoveToMoreGeneralKinds() {
+        NativeArray packed = new NativeArray(new Object[] {1, 2});
+        packed.put(2, packed, 3);
+        assertEquals(3, packed.get(2, packed));
+        packed.put(1, packed, 2.5);
+        assertEquals(1.0, packed.get(0, packed));
+        assertEquals(2.5, packed.get(1, packed));
+        packed.put(3, packed, "a");
+        assertArrayEquals(new Object[] {1.0, 2.5, 3.0, "a"}, packed.toArray());
+        assertArrayEquals(new Object[] {0, 1, 2, 3}, packed.getIds());
+    }
+
+    @Test
+    public void packedElementsShouldMoveWhenAHoleIsLeft() {
+        NativeArray packed = new NativeArray(new Object[] {1.5, 2.5});
+        packed.put(3, packed, 4.5);
+        assertFalse(packed.has(2, packed));
+        assertArrayEquals(new Object[] {0, 1, 3}, packed.getIds());
+
+        packed = new NativeArray(new Object[] {1, 2, 3});
+        packed.delete(1);
+        assertFalse(packed.has(1, packed));
+        assertEquals(3L, packed.getLength());
+        assertArrayEquals(new Object[] {0, 2}, packed.getIds());
+    }
+
+    @Test
+    public void packedElementsShouldWorkWithArrayMethods() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "1,2.5,3,4,5|7,1.5,2.5,3,4,5,x,1,2|1,6|2,3",
+                "var a = [1];\n"
+                        + "a.push(2.5, 3, 4, 5);\n"
+                        + "var r = [a.join()];\n"
+                        + "var b = [];\n"
+                        + "b.push(1.5);\n"
+                        + "b = b.concat(a.slice(1), ['x'], [1, 2]);\n"
+                        + "b.unshift(7);\n"
+                        + "r.push(b.join());\n"
+                        + "var c = [1, 2, 3, 4, 5, 6];\n"
+                        + "r.push([c.shift(), c.pop()].join());\n"
+                        + "c.length = 2;\n"
+                        + "r.push([c.length, c[1]].join());\n"
+                        + "r.join('|');");
+    }
+
+    @Test
+    public void sparseElementsShouldBeListedInOrder() {
+        NativeArray sparse = new NativeArray(0);
+        sparse.put(70000, sparse, "a");
+        sparse.put(50, sparse, "b");
+        sparse.put(3, sparse, "c");
+        sparse.put("p", sparse, "d");
+        assertArrayEquals(new Object[] {3, 50, 70000, "p"}, sparse.getIds());
+        assertEquals(70001L, sparse.getLength());
+
+        sparse.delete(50);
+        assertFalse(sparse.has(50, sparse));
+        assertEquals("a", sparse.get(70000, sparse));
+        assertArrayEquals(new Object[] {3, 70000, "p"}, sparse.getIds());
+    }
+
+    @Test
+    public void sparseElementsShouldWorkWithArrayMethods() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "1,2,3,,|1000000:0,1,2|2:150,200|250",
+                "var a = new Array(1000000);\n"
+                        + "a[999999] = 3; a[5] = 1; a[500000] = 2;\n"
+                        + "a.sort();\n"
+                        + "var r = [a.slice(0, 5).join(), a.length + ':' + Object.keys(a)];\n"
+                        + "var b = [];\n"
+                        + "b[100] = 1; b[200] = 2; b[20000] = 3;\n"
+                        + "b.length = 250;\n"
+                        + "Object.defineProperty(b, 150, { value: 4, enumerable: true });\n"
+                        + "delete b[100];\n"
+                        + "r.push(Object.keys(b).length + ':' + Object.keys(b), b.length);\n"
+                        + "r.join('|');");
+    }
+
     @Test
     public void testToString() {
         String source =
@@ -6,10 +6,16 @@
 package org.mozilla.javascript.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import org.junit.Test;
 import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeJSON;
 import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.Undefined;
 
 /**
  * @author Ronald Brill
@@ -28,4 +34,61 @@ public class NativeJsonTest {
             assertEquals("java.lang.String", result.getClass().getName());
         }
     }
+
+    @Test
+    public void stringifyToWriter() throws IOException {
+        try (Context cx = Context.enter()) {
+            Scriptable scope = cx.initStandardObjects();
+            Object value =
+                    cx.evaluateString(
+                            scope,
+                            "({a: [1, 'x\\n', {}], b: undefined, c: {toJSON: function() { return true; }}})",
+                            "myscript.js",
+                            1,
+                            null);
+
+            StringWriter writer = new StringWriter();
+            assertTrue(NativeJSON.stringify(cx, scope, value, null, null, writer));
+            assertEquals("{\"a\":[1,\"x\\n\",{}],\"c\":true}", writer.toString());
+
+            writer = new StringWriter();
+            assertTrue(NativeJSON.stringify(cx, scope, value, null, 1, writer));
+            assertEquals(
+                    "{\n \"a\": [\n  1,\n  \"x\\n\",\n  {}\n ],\n \"c\": true\n}",
+                    writer.toString());
+
+            writer = new StringWriter();
+            assertFalse(NativeJSON.stringify(cx, scope, Undefined.instance, null, null, writer));
+            assertEquals("", writer.toString());
+        }
+    }
+
+    @Test
+    public void stringifyObjectsThatOnlyHoldData() {
+        // Plain objects and arrays are read from their slots, which must give the same result as
+        // looking up each property, even when script code changes them part of the way through
+        Utils.assertWithAllOptimizationLevelsES6(
+                "{\"a\":1,\"b\":[1,2.5,null,\"s1\",null],\"c\":{\"d\":true}}|"
+                        + "{\"a\":1,\"g\":5,\"z\":3}|"
+                        + "{\"a\":{\"x\":\"X\"},\"b\":\"changed\"}|"
+                        + "{\"p\":\"P\",\"q\":\"A\"}",
+                "var s = 's';\n"
+                        + "s = s + 1;\n"
+                        + "var r = [JSON.stringify({a: 1, b: [1, 2.5, , s, NaN],\n"
+                        + "  c: {d: true, e: undefined}})];\n"
+                        + "var o = {a: 1};\n"
+                        + "Object.defineProperty(o, 'g',\n"
+                        + "  { get: function() { return 5; }, enumerable: true });\n"
+                        + "o.z = 3;\n"
+                        + "r.push(JSON.stringify(o));\n"
+                        + "o = {a: {x: {toJSON: function() {\n"
+                        + "  delete o.c; o.b = 'changed'; return 'X'; }}}, b: 1, c: 2};\n"
+                        + "r.push(JSON.stringify(o));\n"
+                        + "Object.prototype.toJSON = function() { return 'P'; };\n"
+                        + "Array.prototype.toJSON = function() { return 'A'; };\n"
+                        + "var t = Object.create(null);\n"
+                        + "t.p = {}; t.q = [[]];\n"
+                        + "r.push(JSON.stringify(t));\n"
+                        + "r.join('|');");
+    }
 }
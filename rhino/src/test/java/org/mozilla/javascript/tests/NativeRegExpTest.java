@@ -529,4 +529,75 @@ public class NativeRegExpTest {
                 "TypeError: Method \"toString\" called on incompatible object",
                 "var toString = RegExp.prototype.toString; try { toString(); } catch (e) { ('' + e).substr(0, 58) }");
     }
+
+    @Test
+    public void samePatternSharedBetweenInstances() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "true,false|2,0|1",
+                "var a = new RegExp('a', 'g'), b = new RegExp('a', 'g');\n"
+                        + "var r = [a.test('xa'), b.test('b')].join();\n"
+                        + "r += '|' + a.lastIndex + ',' + b.lastIndex;\n"
+                        + "var res = [];\n"
+                        + "for (var i = 0; i < 3; i++) { res.push('aaa'.replace(new RegExp('a'), 'b')); }\n"
+                        + "r + '|' + (res[2] === 'baa' ? 1 : 0);");
+    }
+
+    @Test
+    public void samePatternDifferentFlags() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "A,a|A|a|true",
+                "var s = 'Aa';\n"
+                        + "var r = [s.match(new RegExp('a', 'gi')).join(),\n"
+                        + "         s.match(new RegExp('a', 'i'))[0],\n"
+                        + "         s.match(new RegExp('a'))[0]].join('|');\n"
+                        + "r + '|' + new RegExp('a', 'ig').ignoreCase;");
+    }
+
+    @Test
+    public void invalidFlagsAfterValidPattern() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "SyntaxError",
+                "new RegExp('x', 'g');\n"
+                        + "try { new RegExp('x', 'gg'); 'no error' } catch (e) { e.name }");
+    }
+
+    @Test
+    public void literalPrefix() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "9:ERROR: disk/disk|null|5:abc/b|0:a\nb|6:xxyz",
+                "var r = [/ERROR: (\\w+)/.exec('warning, ERROR: disk'),\n"
+                        + "         /ERROR: (\\w+)/.exec('ERROR:'),\n"
+                        + "         /\\ba(b)c/.exec('xabc abc'),\n"
+                        + "         /a\\nb/.exec('a\\nb'),\n"
+                        + "         /(?:xx)yz/.exec('xyz x xxyz')];\n"
+                        + "r.map(function(m) { return m === null ? 'null' : m.index + ':' + m.join('/'); })"
+                        + ".join('|');");
+    }
+
+    @Test
+    public void firstCharacters() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "3:bar|4:FOO|null|1:b|1:xx|2:c",
+                "var r = [/(?:foo|bar)/.exec('xx bar foo'),\n"
+                        + "         /(?:foo|bar)/i.exec('xxx FOO'),\n"
+                        + "         /(?:foo|bar)/.exec('baz'),\n"
+                        + "         /(?:a|)b/.exec('cbd'),\n"
+                        + "         /x{2,}/.exec('axxb'),\n"
+                        + "         /c(?:a|b)*/.exec('xxc')];\n"
+                        + "r.map(function(m) { return m === null ? 'null' : m.index + ':' + m[0]; })"
+                        + ".join('|');");
+    }
+
+    @Test
+    public void prescanWithStickyAndMultiline() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "false,true,4|2|6:bc",
+                "var re = /abc/y;\n"
+                        + "re.lastIndex = 1;\n"
+                        + "var r = [re.test('xxabc')];\n"
+                        + "re.lastIndex = 2;\n"
+                        + "r.push(re.test('xxabc'));\n"
+                        + "r.push('xy\\nabc'.search(/^abc/m) + 1);\n"
+                        + "r.join() + '|' + 'a\\nfoo'.search(/^fo/m) + '|' + /bc$/.exec('bcxabcbc').index + ':bc';");
+    }
 }
@@ -0,0 +1,117 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.PersistentCodeCache;
+import org.mozilla.javascript.Scriptable;
+
+public class PersistentCodeCacheTest {
+    private static final String SCRIPT =
+            "function fib(n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }\n"
+                    + "var re = /a+b/g;\n"
+                    + "String(fib(10)) + ':' + 'aab ab'.match(re).join() + ':' + `${1 + 1}`;";
+
+    private File dir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("rhino-code-cache").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /** Evaluate with a brand-new factory and cache, like a freshly started application would. */
+    private static Object evaluate(PersistentCodeCache cache, int optLevel, String source) {
+        ContextFactory factory = new ContextFactory();
+        factory.setPersistentCodeCache(cache);
+        try (Context cx = factory.enterContext()) {
+            cx.setOptimizationLevel(optLevel);
+            cx.setLanguageVersion(Context.VERSION_ES6);
+            Scriptable scope = cx.initStandardObjects();
+            return cx.evaluateString(scope, source, "test.js", 1, null);
+        }
+    }
+
+    @Test
+    public void reusedAfterRestart() {
+        for (int optLevel : Utils.getTestOptLevels()) {
+            PersistentCodeCache first = new PersistentCodeCache(dir);
+            assertEquals("55:aab,ab:2", evaluate(first, optLevel, SCRIPT));
+            assertEquals(0, first.getHitCount());
+            assertEquals(1, first.getMissCount());
+
+            PersistentCodeCache second = new PersistentCodeCache(dir);
+            assertEquals("55:aab,ab:2", evaluate(second, optLevel, SCRIPT));
+            assertEquals(1, second.getHitCount());
+            assertEquals(0, second.getMissCount());
+        }
+    }
+
+    @Test
+    public void settingsAndSourceAreInKey() {
+        PersistentCodeCache cache = new PersistentCodeCache(dir);
+        evaluate(cache, -1, SCRIPT);
+        evaluate(cache, 9, SCRIPT);
+        evaluate(cache, 9, SCRIPT + " ");
+        assertEquals(0, cache.getHitCount());
+        assertEquals(3, dir.listFiles().length);
+    }
+
+    @Test
+    public void corruptEntryIsReplaced() throws IOException {
+        PersistentCodeCache cache = new PersistentCodeCache(dir);
+        evaluate(cache, 9, SCRIPT);
+        File[] files = dir.listFiles();
+        assertEquals(1, files.length);
+        try (FileOutputStream out = new FileOutputStream(files[0])) {
+            out.write(new byte[] {1, 2, 3});
+        }
+
+        assertEquals("55:aab,ab:2", evaluate(cache, 9, SCRIPT));
+        assertEquals(0, cache.getHitCount());
+        assertEquals("55:aab,ab:2", evaluate(cache, 9, SCRIPT));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void syntaxErrorIsNotCached() {
+        PersistentCodeCache cache = new PersistentCodeCache(dir);
+        try {
+            evaluate(cache, 9, "var x = ;");
+            fail();
+        } catch (EvaluatorException e) {
+            // expected
+        }
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void clear() {
+        PersistentCodeCache cache = new PersistentCodeCache(dir);
+        evaluate(cache, 9, SCRIPT);
+        assertTrue(dir.listFiles().length > 0);
+        cache.clear();
+        assertEquals(0, dir.listFiles().length);
+    }
+}
@@ -0,0 +1,114 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.ScriptCache;
+import org.mozilla.javascript.Scriptable;
+
+public class ScriptCacheTest {
+    private static ContextFactory factoryWithCache(ScriptCache cache) {
+        ContextFactory factory = new ContextFactory();
+        factory.setScriptCache(cache);
+        return factory;
+    }
+
+    @Test
+    public void sameSourceIsCompiledOnce() {
+        ScriptCache cache = new ScriptCache(10);
+        Utils.runWithAllOptimizationLevels(
+                factoryWithCache(cache),
+                cx -> {
+                    Script first = cx.compileString("x + 1", "test.js", 1, null);
+                    Script second = cx.compileString("x + 1", "test.js", 1, null);
+                    assertSame(first, second);
+
+                    // The cached script can run in any scope
+                    Scriptable s1 = cx.initStandardObjects();
+                    Scriptable s2 = cx.initStandardObjects();
+                    s1.put("x", s1, 1);
+                    s2.put("x", s2, "a");
+                    assertEquals(2.0, Context.toNumber(first.exec(cx, s1)), 0.0);
+                    assertEquals("a1", second.exec(cx, s2));
+                    return null;
+                });
+        assertEquals(3, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void evaluate() {
+        ScriptCache cache = new ScriptCache(10);
+        Utils.runWithAllOptimizationLevels(
+                factoryWithCache(cache),
+                cx -> {
+                    Scriptable scope = cx.initStandardObjects();
+                    for (int i = 1; i <= 3; i++) {
+                        Object result =
+                                cx.evaluateString(
+                                        scope,
+                                        "var n = (typeof n == 'number') ? n + 1 : 1; n",
+                                        "test.js",
+                                        1,
+                                        null);
+                        assertEquals(i, Context.toNumber(result), 0.0);
+                    }
+                    return null;
+                });
+        assertEquals(6, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void settingsAreInKey() {
+        ScriptCache cache = new ScriptCache(10);
+        try (Context cx = factoryWithCache(cache).enterContext()) {
+            Script s1 = cx.compileString("1", "test.js", 1, null);
+            assertNotSame(s1, cx.compileString("1", "other.js", 1, null));
+            assertNotSame(s1, cx.compileString("1", "test.js", 2, null));
+            assertNotSame(s1, cx.compileString("1 ", "test.js", 1, null));
+            cx.setLanguageVersion(Context.VERSION_ES6);
+            Script s2 = cx.compileString("1", "test.js", 1, null);
+            assertNotSame(s1, s2);
+            cx.setOptimizationLevel(cx.getOptimizationLevel() == -1 ? 9 : -1);
+            assertNotSame(s2, cx.compileString("1", "test.js", 1, null));
+        }
+        assertEquals(0, cache.getHitCount());
+        assertEquals(6, cache.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        ScriptCache cache = new ScriptCache(2);
+        try (Context cx = factoryWithCache(cache).enterContext()) {
+            Script a = cx.compileString("'a'", "test.js", 1, null);
+            Script b = cx.compileString("'b'", "test.js", 1, null);
+            assertSame(a, cx.compileString("'a'", "test.js", 1, null));
+            cx.compileString("'c'", "test.js", 1, null);
+            assertEquals(2, cache.size());
+            assertSame(a, cx.compileString("'a'", "test.js", 1, null));
+            assertNotSame(b, cx.compileString("'b'", "test.js", 1, null));
+        }
+        assertEquals(2, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void functionsAreNotCached() {
+        ScriptCache cache = new ScriptCache(10);
+        try (Context cx = factoryWithCache(cache).enterContext()) {
+            Scriptable scope = cx.initStandardObjects();
+            assertNotSame(
+                    cx.compileFunction(scope, "function f() {}", "test.js", 1, null),
+                    cx.compileFunction(scope, "function f() {}", "test.js", 1, null));
+        }
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMissCount());
+    }
+}
@@ -0,0 +1,99 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Property access through the shape-based inline caches must behave exactly like the generic
+ * lookup, even when the shape or the kind of slot changes underneath a call site.
+ */
+public class ShapeCacheTest {
+    private static final ContextFactory SHAPED_FACTORY =
+            new ContextFactory() {
+                @Override
+                protected boolean hasFeature(Context cx, int featureIndex) {
+                    if (featureIndex == Context.FEATURE_SHAPED_OBJECTS) {
+                        return true;
+                    }
+                    return super.hasFeature(cx, featureIndex);
+                }
+            };
+
+    private static void assertShaped(Object expected, String script) {
+        Utils.runWithAllOptimizationLevels(
+                SHAPED_FACTORY,
+                cx -> {
+                    cx.setLanguageVersion(Context.VERSION_ES6);
+                    Scriptable scope = cx.initStandardObjects();
+                    assertEquals(expected, cx.evaluateString(scope, script, "test.js", 1, null));
+                    return null;
+                });
+    }
+
+    @Test
+    public void monomorphicGetAndSet() {
+        assertShaped(
+                "2000",
+                "function P(x) { this.x = x; }\n"
+                        + "function bump(o) { o.x = o.x + 1; return o.x; }\n"
+                        + "var s = 0;\n"
+                        + "for (var i = 0; i < 1000; i++) { s += bump(new P(0)) + bump({x: 0}); }\n"
+                        + "String(s);");
+    }
+
+    @Test
+    public void polymorphicGet() {
+        assertShaped(
+                "1,2,3,4,5,6,7,8,9,10",
+                "function getX(o) { return o.x; }\n"
+                        + "var r = [];\n"
+                        + "for (var i = 1; i <= 10; i++) {\n"
+                        + "  var o = {};\n"
+                        + "  for (var j = 0; j < i; j++) { o['p' + j] = j; }\n"
+                        + "  o.x = i;\n"
+                        + "  r.push(getX(o));\n"
+                        + "}\n"
+                        + "r.join();");
+    }
+
+    @Test
+    public void accessorReplacesDataProperty() {
+        assertShaped(
+                "1:42",
+                "function getX(o) { return o.x; }\n"
+                        + "var o = {x: 1};\n"
+                        + "var a = getX(o);\n"
+                        + "Object.defineProperty(o, 'x', { get: function() { return 42; } });\n"
+                        + "a + ':' + getX(o);");
+    }
+
+    @Test
+    public void frozenObjectIsNotWritten() {
+        assertShaped(
+                "1:1",
+                "function setX(o) { o.x = 2; }\n"
+                        + "var o = {x: 1};\n"
+                        + "var p = {x: 1};\n"
+                        + "setX(o);\n"
+                        + "Object.freeze(p);\n"
+                        + "setX(p);\n"
+                        + "o.x - 1 + ':' + p.x;");
+    }
+
+    @Test
+    public void deleteFallsBackToPrototype() {
+        assertShaped(
+                "own:proto",
+                "function getX(o) { return o.x; }\n"
+                        + "var proto = {x: 'proto'};\n"
+                        + "var o = Object.create(proto);\n"
+                        + "o.x = 'own';\n"
+                        + "var a = getX(o);\n"
+                        + "delete o.x;\n"
+                        + "a + ':' + getX(o);");
+    }
+}
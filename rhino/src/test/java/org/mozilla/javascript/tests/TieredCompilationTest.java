@@ -0,0 +1,120 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.mozilla.javascript.BaseFunction;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * With tiered compilation, interpreted functions that are called often are compiled while the
+ * script runs. They must go on to return the same results, also through closures created before.
+ */
+public class TieredCompilationTest {
+
+    private static ContextFactory factory(boolean tiered) {
+        return new ContextFactory() {
+            @Override
+            protected boolean hasFeature(Context cx, int featureIndex) {
+                if (featureIndex == Context.FEATURE_TIERED_COMPILATION) {
+                    return tiered;
+                }
+                return super.hasFeature(cx, featureIndex);
+            }
+        };
+    }
+
+    /** A function that tells whether it was called from a compiled function. */
+    private static class IsCompiled extends BaseFunction {
+        @Override
+        public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+            for (StackTraceElement e : new Throwable().getStackTrace()) {
+                if (e.getClassName().startsWith("org.mozilla.javascript.gen.")) {
+                    return Boolean.TRUE;
+                }
+            }
+            return Boolean.FALSE;
+        }
+    }
+
+    private static Object run(boolean tiered, String script) {
+        try (Context cx = factory(tiered).enterContext()) {
+            cx.setOptimizationLevel(-1);
+            cx.setLanguageVersion(Context.VERSION_ES6);
+            Scriptable scope = cx.initStandardObjects();
+            scope.put("isCompiled", scope, new IsCompiled());
+            return cx.evaluateString(scope, script, "test.js", 1, null);
+        }
+    }
+
+    private static void assertTiered(String expected, String script) {
+        assertEquals(expected, run(false, script));
+        assertEquals(expected, run(true, script));
+    }
+
+    @Test
+    public void hotFunctionIsCompiled() {
+        String check =
+                "function f() { return isCompiled(); }\n"
+                        + "var r = [f()];\n"
+                        + "for (var i = 0; i < 5000; i++) { f(); }\n"
+                        + "r.push(f());\n"
+                        + "r.join();";
+        assertEquals("false,false", run(false, check));
+        assertEquals("false,true", run(true, check));
+    }
+
+    @Test
+    public void loopsMakeAFunctionHot() {
+        String check =
+                "function loop(n) { var s = 0; for (var i = 0; i < n; i++) { s += i; } "
+                        + "return isCompiled() + ':' + s; }\n"
+                        + "[loop(10000), loop(3)].join();";
+        assertEquals("false:49995000,false:3", run(false, check));
+        assertEquals("false:49995000,true:3", run(true, check));
+    }
+
+    @Test
+    public void closuresCreatedBefore() {
+        assertTiered(
+                "11,12,5000,5001,2",
+                "function make(n) { return function(x) { return x + n; }; }\n"
+                        + "function counter() { var c = 0; return function() { return ++c; }; }\n"
+                        + "var a = make(1), b = make(2), c = counter(), d = counter();\n"
+                        + "for (var i = 0; i < 4999; i++) { a(i); c(); }\n"
+                        + "d();\n"
+                        + "[a(10), b(10), c(), c(), d()].join();");
+    }
+
+    @Test
+    public void sameSemantics() {
+        assertTiered(
+                "55|true|object|object|3|TypeError6|6765",
+                "'use strict';\n"
+                        + "function sum(o) { var s = 0; for (var k in o) s += o[k]; return s; }\n"
+                        + "function isUndef(x) { return x === undefined; }\n"
+                        + "function self() { return this; }\n"
+                        + "function P(x) { this.x = x; }\n"
+                        + "function thrower(x) { if (x > 4000) return x.foo.bar; return x; }\n"
+                        + "function fib(n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }\n"
+                        + "var o = {}; for (var i = 1; i <= 10; i++) o['k' + i] = i;\n"
+                        + "var r = [], msg;\n"
+                        + "for (var i = 0; i < 3000; i++) { sum(o); isUndef(); self(); new P(i); }\n"
+                        + "try { for (var i = 0; i < 5000; i++) thrower(i); } catch (e) { msg = e.name + e.lineNumber; }\n"
+                        + "[sum(o), isUndef(), typeof self(), typeof new P(3), new P(3).x, msg, fib(20)]"
+                        + ".join('|');");
+    }
+
+    @Test
+    public void functionsThatStayInterpreted() {
+        assertTiered(
+                "3,true,6",
+                "function args() { return arguments.length; }\n"
+                        + "var named = function me() { return me === named; };\n"
+                        + "function outer(n) { function inner() { return n * 2; } return inner(); }\n"
+                        + "for (var i = 0; i < 5000; i++) { args(1, 2, 3); named(); outer(1); }\n"
+                        + "[args(1, 2, 3), named(), outer(3)].join();");
+    }
+}
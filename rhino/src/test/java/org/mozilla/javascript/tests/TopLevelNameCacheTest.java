@@ -0,0 +1,104 @@
+package org.mozilla.javascript.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Names that compiled code looks up in the top-level scope are cached, so make sure that every way
+ * of changing a global is seen by call sites that have already been linked.
+ */
+public class TopLevelNameCacheTest {
+    private static void assertGlobal(Object expected, String script) {
+        Utils.runWithAllOptimizationLevels(
+                new ContextFactory(),
+                cx -> {
+                    cx.setLanguageVersion(Context.VERSION_ES6);
+                    Scriptable scope = cx.initStandardObjects();
+                    assertEquals(expected, cx.evaluateString(scope, script, "test.js", 1, null));
+                    return null;
+                });
+    }
+
+    @Test
+    public void lazyConstructor() {
+        assertGlobal("4", "function m() { return Math.max(1, 2); }\n" + "String(m() + m());");
+    }
+
+    @Test
+    public void assignedValue() {
+        assertGlobal(
+                "1:2",
+                "var f = function() { return 1; };\n"
+                        + "function g() { return f(); }\n"
+                        + "var a = g();\n"
+                        + "f = function() { return 2; };\n"
+                        + "a + ':' + g();");
+    }
+
+    @Test
+    public void deleted() {
+        assertGlobal(
+                "1:ReferenceError",
+                "this.y = 1;\n"
+                        + "function g() { return y; }\n"
+                        + "var a = g();\n"
+                        + "delete y;\n"
+                        + "try { g(); } catch (e) { a + ':' + e.name; }");
+    }
+
+    @Test
+    public void redefinedAsAccessor() {
+        assertGlobal(
+                "1:5",
+                "this.z = 1;\n"
+                        + "function g() { return z; }\n"
+                        + "var a = g();\n"
+                        + "Object.defineProperty(this, 'z', { get: function() { return 5; } });\n"
+                        + "a + ':' + g();");
+    }
+
+    @Test
+    public void calledFunctionRedefinedAsAccessor() {
+        assertGlobal(
+                "ab",
+                "this.h = function() { return 'a'; };\n"
+                        + "function c() { return h(); }\n"
+                        + "var r = c();\n"
+                        + "Object.defineProperty(this, 'h',\n"
+                        + "    { get: function() { return function() { return 'b'; }; } });\n"
+                        + "r + c();");
+    }
+
+    @Test
+    public void deletedAndAddedAgain() {
+        assertGlobal(
+                "1:2",
+                "this.w = 1;\n"
+                        + "function g() { return w; }\n"
+                        + "var a = g();\n"
+                        + "delete w;\n"
+                        + "this.w = 2;\n"
+                        + "a + ':' + g();");
+    }
+
+    @Test
+    public void separateScopes() {
+        Utils.runWithAllOptimizationLevels(
+                cx -> {
+                    Scriptable s1 = cx.initStandardObjects();
+                    Scriptable s2 = cx.initStandardObjects();
+                    cx.evaluateString(s1, "var v = 1;", "test.js", 1, null);
+                    cx.evaluateString(s2, "var v = 2;", "test.js", 1, null);
+                    Script script = cx.compileString("String(v)", "test.js", 1, null);
+                    assertEquals("1", script.exec(cx, s1));
+                    assertEquals("2", script.exec(cx, s2));
+                    assertEquals("1", script.exec(cx, s1));
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,69 @@
+package org.mozilla.javascript.tests;
+
+import org.junit.Test;
+
+/**
+ * Compiled code keeps local variables that are only assigned numbers unboxed, as long as they are
+ * only read as numbers, returned, stored in elements or passed to direct calls. They must still
+ * start out as undefined, and behave the same as boxed variables everywhere else.
+ */
+public class UnboxedVariableTest {
+    @Test
+    public void readInLoop() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                34.0,
+                "function diffs(a) { var out = 0, last;\n"
+                        + "  for (var i = 0; i < a.length; i++) {\n"
+                        + "    var v = a[i] * 1;\n"
+                        + "    if (i > 0) out += v - last;\n"
+                        + "    last = v * 2;\n"
+                        + "  }\n"
+                        + "  return out; }\n"
+                        + "diffs([1, 5, 9, 50, 100]);");
+    }
+
+    @Test
+    public void comparedBeforeSet() {
+        // undefined compares as NaN until the variable is set
+        Utils.assertWithAllOptimizationLevelsES6(
+                "2,NaN",
+                "function lz(n) { var m, c = 0;\n"
+                        + "  for (var i = 0; i < n; i++) { if (!(i - 1 < m)) c++; m = i * 3; }\n"
+                        + "  return c; }\n"
+                        + "function un() { var u; return u - 1; }\n"
+                        + "[lz(3), un()].join();");
+    }
+
+    @Test
+    public void passedToDirectCall() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "6",
+                "function dc(n) { function g(x) { return x * 2; }\n"
+                        + "  var t; t = n - 1; return g(t); }\n"
+                        + "String(dc(4));");
+    }
+
+    @Test
+    public void returnedBeforeSet() {
+        Utils.assertWithAllOptimizationLevelsES6(
+                "undefined,2,undefined,number",
+                "function r(c) { var x; if (c) x = 1 * c; return x; }\n"
+                        + "function dc() { function g(v) { return typeof v; }\n"
+                        + "  var x; var t = g(x); x = 2 * 2; return t + ',' + g(x); }\n"
+                        + "[String(r(0)), r(2), dc()].join();");
+    }
+
+    @Test
+    public void storedInElements() {
+        // Packed arrays keep the numbers, everything else stores them boxed
+        Utils.assertWithAllOptimizationLevelsES6(
+                ",0,|3,4,3|3,4,3|1,2,3|{\"1\":7,\"-1\":-1}|1,2,3,,,1.25",
+                "function f(a, c) { var x; if (c) x = c * 1.5;\n"
+                        + "  a[0] = x; a[1] = c * 2; a[a.length - 1] = x; return String(a); }\n"
+                        + "function g() { var a = Object.freeze([1, 2, 3]), o = {}, b = [1, 2];\n"
+                        + "  var x = 0; x = x * 2; a[0] = x + 5; o[1] = x + 7; o[-1] = x - 1;\n"
+                        + "  b[2] = x + 3; b[5] = 1.25;\n"
+                        + "  return [String(a), JSON.stringify(o), String(b)].join('|'); }\n"
+                        + "[f([1, 2, 3], 0), f([1, 2, 3], 2), f([1, 'x', 3], 2), g()].join('|');");
+    }
+}
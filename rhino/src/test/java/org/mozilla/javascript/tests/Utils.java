@@ -57,6 +57,16 @@ public class Utils {
         }
     }
 
+    /** Evaluates the script in ES6 mode with the interpreter and returns its result */
+    public static Object evaluateInterpretedES6(final String script) {
+        try (final Context cx = Context.enter()) {
+            cx.setOptimizationLevel(-1);
+            cx.setLanguageVersion(Context.VERSION_ES6);
+            final Scriptable scope = cx.initStandardObjects();
+            return cx.evaluateString(scope, script, "test.js", 1, null);
+        }
+    }
+
     /**
      * Execute the provided script in a fresh context as "myScript.js".
      *
@@ -7,6 +7,11 @@ package org.mozilla.javascript.tests.json;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -269,6 +274,65 @@ public class JsonParserTest {
         parser.parseValue("1.");
     }
 
+    @Test
+    public void shouldParseFromReaderReadInSmallChunks() throws Exception {
+        String json =
+                "{\"name\": \"a \\\"quoted\\\" \\u0041\", \"values\": [1, -2.5e1, true, null],"
+                        + " \"list\": [{\"name\": \"x\"}, {\"name\": \"y\"}], \"7\": false}";
+        Reader reader =
+                new StringReader(json) {
+                    @Override
+                    public int read(char[] cbuf, int off, int len) throws IOException {
+                        return super.read(cbuf, off, Math.min(len, 3));
+                    }
+                };
+        NativeObject actual = (NativeObject) parser.parse(reader);
+        assertEquals("a \"quoted\" A", actual.get("name", actual));
+        NativeArray values = (NativeArray) actual.get("values", actual);
+        assertArrayEquals(new Object[] {1, -25, true, null}, values.toArray());
+        NativeArray list = (NativeArray) actual.get("list", actual);
+        NativeObject second = (NativeObject) list.get(1, list);
+        assertEquals("y", second.get("name", second));
+        assertEquals(false, actual.get(7, actual));
+    }
+
+    @Test
+    public void shouldParseUtf8FromInputStream() throws Exception {
+        byte[] json = "[\"\u00e9t\u00e9\", \"\ud83d\ude00\"]".getBytes(StandardCharsets.UTF_8);
+        NativeArray actual = (NativeArray) parser.parse(new ByteArrayInputStream(json));
+        assertArrayEquals(new Object[] {"\u00e9t\u00e9", "\ud83d\ude00"}, actual.toArray());
+    }
+
+    @Test(expected = ParseException.class)
+    public void shouldFailToParseIncompleteReader() throws Exception {
+        parser.parse(new StringReader("{\"a\": [1, 2"));
+    }
+
+    @Test
+    public void shouldReadContainersOfLazilyParsedValue() throws Exception {
+        JsonParser.Container actual =
+                (JsonParser.Container)
+                        parser.parseValueLazily("{\"a\": [1, {\"b\": 2}], \"3\": {}, \"a\": true}");
+        Object[] members = actual.readMembers();
+        assertEquals(6, members.length);
+        assertEquals("a", members[0]);
+        JsonParser.Container array = (JsonParser.Container) members[1];
+        assertEquals(3, members[2]);
+        assertEquals("a", members[4]);
+        assertEquals(true, members[5]);
+
+        Object[] elements = array.readElements();
+        assertEquals(1, elements[0]);
+        Object[] nested = ((JsonParser.Container) elements[1]).readMembers();
+        assertArrayEquals(new Object[] {"b", 2}, nested);
+        assertEquals("s", parser.parseValueLazily("\"s\""));
+    }
+
+    @Test(expected = ParseException.class)
+    public void shouldCheckWholeTextWhenParsingLazily() throws Exception {
+        parser.parseValueLazily("{\"a\": 1, \"b\": {\"c\": [1 2]}}");
+    }
+
     private String str(char... chars) {
         return new String(chars);
     }
@@ -0,0 +1,82 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests.json;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.tests.Utils;
+
+/**
+ * Objects that JSON.parse reads lazily must behave exactly like objects that were parsed in full,
+ * whichever way they are first used.
+ */
+public class LazyJsonTest {
+    private static final ContextFactory LAZY_FACTORY =
+            new ContextFactory() {
+                @Override
+                protected boolean hasFeature(Context cx, int featureIndex) {
+                    if (featureIndex == Context.FEATURE_LAZY_JSON) {
+                        return true;
+                    }
+                    return super.hasFeature(cx, featureIndex);
+                }
+            };
+
+    private static final String TEXT =
+            "'{\"a\": 1, \"b\": {\"c\": [1, {\"d\": \"x\\\\u0041\"}, [2, [3]]], \"e\": null},"
+                    + " \"2\": \"two\", \"1\": \"one\", \"a\": 5, \"f\": {}, \"g\": []}'";
+
+    private static void assertLazy(Object expected, String script) {
+        Utils.runWithAllOptimizationLevels(
+                LAZY_FACTORY,
+                cx -> {
+                    cx.setLanguageVersion(Context.VERSION_ES6);
+                    Scriptable scope = cx.initStandardObjects();
+                    assertEquals(expected, cx.evaluateString(scope, script, "test.js", 1, null));
+                    return null;
+                });
+    }
+
+    @Test
+    public void readsLikeFullParse() {
+        assertLazy(
+                "{\"1\":\"one\",\"2\":\"two\",\"a\":5,\"b\":{\"c\":[1,{\"d\":\"xA\"},[2,[3]]],\"e\":null},"
+                        + "\"f\":{},\"g\":[]}|1,2,a,b,f,g|xA|3|true",
+                "var t = " + TEXT + ";\n"
+                        + "var o = JSON.parse(t);\n"
+                        + "[JSON.stringify(o), Object.keys(JSON.parse(t)),\n"
+                        + " JSON.parse(t).b.c[1].d, JSON.parse(t).b.c[2][1][0],\n"
+                        + " 'e' in JSON.parse(t).b].join('|');");
+    }
+
+    @Test
+    public void changedBeforeRead() {
+        assertLazy(
+                "{\"1\":\"one\",\"2\":\"two\",\"b\":{\"c\":[1,{\"d\":\"xA\"},[2,[3]],7],\"e\":null},"
+                        + "\"f\":{},\"g\":[],\"z\":9}|true|false",
+                "var t = " + TEXT + ";\n"
+                        + "var o = JSON.parse(t);\n"
+                        + "o.z = 9; delete o.a; o.b.c.push(7);\n"
+                        + "var frozen = Object.freeze(JSON.parse(t));\n"
+                        + "[JSON.stringify(o), Object.isFrozen(frozen), Object.isFrozen(frozen.b)]"
+                        + ".join('|');");
+    }
+
+    @Test
+    public void reviverAndErrors() {
+        assertLazy(
+                "{\"1\":\"one\",\"2\":\"two\",\"a\":6,\"b\":{\"c\":[2,{\"d\":\"xA\"},[3,[4]]],\"e\":null},"
+                        + "\"f\":{},\"g\":[]}|5|SyntaxError",
+                "var t = " + TEXT + ";\n"
+                        + "var r = [JSON.stringify(JSON.parse(t, function(k, v) {\n"
+                        + "  return typeof v === 'number' ? v + 1 : v; })), JSON.parse('5')];\n"
+                        + "try { JSON.parse('{\"a\": {\"b\": [1, 2}}'); } catch (e) { r.push(e.name); }\n"
+                        + "r.join('|');");
+    }
+}